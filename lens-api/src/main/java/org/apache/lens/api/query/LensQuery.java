@@ -221,6 +221,13 @@ public class LensQuery extends ToYAMLString {
   @Getter
   private List<FailedAttempt> failedAttempts;
 
+  /**
+   * The phases the query has gone through, with their start and end times.
+   */
+  @XmlElement
+  @Getter
+  private List<QueryPhaseTime> phaseTimeline;
+
   /**
    * @return error code in case of query failures
    */
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import javax.xml.bind.annotation.XmlEnum;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Phases a query goes through in lens server, in the order in which they happen.
+ */
+@XmlType
+@XmlEnum
+public enum QueryPhase {
+  /**
+   * Rewriting the user query for the selected driver, starts when query is submitted.
+   */
+  REWRITE,
+
+  /**
+   * Estimating cost of the rewritten query on the selected driver.
+   */
+  ESTIMATE,
+
+  /**
+   * Waiting in queued and waiting queries, until the query is picked up for launch.
+   */
+  QUEUE_WAIT,
+
+  /**
+   * Launching the query on the selected driver.
+   */
+  LAUNCH,
+
+  /**
+   * Executing the query on the driver.
+   */
+  DRIVER_EXECUTION,
+
+  /**
+   * Formatting the result of the query, if the result is persisted by server.
+   */
+  RESULT_FORMATTING,
+
+  /**
+   * Persisting the finished query to server DB, once it can be purged.
+   */
+  PERSISTENCE
+}
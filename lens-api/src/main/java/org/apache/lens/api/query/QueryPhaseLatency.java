@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.lens.api.ToYAMLString;
+
+import lombok.*;
+
+/**
+ * Latency percentiles of a query phase, across queries of a driver, user or priority. Latencies are in milliseconds.
+ */
+@XmlRootElement
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@EqualsAndHashCode(callSuper = false)
+public class QueryPhaseLatency extends ToYAMLString {
+
+  /**
+   * The phase.
+   */
+  @XmlElement
+  @Getter
+  private QueryPhase phase;
+
+  /**
+   * The dimension by which queries are grouped, one of driver, user and priority.
+   */
+  @XmlElement
+  @Getter
+  private String dimension;
+
+  /**
+   * The driver, user or priority of the queries.
+   */
+  @XmlElement
+  @Getter
+  private String value;
+
+  /**
+   * Number of queries which went through the phase.
+   */
+  @XmlElement
+  @Getter
+  private long count;
+
+  @XmlElement
+  @Getter
+  private long min;
+
+  @XmlElement
+  @Getter
+  private double mean;
+
+  @XmlElement
+  @Getter
+  private double median;
+
+  @XmlElement
+  @Getter
+  private double p75;
+
+  @XmlElement
+  @Getter
+  private double p95;
+
+  @XmlElement
+  @Getter
+  private double p99;
+
+  @XmlElement
+  @Getter
+  private double p999;
+
+  @XmlElement
+  @Getter
+  private long max;
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.*;
+
+/**
+ * Start and end time of a phase of the query.
+ */
+@XmlRootElement
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@EqualsAndHashCode
+@ToString
+public class QueryPhaseTime implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The phase.
+   */
+  @XmlElement
+  @Getter
+  private QueryPhase phase;
+
+  /**
+   * The time at which the phase started.
+   */
+  @XmlElement
+  @Getter
+  private long startTime;
+
+  /**
+   * The time at which the phase ended, zero if the query is still in the phase.
+   */
+  @XmlElement
+  @Getter
+  private long endTime;
+
+  /**
+   * @return duration of the phase in milliseconds, -1 if the phase hasn't ended
+   */
+  public long getDurationMillis() {
+    return endTime > 0 ? endTime - startTime : -1;
+  }
+}
@@ -40,6 +40,8 @@ import org.apache.lens.client.model.BriefError;
 import org.apache.lens.client.model.IdBriefErrorTemplate;
 import org.apache.lens.client.model.IdBriefErrorTemplateKey;
 import org.apache.lens.client.resultset.CsvResultSet;
+import org.apache.lens.client.resultset.OrcResultSet;
+import org.apache.lens.client.resultset.ParquetResultSet;
 import org.apache.lens.client.resultset.ResultSet;
 import org.apache.lens.client.resultset.ZippedCsvResultSet;
 
@@ -265,7 +267,9 @@ public class LensClient implements AutoCloseable {
   }
 
   /**
-   * Gets the ResultSet for the query represented by queryHandle.
+   * Gets the ResultSet for the query represented by queryHandle. Results in ORC and Parquet formats are read from
+   * their files, ignoring the other arguments. Interrupted downloads are resumed from where they stopped, for
+   * configured number of times.
    *
    * @param queryHandle : query handle.
    * @param encoding  : resultset encoding.
@@ -278,14 +282,22 @@ public class LensClient implements AutoCloseable {
   public ResultSet getHttpResultSet(QueryHandle queryHandle, Charset encoding, boolean isHeaderPresent, char delimiter,
     boolean isResultZipped) throws LensClientIOException {
     InputStream resultStream = null;
+    String resultPath = null;
     try {
-      Response response = statement.getHttpResultSet(statement.getQuery(queryHandle));
-      resultStream = response.readEntity(InputStream.class);
+      LensQuery query = statement.getQuery(queryHandle);
+      resultPath = query.getResultSetPath();
+      resultStream = new ResumableHttpResultStream(statement, query,
+        connection.getLensConnectionParams().getQueryResultDownloadRetries(),
+        connection.getLensConnectionParams().isQueryResultDownloadCompressed());
     } catch (Exception e) {
       throw new LensClientIOException("Error while getting resultset", e);
     }
 
-    if (isResultZipped) {
+    if (resultPath != null && resultPath.endsWith(".orc")) {
+      return new OrcResultSet(resultStream);
+    } else if (resultPath != null && resultPath.endsWith(".parquet")) {
+      return new ParquetResultSet(resultStream);
+    } else if (isResultZipped) {
       return new ZippedCsvResultSet(resultStream, encoding, isHeaderPresent, delimiter);
     } else {
       return new CsvResultSet(resultStream, encoding, isHeaderPresent, delimiter);
@@ -304,6 +316,19 @@ public class LensClient implements AutoCloseable {
     return statement.getQuery(handle);
   }
 
+  /**
+   * Get query details once its status changes from the given status. The server holds the request till the status
+   * changes, or till the configured wait time elapses.
+   *
+   * @param handle the query handle
+   * @param status the status of the query last known
+   * @return the query details
+   */
+  public LensQuery getQueryDetailsOnStatusChange(QueryHandle handle, QueryStatus.Status status) {
+    return statement.getQueryOnStatusChange(handle, status,
+      connection.getLensConnectionParams().getQueryStatusWaitMillis());
+  }
+
   public QueryStatus getQueryStatus(String q) {
     return getQueryStatus(QueryHandle.fromString(q));
   }
@@ -341,6 +366,16 @@ public class LensClient implements AutoCloseable {
     return statement.getAllQueryDetails(state, queryName, user, driver, fromDate, toDate);
   }
 
+  public List<QueryHandle> getQueries(String state, String queryName, String user, String driver, String fromDate,
+    String toDate, QueryHandle after, int pageSize) {
+    return statement.getAllQueries(state, queryName, user, driver, fromDate, toDate, after, pageSize);
+  }
+
+  public List<LensQuery> getQueriesWithDetails(String state, String queryName, String user, String driver,
+    String fromDate, String toDate, boolean summary, QueryHandle after, int pageSize) {
+    return statement.getAllQueryDetails(state, queryName, user, driver, fromDate, toDate, summary, after, pageSize);
+  }
+
   private void connectToLensServer() {
     log.debug("Connecting to lens server {}", new LensConnectionParams(conf));
     connection = new LensConnection(new LensConnectionParams(conf));
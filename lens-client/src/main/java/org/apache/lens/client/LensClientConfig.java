@@ -51,6 +51,24 @@ public class LensClientConfig extends Configuration {
   /** The Constant DEFAULT_QUERY_POLL_INTERVAL. */
   private static final long DEFAULT_QUERY_POLL_INTERVAL = 10L;
 
+  /** The Constant QUERY_STATUS_WAIT_MILLIS_KEY. */
+  private static final String QUERY_STATUS_WAIT_MILLIS_KEY = CLIENT_PFX + "query.status.wait.millis";
+
+  /** The Constant DEFAULT_QUERY_STATUS_WAIT_MILLIS. */
+  private static final long DEFAULT_QUERY_STATUS_WAIT_MILLIS = 60000L;
+
+  /** The Constant QUERY_RESULT_DOWNLOAD_RETRIES_KEY. */
+  private static final String QUERY_RESULT_DOWNLOAD_RETRIES_KEY = CLIENT_PFX + "query.result.download.retries";
+
+  /** The Constant DEFAULT_QUERY_RESULT_DOWNLOAD_RETRIES. */
+  private static final int DEFAULT_QUERY_RESULT_DOWNLOAD_RETRIES = 3;
+
+  /** The Constant QUERY_RESULT_DOWNLOAD_COMPRESSION_KEY. */
+  private static final String QUERY_RESULT_DOWNLOAD_COMPRESSION_KEY = CLIENT_PFX + "query.result.download.compression";
+
+  /** The Constant DEFAULT_QUERY_RESULT_DOWNLOAD_COMPRESSION. */
+  private static final boolean DEFAULT_QUERY_RESULT_DOWNLOAD_COMPRESSION = true;
+
   /** The Constant USER_NAME. */
   private static final String USER_NAME = CLIENT_PFX + "user.name";
 
@@ -152,6 +170,33 @@ public class LensClientConfig extends Configuration {
     return this.getLong(QUERY_POLL_INTERVAL_KEY, DEFAULT_QUERY_POLL_INTERVAL);
   }
 
+  /**
+   * Returns the maximum time the server should hold a request waiting for status change of a query
+   *
+   * @return wait time in millis, polling is used instead if not positive
+   */
+  public long getQueryStatusWaitMillis() {
+    return this.getLong(QUERY_STATUS_WAIT_MILLIS_KEY, DEFAULT_QUERY_STATUS_WAIT_MILLIS);
+  }
+
+  /**
+   * Returns the number of times an interrupted download of query result is resumed
+   *
+   * @return number of retries
+   */
+  public int getQueryResultDownloadRetries() {
+    return this.getInt(QUERY_RESULT_DOWNLOAD_RETRIES_KEY, DEFAULT_QUERY_RESULT_DOWNLOAD_RETRIES);
+  }
+
+  /**
+   * Returns whether query results are asked to be gzip compressed while downloading
+   *
+   * @return true if compressed download is enabled
+   */
+  public boolean isQueryResultDownloadCompressed() {
+    return this.getBoolean(QUERY_RESULT_DOWNLOAD_COMPRESSION_KEY, DEFAULT_QUERY_RESULT_DOWNLOAD_COMPRESSION);
+  }
+
   public String getMetastoreResourcePath() {
     return DEFAULT_METASTORE_RESOURCE_PATH;
   }
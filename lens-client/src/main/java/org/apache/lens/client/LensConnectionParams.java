@@ -139,6 +139,18 @@ public class LensConnectionParams {
     return this.conf.getQueryPollInterval();
   }
 
+  public long getQueryStatusWaitMillis() {
+    return this.conf.getQueryStatusWaitMillis();
+  }
+
+  public int getQueryResultDownloadRetries() {
+    return this.conf.getQueryResultDownloadRetries();
+  }
+
+  public boolean isQueryResultDownloadCompressed() {
+    return this.conf.isQueryResultDownloadCompressed();
+  }
+
   public LensConf getSessionConf() {
     LensConf conf = new LensConf();
     Iterator<Map.Entry<String, String>> itr = this.conf.iterator();
@@ -21,10 +21,13 @@ package org.apache.lens.client;
 import java.net.SocketTimeoutException;
 import java.util.List;
 
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -58,6 +61,9 @@ public class LensStatement {
   /** The query. */
   private LensQuery query;
 
+  /** Whether the server can hold requests till status of a query changes, false once it's found to be not. */
+  private volatile boolean statusChangeWaitSupported = true;
+
   /**
    * This method can be used for executing a query. If waitForQueryToComplete is false, the call to this method returns
    * immediately after submitting the query to the server without waiting for it to complete execution.
@@ -336,13 +342,8 @@ public class LensStatement {
     LensClient.getCliLogger().info("Query handle: {}", handle);
     LensQuery queryDetails = retryOnTimeout ? getQueryWithRetryOnTimeout(handle) : getQuery(handle);
     while (queryDetails.getStatus().queued()) {
-      queryDetails = retryOnTimeout ? getQueryWithRetryOnTimeout(handle) : getQuery(handle);
+      queryDetails = waitForStatusChange(handle, queryDetails.getStatus().getStatus(), retryOnTimeout);
       LensClient.getCliLogger().debug("Query {} status: {}", handle, queryDetails.getStatus());
-      try {
-        Thread.sleep(connection.getLensConnectionParams().getQueryPollInterval());
-      } catch (InterruptedException e) {
-        throw new IllegalStateException(e);
-      }
     }
     LensClient.getCliLogger().info("User query: '{}' was submitted to {}", queryDetails.getUserQuery(),
       queryDetails.getSelectedDriverName());
@@ -352,14 +353,44 @@ public class LensStatement {
     }
     while (!queryDetails.getStatus().finished()
       && !(queryDetails.getStatus().getStatus().equals(Status.CLOSED))) {
-      queryDetails = retryOnTimeout ? getQueryWithRetryOnTimeout(handle) : getQuery(handle);
+      queryDetails = waitForStatusChange(handle, queryDetails.getStatus().getStatus(), retryOnTimeout);
       LensClient.getCliLogger().info("Query Status:{} ", queryDetails.getStatus());
+    }
+  }
+
+  /**
+   * Wait for status of the query to change. The server holds the request till the status changes or till the
+   * configured wait time elapses. Falls back to polling for query status after the poll interval, if the server
+   * doesn't support waiting for status change or the wait time is not positive.
+   *
+   * @param handle         the query handle
+   * @param status         the status of the query last known
+   * @param retryOnTimeout whether to retry on socket timeout
+   * @return the query
+   */
+  private LensQuery waitForStatusChange(QueryHandle handle, Status status, boolean retryOnTimeout) {
+    long waitMillis = connection.getLensConnectionParams().getQueryStatusWaitMillis();
+    if (statusChangeWaitSupported && waitMillis > 0) {
       try {
-        Thread.sleep(connection.getLensConnectionParams().getQueryPollInterval());
-      } catch (InterruptedException e) {
-        throw new IllegalStateException(e);
+        return getQueryOnStatusChange(handle, status, waitMillis);
+      } catch (NotFoundException e) {
+        log.warn("Could not wait for status change of query {}, polling for the status instead", handle, e);
+        statusChangeWaitSupported = false;
+      } catch (Exception e) {
+        if (retryOnTimeout && isExceptionDueToSocketTimeout(e)) {
+          log.warn("Could not get query status. Encountered socket timeout. Retrying...");
+          return getQueryWithRetryOnTimeout(handle);
+        }
+        log.error("Failed to get query status, cause:", e);
+        throw new IllegalStateException("Failed to get query status, cause:" + e.getMessage(), e);
       }
     }
+    try {
+      Thread.sleep(connection.getLensConnectionParams().getQueryPollInterval());
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+    return retryOnTimeout ? getQueryWithRetryOnTimeout(handle) : getQuery(handle);
   }
 
   /**
@@ -402,6 +433,23 @@ public class LensStatement {
     }
   }
 
+  /**
+   * Gets the query once its status is different from the given status. The server holds the request till the status
+   * changes or the timeout elapses, in which case the query is returned in its current status.
+   *
+   * @param handle        the query handle
+   * @param status        the status of the query last known
+   * @param timeoutMillis maximum time for the server to hold the request
+   * @return the query
+   */
+  public LensQuery getQueryOnStatusChange(QueryHandle handle, Status status, long timeoutMillis) {
+    Client client = connection.buildClient();
+    WebTarget target = getQueryWebTarget(client);
+    return target.path(handle.toString()).path("statuschange").queryParam("sessionid", connection.getSessionHandle())
+      .queryParam("status", status.name()).queryParam("timeoutMillis", timeoutMillis).request()
+      .get(LensQuery.class);
+  }
+
   LensQuery getQueryWithRetryOnTimeout(QueryHandle handle) {
     while (true) {
       try {
@@ -598,6 +646,55 @@ public class LensStatement {
       });
   }
 
+  /**
+   * Gets a page of queries, ordered by submission time, latest first.
+   *
+   * @param state     the state
+   * @param queryName the query name
+   * @param user      the user
+   * @param driver    the driver name
+   * @param fromDate  the from date
+   * @param toDate    the to date
+   * @param after     last query of the previous page, null for the first page
+   * @param pageSize  maximum number of queries in the page
+   * @return the page of queries
+   */
+  public List<QueryHandle> getAllQueries(String state, String queryName, String user, String driver, String fromDate,
+    String toDate, QueryHandle after, int pageSize) {
+    WebTarget target = getQueryWebTarget(connection.buildClient());
+    return target.queryParam("sessionid", connection.getSessionHandle())
+      .queryParam("state", state).queryParam("queryName", queryName).queryParam("user", user)
+      .queryParam("driver", driver).queryParam("fromDate", fromDate).queryParam("toDate", toDate)
+      .queryParam("after", after).queryParam("pageSize", pageSize).request()
+      .get(new GenericType<List<QueryHandle>>() {
+      });
+  }
+
+  /**
+   * Gets a page of queries with details, ordered by submission time, latest first.
+   *
+   * @param state     the state
+   * @param queryName the query name
+   * @param user      the user
+   * @param driver    the driver name
+   * @param fromDate  the from date
+   * @param toDate    the to date
+   * @param summary   whether to skip conf, driver query and failed attempts of finished queries
+   * @param after     last query of the previous page, null for the first page
+   * @param pageSize  maximum number of queries in the page
+   * @return the page of queries along with additional details
+   */
+  public List<LensQuery> getAllQueryDetails(String state, String queryName, String user, String driver,
+    String fromDate, String toDate, boolean summary, QueryHandle after, int pageSize) {
+    WebTarget target = getQueryWebTarget(connection.buildClient());
+    return target.queryParam("sessionid", connection.getSessionHandle())
+      .queryParam("state", state).queryParam("queryName", queryName).queryParam("user", user)
+      .queryParam("driver", driver).queryParam("fromDate", fromDate).queryParam("toDate", toDate)
+      .queryParam("summary", summary).queryParam("after", after).queryParam("pageSize", pageSize).request()
+      .get(new GenericType<List<LensQuery>>() {
+      });
+  }
+
   /**
    * Gets the all prepared queries.
    *
@@ -690,6 +787,20 @@ public class LensStatement {
    * @return the http result set
    */
   public Response getHttpResultSet(LensQuery query) {
+    return getHttpResultSet(query, 0, null, false);
+  }
+
+  /**
+   * Gets the http result set from the given offset, to resume an interrupted download. The server sends the whole
+   * result instead, if the result has changed since the download started.
+   *
+   * @param query      the query
+   * @param offset     the offset in bytes of the result to start from
+   * @param eTag       ETag of the result returned in the response which started the download, can be null
+   * @param compressed whether to accept gzip compressed result, compression is not applied to partial results
+   * @return the http result set
+   */
+  public Response getHttpResultSet(LensQuery query, long offset, String eTag, boolean compressed) {
     if (query.getStatus().getStatus() != QueryStatus.Status.SUCCESSFUL) {
       throw new IllegalArgumentException("Result set metadata " + "can be only queries for successful queries");
     }
@@ -697,8 +808,18 @@ public class LensStatement {
 
     try {
       WebTarget target = getQueryWebTarget(client);
-      return target.path(query.getQueryHandle().toString()).path("httpresultset")
-        .queryParam("sessionid", connection.getSessionHandle()).request().get();
+      Invocation.Builder request = target.path(query.getQueryHandle().toString()).path("httpresultset")
+        .queryParam("sessionid", connection.getSessionHandle()).request();
+      if (offset > 0) {
+        request.header("Range", "bytes=" + offset + "-");
+        if (eTag != null) {
+          request.header("If-Range", eTag);
+        }
+      }
+      if (compressed) {
+        request.header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+      }
+      return request.get();
     } catch (Exception e) {
       log.error("Failed to get http resultset, cause:", e);
       throw new IllegalStateException("Failed to get http resultset, cause:" + e.getMessage());
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.apache.lens.api.query.LensQuery;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stream of the http result set of a query, which resumes the download from where it stopped when reading the result
+ * fails. Resumed downloads ask for the rest of the result through a byte range conditional on the ETag of the result,
+ * so that a changed result is not appended to the part read already.
+ */
+@Slf4j
+class ResumableHttpResultStream extends InputStream {
+
+  /**
+   * Thrown when the result has changed on the server since the download started.
+   */
+  private static class ResultChangedException extends IOException {
+    ResultChangedException(String message) {
+      super(message);
+    }
+  }
+
+  private final LensStatement statement;
+  private final LensQuery query;
+
+  /** Maximum number of times the download is resumed. */
+  private final int maxRetries;
+
+  /** Whether to accept gzip compressed result, applies only to the first request. */
+  private final boolean compressed;
+
+  private int retries;
+
+  /** Number of bytes of the result read so far. */
+  private long position;
+
+  /** Size of the result, -1 if not known. */
+  private long length = -1;
+
+  /** ETag of the result, as returned in the first response. */
+  private String eTag;
+
+  private Response response;
+  private InputStream in;
+
+  /**
+   * Starts downloading the result.
+   *
+   * @param statement  the statement to download the result with
+   * @param query      the query
+   * @param maxRetries maximum number of times the download is resumed
+   * @param compressed whether to accept gzip compressed result
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  ResumableHttpResultStream(LensStatement statement, LensQuery query, int maxRetries, boolean compressed)
+    throws IOException {
+    this.statement = statement;
+    this.query = query;
+    this.maxRetries = maxRetries;
+    this.compressed = compressed;
+    open();
+  }
+
+  private void open() throws IOException {
+    try {
+      response = statement.getHttpResultSet(query, position, eTag, compressed && position == 0);
+    } catch (RuntimeException e) {
+      throw new IOException("Could not download result of query " + query.getQueryHandle(), e);
+    }
+    String responseETag = response.getHeaderString(HttpHeaders.ETAG);
+    if (response.getStatus() == Response.Status.PARTIAL_CONTENT.getStatusCode()) {
+      String contentRange = response.getHeaderString("Content-Range");
+      length = Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+      in = response.readEntity(InputStream.class);
+    } else if (response.getStatus() == Response.Status.OK.getStatusCode()) {
+      if (position > 0 && eTag != null && responseETag != null && !eTag.equals(responseETag)) {
+        response.close();
+        throw new ResultChangedException("Result of query " + query.getQueryHandle()
+          + " has changed since its download started");
+      }
+      in = response.readEntity(InputStream.class);
+      if ("gzip".equalsIgnoreCase(response.getHeaderString(HttpHeaders.CONTENT_ENCODING))) {
+        in = new GZIPInputStream(in);
+      } else {
+        length = response.getLength();
+      }
+      // the whole result is sent when the range is not served
+      skipFully(in, position);
+    } else {
+      response.close();
+      throw new IOException("Could not download result of query " + query.getQueryHandle() + ", status: "
+        + response.getStatus());
+    }
+    if (eTag == null) {
+      eTag = responseETag;
+    }
+  }
+
+  private static void skipFully(InputStream in, long bytes) throws IOException {
+    long remaining = bytes;
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new EOFException("Result ended before " + bytes + " bytes");
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int n;
+    do {
+      n = read(b, 0, 1);
+    } while (n == 0);
+    return n < 0 ? -1 : b[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    while (true) {
+      try {
+        int n = in.read(b, off, len);
+        if (n < 0 && length >= 0 && position < length) {
+          throw new EOFException("Result ended at " + position + " bytes of " + length);
+        }
+        if (n > 0) {
+          position += n;
+        }
+        return n;
+      } catch (IOException e) {
+        resume(e);
+      }
+    }
+  }
+
+  private void resume(IOException cause) throws IOException {
+    IOException lastCause = cause;
+    while (retries < maxRetries) {
+      retries++;
+      log.warn("Download of result of query {} interrupted after {} bytes, resuming", query.getQueryHandle(),
+        position, lastCause);
+      closeResponse();
+      try {
+        open();
+        return;
+      } catch (ResultChangedException e) {
+        throw e;
+      } catch (IOException e) {
+        lastCause = e;
+      }
+    }
+    throw lastCause;
+  }
+
+  private void closeResponse() {
+    try {
+      if (in != null) {
+        in.close();
+      }
+    } catch (IOException e) {
+      log.debug("Error closing result stream of query {}", query.getQueryHandle(), e);
+    } finally {
+      in = null;
+      if (response != null) {
+        response.close();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeResponse();
+  }
+}
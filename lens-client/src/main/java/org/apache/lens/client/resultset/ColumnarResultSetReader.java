@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client.resultset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.lens.client.exceptions.LensClientIOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reader of a result in a columnar file format. Columnar files are read from their footer, so the result stream is
+ * copied to a local temporary file first, which is deleted once all the rows have been read.
+ * <p></p>
+ * Values are returned as strings, null values as null.
+ */
+@Slf4j
+public abstract class ColumnarResultSetReader implements ResultSetReader {
+
+  private final File localFile;
+
+  @Getter
+  private final Path localPath;
+
+  @Getter
+  private final Configuration conf = new Configuration();
+
+  private String[] row;
+
+  ColumnarResultSetReader(InputStream in, String extension) throws LensClientIOException {
+    try {
+      localFile = File.createTempFile("lens-result-", extension);
+      localFile.deleteOnExit();
+      try {
+        Files.copy(in, localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new LensClientIOException("Error while downloading result set", e);
+    }
+    localPath = new Path(localFile.toURI());
+  }
+
+  /**
+   * Returns the column names stored in the file.
+   */
+  public abstract String[] getColumnNames();
+
+  /**
+   * Reads the next row.
+   *
+   * @return the column values, null if all the rows have been read
+   * @throws IOException
+   */
+  protected abstract String[] readNext() throws IOException;
+
+  /**
+   * Closes the file reader.
+   *
+   * @throws IOException
+   */
+  protected abstract void closeReader() throws IOException;
+
+  @Override
+  public String[] getRow() {
+    return row;
+  }
+
+  @Override
+  public boolean next() throws LensClientIOException {
+    try {
+      row = readNext();
+      if (row == null) {
+        closeReader();
+        if (!localFile.delete()) {
+          log.warn("Could not delete downloaded result {}", localFile);
+        }
+      }
+    } catch (IOException e) {
+      log.error("Error while reading result set row", e);
+      throw new LensClientIOException("Error while reading result set row", e);
+    }
+    return row != null;
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client.resultset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.lens.client.exceptions.LensClientIOException;
+
+import org.apache.hadoop.hive.ql.io.orc.OrcFile;
+import org.apache.hadoop.hive.ql.io.orc.Reader;
+import org.apache.hadoop.hive.ql.io.orc.RecordReader;
+import org.apache.hadoop.hive.serde2.SerDeUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+
+/**
+ * Reader of a result in ORC format. Complex values are returned as JSON.
+ */
+public class OrcResultSetReader extends ColumnarResultSetReader {
+
+  private final RecordReader rows;
+  private final StructObjectInspector rowOI;
+  private final List<? extends StructField> fields;
+  private final String[] columnNames;
+  private Object row;
+
+  OrcResultSetReader(InputStream in) throws LensClientIOException {
+    super(in, ".orc");
+    try {
+      Reader reader = OrcFile.createReader(getLocalPath(), OrcFile.readerOptions(getConf()));
+      rows = reader.rows();
+      rowOI = (StructObjectInspector) reader.getObjectInspector();
+    } catch (IOException e) {
+      throw new LensClientIOException("Error while opening result set", e);
+    }
+    fields = rowOI.getAllStructFieldRefs();
+    columnNames = new String[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      columnNames[i] = fields.get(i).getFieldName();
+    }
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+
+  @Override
+  protected String[] readNext() throws IOException {
+    if (!rows.hasNext()) {
+      return null;
+    }
+    row = rows.next(row);
+    String[] values = new String[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Object value = rowOI.getStructFieldData(row, fields.get(i));
+      ObjectInspector valueOI = fields.get(i).getFieldObjectInspector();
+      if (value == null) {
+        values[i] = null;
+      } else if (valueOI.getCategory() == ObjectInspector.Category.PRIMITIVE) {
+        values[i] = ((PrimitiveObjectInspector) valueOI).getPrimitiveJavaObject(value).toString();
+      } else {
+        values[i] = SerDeUtils.getJSONString(value, valueOI);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  protected void closeReader() throws IOException {
+    rows.close();
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client.resultset;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.apache.lens.client.exceptions.LensClientIOException;
+
+/**
+ * Result set of a result in Parquet format. Column names are read from the file schema.
+ */
+public class ParquetResultSet extends AbstractResultSet {
+
+  public ParquetResultSet(InputStream inStream) throws LensClientIOException {
+    super(inStream, Charset.forName("UTF-8"), false, ',');
+  }
+
+  @Override
+  protected ResultSetReader createResultSetReader() throws LensClientIOException {
+    return new ParquetResultSetReader(getInStream());
+  }
+
+  @Override
+  public String[] getColumnNames() throws LensClientIOException {
+    return ((ParquetResultSetReader) reader).getColumnNames();
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client.resultset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+
+import org.apache.lens.client.exceptions.LensClientIOException;
+
+import org.apache.hadoop.hive.ql.io.parquet.timestamp.NanoTime;
+import org.apache.hadoop.hive.ql.io.parquet.timestamp.NanoTimeUtils;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+/**
+ * Reader of a result in Parquet format, as written by hive. Nested values are returned in the text form of parquet
+ * groups.
+ */
+public class ParquetResultSetReader extends ColumnarResultSetReader {
+
+  private final ParquetReader<Group> reader;
+  private final MessageType schema;
+  private final String[] columnNames;
+
+  ParquetResultSetReader(InputStream in) throws LensClientIOException {
+    super(in, ".parquet");
+    try {
+      schema = ParquetFileReader.readFooter(getConf(), getLocalPath(), ParquetMetadataConverter.NO_FILTER)
+        .getFileMetaData().getSchema();
+      reader = ParquetReader.builder(new GroupReadSupport(), getLocalPath()).withConf(getConf()).build();
+    } catch (IOException e) {
+      throw new LensClientIOException("Error while opening result set", e);
+    }
+    columnNames = new String[schema.getFieldCount()];
+    for (int i = 0; i < columnNames.length; i++) {
+      columnNames[i] = schema.getFieldName(i);
+    }
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+
+  @Override
+  protected String[] readNext() throws IOException {
+    Group group = reader.read();
+    if (group == null) {
+      return null;
+    }
+    String[] values = new String[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      if (group.getFieldRepetitionCount(i) > 0) {
+        values[i] = getValue(group, i, schema.getType(i));
+      }
+    }
+    return values;
+  }
+
+  private static String getValue(Group group, int field, Type type) {
+    if (!type.isPrimitive()) {
+      return group.getGroup(field, 0).toString().trim();
+    }
+    PrimitiveType primitiveType = type.asPrimitiveType();
+    if (primitiveType.getPrimitiveTypeName() == PrimitiveType.PrimitiveTypeName.INT96) {
+      // hive writes timestamps as int96
+      return NanoTimeUtils.getTimestamp(NanoTime.fromBinary(group.getInt96(field, 0)), false).toString();
+    } else if (type.getOriginalType() == OriginalType.DECIMAL) {
+      return new BigDecimal(new BigInteger(group.getBinary(field, 0).getBytes()),
+        primitiveType.getDecimalMetadata().getScale()).toString();
+    } else if (type.getOriginalType() == OriginalType.DATE) {
+      return new Date(DateWritable.daysToMillis(group.getInteger(field, 0))).toString();
+    }
+    return group.getValueToString(field, 0);
+  }
+
+  @Override
+  protected void closeReader() throws IOException {
+    reader.close();
+  }
+}
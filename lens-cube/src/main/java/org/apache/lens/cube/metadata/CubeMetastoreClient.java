@@ -27,6 +27,8 @@ import static org.apache.lens.cube.metadata.MetastoreUtil.*;
 import java.text.ParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lens.api.metastore.*;
 import org.apache.lens.cube.error.LensCubeErrorCode;
@@ -104,6 +106,10 @@ public class CubeMetastoreClient {
   PartitionTimelineCache partitionTimelineCache = new PartitionTimelineCache();
   // dbname to client mapping
   private static final Map<String, CubeMetastoreClient> CLIENT_MAPPING = Maps.newConcurrentMap();
+  // listeners notified of partition changes made through any client
+  private static final List<PartitionChangeListener> PARTITION_CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+  // incremented on every metadata or partition change made through any client
+  private static final AtomicLong METASTORE_EPOCH = new AtomicLong();
   // Set of all storage table names for which latest partitions exist
   private final Set<String> latestLookupCache = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   private DataCompletenessChecker completenessChecker;
@@ -235,6 +241,7 @@ public class CubeMetastoreClient {
       partitionsToAlter.addAll(
         getAllLatestPartsEquivalentTo(factOrDimtableName, storageTableName, (List<Partition>) entry.getValue()));
       getStorage(storageName).updatePartitions(storageTableName, getClient(), factOrDimtableName, partitionsToAlter);
+      notifyPartitionChange(storageTableName);
     }
   }
 
@@ -656,6 +663,51 @@ public class CubeMetastoreClient {
     return CLIENT_MAPPING.get(currentdb);
   }
 
+  /**
+   * Register a listener to be notified of partition changes made through any {@link CubeMetastoreClient}
+   *
+   * @param listener the listener
+   */
+  public static void addPartitionChangeListener(PartitionChangeListener listener) {
+    PARTITION_CHANGE_LISTENERS.add(listener);
+  }
+
+  /**
+   * Unregister a listener added through {@link #addPartitionChangeListener(PartitionChangeListener)}
+   *
+   * @param listener the listener
+   */
+  public static void removePartitionChangeListener(PartitionChangeListener listener) {
+    PARTITION_CHANGE_LISTENERS.remove(listener);
+  }
+
+  /**
+   * Get the metastore epoch, which changes whenever cubes, dimensions, tables, storages or partitions are created,
+   * altered or dropped through any {@link CubeMetastoreClient}. Results derived from the metastore can be reused as
+   * long as the epoch does not change.
+   *
+   * @return the current epoch
+   */
+  public static long getMetastoreEpoch() {
+    return METASTORE_EPOCH.get();
+  }
+
+  private static void metastoreChanged() {
+    METASTORE_EPOCH.incrementAndGet();
+  }
+
+  private static void notifyPartitionChange(String storageTableName) {
+    metastoreChanged();
+    String tableName = storageTableName.trim().toLowerCase();
+    for (PartitionChangeListener listener : PARTITION_CHANGE_LISTENERS) {
+      try {
+        listener.onPartitionChange(tableName);
+      } catch (RuntimeException e) {
+        log.warn("Partition change listener {} failed for {}", listener, tableName, e);
+      }
+    }
+  }
+
   private Hive getClient() throws HiveException {
     return Hive.get(config);
   }
@@ -685,6 +737,7 @@ public class CubeMetastoreClient {
         alterHiveTable(tbl.getTableName(), tbl);
       } else {
         getClient().createTable(tbl);
+        metastoreChanged();
         // do get to update cache
         getTable(tbl.getTableName());
       }
@@ -700,6 +753,7 @@ public class CubeMetastoreClient {
       tbl.getTTable().getSd().setCols(table.getColumns());
       tbl.getTTable().getParameters().putAll(table.getProperties());
       getClient().createTable(tbl);
+      metastoreChanged();
       // do get to update cache
       getTable(tbl.getTableName());
       return tbl;
@@ -1074,6 +1128,7 @@ public class CubeMetastoreClient {
         }
       }
       latestLookupCache.add(storageTableName);
+      notifyPartitionChange(storageTableName);
       return partsAdded;
     } else if (type == CubeTableType.FACT) {
       List<Partition> partsAdded = new ArrayList<>();
@@ -1089,6 +1144,7 @@ public class CubeMetastoreClient {
       // update hive table
       alterTablePartitionCache((Storage.getPrefix(storageName) + factOrDimTable).toLowerCase(), updatePeriod,
         storageTableName);
+      notifyPartitionChange(storageTableName);
       return partsAdded;
     } else {
       throw new LensException("Can't add partitions to anything other than fact or dimtable");
@@ -1404,6 +1460,7 @@ public class CubeMetastoreClient {
           storageTableName);
       }
     }
+    notifyPartitionChange(storageTableName);
   }
 
   private Map<String, String> getPartitionSpec(UpdatePeriod updatePeriod, Map<String, Date> partitionTimestamps) {
@@ -1638,6 +1695,7 @@ public class CubeMetastoreClient {
       throw new LensException("Couldn't drop hive table: " + table, e);
     }
     allHiveTables.remove(table.trim().toLowerCase());
+    notifyPartitionChange(table);
   }
 
   /**
@@ -2430,6 +2488,7 @@ public class CubeMetastoreClient {
     } catch (Exception e) {
       throw new LensException(e);
     }
+    metastoreChanged();
     return columnsChanged;
   }
 
@@ -2443,6 +2502,7 @@ public class CubeMetastoreClient {
     } catch (InvalidOperationException e) {
       throw new HiveException(e);
     }
+    metastoreChanged();
     if (enableCaching) {
       // refresh the table in cache
       refreshTable(table);
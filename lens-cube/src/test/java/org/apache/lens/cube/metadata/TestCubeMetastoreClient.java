@@ -1559,6 +1559,9 @@ public class TestCubeMetastoreClient {
     }
 
     //test partition
+    List<String> changedTables = new ArrayList<>();
+    PartitionChangeListener listener = changedTables::add;
+    CubeMetastoreClient.addPartitionChangeListener(listener);
     Map<String, Date> timeParts = getTimePartitionByOffsets(getDatePartitionKey(), 0, testDtPart.getName(), -1);
     StoragePartitionDesc partSpec = new StoragePartitionDesc(cubeFact.getName(), timeParts, null, HOURLY);
     client.addPartition(partSpec, c1, CubeTableType.FACT);
@@ -1566,6 +1569,7 @@ public class TestCubeMetastoreClient {
     assertTrue(client.latestPartitionExists(cubeFact.getName(), c1, testDtPart.getName()));
     assertTrue(client.latestPartitionExists(cubeFact.getName(), c1, getDatePartitionKey()));
     String storageTableName = getFactOrDimtableStorageTableName(cubeFact.getName(), c1);
+    assertEquals(changedTables, Lists.newArrayList(storageTableName.toLowerCase()));
     List<Partition> parts = client.getPartitionsByFilter(storageTableName, "dt='latest'");
     assertEquals(parts.size(), 0);
 
@@ -1578,6 +1582,9 @@ public class TestCubeMetastoreClient {
     assertFalse(client.factPartitionExists(cubeFact.getName(), c1, HOURLY, timeParts, emptyHashMap));
     assertFalse(client.latestPartitionExists(cubeFact.getName(), c1, getDatePartitionKey()));
     assertFalse(client.latestPartitionExists(cubeFact.getName(), c1, testDtPart.getName()));
+    assertEquals(changedTables.size(), 2);
+    assertEquals(changedTables.get(1), storageTableName.toLowerCase());
+    CubeMetastoreClient.removePartitionChangeListener(listener);
   }
 
   @Test(priority = 2)
@@ -52,6 +52,7 @@ import org.apache.lens.server.api.query.priority.CostToPriorityRangeConf;
 import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -68,6 +69,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -90,8 +92,29 @@ public class HiveDriver extends AbstractLensDriver {
    */
   public static final String HS2_PRIORITY_RANGES = "lens.driver.hive.priority.ranges";
 
+  /**
+   * Config param for number of threads used to fetch status of several queries from hive server concurrently.
+   */
+  public static final String HS2_STATUS_UPDATE_POOL_SIZE = "lens.driver.hive.status.update.pool.size";
+
+  /**
+   * Config param for minimum interval between status checks of a query registered for completion notification. This
+   * is also the interval at which the completion watcher looks for queries due for a status check.
+   */
+  public static final String HS2_COMPLETION_POLL_MIN_INTERVAL =
+    "lens.driver.hive.completion.poll.min.interval.millis";
+
+  /**
+   * Config param for maximum interval between status checks of a query registered for completion notification.
+   */
+  public static final String HS2_COMPLETION_POLL_MAX_INTERVAL =
+    "lens.driver.hive.completion.poll.max.interval.millis";
+
   // Default values of conf params
   public static final long DEFAULT_EXPIRY_DELAY = 600 * 1000;
+  public static final int DEFAULT_STATUS_UPDATE_POOL_SIZE = 10;
+  public static final long DEFAULT_COMPLETION_POLL_MIN_INTERVAL = 500;
+  public static final long DEFAULT_COMPLETION_POLL_MAX_INTERVAL = 5000;
   public static final String HS2_PRIORITY_DEFAULT_RANGES = "VERY_HIGH,7.0,HIGH,30.0,NORMAL,90,LOW";
   public static final String SESSION_KEY_DELIMITER = ".";
 
@@ -302,6 +325,21 @@ public class HiveDriver extends AbstractLensDriver {
   /** The connection expiry timeout. */
   private long connectionExpiryTimeout;
 
+  /** Pool used to fetch status of several queries concurrently, each thread using its own hive server connection. */
+  private ExecutorService statusUpdatePool;
+
+  /** Queries registered for completion notification. */
+  private final ConcurrentMap<QueryHandle, CompletionWatch> completionWatches = new ConcurrentHashMap<>();
+
+  /** Single thread which checks status of queries registered for completion notification. */
+  private ScheduledExecutorService completionWatcher;
+
+  /** The min completion poll interval. */
+  private long completionPollMinInterval;
+
+  /** The max completion poll interval. */
+  private long completionPollMaxInterval;
+
   /**
    * Instantiates a new hive driver.
    *
@@ -347,6 +385,29 @@ public class HiveDriver extends AbstractLensDriver {
     queryPriorityDecider = new CostRangePriorityDecider(
       new CostToPriorityRangeConf(getConf().get(HS2_PRIORITY_RANGES, HS2_PRIORITY_DEFAULT_RANGES))
     );
+    int statusUpdatePoolSize = getConf().getInt(HS2_STATUS_UPDATE_POOL_SIZE, DEFAULT_STATUS_UPDATE_POOL_SIZE);
+    statusUpdatePool = Executors.newFixedThreadPool(statusUpdatePoolSize, new BasicThreadFactory.Builder()
+      .namingPattern(getFullyQualifiedName().replace('/', '-') + "-status-update-%d")
+      .daemon(true)
+      .build());
+    completionPollMinInterval = getConf().getLong(HS2_COMPLETION_POLL_MIN_INTERVAL,
+      DEFAULT_COMPLETION_POLL_MIN_INTERVAL);
+    completionPollMaxInterval = Math.max(completionPollMinInterval,
+      getConf().getLong(HS2_COMPLETION_POLL_MAX_INTERVAL, DEFAULT_COMPLETION_POLL_MAX_INTERVAL));
+    completionWatcher = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+      .namingPattern(getFullyQualifiedName().replace('/', '-') + "-completion-watcher-%d")
+      .daemon(true)
+      .build());
+    completionWatcher.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          checkWatchedQueries();
+        } catch (Exception e) {
+          log.error("Error checking status of queries registered for completion notification", e);
+        }
+      }
+    }, completionPollMinInterval, completionPollMinInterval, TimeUnit.MILLISECONDS);
 
     log.info("Hive driver {} configured successfully", getFullyQualifiedName());
   }
@@ -650,6 +711,42 @@ public class HiveDriver extends AbstractLensDriver {
     }
   }
 
+  /**
+   * Hive server has no call to get status of several operations together, so status of the queries is fetched
+   * concurrently on the status update pool instead of one query after another.
+   */
+  @Override
+  public Map<QueryHandle, LensException> updateStatus(Collection<QueryContext> contexts) {
+    if (contexts.size() <= 1 || statusUpdatePool == null) {
+      return super.updateStatus(contexts);
+    }
+    Map<QueryHandle, Future<?>> updates = new LinkedHashMap<>();
+    for (final QueryContext context : contexts) {
+      updates.put(context.getQueryHandle(), statusUpdatePool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws LensException {
+          synchronized (context) {
+            updateStatus(context);
+          }
+          return null;
+        }
+      }));
+    }
+    Map<QueryHandle, LensException> failures = new HashMap<>();
+    for (Map.Entry<QueryHandle, Future<?>> update : updates.entrySet()) {
+      try {
+        update.getValue().get();
+      } catch (ExecutionException e) {
+        failures.put(update.getKey(), e.getCause() instanceof LensException ? (LensException) e.getCause()
+          : new LensException("Error getting query status", e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failures.put(update.getKey(), new LensException("Interrupted while getting query status", e));
+      }
+    }
+    return failures;
+  }
+
   private void fetchLogs(OperationHandle opHandle) throws LensException {
     try {
       for (Object[] o : getClient().fetchResults(opHandle, FetchOrientation.FETCH_NEXT, -1, FetchType.LOG)) {
@@ -755,6 +852,12 @@ public class HiveDriver extends AbstractLensDriver {
     lensToHiveSession.clear();
     orphanedHiveSessions.clear();
     sessionLock.unlock();
+    if (completionWatcher != null) {
+      completionWatcher.shutdownNow();
+    }
+    if (statusUpdatePool != null) {
+      statusUpdatePool.shutdownNow();
+    }
   }
 
   /**
@@ -974,94 +1077,100 @@ public class HiveDriver extends AbstractLensDriver {
   }
 
   /**
-   * The Class QueryCompletionNotifier.
+   * A query registered for completion notification.
    */
-  private class QueryCompletionNotifier implements Runnable {
-
-    /** The poll interval. */
-    long pollInterval;
+  @RequiredArgsConstructor
+  private static class CompletionWatch {
 
-    /** The hive handle. */
-    OperationHandle hiveHandle;
-
-    /** The timeout millis. */
-    long timeoutMillis;
+    /** The handle. */
+    private final QueryHandle handle;
 
     /** The listener. */
-    QueryCompletionListener listener;
+    private final QueryCompletionListener listener;
 
-    /** The handle. */
-    QueryHandle handle;
+    /** Time after which listener is notified of timeout, if the query has not finished. */
+    private final long deadline;
 
-    /**
-     * Instantiates a new query completion notifier.
-     *
-     * @param handle        the handle
-     * @param timeoutMillis the timeout millis
-     * @param listener      the listener
-     * @throws LensException the lens exception
-     */
-    QueryCompletionNotifier(QueryHandle handle, long timeoutMillis, QueryCompletionListener listener) {
-      this.handle = handle;
-      this.timeoutMillis = timeoutMillis;
-      this.listener = listener;
-      this.pollInterval = timeoutMillis / 10;
-      if (pollInterval < 5000) {
-        pollInterval = 5000; //minimum poll interval is 5 secs
-      }
+    /** Time of the next status check. */
+    private volatile long nextCheckTime;
+  }
+
+  /**
+   * Status of the query, if it has finished on hive server.
+   *
+   * @param handle the handle
+   * @return driver status of the query if finished, null if the query is not launched yet or is still running
+   * @throws LensException the lens exception
+   */
+  private DriverQueryStatus getFinishedStatus(QueryHandle handle) throws LensException {
+    OperationHandle hiveHandle = hiveHandles.get(handle);
+    if (hiveHandle == null) {
+      log.debug("query handle: {} Not yet launched on driver {}", handle, getFullyQualifiedName());
+      return null;
+    }
+    try {
+      DriverQueryStatus status = updateDriverStateFromOperationStatus(hiveHandle, null);
+      return status.isFinished() ? status : null;
+    } catch (HiveSQLException | IOException e) {
+      throw new LensException("Could not get Status", e);
     }
+  }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Runnable#run()
-     */
-    @Override
-    public void run() {
-      // till query is complete or timeout has reached
-      long timeSpent = 0;
-      String error;
-      try {
-        while (timeSpent <= timeoutMillis) {
-          try {
-            hiveHandle = getHiveHandle(handle);
-            if (isFinished(hiveHandle)) {
-              listener.onDriverStatusUpdated(handle, updateDriverStateFromOperationStatus(hiveHandle, null));
-              return;
-            }
-          } catch (LensException e) {
-            log.debug("query handle: {} Not yet launched on driver {}", handle, getFullyQualifiedName());
+  /**
+   * Checks status of the watched queries which are due for a check, concurrently on the status update pool, and
+   * notifies listeners of the queries which have finished or timed out. Queries which are still running are checked
+   * again after a quarter of their remaining time, bounded by the min and max completion poll intervals, so that
+   * queries close to their timeout are checked more often. Failed status checks are retried the same way till the
+   * timeout.
+   */
+  private void checkWatchedQueries() {
+    long now = System.currentTimeMillis();
+    Map<CompletionWatch, Future<DriverQueryStatus>> checks = new LinkedHashMap<>();
+    for (final CompletionWatch watch : completionWatches.values()) {
+      if (watch.nextCheckTime <= now) {
+        checks.put(watch, statusUpdatePool.submit(new Callable<DriverQueryStatus>() {
+          @Override
+          public DriverQueryStatus call() throws LensException {
+            return getFinishedStatus(watch.handle);
           }
-          Thread.sleep(pollInterval);
-          timeSpent += pollInterval;
-        }
-        error = "timedout";
-      } catch (Exception e) {
-        log.warn("Error while polling for status", e);
-        error = "error polling";
+        }));
       }
-      listener.onError(handle, error);
     }
-
-    /**
-     * Checks if is finished.
-     *
-     * @param hiveHandle the hive handle
-     * @return true, if is finished
-     * @throws LensException the lens exception
-     */
-    private boolean isFinished(OperationHandle hiveHandle) throws LensException {
-      OperationState state;
+    for (Map.Entry<CompletionWatch, Future<DriverQueryStatus>> check : checks.entrySet()) {
+      CompletionWatch watch = check.getKey();
+      DriverQueryStatus status = null;
+      boolean pollFailed = false;
       try {
-        state = getClient().getOperationStatus(hiveHandle).getState();
-      } catch (HiveSQLException e) {
-        throw new LensException("Could not get Status", e);
+        status = check.getValue().get();
+      } catch (ExecutionException e) {
+        log.warn("Error while polling for status of {}, will be retried", watch.handle, e.getCause());
+        pollFailed = true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
       }
-      if (state.equals(OperationState.FINISHED) || state.equals(OperationState.CANCELED)
-        || state.equals(OperationState.ERROR) || state.equals(OperationState.CLOSED)) {
-        return true;
+      now = System.currentTimeMillis();
+      String error = null;
+      if (status == null) {
+        if (now < watch.deadline) {
+          long interval = Math.max(completionPollMinInterval,
+            Math.min(completionPollMaxInterval, (watch.deadline - now) / 4));
+          watch.nextCheckTime = Math.min(now + interval, watch.deadline);
+          continue;
+        }
+        error = pollFailed ? "error polling" : "timedout";
+      }
+      if (completionWatches.remove(watch.handle, watch)) {
+        try {
+          if (status != null) {
+            watch.listener.onDriverStatusUpdated(watch.handle, status);
+          } else {
+            watch.listener.onError(watch.handle, error);
+          }
+        } catch (Exception e) {
+          log.error("Error notifying completion of {}", watch.handle, e);
+        }
       }
-      return false;
     }
   }
 
@@ -1075,8 +1184,11 @@ public class HiveDriver extends AbstractLensDriver {
   @Override
   public void registerForCompletionNotification(
     QueryContext context, long timeoutMillis, QueryCompletionListener listener) {
-    Thread th = new Thread(new QueryCompletionNotifier(context.getQueryHandle(), timeoutMillis, listener));
-    th.start();
+    long now = System.currentTimeMillis();
+    // saturated, as adding very large timeouts to the current time overflows
+    long deadline = timeoutMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutMillis;
+    CompletionWatch watch = new CompletionWatch(context.getQueryHandle(), listener, deadline);
+    completionWatches.put(context.getQueryHandle(), watch);
   }
 
   /*
@@ -1086,7 +1198,10 @@ public class HiveDriver extends AbstractLensDriver {
    */
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    // state read replaces the current state, since state is read again from every journal of server state replayed
     synchronized (hiveHandles) {
+      hiveHandles.clear();
+      lensToHiveSession.clear();
       int numHiveHnadles = in.readInt();
       for (int i = 0; i < numHiveHnadles; i++) {
         QueryHandle qhandle = (QueryHandle) in.readObject();
@@ -1104,6 +1219,7 @@ public class HiveDriver extends AbstractLensDriver {
       }
       log.info("Hive driver {} recovered {} sessions", getFullyQualifiedName(), lensToHiveSession.size());
     }
+    opHandleToSession.clear();
     int numOpHandles = in.readInt();
     for (int i = 0; i < numOpHandles; i++) {
       OperationHandle opHandle = new OperationHandle((TOperationHandle) in.readObject());
@@ -1112,6 +1228,7 @@ public class HiveDriver extends AbstractLensDriver {
       opHandleToSession.put(opHandle, sHandle);
     }
     log.info("Hive driver {} recovered {} operation handles", getFullyQualifiedName(), opHandleToSession.size());
+    orphanedHiveSessions.clear();
     int numOrphanedSessions = in.readInt();
     for (int i = 0; i < numOrphanedSessions; i++) {
       SessionHandle sHandle = new SessionHandle((TSessionHandle) in.readObject(),
@@ -23,6 +23,9 @@ import static org.testng.Assert.*;
 import java.io.*;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.Priority;
@@ -523,6 +526,91 @@ public class TestHiveDriver {
     }
   }
 
+  /**
+   * Test status update of several queries in one call.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testBatchUpdateStatus() throws Exception {
+    int handleSize = getHandleSize();
+    createTestTable("test_batch_update_status");
+    queryConf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, false);
+    List<QueryContext> contexts = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      QueryContext context = createContext("SELECT ID FROM test_batch_update_status", queryConf);
+      driver.executeAsync(context);
+      contexts.add(context);
+    }
+    boolean finished = false;
+    while (!finished) {
+      assertTrue(driver.updateStatus(contexts).isEmpty());
+      finished = true;
+      for (QueryContext context : contexts) {
+        finished = finished && context.getDriverStatus().isFinished();
+      }
+      Thread.sleep(1000);
+    }
+
+    // status of a query not launched on the driver can't be updated, other queries are not affected by it
+    QueryContext notLaunched = createContext("SELECT ID FROM test_batch_update_status", queryConf);
+    List<QueryContext> withNotLaunched = Lists.newArrayList(contexts);
+    withNotLaunched.add(notLaunched);
+    Map<QueryHandle, LensException> failures = driver.updateStatus(withNotLaunched);
+    assertEquals(failures.keySet(), Collections.singleton(notLaunched.getQueryHandle()));
+    for (QueryContext context : contexts) {
+      assertEquals(context.getDriverStatus().getState(), DriverQueryState.SUCCESSFUL);
+      driver.closeQuery(context.getQueryHandle());
+    }
+    assertHandleSize(handleSize);
+  }
+
+  /**
+   * Test completion notification of several queries registered with the driver's completion watcher.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCompletionNotification() throws Exception {
+    int handleSize = getHandleSize();
+    createTestTable("test_completion_notification");
+    queryConf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, false);
+    final Map<QueryHandle, String> notifications = new ConcurrentHashMap<>();
+    final CountDownLatch latch = new CountDownLatch(4);
+    QueryCompletionListener listener = new QueryCompletionListener() {
+      @Override
+      public void onCompletion(QueryHandle handle) {
+        notifications.put(handle, "completed");
+        latch.countDown();
+      }
+
+      @Override
+      public void onError(QueryHandle handle, String error) {
+        notifications.put(handle, error);
+        latch.countDown();
+      }
+    };
+    List<QueryContext> contexts = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      QueryContext context = createContext("SELECT ID FROM test_completion_notification", queryConf);
+      driver.executeAsync(context);
+      // a timeout too large to be added to the current time doesn't time out the query
+      driver.registerForCompletionNotification(context, i == 0 ? Long.MAX_VALUE : 60000, listener);
+      contexts.add(context);
+    }
+    // query which is never launched on the driver times out
+    QueryContext notLaunched = createContext("SELECT ID FROM test_completion_notification", queryConf);
+    driver.registerForCompletionNotification(notLaunched, 0, listener);
+
+    assertTrue(latch.await(60, TimeUnit.SECONDS));
+    assertEquals(notifications.get(notLaunched.getQueryHandle()), "timedout");
+    for (QueryContext context : contexts) {
+      assertEquals(notifications.get(context.getQueryHandle()), "completed");
+      driver.closeQuery(context.getQueryHandle());
+    }
+    assertHandleSize(handleSize);
+  }
+
   /**
    * Validate persistent result.
    *
@@ -24,14 +24,12 @@ import static org.apache.hadoop.hive.serde.serdeConstants.LIST_COLUMN_TYPES;
 import java.io.*;
 import java.util.*;
 
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.serde2.AbstractSerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
-import org.apache.hadoop.hive.serde2.lazy.LazyInteger;
 import org.apache.hadoop.hive.serde2.objectinspector.*;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
@@ -43,7 +41,8 @@ import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 
 /**
- * CSVSerde uses opencsv (http://opencsv.sourceforge.net/) to serialize/deserialize columns as CSV.
+ * CSVSerde uses opencsv (http://opencsv.sourceforge.net/) to deserialize columns as CSV. Rows are serialized in the
+ * format written by opencsv's CSVWriter.
  */
 public final class CSVSerde extends AbstractSerDe {
 
@@ -77,11 +76,6 @@ public final class CSVSerde extends AbstractSerDe {
    */
   private ObjectInspector inspector;
 
-  /**
-   * The output fields.
-   */
-  private String[] outputFields;
-
   /**
    * The num cols.
    */
@@ -117,6 +111,11 @@ public final class CSVSerde extends AbstractSerDe {
    */
   private char escapeChar;
 
+  /**
+   * Buffer a field is serialized into before being escaped, reused across fields.
+   */
+  private final StringBuilder fieldBuffer = new StringBuilder();
+
   /**
    * The collection seperator.
    */
@@ -162,7 +161,6 @@ public final class CSVSerde extends AbstractSerDe {
     columnTypes = TypeInfoUtils.getTypeInfosFromTypeString(columnTypeProperty);
     numCols = columnNames.size();
 
-    this.outputFields = new String[numCols];
     row = new ArrayList<Object>(numCols);
 
     for (int i = 0; i < numCols; i++) {
@@ -213,6 +211,22 @@ public final class CSVSerde extends AbstractSerDe {
    */
   @Override
   public Writable serialize(Object obj, ObjectInspector objInspector) throws SerDeException {
+    StringBuilder out = new StringBuilder();
+    serialize(obj, objInspector, out);
+    return new Text(out.toString());
+  }
+
+  /**
+   * Serialize the row at the end of the given buffer, with fields quoted and escaped the same way as opencsv's
+   * CSVWriter. No line end is written. Does not create any object per row for primitive fields, so that callers
+   * writing many rows can reuse the buffer across rows.
+   *
+   * @param obj          the row
+   * @param objInspector the row object inspector
+   * @param out          the buffer
+   * @throws SerDeException the ser de exception
+   */
+  public void serialize(Object obj, ObjectInspector objInspector, StringBuilder out) throws SerDeException {
     final StructObjectInspector outputRowOI = (StructObjectInspector) objInspector;
     final List<? extends StructField> outputFieldRefs = outputRowOI.getAllStructFieldRefs();
 
@@ -221,26 +235,45 @@ public final class CSVSerde extends AbstractSerDe {
         + " fields but the table has " + numCols + " columns.");
     }
 
-    try {
-      // Get all data out.
-      for (int c = 0; c < numCols; c++) {
-        final Object field = outputRowOI.getStructFieldData(obj, outputFieldRefs.get(c));
-        // Get the field objectInspector and the field object.
-        ObjectInspector fieldOI = outputFieldRefs.get(c).getFieldObjectInspector();
-
-        outputFields[c] = serializeField(field, fieldOI);
+    for (int c = 0; c < numCols; c++) {
+      if (c > 0) {
+        out.append(separatorChar);
       }
+      if (quoteChar != CSVWriter.NO_QUOTE_CHARACTER) {
+        out.append(quoteChar);
+      }
+      final Object field = outputRowOI.getStructFieldData(obj, outputFieldRefs.get(c));
+      // Get the field objectInspector and the field object.
+      if (escapeChar == CSVWriter.NO_ESCAPE_CHARACTER) {
+        serializeField(field, outputFieldRefs.get(c).getFieldObjectInspector(), out);
+      } else {
+        fieldBuffer.setLength(0);
+        serializeField(field, outputFieldRefs.get(c).getFieldObjectInspector(), fieldBuffer);
+        appendEscaped(fieldBuffer, out);
+      }
+      if (quoteChar != CSVWriter.NO_QUOTE_CHARACTER) {
+        out.append(quoteChar);
+      }
+    }
+  }
 
-      final StringWriter writer = new StringWriter();
-      final CSVWriter csv = newWriter(writer, separatorChar, quoteChar, escapeChar);
-
-      csv.writeNext(outputFields);
-      csv.close();
-
-      return new Text(writer.toString());
-    } catch (final IOException ioe) {
-      throw new SerDeException(ioe);
+  /**
+   * Append the field to the buffer, escaping quote and escape characters in it. Characters between the ones to be
+   * escaped are copied in runs.
+   *
+   * @param field the serialized field
+   * @param out   the buffer
+   */
+  private void appendEscaped(StringBuilder field, StringBuilder out) {
+    int runStart = 0;
+    for (int i = 0; i < field.length(); i++) {
+      char ch = field.charAt(i);
+      if (ch == quoteChar || ch == escapeChar) {
+        out.append(field, runStart, i).append(escapeChar);
+        runStart = i;
+      }
     }
+    out.append(field, runStart, field.length());
   }
 
   /**
@@ -248,93 +281,90 @@ public final class CSVSerde extends AbstractSerDe {
    *
    * @param field   the field
    * @param fieldOI the field oi
-   * @return the string
-   * @throws IOException    Signals that an I/O exception has occurred.
-   * @throws SerDeException the ser de exception
+   * @param out     the buffer to append the field to
    */
-  private String serializeField(Object field, ObjectInspector fieldOI) throws IOException, SerDeException {
+  private void serializeField(Object field, ObjectInspector fieldOI, StringBuilder out) {
 
     if (field == null) {
-      return nullString;
+      out.append(nullString);
+      return;
     }
 
     List<?> list;
     switch (fieldOI.getCategory()) {
     case PRIMITIVE:
       if (fieldOI instanceof StringObjectInspector) {
-        final StringObjectInspector fieldStringOI = (StringObjectInspector) fieldOI;
-        return fieldStringOI.getPrimitiveJavaObject(field);
+        out.append(((StringObjectInspector) fieldOI).getPrimitiveJavaObject(field));
+      } else if (field instanceof Integer) {
+        out.append(((Integer) field).intValue());
+      } else if (field instanceof Long) {
+        out.append(((Long) field).longValue());
       } else {
-        return field.toString();
+        out.append(field.toString());
       }
+      return;
     case LIST:
       ListObjectInspector loi = (ListObjectInspector) fieldOI;
       list = loi.getList(field);
       ObjectInspector eoi = loi.getListElementObjectInspector();
       if (list == null) {
-        return nullString;
+        out.append(nullString);
       } else {
-        StringBuilder listString = new StringBuilder();
         for (int i = 0; i < list.size(); i++) {
           if (i > 0) {
-            listString.append(collectionSeperator);
+            out.append(collectionSeperator);
           }
-          listString.append(serializeField(list.get(i), eoi));
+          serializeField(list.get(i), eoi, out);
         }
-        return listString.toString();
       }
+      return;
     case MAP:
       MapObjectInspector moi = (MapObjectInspector) fieldOI;
       ObjectInspector koi = moi.getMapKeyObjectInspector();
       ObjectInspector voi = moi.getMapValueObjectInspector();
       Map<?, ?> map = moi.getMap(field);
       if (map == null) {
-        return nullString;
+        out.append(nullString);
       } else {
-        StringBuilder mapString = new StringBuilder();
         boolean first = true;
         for (Map.Entry<?, ?> entry : map.entrySet()) {
           if (first) {
             first = false;
           } else {
-            mapString.append(collectionSeperator);
+            out.append(collectionSeperator);
           }
-          mapString.append(serializeField(entry.getKey(), koi));
-          mapString.append(mapKeyValueSeperator);
-          mapString.append(serializeField(entry.getValue(), voi));
+          serializeField(entry.getKey(), koi, out);
+          out.append(mapKeyValueSeperator);
+          serializeField(entry.getValue(), voi, out);
         }
-        return mapString.toString();
       }
+      return;
     case STRUCT:
       StructObjectInspector soi = (StructObjectInspector) fieldOI;
       List<? extends StructField> fields = soi.getAllStructFieldRefs();
       list = soi.getStructFieldsDataAsList(field);
       if (list == null) {
-        return nullString;
+        out.append(nullString);
       } else {
-        StringBuilder structString = new StringBuilder();
         for (int i = 0; i < list.size(); i++) {
           if (i > 0) {
-            structString.append(structFieldSeperator);
+            out.append(structFieldSeperator);
           }
-          structString.append(serializeField(list.get(i), fields.get(i).getFieldObjectInspector()));
+          serializeField(list.get(i), fields.get(i).getFieldObjectInspector(), out);
         }
-        return structString.toString();
       }
+      return;
     case UNION:
       UnionObjectInspector uoi = (UnionObjectInspector) fieldOI;
       List<? extends ObjectInspector> ois = uoi.getObjectInspectors();
       if (ois == null) {
-        return nullString;
+        out.append(nullString);
       } else {
-        StringBuilder unionString = new StringBuilder();
-        ByteArrayOutputStream tagStream = new ByteArrayOutputStream();
-        LazyInteger.writeUTF8(tagStream, uoi.getTag(field));
-        unionString.append(new String(tagStream.toByteArray(), "UTF-8"));
-        unionString.append(unionTagFieldSeperator);
-        unionString.append(serializeField(uoi.getField(field), ois.get(uoi.getTag(field))));
-        return unionString.toString();
+        out.append(uoi.getTag(field));
+        out.append(unionTagFieldSeperator);
+        serializeField(uoi.getField(field), ois.get(uoi.getTag(field)), out);
       }
+      return;
     default:
       break;
     }
@@ -448,23 +478,6 @@ public final class CSVSerde extends AbstractSerDe {
     }
   }
 
-  /**
-   * New writer.
-   *
-   * @param writer    the writer
-   * @param separator the separator
-   * @param quote     the quote
-   * @param escape    the escape
-   * @return the CSV writer
-   */
-  private CSVWriter newWriter(final Writer writer, char separator, char quote, char escape) {
-    if (CSVWriter.DEFAULT_ESCAPE_CHARACTER == escape) {
-      return new CSVWriter(writer, separator, quote, "");
-    } else {
-      return new CSVWriter(writer, separator, quote, escape, "");
-    }
-  }
-
   @Override
   public ObjectInspector getObjectInspector() throws SerDeException {
     return inspector;
@@ -0,0 +1,368 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.query.InMemoryOutputFormatter;
+import org.apache.lens.server.api.query.PersistedOutputFormatter;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.hive.ql.exec.FileSinkOperator;
+import org.apache.hadoop.hive.ql.io.HiveOutputFormat;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.AbstractSerDe;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.base.Strings;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Formatter writing the result in a columnar file format, through the hive output format and serde of the file
+ * format. Both in-memory and driver persisted results are supported. Result is always written to a single file, with
+ * column names and types stored in the file. So header, footer, encoding and splitting of results do not apply.
+ * <p></p>
+ * Column names are changed to contain only letters, digits and underscores, as expressions like
+ * <code>format(col,2)</code> are not valid field names in the file schema.
+ */
+@Slf4j
+@SuppressWarnings("deprecation")
+public abstract class ColumnarOutputFormatter extends AbstractOutputFormatter implements InMemoryOutputFormatter,
+  PersistedOutputFormatter {
+
+  /**
+   * The column names written in the file.
+   */
+  private List<String> fileColumnNames;
+
+  /**
+   * The serde of the file format.
+   */
+  private SerDe serde;
+
+  /**
+   * The object inspector of in-memory rows.
+   */
+  private ObjectInspector inputOI;
+
+  /**
+   * The record writer.
+   */
+  private FileSinkOperator.RecordWriter writer;
+
+  /**
+   * The tmp path.
+   */
+  private Path tmpPath;
+
+  /**
+   * The final path.
+   */
+  private Path finalPath;
+
+  /**
+   * The num rows.
+   */
+  private Integer numRows;
+
+  /**
+   * The file size.
+   */
+  private Long fileSize;
+
+  /**
+   * Creates the serde of the file format.
+   *
+   * @return the serde
+   */
+  protected abstract SerDe createSerde();
+
+  /**
+   * Creates the hive output format of the file format.
+   *
+   * @return the output format
+   */
+  protected abstract HiveOutputFormat<?, ?> createOutputFormat();
+
+  /**
+   * Gets the extension of result files.
+   *
+   * @return the extension
+   */
+  protected abstract String getFileExtension();
+
+  /**
+   * Sets compression and row group size in the table properties and job conf passed to the output format.
+   *
+   * @param compression  the configured compression, one of NONE, SNAPPY, ZLIB or LZO
+   * @param rowGroupSize the configured row group size in bytes
+   * @param tableProps   the table properties
+   * @param jobConf      the job conf
+   */
+  protected abstract void setWriterProperties(String compression, long rowGroupSize, Properties tableProps,
+    JobConf jobConf);
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.AbstractOutputFormatter#init(org.apache.lens.server.api.query.QueryContext,
+   * org.apache.lens.server.api.driver.LensResultSetMetadata)
+   */
+  @Override
+  public void init(QueryContext ctx, LensResultSetMetadata metadata) throws IOException {
+    super.init(ctx, metadata);
+    String pathStr = ctx.getResultSetParentDir();
+    if (StringUtils.isBlank(pathStr)) {
+      throw new IllegalArgumentException("No output path specified");
+    }
+    String outputPathStr = Strings.isNullOrEmpty(ctx.getQueryName()) ? ""
+      : LensFileOutputFormat.getValidOutputFileName(ctx.getQueryName()) + "-";
+    finalPath = new Path(pathStr, outputPathStr + ctx.getQueryHandle() + getFileExtension());
+    tmpPath = new Path(pathStr, ctx.getQueryHandle() + ".tmp" + getFileExtension());
+    fileColumnNames = getFileColumnNames(columnNames);
+
+    Properties tableProps = getTableProperties();
+    JobConf jobConf = new JobConf(ctx.getConf());
+    setWriterProperties(ctx.getConf().get(LensConfConstants.QUERY_OUTPUT_COLUMNAR_COMPRESSION,
+      LensConfConstants.DEFAULT_OUTPUT_COLUMNAR_COMPRESSION).trim().toUpperCase(),
+      ctx.getConf().getLong(LensConfConstants.QUERY_OUTPUT_COLUMNAR_ROW_GROUP_SIZE,
+        LensConfConstants.DEFAULT_OUTPUT_COLUMNAR_ROW_GROUP_SIZE), tableProps, jobConf);
+    try {
+      serde = createSerde();
+      serde.initialize(jobConf, tableProps);
+    } catch (SerDeException e) {
+      throw new IOException(e);
+    }
+    inputOI = ObjectInspectorFactory.getStandardStructObjectInspector(fileColumnNames, columnOIs);
+    writer = createOutputFormat().getHiveRecordWriter(jobConf, tmpPath, serde.getSerializedClass(), true,
+      tableProps, Reporter.NULL);
+    numRows = 0;
+  }
+
+  /**
+   * Gets the column names to be written in the file. Characters other than letters, digits and underscores are
+   * replaced with underscores, and names are suffixed with their position if needed to keep them unique.
+   *
+   * @param names the result column names
+   * @return the file column names
+   */
+  static List<String> getFileColumnNames(List<String> names) {
+    List<String> fileNames = new ArrayList<String>(names.size());
+    Set<String> used = new HashSet<String>();
+    for (int pos = 0; pos < names.size(); pos++) {
+      String name = names.get(pos).replaceAll("[^A-Za-z0-9_]", "_").toLowerCase();
+      if (name.isEmpty() || !used.add(name)) {
+        name = name + "_" + pos;
+        used.add(name);
+      }
+      fileNames.add(name);
+    }
+    return fileNames;
+  }
+
+  private Properties getTableProperties() {
+    Properties props = new Properties();
+    props.setProperty(serdeConstants.LIST_COLUMNS, StringUtils.join(fileColumnNames, ","));
+    props.setProperty(serdeConstants.LIST_COLUMN_TYPES, types);
+    return props;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.InMemoryOutputFormatter#writeRow(org.apache.lens.api.query.ResultRow)
+   */
+  @Override
+  public void writeRow(ResultRow row) throws IOException {
+    writeRow(row.getValues(), inputOI);
+  }
+
+  private void writeRow(Object row, ObjectInspector rowOI) throws IOException {
+    try {
+      writer.write(serde.serialize(row, rowOI));
+    } catch (SerDeException e) {
+      throw new IOException(e);
+    }
+    numRows++;
+  }
+
+  /**
+   * Adds rows from the files persisted by driver, which are read with the serde configured by
+   * {@link LensConfConstants#QUERY_PERSISTED_RESULT_SERDE}.
+   *
+   * @see org.apache.lens.server.api.query.PersistedOutputFormatter#addRowsFromPersistedPath(org.apache.hadoop.fs.Path)
+   */
+  @Override
+  public void addRowsFromPersistedPath(Path persistedDir) throws IOException {
+    FileSystem persistFs = persistedDir.getFileSystem(ctx.getConf());
+    FileStatus[] partFiles = persistFs.listStatus(persistedDir, new PathFilter() {
+      @Override
+      public boolean accept(Path path) {
+        return !path.getName().startsWith("_") && !path.getName().startsWith(".");
+      }
+    });
+    // part file names have the same length, like 000000_0
+    Arrays.sort(partFiles);
+    SerDe persistedSerde = createPersistedSerde();
+    ObjectInspector persistedOI;
+    try {
+      persistedOI = persistedSerde.getObjectInspector();
+    } catch (SerDeException e) {
+      throw new IOException(e);
+    }
+    Text line = new Text();
+    for (FileStatus partFile : partFiles) {
+      log.info("Processing file:{}", partFile.getPath());
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(persistFs.open(partFile.getPath()),
+        "UTF-8"))) {
+        String row = in.readLine();
+        while (row != null) {
+          line.set(row);
+          try {
+            writeRow(persistedSerde.deserialize(line), persistedOI);
+          } catch (SerDeException e) {
+            throw new IOException(e);
+          }
+          row = in.readLine();
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private SerDe createPersistedSerde() throws IOException {
+    Properties props = getTableProperties();
+    String prefix = LensConfConstants.QUERY_PERSISTED_RESULT_SERDE_PROPERTY_PFX;
+    for (Map.Entry<String, String> entry : ctx.getConf()) {
+      if (entry.getKey().startsWith(prefix)) {
+        props.setProperty(entry.getKey().substring(prefix.length()), entry.getValue());
+      }
+    }
+    try {
+      SerDe persistedSerde = ReflectionUtils.newInstance(
+        ctx.getConf().getClass(LensConfConstants.QUERY_PERSISTED_RESULT_SERDE,
+          (Class<? extends AbstractSerDe>) Class.forName(LensConfConstants.DEFAULT_PERSISTED_RESULT_SERDE),
+          SerDe.class), ctx.getConf());
+      persistedSerde.initialize(ctx.getConf(), props);
+      return persistedSerde;
+    } catch (ClassNotFoundException | SerDeException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#writeHeader()
+   */
+  @Override
+  public void writeHeader() throws IOException {
+    // column names are in the file schema
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#writeFooter()
+   */
+  @Override
+  public void writeFooter() throws IOException {
+    // number of rows is in the file metadata
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#commit()
+   */
+  @Override
+  public void commit() throws IOException {
+    writer.close(false);
+    writer = null;
+    FileSystem fs = finalPath.getFileSystem(ctx.getConf());
+    finalPath = finalPath.makeQualified(fs);
+    fs.rename(tmpPath, finalPath);
+    ctx.setResultSetPath(finalPath.toString());
+    fileSize = fs.getFileStatus(finalPath).getLen();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (writer != null) {
+      writer.close(true);
+      writer = null;
+      FileSystem fs = tmpPath.getFileSystem(ctx.getConf());
+      fs.delete(tmpPath, false);
+    }
+  }
+
+  @Override
+  public String getFinalOutputPath() {
+    return finalPath.toString();
+  }
+
+  @Override
+  public Integer getNumRows() {
+    return numRows;
+  }
+
+  @Override
+  public Long getFileSize() {
+    return fileSize;
+  }
+
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    out.writeUTF(metadata.toJson());
+    out.writeObject(finalPath == null ? null : finalPath.toUri());
+    out.writeObject(numRows);
+    out.writeObject(fileSize);
+  }
+
+  @Override
+  public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    metadata = LensResultSetMetadata.fromJson(in.readUTF());
+    URI uri = (URI) in.readObject();
+    finalPath = uri == null ? null : new Path(uri);
+    numRows = (Integer) in.readObject();
+    fileSize = (Long) in.readObject();
+  }
+}
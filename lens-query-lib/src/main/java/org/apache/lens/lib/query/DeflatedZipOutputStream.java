@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Zip output stream for entries whose data is deflated already, unlike {@link java.util.zip.ZipOutputStream} which
+ * deflates the data itself. This lets entries, or pieces of an entry, be deflated concurrently.
+ * <p></p>
+ * Data written for an entry must be a raw deflate stream, whose CRC-32 and sizes are given when the entry is started.
+ * Zip64 records are written for entries, offsets and central directory crossing the limits of the zip format.
+ */
+class DeflatedZipOutputStream extends FilterOutputStream {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  private static final int VERSION = 20;
+  private static final int ZIP64_VERSION = 45;
+  /** Names are encoded in UTF-8 */
+  private static final int UTF8_FLAG = 0x0800;
+  private static final int DEFLATED = 8;
+
+  /**
+   * An entry written.
+   */
+  private static class Entry {
+    private byte[] name;
+    private long crc;
+    private long compressedSize;
+    private long size;
+    private long offset;
+    private long time;
+
+    private boolean isZip64() {
+      return compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC;
+    }
+  }
+
+  /** Entries written */
+  private final List<Entry> entries = new ArrayList<>();
+
+  /** Entry being written, null if none */
+  private Entry current;
+
+  /** Number of data bytes written for current entry */
+  private long currentWritten;
+
+  /** Number of bytes written */
+  private long written;
+
+  private boolean finished;
+
+  /**
+   * Instantiates a new deflated zip output stream.
+   *
+   * @param out the out
+   */
+  DeflatedZipOutputStream(OutputStream out) {
+    super(out);
+  }
+
+  /**
+   * Start a new entry, closing the current entry if any.
+   *
+   * @param name           the entry name
+   * @param crc            CRC-32 of the uncompressed data
+   * @param compressedSize length of the deflated data
+   * @param size           length of the uncompressed data
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void putNextEntry(String name, long crc, long compressedSize, long size) throws IOException {
+    closeEntry();
+    Entry entry = new Entry();
+    entry.name = name.getBytes(StandardCharsets.UTF_8);
+    entry.crc = crc;
+    entry.compressedSize = compressedSize;
+    entry.size = size;
+    entry.offset = written;
+    entry.time = toDosTime(System.currentTimeMillis());
+    writeInt(LOCAL_HEADER_SIGNATURE);
+    writeShort(entry.isZip64() ? ZIP64_VERSION : VERSION);
+    writeShort(UTF8_FLAG);
+    writeShort(DEFLATED);
+    writeInt(entry.time);
+    writeInt(entry.crc);
+    if (entry.isZip64()) {
+      writeInt(ZIP64_MAGIC);
+      writeInt(ZIP64_MAGIC);
+      writeShort(entry.name.length);
+      writeShort(20);
+      writeBytes(entry.name);
+      writeShort(ZIP64_EXTRA_ID);
+      writeShort(16);
+      writeLong(entry.size);
+      writeLong(entry.compressedSize);
+    } else {
+      writeInt(entry.compressedSize);
+      writeInt(entry.size);
+      writeShort(entry.name.length);
+      writeShort(0);
+      writeBytes(entry.name);
+    }
+    current = entry;
+    currentWritten = 0;
+  }
+
+  /**
+   * Close the current entry, checking that all of its data is written.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void closeEntry() throws IOException {
+    if (current != null) {
+      if (currentWritten != current.compressedSize) {
+        throw new IOException("Wrote " + currentWritten + " bytes for zip entry "
+          + new String(current.name, StandardCharsets.UTF_8) + " of " + current.compressedSize + " bytes");
+      }
+      entries.add(current);
+      current = null;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkEntry(1);
+    out.write(b);
+    written++;
+    currentWritten++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkEntry(len);
+    out.write(b, off, len);
+    written += len;
+    currentWritten += len;
+  }
+
+  private void checkEntry(int len) throws IOException {
+    if (current == null) {
+      throw new IOException("No zip entry to write to");
+    }
+    if (currentWritten + len > current.compressedSize) {
+      throw new IOException("Zip entry " + new String(current.name, StandardCharsets.UTF_8) + " has only "
+        + current.compressedSize + " bytes");
+    }
+  }
+
+  /**
+   * Close the current entry and write the central directory, without closing the underlying stream.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    closeEntry();
+    long centralOffset = written;
+    for (Entry entry : entries) {
+      boolean offset64 = entry.offset >= ZIP64_MAGIC;
+      int extraLength = (entry.isZip64() ? 16 : 0) + (offset64 ? 8 : 0);
+      writeInt(CENTRAL_HEADER_SIGNATURE);
+      writeShort(extraLength > 0 ? ZIP64_VERSION : VERSION);
+      writeShort(extraLength > 0 ? ZIP64_VERSION : VERSION);
+      writeShort(UTF8_FLAG);
+      writeShort(DEFLATED);
+      writeInt(entry.time);
+      writeInt(entry.crc);
+      writeInt(entry.isZip64() ? ZIP64_MAGIC : entry.compressedSize);
+      writeInt(entry.isZip64() ? ZIP64_MAGIC : entry.size);
+      writeShort(entry.name.length);
+      writeShort(extraLength > 0 ? extraLength + 4 : 0);
+      // comment length, disk number, internal and external attributes
+      writeShort(0);
+      writeShort(0);
+      writeShort(0);
+      writeInt(0);
+      writeInt(offset64 ? ZIP64_MAGIC : entry.offset);
+      writeBytes(entry.name);
+      if (extraLength > 0) {
+        writeShort(ZIP64_EXTRA_ID);
+        writeShort(extraLength);
+        if (entry.isZip64()) {
+          writeLong(entry.size);
+          writeLong(entry.compressedSize);
+        }
+        if (offset64) {
+          writeLong(entry.offset);
+        }
+      }
+    }
+    long centralLength = written - centralOffset;
+    if (entries.size() >= ZIP64_MAGIC_COUNT || centralOffset >= ZIP64_MAGIC || centralLength >= ZIP64_MAGIC) {
+      long zip64EndOffset = written;
+      writeInt(ZIP64_END_SIGNATURE);
+      writeLong(44);
+      writeShort(ZIP64_VERSION);
+      writeShort(ZIP64_VERSION);
+      writeInt(0);
+      writeInt(0);
+      writeLong(entries.size());
+      writeLong(entries.size());
+      writeLong(centralLength);
+      writeLong(centralOffset);
+      writeInt(ZIP64_LOCATOR_SIGNATURE);
+      writeInt(0);
+      writeLong(zip64EndOffset);
+      writeInt(1);
+    }
+    writeInt(END_SIGNATURE);
+    writeShort(0);
+    writeShort(0);
+    writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+    writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+    writeInt(Math.min(centralLength, ZIP64_MAGIC));
+    writeInt(Math.min(centralOffset, ZIP64_MAGIC));
+    writeShort(0);
+    out.flush();
+    finished = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeShort(int v) throws IOException {
+    out.write(v & 0xff);
+    out.write((v >>> 8) & 0xff);
+    written += 2;
+  }
+
+  private void writeInt(long v) throws IOException {
+    writeShort((int) (v & 0xffff));
+    writeShort((int) ((v >>> 16) & 0xffff));
+  }
+
+  private void writeLong(long v) throws IOException {
+    writeInt(v & ZIP64_MAGIC);
+    writeInt(v >>> 32);
+  }
+
+  private void writeBytes(byte[] b) throws IOException {
+    out.write(b);
+    written += b.length;
+  }
+
+  /**
+   * Convert the time to MS-DOS date and time, as stored in zip headers.
+   */
+  private static long toDosTime(long time) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    int year = calendar.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+      | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5
+      | calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  /**
+   * Combine CRC-32 of two consecutive pieces of data into CRC-32 of the whole data, as done by zlib's crc32_combine.
+   *
+   * @param crc1    CRC-32 of the first piece
+   * @param crc2    CRC-32 of the second piece
+   * @param length2 length of the second piece
+   * @return CRC-32 of the first piece followed by the second one
+   */
+  static long combineCrc(long crc1, long crc2, long length2) {
+    if (length2 <= 0) {
+      return crc1;
+    }
+    long[] even = new long[32];
+    long[] odd = new long[32];
+    // operator for one zero bit in odd
+    odd[0] = 0xedb88320L;
+    long row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+    // operators for two and four zero bits
+    gf2MatrixSquare(even, odd);
+    gf2MatrixSquare(odd, even);
+    // apply length2 zeros to crc1, the first squaring gives the operator for one zero byte
+    long crc = crc1;
+    long length = length2;
+    do {
+      gf2MatrixSquare(even, odd);
+      if ((length & 1) != 0) {
+        crc = gf2MatrixTimes(even, crc);
+      }
+      length >>= 1;
+      if (length == 0) {
+        break;
+      }
+      gf2MatrixSquare(odd, even);
+      if ((length & 1) != 0) {
+        crc = gf2MatrixTimes(odd, crc);
+      }
+      length >>= 1;
+    } while (length != 0);
+    return crc ^ crc2;
+  }
+
+  private static long gf2MatrixTimes(long[] matrix, long vector) {
+    long sum = 0;
+    long remaining = vector;
+    for (int i = 0; remaining != 0; i++, remaining >>>= 1) {
+      if ((remaining & 1) != 0) {
+        sum ^= matrix[i];
+      }
+    }
+    return sum;
+  }
+
+  private static void gf2MatrixSquare(long[] square, long[] matrix) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = gf2MatrixTimes(matrix, matrix[n]);
+    }
+  }
+}
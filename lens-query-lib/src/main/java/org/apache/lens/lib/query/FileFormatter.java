@@ -58,6 +58,19 @@ public interface FileFormatter {
    */
   void writeRow(String row) throws IOException;
 
+  /**
+   * Write the row held in the given characters. Characters are not retained after the call. Default implementation
+   * writes the row as a string, formatters should override this to avoid creating a string for every row.
+   *
+   * @param row    the row characters
+   * @param offset the offset of the row
+   * @param length the length of the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  default void writeRow(char[] row, int offset, int length) throws IOException {
+    writeRow(new String(row, offset, length));
+  }
+
   /**
    * Get the temporary path of the result, if any
    *
@@ -22,9 +22,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.query.PersistedOutputFormatter;
 import org.apache.lens.server.api.query.QueryContext;
@@ -34,12 +38,15 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * File formatter for {@link PersistedOutputFormatter}
  * <p></p>
- * This is a {@link WrappedFileFormatter} which can wrap any {@link FileFormatter}.
+ * This is a {@link WrappedFileFormatter} which can wrap any {@link FileFormatter}. When the result is split into
+ * multiple files and parallel formatting is enabled, part files are formatted concurrently by
+ * {@link ParallelZipFileFormatter}.
  */
 @Slf4j
 public class FilePersistentFormatter extends WrappedFileFormatter implements PersistedOutputFormatter {
@@ -54,6 +61,23 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
     super.init(ctx, metadata);
   }
 
+  /**
+   * The formatter formatting part files concurrently, null if part files are formatted one after another.
+   */
+  private ParallelZipFileFormatter parallelFormatter;
+
+  @Override
+  protected AbstractFileFormatter createFileFormatter(QueryContext ctx) {
+    if (ctx.splitResultIntoMultipleFiles()
+      && ctx.getConf().getBoolean(LensConfConstants.QUERY_RESULT_PARALLEL_FORMATTING_ENABLED,
+        LensConfConstants.DEFAULT_QUERY_RESULT_PARALLEL_FORMATTING_ENABLED)
+      && ParallelZipFileFormatter.isSupported(ctx.getResultEncoding())) {
+      parallelFormatter = new ParallelZipFileFormatter();
+      return parallelFormatter;
+    }
+    return super.createFileFormatter(ctx);
+  }
+
   // File names are of the form 000000_0
 
   /**
@@ -100,6 +124,18 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
    */
   @Override
   public void addRowsFromPersistedPath(final Path persistedDir) throws IOException {
+    addRowsFromPersistedPath(persistedDir, null);
+  }
+
+  /**
+   * Add rows from the part files in the persisted directory. Part files are formatted concurrently in the pool, if
+   * parallel formatting is enabled for the query.
+   *
+   * @param persistedDir the persisted directory
+   * @param pool         pool to format part files in, part files are formatted in the calling thread if null
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void addRowsFromPersistedPath(final Path persistedDir, ExecutorService pool) throws IOException {
     final FileSystem persistFs = persistedDir.getFileSystem(ctx.getConf());
 
     FileStatus[] partFiles = persistFs.listStatus(persistedDir, new PathFilter() {
@@ -115,6 +151,18 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
         partFileMap.put(new PartFile(file.getPath().getName()), file);
       }
 
+      if (parallelFormatter != null) {
+        List<Path> partFilePaths = new ArrayList<>(partFileMap.size());
+        for (FileStatus file : partFileMap.values()) {
+          partFilePaths.add(file.getPath());
+        }
+        int threads = ctx.getConf().getInt(LensConfConstants.QUERY_RESULT_PARALLEL_FORMATTING_THREADS,
+          LensConfConstants.DEFAULT_QUERY_RESULT_PARALLEL_FORMATTING_THREADS);
+        parallelFormatter.addPartFiles(persistFs, partFilePaths,
+          pool == null ? MoreExecutors.sameThreadExecutor() : pool, Math.max(1, threads));
+        return;
+      }
+
       for (Map.Entry<PartFile, FileStatus> entry : partFileMap.entrySet()) {
         log.info("Processing file:{}", entry.getValue().getPath());
         BufferedReader in = null;
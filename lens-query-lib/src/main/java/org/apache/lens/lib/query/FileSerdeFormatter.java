@@ -56,6 +56,21 @@ public class FileSerdeFormatter extends WrappedFileFormatter implements InMemory
    */
   private ObjectInspector inputOI;
 
+  /**
+   * The output serde, if it is a {@link CSVSerde}, which serializes rows into {@link #rowBuffer}.
+   */
+  private CSVSerde csvSerde;
+
+  /**
+   * The buffer holding the row being written, reused across rows.
+   */
+  private final StringBuilder rowBuffer = new StringBuilder();
+
+  /**
+   * The characters of the row being written, reused across rows.
+   */
+  private char[] rowChars = new char[0];
+
   /**
    * Instantiates a new file serde formatter.
    */
@@ -93,6 +108,9 @@ public class FileSerdeFormatter extends WrappedFileFormatter implements InMemory
       }
       outputSerde.initialize(ctx.getConf(), props);
       inputOI = ObjectInspectorFactory.getStandardStructObjectInspector(columnNames, columnOIs);
+      if (outputSerde instanceof CSVSerde) {
+        csvSerde = (CSVSerde) outputSerde;
+      }
     } catch (ClassNotFoundException e) {
       throw new IllegalArgumentException(e);
     } catch (SerDeException e) {
@@ -108,6 +126,18 @@ public class FileSerdeFormatter extends WrappedFileFormatter implements InMemory
   @Override
   public void writeRow(ResultRow row) throws IOException {
     try {
+      if (csvSerde != null) {
+        // skip the Text round trip, the row is written directly from the reused buffer
+        rowBuffer.setLength(0);
+        csvSerde.serialize(row.getValues(), inputOI, rowBuffer);
+        int length = rowBuffer.length();
+        if (rowChars.length < length) {
+          rowChars = new char[Math.max(length, 2 * rowChars.length)];
+        }
+        rowBuffer.getChars(0, length, rowChars, 0);
+        writeRow(rowChars, 0, length);
+        return;
+      }
       Writable rowWritable = outputSerde.serialize(row.getValues(), inputOI);
       writeRow(rowWritable.toString());
     } catch (SerDeException e) {
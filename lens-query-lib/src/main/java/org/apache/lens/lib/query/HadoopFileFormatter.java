@@ -107,6 +107,16 @@ public class HadoopFileFormatter extends AbstractFileFormatter {
     numRows++;
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#writeRow(char[], int, int)
+   */
+  public void writeRow(char[] row, int offset, int length) throws IOException {
+    rowWriter.write(row, offset, length);
+    numRows++;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -126,6 +126,19 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
       out.write(NEWLINE);
     }
 
+    /**
+     * Write the row held in the given characters, followed by a new line.
+     *
+     * @param row    the row characters
+     * @param offset the offset of the row
+     * @param length the length of the row
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void write(char[] row, int offset, int length) throws IOException {
+      out.write(row, offset, length);
+      out.write(NEWLINE);
+    }
+
     /*
      * (non-Javadoc)
      *
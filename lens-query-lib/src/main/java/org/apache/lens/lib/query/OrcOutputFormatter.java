@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.util.Properties;
+
+import org.apache.hadoop.hive.ql.io.HiveOutputFormat;
+import org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat;
+import org.apache.hadoop.hive.ql.io.orc.OrcSerde;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.orc.OrcConf;
+
+/**
+ * Formatter writing the result as an ORC file.
+ */
+@SuppressWarnings("deprecation")
+public class OrcOutputFormatter extends ColumnarOutputFormatter {
+
+  @Override
+  protected SerDe createSerde() {
+    return new OrcSerde();
+  }
+
+  @Override
+  protected HiveOutputFormat<?, ?> createOutputFormat() {
+    return new OrcOutputFormat();
+  }
+
+  @Override
+  protected String getFileExtension() {
+    return ".orc";
+  }
+
+  @Override
+  protected void setWriterProperties(String compression, long rowGroupSize, Properties tableProps, JobConf jobConf) {
+    if ("UNCOMPRESSED".equals(compression)) {
+      compression = "NONE";
+    } else if ("GZIP".equals(compression)) {
+      compression = "ZLIB";
+    }
+    tableProps.setProperty(OrcConf.COMPRESS.getAttribute(), compression);
+    tableProps.setProperty(OrcConf.STRIPE_SIZE.getAttribute(), String.valueOf(rowGroupSize));
+  }
+}
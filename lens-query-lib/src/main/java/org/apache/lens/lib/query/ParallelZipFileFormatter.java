@@ -0,0 +1,563 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+import com.google.common.base.Strings;
+import com.google.common.io.CountingOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Zip file formatter, which formats the part files of a result persisted by driver concurrently.
+ * <p></p>
+ * The zip has the same {@link ZipFileFormatter#PART_SUFFIX} files as written by {@link ZipFileFormatter}, each with
+ * the configured maximum number of rows. Rows of every part file are counted first, which tells the zip files the rows
+ * of a part file go to. Every part file is then read and deflated by its own thread into pieces, one for each zip file
+ * it has rows of. On commit, the pieces are put together with the header and footer into the zip files, without
+ * being inflated again. Raw deflate streams ending with a sync flush can be concatenated, and CRC-32 of a zip file is
+ * combined from CRC-32 of its pieces.
+ * <p></p>
+ * Only encodings without byte order mark written by the encoder are supported, see {@link #isSupported(String)}.
+ */
+@Slf4j
+public class ParallelZipFileFormatter extends AbstractFileFormatter {
+
+  /**
+   * Size of buffers of deflater and readers.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The tmp path.
+   */
+  private Path tmpPath;
+
+  /**
+   * The directory holding deflated pieces of zip files, one file for every part file.
+   */
+  private Path piecesDir;
+
+  /**
+   * The fs.
+   */
+  private FileSystem fs;
+
+  /**
+   * The zip out.
+   */
+  private FSDataOutputStream zipOut;
+
+  /**
+   * The result file extn.
+   */
+  private String resultFileExtn;
+
+  /**
+   * The max split rows.
+   */
+  private long maxSplitRows;
+
+  /**
+   * The encoding.
+   */
+  private String encoding;
+
+  /**
+   * Name of the encoding, as reported by writers.
+   */
+  private String encodingName;
+
+  /**
+   * The header, written at the start of every zip file.
+   */
+  private String header;
+
+  /**
+   * The footer, written at the end of the last zip file.
+   */
+  private String footer;
+
+  /**
+   * Deflated pieces of zip files, for every part file.
+   */
+  private List<List<Piece>> partFilePieces = new ArrayList<>();
+
+  /**
+   * The closed.
+   */
+  private boolean closed = false;
+
+  /**
+   * Deflated piece of a zip file, which is held in a file or in memory.
+   */
+  private static class Piece {
+
+    /**
+     * The zip file.
+     */
+    private final int part;
+
+    /**
+     * File holding the piece, null if the piece is in memory.
+     */
+    private Path file;
+
+    /**
+     * Offset of the piece in the file.
+     */
+    private long offset;
+
+    /**
+     * The piece, if held in memory.
+     */
+    private byte[] data;
+
+    private long compressedSize;
+
+    private long size;
+
+    private long crc;
+
+    Piece(int part) {
+      this.part = part;
+    }
+  }
+
+  /**
+   * Writes rows into a piece of a zip file.
+   */
+  private class PieceWriter {
+
+    private final Piece piece;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    private final CRC32 crc = new CRC32();
+
+    private final CountingOutputStream compressed;
+
+    private final DeflaterOutputStream deflaterOut;
+
+    private final CountingOutputStream uncompressed;
+
+    private final Writer writer;
+
+    PieceWriter(Piece piece, OutputStream out) throws IOException {
+      this.piece = piece;
+      compressed = new CountingOutputStream(out);
+      deflaterOut = new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE, true);
+      uncompressed = new CountingOutputStream(new CheckedOutputStream(deflaterOut, crc));
+      writer = new OutputStreamWriter(uncompressed, encoding);
+    }
+
+    void writeByteOrderMark() throws IOException {
+      // Write the UTF-16LE BOM (FF FE), as done by ZipFileFormatter
+      if (encoding.equals(LensFileOutputFormat.UTF16LE)) {
+        writer.flush();
+        uncompressed.write(0xFF);
+        uncompressed.write(0xFE);
+      }
+    }
+
+    void writeLine(String line) throws IOException {
+      writer.write(line);
+      writer.write('\n');
+    }
+
+    /**
+     * Flush the piece, ending it with a sync flush so that another piece can follow it, or as the end of the zip file.
+     * The underlying stream is not closed.
+     *
+     * @param last whether the piece is the last of the zip file
+     * @return the piece
+     */
+    Piece finish(boolean last) throws IOException {
+      try {
+        writer.flush();
+        if (last) {
+          deflaterOut.finish();
+        }
+      } finally {
+        deflater.end();
+      }
+      piece.compressedSize = compressed.getCount();
+      piece.size = uncompressed.getCount();
+      piece.crc = crc.getValue();
+      return piece;
+    }
+  }
+
+  /**
+   * Whether the encoding is supported. Encoders of encodings like UTF-16 write the byte order mark at the start, which
+   * would be repeated in every piece.
+   *
+   * @param encoding the encoding
+   * @return true if supported
+   */
+  public static boolean isSupported(String encoding) {
+    return LensFileOutputFormat.UTF8.equals(encoding) || LensFileOutputFormat.UTF16LE.equals(encoding);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#setupOutputs()
+   */
+  public void setupOutputs() throws IOException {
+    resultFileExtn = ctx.getOuptutFileExtn();
+    maxSplitRows = ctx.getMaxResultSplitRows();
+    numRows = 0;
+
+    String pathStr = ctx.getResultSetParentDir();
+    if (StringUtils.isBlank(pathStr)) {
+      throw new IllegalArgumentException("No output path specified");
+    }
+
+    String finalPathStr = Strings.isNullOrEmpty(ctx.getQueryName()) ? ""
+      : LensFileOutputFormat.getValidOutputFileName(ctx.getQueryName()) + "-";
+    finalPath = new Path(pathStr, finalPathStr + ctx.getQueryHandle().toString() + ".zip");
+    tmpPath = new Path(pathStr, ctx.getQueryHandle().toString() + ".tmp.zip");
+    piecesDir = new Path(pathStr, ctx.getQueryHandle().toString() + ".pieces.tmp");
+
+    fs = finalPath.getFileSystem(ctx.getConf());
+    zipOut = fs.create(tmpPath);
+    encoding = ctx.getResultEncoding();
+    encodingName = new OutputStreamWriter(new ByteArrayOutputStream(), encoding).getEncoding();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#writeHeader(java.lang.String)
+   */
+  public void writeHeader(String header) throws IOException {
+    this.header = header;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#writeFooter(java.lang.String)
+   */
+  public void writeFooter(String footer) throws IOException {
+    this.footer = footer;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#writeRow(java.lang.String)
+   */
+  public void writeRow(String row) throws IOException {
+    throw new UnsupportedOperationException("Rows are added from part files of the persisted result");
+  }
+
+  /**
+   * Format the part files of the result concurrently, with not more than the given number of part files in progress.
+   *
+   * @param partFs      file system of the part files
+   * @param partFiles   the part files, in order
+   * @param executor    executor to format part files in
+   * @param parallelism maximum number of part files formatted at the same time
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void addPartFiles(final FileSystem partFs, List<Path> partFiles, Executor executor, int parallelism)
+    throws IOException {
+    List<Callable<Long>> counts = new ArrayList<>(partFiles.size());
+    for (final Path partFile : partFiles) {
+      counts.add(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return countRows(partFs, partFile);
+        }
+      });
+    }
+    List<Long> rows = runAll(counts, executor, parallelism);
+
+    List<Callable<List<Piece>>> formats = new ArrayList<>(partFiles.size());
+    long firstRow = numRows;
+    for (int i = 0; i < partFiles.size(); i++) {
+      final Path partFile = partFiles.get(i);
+      final Path piecesFile = new Path(piecesDir, String.valueOf(partFilePieces.size() + i));
+      final long partFirstRow = firstRow;
+      final long partRows = rows.get(i);
+      formats.add(new Callable<List<Piece>>() {
+        @Override
+        public List<Piece> call() throws Exception {
+          return formatPartFile(partFs, partFile, piecesFile, partFirstRow, partRows);
+        }
+      });
+      firstRow += partRows;
+    }
+    partFilePieces.addAll(runAll(formats, executor, parallelism));
+    numRows = (int) firstRow;
+    log.info("Formatted {} part files with {} rows for {}", partFiles.size(), numRows, ctx.getQueryHandle());
+  }
+
+  /**
+   * Count rows of the part file, as read by {@link BufferedReader#readLine()}. Line terminators are single bytes in
+   * UTF-8, so the bytes need not be decoded.
+   */
+  private static long countRows(FileSystem partFs, Path partFile) throws IOException {
+    long rows = 0;
+    boolean pendingRow = false;
+    boolean carriageReturn = false;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = partFs.open(partFile)) {
+      int read = in.read(buffer);
+      while (read >= 0) {
+        for (int i = 0; i < read; i++) {
+          if (buffer[i] == '\n') {
+            if (!carriageReturn) {
+              rows++;
+            }
+            carriageReturn = false;
+            pendingRow = false;
+          } else if (buffer[i] == '\r') {
+            rows++;
+            carriageReturn = true;
+            pendingRow = false;
+          } else {
+            carriageReturn = false;
+            pendingRow = true;
+          }
+        }
+        read = in.read(buffer);
+      }
+    }
+    return pendingRow ? rows + 1 : rows;
+  }
+
+  /**
+   * Deflate rows of the part file into pieces of the zip files they belong to.
+   */
+  private List<Piece> formatPartFile(FileSystem partFs, Path partFile, Path piecesFile, long firstRow, long rows)
+    throws IOException {
+    log.info("Processing file:{}", partFile);
+    List<Piece> pieces = new ArrayList<>();
+    long row = firstRow;
+    long offset = 0;
+    // default encoding in hadoop filesystem is utf-8
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(partFs.open(partFile), "UTF-8"), BUFFER_SIZE);
+      FSDataOutputStream out = fs.create(piecesFile)) {
+      PieceWriter writer = null;
+      String line = in.readLine();
+      while (line != null) {
+        if (writer == null || row % maxSplitRows == 0) {
+          if (writer != null) {
+            offset += addPiece(pieces, writer.finish(false));
+          }
+          Piece piece = new Piece((int) (row / maxSplitRows));
+          piece.file = piecesFile;
+          piece.offset = offset;
+          writer = new PieceWriter(piece, out);
+        }
+        writer.writeLine(line);
+        row++;
+        line = in.readLine();
+      }
+      if (writer != null) {
+        addPiece(pieces, writer.finish(false));
+      }
+    }
+    if (row - firstRow != rows) {
+      throw new IOException("Part file " + partFile + " had " + rows + " rows, but " + (row - firstRow)
+        + " rows are formatted");
+    }
+    return pieces;
+  }
+
+  private static long addPiece(List<Piece> pieces, Piece piece) {
+    pieces.add(piece);
+    return piece.compressedSize;
+  }
+
+  /**
+   * Run the tasks in the executor, with not more than the given number of tasks in progress.
+   *
+   * @return results of the tasks, in order
+   */
+  private static <T> List<T> runAll(List<Callable<T>> tasks, Executor executor, int parallelism) throws IOException {
+    final Semaphore permits = new Semaphore(parallelism);
+    final CountDownLatch failed = new CountDownLatch(1);
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    try {
+      for (Callable<T> task : tasks) {
+        permits.acquire();
+        if (failed.getCount() == 0) {
+          // no point in starting other tasks
+          break;
+        }
+        FutureTask<T> future = new FutureTask<T>(task) {
+          @Override
+          protected void setException(Throwable t) {
+            failed.countDown();
+            super.setException(t);
+          }
+
+          @Override
+          protected void done() {
+            permits.release();
+          }
+        };
+        futures.add(future);
+        executor.execute(future);
+      }
+      List<T> results = new ArrayList<>(futures.size());
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      cancelAll(futures);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while formatting part files");
+    } catch (ExecutionException e) {
+      cancelAll(futures);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (RejectedExecutionException e) {
+      cancelAll(futures);
+      throw new IOException("Could not format part files", e);
+    }
+  }
+
+  private static <T> void cancelAll(List<Future<T>> futures) {
+    for (Future<T> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Deflate the text into a piece held in memory.
+   */
+  private Piece deflate(int part, boolean byteOrderMark, String text, boolean last) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PieceWriter writer = new PieceWriter(new Piece(part), out);
+    if (byteOrderMark) {
+      writer.writeByteOrderMark();
+    }
+    if (text != null) {
+      writer.writeLine(text);
+    }
+    Piece piece = writer.finish(last);
+    piece.data = out.toByteArray();
+    return piece;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#commit()
+   */
+  @Override
+  public void commit() throws IOException {
+    int parts = (int) Math.max(1, (numRows + maxSplitRows - 1) / maxSplitRows);
+    List<List<Piece>> partPieces = new ArrayList<>(parts);
+    for (int part = 0; part < parts; part++) {
+      partPieces.add(new ArrayList<Piece>());
+    }
+    for (List<Piece> pieces : partFilePieces) {
+      for (Piece piece : pieces) {
+        partPieces.get(piece.part).add(piece);
+      }
+    }
+
+    DeflatedZipOutputStream zip = new DeflatedZipOutputStream(zipOut);
+    for (int part = 0; part < parts; part++) {
+      List<Piece> pieces = new ArrayList<>();
+      pieces.add(deflate(part, true, header, false));
+      pieces.addAll(partPieces.get(part));
+      pieces.add(deflate(part, false, part == parts - 1 ? footer : null, true));
+      long crc = 0;
+      long compressedSize = 0;
+      long size = 0;
+      for (Piece piece : pieces) {
+        crc = DeflatedZipOutputStream.combineCrc(crc, piece.crc, piece.size);
+        compressedSize += piece.compressedSize;
+        size += piece.size;
+      }
+      zip.putNextEntry(ZipFileFormatter.getPartFileName(ctx, part, resultFileExtn), crc, compressedSize, size);
+      for (Piece piece : pieces) {
+        if (piece.data != null) {
+          zip.write(piece.data);
+        } else {
+          try (FSDataInputStream in = fs.open(piece.file)) {
+            in.seek(piece.offset);
+            IOUtils.copyBytes(in, zip, piece.compressedSize, false);
+          }
+        }
+      }
+    }
+    zip.finish();
+    close();
+    fs.rename(tmpPath, finalPath);
+    finalPath = finalPath.makeQualified(fs);
+    fileSize = fs.getFileStatus(finalPath).getLen();
+    ctx.setResultSetPath(getFinalOutputPath());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryOutputFormatter#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      try {
+        if (zipOut != null) {
+          zipOut.close();
+        }
+      } finally {
+        if (piecesDir != null) {
+          fs.delete(piecesDir, true);
+        }
+        closed = true;
+      }
+    }
+  }
+
+  @Override
+  public Path getTmpPath() {
+    return tmpPath;
+  }
+
+  @Override
+  public String getEncoding() {
+    return encodingName;
+  }
+}
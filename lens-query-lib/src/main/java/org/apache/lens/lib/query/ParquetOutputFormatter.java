@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.util.Properties;
+
+import org.apache.hadoop.hive.ql.io.HiveOutputFormat;
+import org.apache.hadoop.hive.ql.io.parquet.MapredParquetOutputFormat;
+import org.apache.hadoop.hive.ql.io.parquet.serde.ParquetHiveSerDe;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
+
+/**
+ * Formatter writing the result as a Parquet file.
+ */
+@SuppressWarnings("deprecation")
+public class ParquetOutputFormatter extends ColumnarOutputFormatter {
+
+  @Override
+  protected SerDe createSerde() {
+    return new ParquetHiveSerDe();
+  }
+
+  @Override
+  protected HiveOutputFormat<?, ?> createOutputFormat() {
+    return new MapredParquetOutputFormat();
+  }
+
+  @Override
+  protected String getFileExtension() {
+    return ".parquet";
+  }
+
+  @Override
+  protected void setWriterProperties(String compression, long rowGroupSize, Properties tableProps, JobConf jobConf) {
+    if ("NONE".equals(compression)) {
+      compression = "UNCOMPRESSED";
+    } else if ("ZLIB".equals(compression)) {
+      compression = "GZIP";
+    }
+    tableProps.setProperty(ParquetOutputFormat.COMPRESSION, compression);
+    jobConf.set(ParquetOutputFormat.COMPRESSION, compression);
+    jobConf.setLong(ParquetOutputFormat.BLOCK_SIZE, rowGroupSize);
+  }
+}
@@ -29,8 +29,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.fs.Path;
 
 /**
- * Wraps the formatter {@link FileFormatter}, which can have implementations like {@link HadoopFileFormatter} or
- * {@link ZipFileFormatter}.
+ * Wraps the formatter {@link FileFormatter}, which can have implementations like {@link HadoopFileFormatter},
+ * {@link ZipFileFormatter} or {@link ParallelZipFileFormatter}.
  */
 public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
 
@@ -47,12 +47,22 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
    */
   public void init(QueryContext ctx, LensResultSetMetadata metadata) throws IOException {
     super.init(ctx, metadata);
+    formatter = createFileFormatter(ctx);
+    formatter.init(ctx, metadata);
+  }
+
+  /**
+   * Create the file formatter to be wrapped.
+   *
+   * @param ctx the query context
+   * @return the file formatter
+   */
+  protected AbstractFileFormatter createFileFormatter(QueryContext ctx) {
     if (ctx.splitResultIntoMultipleFiles()) {
-      formatter = new ZipFileFormatter();
+      return new ZipFileFormatter();
     } else {
-      formatter = new HadoopFileFormatter();
+      return new HadoopFileFormatter();
     }
-    formatter.init(ctx, metadata);
   }
 
   /*
@@ -95,6 +105,18 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
     formatter.writeRow(row);
   }
 
+  /**
+   * Write row held in the given characters.
+   *
+   * @param row    the row characters
+   * @param offset the offset of the row
+   * @param length the length of the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected void writeRow(char[] row, int offset, int length) throws IOException {
+    formatter.writeRow(row, offset, length);
+  }
+
   @Override
   public Integer getNumRows() {
     return formatter.getNumRows();
@@ -23,6 +23,8 @@ import java.io.OutputStreamWriter;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.lens.server.api.query.QueryContext;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -124,9 +126,21 @@ public class ZipFileFormatter extends AbstractFileFormatter {
   }
 
   private String getQueryResultFileName() {
+    return getPartFileName(ctx, currentPart, resultFileExtn);
+  }
+
+  /**
+   * Get name of the zip entry holding the given part of the result.
+   *
+   * @param ctx            the query context
+   * @param part           the part
+   * @param resultFileExtn the result file extension
+   * @return the entry name
+   */
+  static String getPartFileName(QueryContext ctx, int part, String resultFileExtn) {
     String pathStr = Strings.isNullOrEmpty(ctx.getQueryName()) ? ""
       : LensFileOutputFormat.getValidOutputFileName(ctx.getQueryName()) + "-";
-    return pathStr + ctx.getQueryHandle().toString() + PART_SUFFIX + currentPart + resultFileExtn;
+    return pathStr + ctx.getQueryHandle().toString() + PART_SUFFIX + part + resultFileExtn;
   }
 
   /*
@@ -193,6 +207,25 @@ public class ZipFileFormatter extends AbstractFileFormatter {
    * @see org.apache.lens.lib.query.FileFormatter#writeRow(java.lang.String)
    */
   public void writeRow(String row) throws IOException {
+    startRow();
+    out.write(row);
+    out.write("\n");
+    numRows++;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.lib.query.FileFormatter#writeRow(char[], int, int)
+   */
+  public void writeRow(char[] row, int offset, int length) throws IOException {
+    startRow();
+    out.write(row, offset, length);
+    out.write('\n');
+    numRows++;
+  }
+
+  private void startRow() throws IOException {
     // close zip entry and add new one, if numRows has crossed max rows in the
     // cuurent file
     if (numRows != 0 && numRows % maxSplitRows == 0) {
@@ -209,9 +242,6 @@ public class ZipFileFormatter extends AbstractFileFormatter {
       }
       writeHeader();
     }
-    out.write(row);
-    out.write("\n");
-    numRows++;
   }
 
   /*
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing serialization of rows by {@link CSVSerde} into a {@link org.apache.hadoop.io.Text}, as
+ * done for other serdes, with serialization into a buffer reused across rows, as done by {@link FileSerdeFormatter}.
+ * Narrow rows have 4 columns, wide rows have 200.
+ *
+ * Benchmarks are not run as part of tests. Run {@link #main(String[])} with test classpath of lens-query-lib to run
+ * them, with -prof gc to see allocations per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CSVSerdeBenchmark {
+
+  @Param({"4", "200"})
+  private int columns;
+
+  private CSVSerde serde;
+  private ObjectInspector rowOI;
+  private List<Object> row;
+  private final StringBuilder buffer = new StringBuilder();
+
+  @Setup
+  public void setup() throws SerDeException {
+    StringBuilder names = new StringBuilder();
+    StringBuilder types = new StringBuilder();
+    row = new ArrayList<Object>(columns);
+    for (int i = 0; i < columns; i++) {
+      if (i > 0) {
+        names.append(',');
+        types.append(',');
+      }
+      names.append("col").append(i);
+      switch (i % 4) {
+      case 0:
+        types.append("int");
+        row.add(i * 1000);
+        break;
+      case 1:
+        types.append("string");
+        row.add("value \"" + i + "\" of a string column");
+        break;
+      case 2:
+        types.append("bigint");
+        row.add(i * 100000000000L);
+        break;
+      default:
+        types.append("double");
+        row.add(i / 3.0);
+        break;
+      }
+    }
+    Properties props = new Properties();
+    props.setProperty(serdeConstants.LIST_COLUMNS, names.toString());
+    props.setProperty(serdeConstants.LIST_COLUMN_TYPES, types.toString());
+    serde = new CSVSerde();
+    serde.initialize(null, props);
+    rowOI = serde.getObjectInspector();
+  }
+
+  /**
+   * Row serialized into a new Text, and converted back to a String to be written.
+   */
+  @Benchmark
+  public String text() throws SerDeException {
+    return serde.serialize(row, rowOI).toString();
+  }
+
+  /**
+   * Row serialized into the reused buffer.
+   */
+  @Benchmark
+  public int reusedBuffer() throws SerDeException {
+    buffer.setLength(0);
+    serde.serialize(row, rowOI, buffer);
+    return buffer.length();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CSVSerdeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
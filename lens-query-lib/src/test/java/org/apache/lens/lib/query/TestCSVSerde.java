@@ -161,6 +161,38 @@ public class TestCSVSerde {
     props.put(serdeConstants.LIST_COLUMN_TYPES, "string,varchar(20),int,char(10)");
   }
 
+  /**
+   * Test serialize into a reused buffer, with quote and escape characters in fields.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSerializeIntoBuffer() throws Exception {
+    props.put("separatorChar", ",");
+    props.put("quoteChar", "\"");
+    props.remove("escapeChar");
+    props.put(serdeConstants.LIST_COLUMNS, "a,b,c,d");
+    props.put(serdeConstants.LIST_COLUMN_TYPES, "string,varchar(20),int,char(10)");
+    csv.initialize(null, props);
+
+    List<? extends Object> row = Arrays.asList("say \"hi\"", "yes, okay", 1, null);
+    StringBuilder buffer = new StringBuilder("prefix;");
+    csv.serialize(row, csv.getObjectInspector(), buffer);
+    Assert.assertEquals(buffer.toString(), "prefix;\"say \"\"hi\"\"\",\"yes, okay\",\"1\",\"NULL\"");
+    Assert.assertEquals(((Text) csv.serialize(row, csv.getObjectInspector())).toString(),
+      buffer.substring("prefix;".length()));
+
+    props.put("quoteChar", "'");
+    props.put("escapeChar", "\\");
+    csv.initialize(null, props);
+    row = Arrays.asList("it's", "back\\slash", -12, "char");
+    buffer.setLength(0);
+    csv.serialize(row, csv.getObjectInspector(), buffer);
+    Assert.assertEquals(buffer.toString(), "'it\\'s','back\\\\slash','-12','char'");
+    props.remove("escapeChar");
+    props.put("quoteChar", "\"");
+  }
+
   /**
    * Test deserialize custom separators.
    *
@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.orc.OrcFile;
+import org.apache.hadoop.hive.ql.io.orc.Reader;
+import org.apache.hadoop.hive.ql.io.orc.RecordReader;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hive.service.cli.ColumnDescriptor;
+import org.apache.hive.service.cli.TypeDescriptor;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.schema.MessageType;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link OrcOutputFormatter} and {@link ParquetOutputFormatter}.
+ */
+public class TestColumnarOutputFormatter {
+
+  /**
+   * The part file dir.
+   */
+  private Path partFileDir = new Path("target/partcolumnarfiles");
+
+  private ColumnarOutputFormatter formatter;
+
+  @AfterMethod
+  public void cleanup() throws IOException {
+    if (formatter != null) {
+      formatter.close();
+      Path finalPath = new Path(formatter.getFinalOutputPath());
+      finalPath.getFileSystem(new Configuration()).delete(finalPath, false);
+    }
+    partFileDir.getFileSystem(new Configuration()).delete(partFileDir, true);
+  }
+
+  private static LensResultSetMetadata getMetadata() {
+    return new MockLensResultSetMetadata(Lists.newArrayList(
+      new ColumnDescriptor("id", "", new TypeDescriptor("int"), 0),
+      new ColumnDescriptor("format(name,2)", "", new TypeDescriptor("string"), 1),
+      new ColumnDescriptor("Score", "", new TypeDescriptor("double"), 2),
+      new ColumnDescriptor("tags", "", new TypeDescriptor("array<int>"), 3)
+    ));
+  }
+
+  private static List<ResultRow> getRows() {
+    List<ResultRow> rows = new ArrayList<ResultRow>();
+    rows.add(new ResultRow(Arrays.<Object>asList(1, "one", 1.5, Arrays.asList(1, 2))));
+    rows.add(new ResultRow(Arrays.<Object>asList(2, null, 2.5, null)));
+    rows.add(new ResultRow(Arrays.<Object>asList(null, "three", null, Arrays.asList(3))));
+    return rows;
+  }
+
+  private QueryContext createContext(Configuration conf) {
+    final LensDriver mockDriver = new MockDriver();
+    try {
+      mockDriver.configure(conf, null, null);
+    } catch (LensException e) {
+      Assert.fail(e.getMessage());
+    }
+    QueryContext ctx = QueryContext.createContextWithSingleDriver("test columnar query", "testuser",
+      new LensConf(), conf, mockDriver, null, false);
+    ctx.setSelectedDriver(mockDriver);
+    return ctx;
+  }
+
+  private Path writeInMemoryRows(ColumnarOutputFormatter newFormatter, Configuration conf) throws IOException {
+    formatter = newFormatter;
+    QueryContext ctx = createContext(conf);
+    formatter.init(ctx, getMetadata());
+    formatter.writeHeader();
+    for (ResultRow row : getRows()) {
+      formatter.writeRow(row);
+    }
+    formatter.writeFooter();
+    formatter.commit();
+    formatter.close();
+    Assert.assertEquals(formatter.getNumRows(), Integer.valueOf(3));
+    Path finalPath = new Path(formatter.getFinalOutputPath());
+    FileSystem fs = finalPath.getFileSystem(conf);
+    Assert.assertEquals(finalPath.getParent(), fs.makeQualified(new Path(
+      LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT)));
+    Assert.assertFalse(fs.exists(new Path(LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT,
+      ctx.getQueryHandle() + ".tmp" + finalPath.getName().substring(finalPath.getName().lastIndexOf('.')))));
+    Assert.assertEquals(formatter.getFileSize(), Long.valueOf(fs.getFileStatus(finalPath).getLen()));
+    return finalPath;
+  }
+
+  private static List<List<String>> readOrc(Path path, Configuration conf, List<String> columnNames)
+    throws IOException {
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf));
+    StructObjectInspector rowOI = (StructObjectInspector) reader.getObjectInspector();
+    for (StructField field : rowOI.getAllStructFieldRefs()) {
+      columnNames.add(field.getFieldName());
+    }
+    List<List<String>> rows = new ArrayList<List<String>>();
+    RecordReader recordReader = reader.rows();
+    Object row = null;
+    while (recordReader.hasNext()) {
+      row = recordReader.next(row);
+      List<String> values = new ArrayList<String>();
+      for (Object value : rowOI.getStructFieldsDataAsList(row)) {
+        values.add(value == null ? null : value.toString());
+      }
+      rows.add(values);
+    }
+    recordReader.close();
+    return rows;
+  }
+
+  @Test
+  public void testOrcInMemoryResult() throws IOException {
+    Configuration conf = new Configuration();
+    conf.set(LensConfConstants.QUERY_OUTPUT_COLUMNAR_COMPRESSION, "zlib");
+    Path finalPath = writeInMemoryRows(new OrcOutputFormatter(), conf);
+    Assert.assertTrue(finalPath.getName().endsWith(".orc"));
+
+    List<String> columnNames = new ArrayList<String>();
+    List<List<String>> rows = readOrc(finalPath, conf, columnNames);
+    Assert.assertEquals(columnNames, Arrays.asList("id", "format_name_2_", "score", "tags"));
+    Assert.assertEquals(rows, Arrays.asList(
+      Arrays.asList("1", "one", "1.5", "[1, 2]"),
+      Arrays.asList("2", null, "2.5", null),
+      Arrays.asList(null, "three", null, "[3]")));
+  }
+
+  @Test
+  public void testParquetInMemoryResult() throws IOException {
+    Configuration conf = new Configuration();
+    conf.set(LensConfConstants.QUERY_OUTPUT_COLUMNAR_COMPRESSION, "none");
+    Path finalPath = writeInMemoryRows(new ParquetOutputFormatter(), conf);
+    Assert.assertTrue(finalPath.getName().endsWith(".parquet"));
+
+    MessageType schema = ParquetFileReader.readFooter(conf, finalPath, ParquetMetadataConverter.NO_FILTER)
+      .getFileMetaData().getSchema();
+    Assert.assertEquals(schema.getFieldCount(), 4);
+    Assert.assertEquals(schema.getFieldName(0), "id");
+    Assert.assertEquals(schema.getFieldName(1), "format_name_2_");
+    ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), finalPath).withConf(conf).build();
+    Group row = reader.read();
+    Assert.assertEquals(row.getInteger(0, 0), 1);
+    Assert.assertEquals(row.getString(1, 0), "one");
+    Assert.assertEquals(row.getDouble(2, 0), 1.5);
+    row = reader.read();
+    Assert.assertEquals(row.getInteger(0, 0), 2);
+    Assert.assertEquals(row.getFieldRepetitionCount(1), 0);
+    row = reader.read();
+    Assert.assertEquals(row.getFieldRepetitionCount(0), 0);
+    Assert.assertEquals(row.getString(1, 0), "three");
+    Assert.assertNull(reader.read());
+    reader.close();
+  }
+
+  @Test
+  public void testOrcPersistedResult() throws IOException {
+    Configuration conf = new Configuration();
+    FileSystem fs = partFileDir.getFileSystem(conf);
+    // default text format of hive
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(partFileDir, "000001_0"))));
+    writer.write("2\u0001\\N\u00012.5\u0001\\N\n");
+    writer.write("\\N\u0001three\u0001\\N\u00013\n");
+    writer.close();
+    writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(partFileDir, "000000_0"))));
+    writer.write("1\u0001one\u00011.5\u00011\u00022\n");
+    writer.close();
+    fs.create(new Path(partFileDir, "_SUCCESS")).close();
+
+    formatter = new OrcOutputFormatter();
+    formatter.init(createContext(conf), getMetadata());
+    formatter.addRowsFromPersistedPath(partFileDir);
+    formatter.commit();
+    Assert.assertEquals(formatter.getNumRows(), Integer.valueOf(3));
+
+    List<List<String>> rows = readOrc(new Path(formatter.getFinalOutputPath()), conf, new ArrayList<String>());
+    Assert.assertEquals(rows, Arrays.asList(
+      Arrays.asList("1", "one", "1.5", "[1, 2]"),
+      Arrays.asList("2", null, "2.5", null),
+      Arrays.asList(null, "three", null, "[3]")));
+  }
+
+  @Test
+  public void testFormatterPersistence() throws IOException, ClassNotFoundException {
+    writeInMemoryRows(new OrcOutputFormatter(), new Configuration());
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(outputStream)) {
+      out.writeObject(formatter);
+    }
+    ColumnarOutputFormatter newFormatter;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+      newFormatter = (ColumnarOutputFormatter) in.readObject();
+    }
+    Assert.assertEquals(newFormatter.getFinalOutputPath(), formatter.getFinalOutputPath());
+    Assert.assertEquals(newFormatter.getFileSize(), formatter.getFileSize());
+    Assert.assertEquals(newFormatter.getNumRows(), formatter.getNumRows());
+    Assert.assertEquals(newFormatter.getMetadata().toJson(), formatter.getMetadata().toJson());
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.*;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * The Class TestDeflatedZipOutputStream.
+ */
+public class TestDeflatedZipOutputStream {
+
+  /**
+   * Test combining CRC-32 of pieces, against CRC-32 of the whole data.
+   */
+  @Test
+  public void testCombineCrc() {
+    Random random = new Random(42);
+    for (int length : new int[]{0, 1, 7, 100, 4096, 100000}) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      int split = length == 0 ? 0 : random.nextInt(length);
+      CRC32 first = new CRC32();
+      first.update(data, 0, split);
+      CRC32 second = new CRC32();
+      second.update(data, split, length - split);
+      CRC32 whole = new CRC32();
+      whole.update(data);
+      Assert.assertEquals(DeflatedZipOutputStream.combineCrc(first.getValue(), second.getValue(), length - split),
+        whole.getValue(), "length " + length + " split " + split);
+    }
+  }
+
+  /**
+   * Test that entries made of separately deflated pieces are read back by {@link ZipInputStream}.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testEntriesFromPieces() throws IOException {
+    String[][] entries = {{"first,1\n", "second,2\n", ""}, {"", "third,3\n"}};
+    ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+    DeflatedZipOutputStream zip = new DeflatedZipOutputStream(zipBytes);
+    for (int i = 0; i < entries.length; i++) {
+      ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+      long crc = 0;
+      long size = 0;
+      for (int j = 0; j < entries[i].length; j++) {
+        byte[] piece = entries[i][j].getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        DeflaterOutputStream out = new DeflaterOutputStream(deflated, deflater, 512, true);
+        out.write(piece);
+        out.flush();
+        if (j == entries[i].length - 1) {
+          out.finish();
+        }
+        deflater.end();
+        CRC32 pieceCrc = new CRC32();
+        pieceCrc.update(piece);
+        crc = DeflatedZipOutputStream.combineCrc(crc, pieceCrc.getValue(), piece.length);
+        size += piece.length;
+      }
+      zip.putNextEntry("entry-" + i + ".csv", crc, deflated.size(), size);
+      zip.write(deflated.toByteArray());
+    }
+    zip.close();
+
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zipBytes.toByteArray()));
+    for (int i = 0; i < entries.length; i++) {
+      ZipEntry entry = in.getNextEntry();
+      Assert.assertNotNull(entry);
+      Assert.assertEquals(entry.getName(), "entry-" + i + ".csv");
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[16];
+      int read = in.read(buffer);
+      while (read >= 0) {
+        content.write(buffer, 0, read);
+        read = in.read(buffer);
+      }
+      StringBuilder expected = new StringBuilder();
+      for (String piece : entries[i]) {
+        expected.append(piece);
+      }
+      Assert.assertEquals(new String(content.toByteArray(), StandardCharsets.UTF_8), expected.toString());
+    }
+    Assert.assertNull(in.getNextEntry());
+    in.close();
+  }
+
+  /**
+   * Test that data not matching the compressed size of the entry is rejected.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testShortEntry() throws IOException {
+    DeflatedZipOutputStream zip = new DeflatedZipOutputStream(new ByteArrayOutputStream());
+    zip.putNextEntry("short.csv", 0, 10, 10);
+    zip.write(new byte[5]);
+    zip.finish();
+  }
+}
@@ -19,21 +19,27 @@
 package org.apache.lens.lib.query;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.lens.server.api.LensConfConstants;
-import org.apache.lens.server.api.query.PersistedOutputFormatter;
 import org.apache.lens.server.api.query.QueryContext;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.io.IOUtils;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterTest;
@@ -55,6 +61,23 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
    */
   private Path partFileTextDir = new Path("target/parttextfiles");
 
+  /**
+   * Number of tasks run by the formatting pool.
+   */
+  private final AtomicInteger formattingTasks = new AtomicInteger();
+
+  /**
+   * The pool formatting part files in parallel.
+   */
+  private ThreadPoolExecutor formattingPool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+    new LinkedBlockingQueue<Runnable>()) {
+    @Override
+    public void execute(Runnable command) {
+      formattingTasks.incrementAndGet();
+      super.execute(command);
+    }
+  };
+
   /**
    * Creates the part files.
    *
@@ -108,6 +131,7 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     FileSystem fs = partFileDir.getFileSystem(new Configuration());
     fs.delete(partFileDir, true);
     fs.delete(partFileTextDir, true);
+    formattingPool.shutdownNow();
   }
 
   /*
@@ -127,7 +151,8 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
    */
   @Override
   protected void writeAllRows(Configuration conf) throws IOException {
-    ((PersistedOutputFormatter) formatter).addRowsFromPersistedPath(new Path(conf.get("test.partfile.dir")));
+    ((FilePersistentFormatter) formatter).addRowsFromPersistedPath(new Path(conf.get("test.partfile.dir")),
+      formattingPool);
   }
 
   protected void setConf(Configuration conf) {
@@ -256,6 +281,68 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     Assert.assertEquals(actual, getExpectedCSVRowsWithMultiple());
   }
 
+  /**
+   * Test parallel formatting with zip formatter gives the same zip files as formatting part files one after another,
+   * when zip files have rows of multiple part files and part files have rows of multiple zip files.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testParallelFormattingWithZipFormatter() throws IOException {
+    String[][] encodings = {{"UTF-8", "UTF8"}, {"UTF-16LE", "UnicodeLittleUnmarked"}};
+    for (String[] encoding : encodings) {
+      for (long maxRows : new long[]{1, 2, 10}) {
+        Configuration conf = new Configuration();
+        setConf(conf);
+        conf.set(LensConfConstants.QUERY_OUTPUT_CHARSET_ENCODING, encoding[0]);
+        conf.setBoolean(LensConfConstants.RESULT_SPLIT_INTO_MULTIPLE, true);
+        conf.setLong(LensConfConstants.RESULT_SPLIT_MULTIPLE_MAX_ROWS, maxRows);
+        testFormatter(conf, encoding[1], LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".zip", getMockedResultSet());
+        Path serialPath = new Path(formatter.getFinalOutputPath());
+        List<String> expected = readZipEntries(serialPath, conf);
+        serialPath.getFileSystem(conf).delete(serialPath, false);
+
+        formattingTasks.set(0);
+        conf.setBoolean(LensConfConstants.QUERY_RESULT_PARALLEL_FORMATTING_ENABLED, true);
+        conf.setInt(LensConfConstants.QUERY_RESULT_PARALLEL_FORMATTING_THREADS, 2);
+        testFormatter(conf, encoding[1], LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".zip", getMockedResultSet());
+        // part files are counted and formatted in the pool
+        Assert.assertEquals(formattingTasks.get(), 6);
+        Path parallelPath = new Path(formatter.getFinalOutputPath());
+        Assert.assertEquals(readZipEntries(parallelPath, conf), expected, encoding[0] + " " + maxRows);
+        Assert.assertEquals(formatter.getNumRows(), Integer.valueOf(5));
+        Assert.assertEquals(formatter.getFileSize(),
+          Long.valueOf(parallelPath.getFileSystem(conf).getFileStatus(parallelPath).getLen()));
+        // deflated pieces are removed
+        String piecesDir = formatter.getTmpPath().getName().replace(".tmp.zip", ".pieces.tmp");
+        Assert.assertFalse(parallelPath.getFileSystem(conf).exists(
+          new Path(LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, piecesDir)));
+      }
+    }
+  }
+
+  /**
+   * Read the zip files, with file names relative to the query handle.
+   */
+  private List<String> readZipEntries(Path zip, Configuration conf) throws IOException {
+    List<String> entries = new ArrayList<>();
+    ZipInputStream zin = new ZipInputStream(zip.getFileSystem(conf).open(zip));
+    try {
+      ZipEntry ze = zin.getNextEntry();
+      while (ze != null) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        IOUtils.copyBytes(zin, content, 4096, false);
+        entries.add(ze.getName().substring(ze.getName().indexOf(ZipFileFormatter.PART_SUFFIX)) + ":"
+          + Arrays.toString(content.toByteArray()));
+        zin.closeEntry();
+        ze = zin.getNextEntry();
+      }
+    } finally {
+      zin.close();
+    }
+    return entries;
+  }
+
   /**
    * Test text files output path.
    *
@@ -141,6 +141,68 @@ public final class LensConfConstants {
    */
   public static final String EVENT_SERVICE_THREAD_POOL_SIZE = SERVER_PFX + "event.service.thread.pool.size";
 
+  /**
+   * Whether events of a query are handled in the order they are notified. Events of different queries are still
+   * handled in parallel.
+   */
+  public static final String EVENT_SERVICE_QUERY_ORDERED_DELIVERY = SERVER_PFX
+    + "event.service.query.ordered.delivery";
+
+  /**
+   * The Constant DEFAULT_EVENT_SERVICE_QUERY_ORDERED_DELIVERY.
+   */
+  public static final boolean DEFAULT_EVENT_SERVICE_QUERY_ORDERED_DELIVERY = false;
+
+  /**
+   * Prefix of the configuration of asynchronous event listeners. Every such configuration can be overridden for a
+   * listener by inserting the listener name after the prefix, for example
+   * lens.server.event.listener.ResultFormatter.queue.size
+   */
+  public static final String EVENT_LISTENER_PFX = SERVER_PFX + "event.listener.";
+
+  /**
+   * Maximum number of events waiting to be processed by an asynchronous event listener. Non-positive value means the
+   * queue is unbounded.
+   */
+  public static final String EVENT_LISTENER_QUEUE_SIZE = EVENT_LISTENER_PFX + "queue.size";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_QUEUE_SIZE.
+   */
+  public static final int DEFAULT_EVENT_LISTENER_QUEUE_SIZE = 10000;
+
+  /**
+   * What an asynchronous event listener does with a new event when its queue is full. One of BLOCK, DROP_OLDEST or
+   * SPILL.
+   */
+  public static final String EVENT_LISTENER_OVERFLOW_POLICY = EVENT_LISTENER_PFX + "overflow.policy";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY.
+   */
+  public static final String DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY = "BLOCK";
+
+  /**
+   * Maximum number of events handed together to an asynchronous event listener.
+   */
+  public static final String EVENT_LISTENER_BATCH_SIZE = EVENT_LISTENER_PFX + "batch.size";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_BATCH_SIZE.
+   */
+  public static final int DEFAULT_EVENT_LISTENER_BATCH_SIZE = 1;
+
+  /**
+   * Local directory where asynchronous event listeners with SPILL overflow policy write the events which don't fit
+   * in their queue.
+   */
+  public static final String EVENT_LISTENER_SPILL_DIR = EVENT_LISTENER_PFX + "spill.dir";
+
+  /**
+   * The Constant DEFAULT_EVENT_LISTENER_SPILL_DIR.
+   */
+  public static final String DEFAULT_EVENT_LISTENER_SPILL_DIR = "/tmp/lensserver/event-spill";
+
   /**
    * The Constant SERVER_BASE_URL.
    */
@@ -173,6 +235,18 @@ public final class LensConfConstants {
    */
   public static final boolean DEFAULT_SERVER_DUPLICATE_QUERY_ALLOWED = false;
 
+  /**
+   * If this is true and duplicate queries are not allowed, a query identical to a query submitted from any session,
+   * which is not completed yet, gets the handle of the earlier query if both run as the same cluster user.
+   */
+  public static final String SERVER_DUPLICATE_QUERY_COALESCING_ENABLED = SERVER_PFX
+    + "duplicate.query.coalescing.enabled";
+
+  /**
+   * By default duplicate queries are looked up only in the same session.
+   */
+  public static final boolean DEFAULT_SERVER_DUPLICATE_QUERY_COALESCING_ENABLED = false;
+
   /**
    * The Constant SERVER_STATE_PERSIST_LOCATION.
    */
@@ -204,6 +278,38 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_SERVER_STATE_PERSISTENCE_INTERVAL_MILLIS = 5 * 60 * 1000;
 
+  /**
+   * Whether changes to server state should be journaled at every persistence interval, instead of persisting the
+   * whole state.
+   */
+  public static final String SERVER_STATE_JOURNAL_ENABLED = SERVER_PFX + "state.journal.enabled";
+
+  /**
+   * Server state is persisted in full by default.
+   */
+  public static final boolean DEFAULT_SERVER_STATE_JOURNAL_ENABLED = false;
+
+  /**
+   * Number of journals of server state after which whole state is persisted and the journals are discarded.
+   */
+  public static final String SERVER_STATE_JOURNAL_COMPACTION_THRESHOLD = SERVER_PFX
+    + "state.journal.compaction.threshold";
+
+  /**
+   * Default value of SERVER_STATE_JOURNAL_COMPACTION_THRESHOLD is 12, one hour with default persistence interval.
+   */
+  public static final int DEFAULT_SERVER_STATE_JOURNAL_COMPACTION_THRESHOLD = 12;
+
+  /**
+   * Number of threads restoring sessions and active queries on server restart.
+   */
+  public static final String SERVER_STATE_RESTORE_THREADS = SERVER_PFX + "state.restore.threads";
+
+  /**
+   * The Constant DEFAULT_SERVER_STATE_RESTORE_THREADS.
+   */
+  public static final int DEFAULT_SERVER_STATE_RESTORE_THREADS = 8;
+
   // Email related configurations
   /**
    * The Constant QUERY_MAIL_NOTIFY.
@@ -496,6 +602,13 @@ public final class LensConfConstants {
   /** whether to enable per resource method metering */
   public static final String ENABLE_RESOURCE_METHOD_METERING = SERVER_PFX + "enable.resource.method.metering";
 
+  /** whether to record query phase latencies per user, in addition to per driver and per priority */
+  public static final String ENABLE_PER_USER_QUERY_PHASE_LATENCY = SERVER_PFX
+    + "enable.per.user.query.phase.latency";
+
+  /** default for per user query phase latencies, off as every user gets histograms of their own */
+  public static final boolean DEFAULT_ENABLE_PER_USER_QUERY_PHASE_LATENCY = false;
+
   /**
    * The Constant REPORTING_PERIOD.
    */
@@ -602,6 +715,42 @@ public final class LensConfConstants {
    */
   public static final String DEFAULT_OUTPUT_SERDE = "org.apache.lens.lib.query.CSVSerde";
 
+  /**
+   * The compression of results written by columnar formatters, like org.apache.lens.lib.query.OrcOutputFormatter
+   * and org.apache.lens.lib.query.ParquetOutputFormatter.
+   */
+  public static final String QUERY_OUTPUT_COLUMNAR_COMPRESSION = QUERY_PFX + "result.columnar.compression";
+
+  /**
+   * Default value of QUERY_OUTPUT_COLUMNAR_COMPRESSION is SNAPPY
+   */
+  public static final String DEFAULT_OUTPUT_COLUMNAR_COMPRESSION = "SNAPPY";
+
+  /**
+   * The size in bytes of row groups, or stripes, of results written by columnar formatters.
+   */
+  public static final String QUERY_OUTPUT_COLUMNAR_ROW_GROUP_SIZE = QUERY_PFX + "result.columnar.row.group.size";
+
+  /**
+   * Default value of QUERY_OUTPUT_COLUMNAR_ROW_GROUP_SIZE is 128 MB
+   */
+  public static final long DEFAULT_OUTPUT_COLUMNAR_ROW_GROUP_SIZE = 128 * 1024 * 1024L;
+
+  /**
+   * The serde reading result files persisted by driver, when they are formatted by columnar formatters.
+   */
+  public static final String QUERY_PERSISTED_RESULT_SERDE = QUERY_PFX + "result.persisted.serde";
+
+  /**
+   * Default value of QUERY_PERSISTED_RESULT_SERDE reads files in the default format of hive
+   */
+  public static final String DEFAULT_PERSISTED_RESULT_SERDE = "org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe";
+
+  /**
+   * Prefix of the properties passed to the serde reading result files persisted by driver.
+   */
+  public static final String QUERY_PERSISTED_RESULT_SERDE_PROPERTY_PFX = QUERY_PFX + "result.persisted.serde.property.";
+
   /**
    * The Constant QUERY_OUTPUT_FILE_EXTN.
    */
@@ -702,6 +851,40 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_RESULT_SPLIT_MULTIPLE_MAX_ROWS = 100000;
 
+  /**
+   * Whether part files of a result persisted by driver should be formatted concurrently, when the result is split
+   * into multiple files
+   */
+  public static final String QUERY_RESULT_PARALLEL_FORMATTING_ENABLED = QUERY_PFX
+    + "result.parallel.formatting.enabled";
+
+  /**
+   * Parallel formatting is disabled by default
+   */
+  public static final boolean DEFAULT_QUERY_RESULT_PARALLEL_FORMATTING_ENABLED = false;
+
+  /**
+   * Maximum number of part files of a query result formatted at the same time, when parallel formatting is enabled
+   */
+  public static final String QUERY_RESULT_PARALLEL_FORMATTING_THREADS = QUERY_PFX
+    + "result.parallel.formatting.threads";
+
+  /**
+   * Default value of QUERY_RESULT_PARALLEL_FORMATTING_THREADS is 4
+   */
+  public static final int DEFAULT_QUERY_RESULT_PARALLEL_FORMATTING_THREADS = 4;
+
+  /**
+   * Number of threads formatting part files of query results in parallel, across all queries. With zero, part files
+   * are formatted one at a time by the thread formatting the result.
+   */
+  public static final String RESULT_FORMATTER_PARALLEL_POOL_SIZE = SERVER_PFX + "result.formatter.parallel.pool.size";
+
+  /**
+   * Default value of RESULT_FORMATTER_PARALLEL_POOL_SIZE is 10
+   */
+  public static final int DEFAULT_RESULT_FORMATTER_PARALLEL_POOL_SIZE = 10;
+
   /**
    * The Constant RESULT_FS_READ_URL.
    */
@@ -768,6 +951,26 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_PURGE_INTERVAL = 10000;
 
+  /**
+   * Maximum number of finished queries persisted to the server DB in a single transaction.
+   */
+  public static final String PURGE_BATCH_SIZE = SERVER_PFX + "querypurger.batch.size";
+
+  /**
+   * The Constant DEFAULT_PURGE_BATCH_SIZE.
+   */
+  public static final int DEFAULT_PURGE_BATCH_SIZE = 100;
+
+  /**
+   * Maximum number of purgeable finished queries waiting to be persisted. Query purger waits when it is full.
+   */
+  public static final String PURGE_QUEUE_CAPACITY = SERVER_PFX + "querypurger.queue.capacity";
+
+  /**
+   * The Constant DEFAULT_PURGE_QUEUE_CAPACITY.
+   */
+  public static final int DEFAULT_PURGE_QUEUE_CAPACITY = 1000;
+
   // Server DB configuration
   /**
    * The Constant SERVER_DB_DRIVER_NAME.
@@ -1068,6 +1271,38 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_INMEMORY_RESULT_SET_TTL_SECS = 300;
 
+  /**
+   * Whether in memory results are buffered in server side result cursors, which can be read from any row index any
+   * number of times
+   */
+  public static final String RESULT_CURSOR_ENABLED = SERVER_PFX + "result.cursor.enabled";
+
+  /**
+   * The Constant DEFAULT_RESULT_CURSOR_ENABLED.
+   */
+  public static final boolean DEFAULT_RESULT_CURSOR_ENABLED = true;
+
+  /**
+   * Heap bytes all result cursors together can keep their rows in. Rows beyond it are spilled to memory mapped files
+   * in {@link #RESULT_CURSOR_SPILL_DIR}
+   */
+  public static final String RESULT_CURSOR_HEAP_BUDGET_BYTES = SERVER_PFX + "result.cursor.heap.budget.bytes";
+
+  /**
+   * The Constant DEFAULT_RESULT_CURSOR_HEAP_BUDGET_BYTES.
+   */
+  public static final long DEFAULT_RESULT_CURSOR_HEAP_BUDGET_BYTES = 256 * 1024 * 1024L;
+
+  /**
+   * Local directory where result cursors spill their rows
+   */
+  public static final String RESULT_CURSOR_SPILL_DIR = SERVER_PFX + "result.cursor.spill.dir";
+
+  /**
+   * The Constant DEFAULT_RESULT_CURSOR_SPILL_DIR.
+   */
+  public static final String DEFAULT_RESULT_CURSOR_SPILL_DIR = "/tmp/lensserver/result-cursors";
+
   /**
    * Number of retries status update will be retried, in case of transient failures
    */
@@ -1099,6 +1334,188 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_STATUS_UPDATE_EXPONENTIAL_WAIT_FACTOR = 30000;
 
+  /**
+   * Number of threads in the pool which polls drivers for status of launched queries
+   */
+  public static final String STATUS_POLLER_POOL_SIZE = SERVER_PFX + "status.poller.pool.size";
+
+  /**
+   * Default value of STATUS_POLLER_POOL_SIZE is 5
+   */
+  public static final int DEFAULT_STATUS_POLLER_POOL_SIZE = 5;
+
+  /**
+   * Number of threads in the pool which runs steps of queries executed with timeout, as the queries make progress
+   */
+  public static final String TIMED_EXECUTION_POOL_SIZE = SERVER_PFX + "timed.execution.pool.size";
+
+  /**
+   * Default value of TIMED_EXECUTION_POOL_SIZE is 5
+   */
+  public static final int DEFAULT_TIMED_EXECUTION_POOL_SIZE = 5;
+
+  /**
+   * Maximum number of queries of a driver, which are due for a status poll, handed over to the driver in one status
+   * update call
+   */
+  public static final String STATUS_POLLER_BATCH_SIZE = SERVER_PFX + "status.poller.batch.size";
+
+  /**
+   * Default value of STATUS_POLLER_BATCH_SIZE is 100
+   */
+  public static final int DEFAULT_STATUS_POLLER_BATCH_SIZE = 100;
+
+  /**
+   * Maximum time in millis for which a request waiting for status change of a query is held. Longer timeouts asked
+   * for by clients are cut down to this
+   */
+  public static final String MAX_STATUS_CHANGE_WAIT_MILLIS = SERVER_PFX + "query.status.change.max.wait.millis";
+
+  /**
+   * Default value of MAX_STATUS_CHANGE_WAIT_MILLIS is 300000 millis (5 minutes)
+   */
+  public static final long DEFAULT_MAX_STATUS_CHANGE_WAIT_MILLIS = 300000;
+
+  /**
+   * Whether queued queries of each driver are submitted by a submitter thread of their own
+   */
+  public static final String QUERY_SUBMITTER_PER_DRIVER = SERVER_PFX + "query.submitter.per.driver";
+
+  /**
+   * By default all queued queries are submitted by a single submitter thread
+   */
+  public static final boolean DEFAULT_QUERY_SUBMITTER_PER_DRIVER = false;
+
+  /**
+   * Class of the queue in which accepted queries wait to be submitted
+   */
+  public static final String QUERY_QUEUE_CLASS = SERVER_PFX + "query.queue.class";
+
+  /**
+   * Name of the query configuration property whose value identifies the tenant of a query. When set, weighted fair
+   * queue keeps a sub queue per tenant instead of per user.
+   */
+  public static final String WEIGHTED_FAIR_QUEUE_TENANT_CONF_KEY = SERVER_PFX + "weighted.fair.queue.tenant.conf.key";
+
+  /**
+   * Comma separated name:weight pairs giving weights of users or tenants in weighted fair queue
+   */
+  public static final String WEIGHTED_FAIR_QUEUE_WEIGHTS = SERVER_PFX + "weighted.fair.queue.weights";
+
+  /**
+   * Weight of users or tenants not listed in WEIGHTED_FAIR_QUEUE_WEIGHTS
+   */
+  public static final String WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT = SERVER_PFX + "weighted.fair.queue.default.weight";
+
+  /**
+   * Default value of WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT is 1
+   */
+  public static final double DEFAULT_WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT = 1;
+
+  /**
+   * Millis after which a query in weighted fair queue is taken out ahead of queries of same user or tenant with higher
+   * priority
+   */
+  public static final String WEIGHTED_FAIR_QUEUE_AGING_MILLIS = SERVER_PFX + "weighted.fair.queue.aging.millis";
+
+  /**
+   * Default value of WEIGHTED_FAIR_QUEUE_AGING_MILLIS is 10 minutes
+   */
+  public static final long DEFAULT_WEIGHTED_FAIR_QUEUE_AGING_MILLIS = 10 * 60 * 1000L;
+
+  /**
+   * Whether results of successful persistent OLAP queries should be cached and served to identical queries submitted
+   * from any session
+   */
+  public static final String QUERY_RESULT_CACHE_ENABLED = SERVER_PFX + "query.result.cache.enabled";
+
+  /**
+   * Query result cache is disabled by default
+   */
+  public static final boolean DEFAULT_QUERY_RESULT_CACHE_ENABLED = false;
+
+  /**
+   * Maximum number of query results held in query result cache
+   */
+  public static final String QUERY_RESULT_CACHE_MAX_SIZE = SERVER_PFX + "query.result.cache.max.size";
+
+  /**
+   * Default value of QUERY_RESULT_CACHE_MAX_SIZE is 1000
+   */
+  public static final long DEFAULT_QUERY_RESULT_CACHE_MAX_SIZE = 1000;
+
+  /**
+   * Seconds after which a cached query result expires
+   */
+  public static final String QUERY_RESULT_CACHE_TTL_SECS = SERVER_PFX + "query.result.cache.ttl.secs";
+
+  /**
+   * Default value of QUERY_RESULT_CACHE_TTL_SECS is 1 hour
+   */
+  public static final long DEFAULT_QUERY_RESULT_CACHE_TTL_SECS = 60 * 60;
+
+  /**
+   * Whether per driver rewrites and cost estimates of user queries should be cached and reused for identical queries
+   * submitted from any session, till cube metadata or partitions change
+   */
+  public static final String QUERY_REWRITE_CACHE_ENABLED = SERVER_PFX + "query.rewrite.cache.enabled";
+
+  /**
+   * Query rewrite cache is disabled by default
+   */
+  public static final boolean DEFAULT_QUERY_REWRITE_CACHE_ENABLED = false;
+
+  /**
+   * Maximum number of queries whose rewrites are held in query rewrite cache
+   */
+  public static final String QUERY_REWRITE_CACHE_MAX_SIZE = SERVER_PFX + "query.rewrite.cache.max.size";
+
+  /**
+   * Default value of QUERY_REWRITE_CACHE_MAX_SIZE is 10000
+   */
+  public static final long DEFAULT_QUERY_REWRITE_CACHE_MAX_SIZE = 10000;
+
+  /**
+   * Seconds after which a cached query rewrite expires
+   */
+  public static final String QUERY_REWRITE_CACHE_TTL_SECS = SERVER_PFX + "query.rewrite.cache.ttl.secs";
+
+  /**
+   * Default value of QUERY_REWRITE_CACHE_TTL_SECS is 10 minutes
+   */
+  public static final long DEFAULT_QUERY_REWRITE_CACHE_TTL_SECS = 10 * 60;
+
+  /**
+   * Driver level property: Minimum delay in millis between two status polls of a launched query
+   */
+  public static final String STATUS_POLL_MIN_INTERVAL_MILLIS_SFX = "status.poll.min.interval.millis";
+
+  /**
+   * Default value of STATUS_POLL_MIN_INTERVAL_MILLIS_SFX is 1000 millis (1 second)
+   */
+  public static final long DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Driver level property: Maximum delay in millis between two status polls of a launched query
+   */
+  public static final String STATUS_POLL_MAX_INTERVAL_MILLIS_SFX = "status.poll.max.interval.millis";
+
+  /**
+   * Default value of STATUS_POLL_MAX_INTERVAL_MILLIS_SFX is 30000 millis (30 seconds)
+   */
+  public static final long DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS = 30000;
+
+  /**
+   * Driver level property: Fraction of the time a query has been running for, used as the delay before its next
+   * status poll. The delay is bounded by STATUS_POLL_MIN_INTERVAL_MILLIS_SFX and STATUS_POLL_MAX_INTERVAL_MILLIS_SFX.
+   */
+  public static final String STATUS_POLL_RUNTIME_FRACTION_SFX = "status.poll.runtime.fraction";
+
+  /**
+   * Default value of STATUS_POLL_RUNTIME_FRACTION_SFX is 0.02
+   */
+  public static final float DEFAULT_STATUS_POLL_RUNTIME_FRACTION = 0.02f;
+
   /**
    * Specifies whether to attempt cancellation of a query whose execution takes longer than the timeout value
    * specified while submitting the query for execution.
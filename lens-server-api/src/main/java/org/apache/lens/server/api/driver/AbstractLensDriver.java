@@ -69,6 +69,13 @@ public abstract class AbstractLensDriver implements LensDriver {
   @Getter
   private DriverQueryHook queryHook;
 
+  /**
+   * Bounds and slope of the status poll back off curve
+   */
+  private long statusPollMinIntervalMillis = DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS;
+  private long statusPollMaxIntervalMillis = DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS;
+  private float statusPollRuntimeFraction = DEFAULT_STATUS_POLL_RUNTIME_FRACTION;
+
   @Override
   public void configure(Configuration conf, String driverType, String driverName) throws LensException {
     if (StringUtils.isBlank(driverType) || StringUtils.isBlank(driverName)) {
@@ -84,6 +91,13 @@ public abstract class AbstractLensDriver implements LensDriver {
 
     loadRetryPolicyDecider();
     loadQueryHook();
+
+    this.statusPollMinIntervalMillis = getConf().getLong(STATUS_POLL_MIN_INTERVAL_MILLIS_SFX,
+      DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS);
+    this.statusPollMaxIntervalMillis = getConf().getLong(STATUS_POLL_MAX_INTERVAL_MILLIS_SFX,
+      DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS);
+    this.statusPollRuntimeFraction = getConf().getFloat(STATUS_POLL_RUNTIME_FRACTION_SFX,
+      DEFAULT_STATUS_POLL_RUNTIME_FRACTION);
   }
 
   protected void loadQueryHook() throws LensException {
@@ -147,6 +161,17 @@ public abstract class AbstractLensDriver implements LensDriver {
     return StatusUpdateMethod.PULL;
   }
 
+  /**
+   * Default implementation polls a query every min interval in the beginning, and backs off proportional to the time
+   * the query has been running for, until the max interval is reached.
+   */
+  @Override
+  public long getStatusPollDelayMillis(QueryContext context) {
+    long runningForMillis = Math.max(0, System.currentTimeMillis() - context.getLaunchTime());
+    long delay = (long) (runningForMillis * statusPollRuntimeFraction);
+    return Math.min(statusPollMaxIntervalMillis, Math.max(statusPollMinIntervalMillis, delay));
+  }
+
   @Override
   public void registerForCompletionNotification(QueryContext context, long timeoutMillis,
     QueryCompletionListener listener) {
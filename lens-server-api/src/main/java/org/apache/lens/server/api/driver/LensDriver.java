@@ -19,10 +19,14 @@
 package org.apache.lens.server.api.driver;
 
 import java.io.Externalizable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.lens.api.Priority;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryPrepareHandle;
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.hooks.DriverQueryHook;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.LensEventListener;
@@ -145,6 +149,46 @@ public interface LensDriver extends Externalizable {
    */
   void updateStatus(QueryContext context) throws LensException;
 
+  /**
+   * Update driver query status of all the given queries. Drivers which can fetch status of several queries together
+   * should override this, to avoid a separate call for each query.
+   *
+   * Default implementation updates status of one query at a time.
+   *
+   * @param contexts The query contexts
+   * @return Failures of status update keyed by the handle of the query whose status could not be updated. Empty map if
+   * status of all the queries got updated.
+   */
+  default Map<QueryHandle, LensException> updateStatus(Collection<QueryContext> contexts) {
+    Map<QueryHandle, LensException> failures = new HashMap<>();
+    for (QueryContext context : contexts) {
+      try {
+        synchronized (context) {
+          updateStatus(context);
+        }
+      } catch (LensException e) {
+        failures.put(context.getQueryHandle(), e);
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * Delay after which status of a launched query should be polled again. Drivers can use this to poll short queries
+   * frequently and back off for queries that have been running for long.
+   *
+   * Default implementation polls at the configured min interval.
+   *
+   * @param context The query context
+   * @return delay in millis for the next status poll of the query
+   */
+  default long getStatusPollDelayMillis(QueryContext context) {
+    Configuration conf = getConf();
+    return conf == null ? LensConfConstants.DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS
+      : conf.getLong(LensConfConstants.STATUS_POLL_MIN_INTERVAL_MILLIS_SFX,
+        LensConfConstants.DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS);
+  }
+
   /**
    * Fetch the results of the query, specified by the handle.
    *
@@ -18,24 +18,64 @@
  */
 package org.apache.lens.server.api.events;
 
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lens.server.api.error.LensException;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.conf.Configuration;
 
-import lombok.AccessLevel;
+import com.codahale.metrics.*;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 /**
  * Event listeners should implement this class if they wish to process events asynchronously. This should be used when
  * event processing can block, or is computationally intensive.
  *
+ * Events wait for processing in a queue bounded by {@link org.apache.lens.server.api.LensConfConstants
+ * #EVENT_LISTENER_QUEUE_SIZE}. When the queue is full, the {@link OverflowPolicy} of the listener decides what
+ * happens to a new event. Listeners can also get several waiting events together, by overriding
+ * {@link #process(List)} and configuring a batch size. The configuration is applied through
+ * {@link #configure(Configuration)}, defaults are used till then.
+ *
  * @param <T> the generic type
  */
 @Slf4j
 public abstract class AsyncEventListener<T extends LensEvent> implements LensEventListener<T> {
 
+  /**
+   * What happens to a new event when the event queue is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Notifying thread waits till there is space in the queue.
+     */
+    BLOCK,
+
+    /**
+     * The oldest event in the queue is dropped.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The event is written to a local file and put back in the queue when there is space. Events are serialized, so
+     * this should be used only by listeners of events which don't refer to live server state. Events which can't be
+     * serialized are handled as with BLOCK.
+     */
+    SPILL
+  }
+
   /**
    * The processor.
    */
@@ -53,18 +93,53 @@ public abstract class AsyncEventListener<T extends LensEvent> implements LensEve
    *
    * Default value is the class Name (Example QueryEndNotifier, ResultFormatter, etc)
    */
-  @Getter(AccessLevel.PROTECTED)
+  @Getter
   private final String name = this.getClass().getSimpleName();
 
   /**
-   * Create a single threaded event listener with an unbounded queue, with daemon threads.
+   * Guards the bounds of the event queue and the spill file.
+   */
+  private final ReentrantLock queueLock = new ReentrantLock();
+
+  /**
+   * Signalled when events are taken from the queue.
+   */
+  private final Condition notFull = queueLock.newCondition();
+
+  /** Maximum number of events in the queue, non-positive for unbounded queue. */
+  private volatile int queueSize = DEFAULT_EVENT_LISTENER_QUEUE_SIZE;
+
+  /** The overflow policy. */
+  @Getter
+  private volatile OverflowPolicy overflowPolicy = OverflowPolicy.valueOf(DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY);
+
+  /** Maximum number of events processed together. */
+  private volatile int batchSize = DEFAULT_EVENT_LISTENER_BATCH_SIZE;
+
+  /** The spill directory. */
+  private File spillDir = new File(DEFAULT_EVENT_LISTENER_SPILL_DIR);
+
+  /** Events which didn't fit in the queue, created on first spill. */
+  private volatile EventSpillFile spillFile;
+
+  /** Time taken to process events. */
+  private final Timer processingTime = new Timer();
+
+  /** Number of events dropped as the queue was full. */
+  private final Counter droppedEvents = new Counter();
+
+  /** Number of events spilled to disk as the queue was full. */
+  private final Counter spilledEvents = new Counter();
+
+  /**
+   * Create a single threaded event listener with daemon threads.
    */
   public AsyncEventListener() {
     this(1);
   }
 
   /**
-   * Create a event listener with poolSize threads with an unbounded queue and daemon threads.
+   * Create a event listener with poolSize threads and daemon threads.
    *
    * @param poolSize the pool size
    */
@@ -82,6 +157,7 @@ public abstract class AsyncEventListener<T extends LensEvent> implements LensEve
    *                       to stop the thread pool
    */
   public AsyncEventListener(int poolSize, long timeOutSeconds, final boolean isDaemon) {
+    // bound of the queue is enforced while adding events, so that it can be configured after creation
     eventQueue = new LinkedBlockingQueue<>();
 
     ThreadFactory factory = new BasicThreadFactory.Builder()
@@ -95,26 +171,188 @@ public abstract class AsyncEventListener<T extends LensEvent> implements LensEve
   }
 
   /**
-   * Creates a new runnable and calls the process method in it.
+   * Configure queue size, overflow policy, batch size and spill directory of this listener. Every setting is read
+   * from the configuration specific to this listener, falling back to the one common to all listeners.
+   *
+   * @param conf the conf
+   */
+  public void configure(Configuration conf) {
+    queueLock.lock();
+    try {
+      queueSize = getInt(conf, EVENT_LISTENER_QUEUE_SIZE, DEFAULT_EVENT_LISTENER_QUEUE_SIZE);
+      overflowPolicy = OverflowPolicy.valueOf(
+        get(conf, EVENT_LISTENER_OVERFLOW_POLICY, DEFAULT_EVENT_LISTENER_OVERFLOW_POLICY).trim().toUpperCase());
+      batchSize = Math.max(1, getInt(conf, EVENT_LISTENER_BATCH_SIZE, DEFAULT_EVENT_LISTENER_BATCH_SIZE));
+      spillDir = new File(get(conf, EVENT_LISTENER_SPILL_DIR, DEFAULT_EVENT_LISTENER_SPILL_DIR));
+      notFull.signalAll();
+    } finally {
+      queueLock.unlock();
+    }
+    log.info("{} configured with queue size {}, overflow policy {} and batch size {}", getName(), queueSize,
+      overflowPolicy, batchSize);
+  }
+
+  private String get(Configuration conf, String key, String defaultValue) {
+    return conf.get(getListenerKey(key), conf.get(key, defaultValue));
+  }
+
+  private int getInt(Configuration conf, String key, int defaultValue) {
+    return conf.getInt(getListenerKey(key), conf.getInt(key, defaultValue));
+  }
+
+  private String getListenerKey(String key) {
+    return EVENT_LISTENER_PFX + getName() + "." + key.substring(EVENT_LISTENER_PFX.length());
+  }
+
+  /**
+   * Queues the event for processing. If the queue is full, the event is handled as per the overflow policy.
    *
    * @param event the event
    * @throws LensException the lens exception
    */
   @Override
   public void onEvent(final T event) throws LensException {
+    queueLock.lock();
     try {
-      processor.execute(new Runnable() {
-        @Override
-        public void run() {
-          try {
-            process(event);
-          } catch (Throwable e) {
-            log.error("{} Failed to process event {}", getName(), event, e);
-          }
+      while (isQueueFull() && !processor.isShutdown()) {
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+          dropOldest();
+        } else if (overflowPolicy == OverflowPolicy.SPILL && spill(event)) {
+          return;
+        } else {
+          notFull.await();
         }
-      });
+      }
+      // keep the order of events, while earlier events are still on disk
+      if (spillFile != null && !spillFile.isEmpty() && spill(event)) {
+        return;
+      }
+      processor.execute(new EventTask(event));
     } catch (RejectedExecutionException rejected) {
       throw new LensException(rejected);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LensException("Interrupted while waiting for space in event queue of " + getName(), e);
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  private boolean isQueueFull() {
+    return queueSize > 0 && eventQueue.size() >= queueSize;
+  }
+
+  private void dropOldest() {
+    Runnable dropped = eventQueue.poll();
+    if (dropped != null) {
+      droppedEvents.inc();
+      log.warn("{} dropped event {} as its event queue is full", getName(), ((EventTask) dropped).event);
+    }
+  }
+
+  /**
+   * Write the event to the spill file.
+   *
+   * @param event the event
+   * @return true if the event is spilled, false if it could not be
+   */
+  private boolean spill(T event) {
+    try {
+      if (spillFile == null) {
+        spillFile = new EventSpillFile(spillDir, getName());
+      }
+      spillFile.write(event);
+      spilledEvents.inc();
+      return true;
+    } catch (IOException e) {
+      log.warn("{} could not spill event {}, waiting for space in its event queue instead", getName(), event, e);
+      return false;
+    }
+  }
+
+  /**
+   * Called after events are taken from the queue. Moves spilled events back to the queue and wakes up notifying
+   * threads waiting for space in the queue.
+   */
+  @SuppressWarnings("unchecked")
+  private void eventsTaken() {
+    queueLock.lock();
+    try {
+      while (spillFile != null && !spillFile.isEmpty() && !isQueueFull() && !processor.isShutdown()) {
+        try {
+          processor.execute(new EventTask((T) spillFile.read()));
+        } catch (IOException | ClassNotFoundException e) {
+          log.error("{} could not read spilled events, dropping {} spilled events", getName(), spillFile.getSize(), e);
+          droppedEvents.inc(spillFile.getSize());
+          closeSpillFile();
+        }
+      }
+      notFull.signalAll();
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  private void closeSpillFile() {
+    if (spillFile != null) {
+      try {
+        spillFile.close();
+      } catch (IOException e) {
+        log.warn("{} could not close spill file", getName(), e);
+      }
+      spillFile = null;
+    }
+  }
+
+  /**
+   * Processes an event, and as many events as the batch size allows from the ones waiting behind it.
+   */
+  private class EventTask implements Runnable {
+
+    /** The event. */
+    private final T event;
+
+    EventTask(T event) {
+      this.event = event;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+      List<T> events = new ArrayList<>();
+      events.add(event);
+      if (batchSize > 1) {
+        List<Runnable> waiting = new ArrayList<>();
+        eventQueue.drainTo(waiting, batchSize - 1);
+        for (Runnable task : waiting) {
+          events.add(((EventTask) task).event);
+        }
+      }
+      eventsTaken();
+      Timer.Context timer = processingTime.time();
+      try {
+        process(events);
+      } catch (Throwable e) {
+        log.error("{} Failed to process events {}", getName(), events, e);
+      } finally {
+        timer.stop();
+      }
+    }
+  }
+
+  /**
+   * Processes events taken together from the queue. Override this to handle several events at once, by default
+   * events are processed one after another through {@link #process(LensEvent)}.
+   *
+   * @param events the events, in the order they were notified
+   */
+  public void process(List<T> events) {
+    for (T event : events) {
+      try {
+        process(event);
+      } catch (Throwable e) {
+        log.error("{} Failed to process event {}", getName(), event, e);
+      }
     }
   }
 
@@ -130,9 +368,57 @@ public abstract class AsyncEventListener<T extends LensEvent> implements LensEve
    */
   public void stop() {
     processor.shutdownNow();
+    queueLock.lock();
+    try {
+      closeSpillFile();
+      notFull.signalAll();
+    } finally {
+      queueLock.unlock();
+    }
   }
 
   public BlockingQueue<Runnable> getEventQueue() {
     return eventQueue;
   }
+
+  /**
+   * Metrics of this listener: depth of the event queue, number of spilled events waiting to be processed, lag of the
+   * oldest waiting event since it occurred, time taken to process events and number of dropped and spilled events.
+   *
+   * @return the metrics
+   */
+  public MetricSet getMetrics() {
+    final Map<String, Metric> metrics = new HashMap<>();
+    metrics.put("queue-depth", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return eventQueue.size();
+      }
+    });
+    metrics.put("spill-depth", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        EventSpillFile spilled = spillFile;
+        return spilled == null ? 0 : spilled.getSize();
+      }
+    });
+    metrics.put("lag", new Gauge<Long>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public Long getValue() {
+        Runnable oldest = eventQueue.peek();
+        T event = oldest == null ? null : ((EventTask) oldest).event;
+        return event == null ? 0 : System.currentTimeMillis() - event.getEventTime();
+      }
+    });
+    metrics.put("processing-time", processingTime);
+    metrics.put("dropped-events", droppedEvents);
+    metrics.put("spilled-events", spilledEvents);
+    return new MetricSet() {
+      @Override
+      public Map<String, Metric> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+      }
+    };
+  }
 }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.events;
+
+import java.io.*;
+
+import lombok.Getter;
+
+/**
+ * File holding the events an asynchronous event listener could not fit in its queue. Events are read back in the
+ * order they were written. The file is truncated whenever all the events written to it have been read.
+ *
+ * Not thread safe, callers should synchronize access.
+ */
+class EventSpillFile implements Closeable {
+
+  /** The file. */
+  private final File file;
+
+  /** The file opened for reading and writing. */
+  private final RandomAccessFile spill;
+
+  /** The position of the next event to read. */
+  private long readPosition;
+
+  /** The position to write the next event at. */
+  private long writePosition;
+
+  /** The number of events written but not read yet. */
+  @Getter
+  private int size;
+
+  /**
+   * Instantiates a new spill file in the given directory.
+   *
+   * @param dir  the directory
+   * @param name prefix of the file name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  EventSpillFile(File dir, String name) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create spill directory " + dir);
+    }
+    file = File.createTempFile(name + "-", ".spill", dir);
+    file.deleteOnExit();
+    spill = new RandomAccessFile(file, "rw");
+  }
+
+  /**
+   * Write an event at the end of the file.
+   *
+   * @param event the event
+   * @throws IOException Signals that an I/O exception has occurred, including the event not being serializable.
+   */
+  void write(LensEvent event) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(event);
+    }
+    spill.seek(writePosition);
+    spill.writeInt(bytes.size());
+    spill.write(bytes.toByteArray());
+    writePosition += 4 + bytes.size();
+    size++;
+  }
+
+  /**
+   * Read the oldest event which has not been read yet.
+   *
+   * @return the event, null if all the events have been read
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  LensEvent read() throws IOException, ClassNotFoundException {
+    if (size == 0) {
+      return null;
+    }
+    spill.seek(readPosition);
+    byte[] bytes = new byte[spill.readInt()];
+    spill.readFully(bytes);
+    readPosition += 4 + bytes.length;
+    size--;
+    if (size == 0) {
+      readPosition = 0;
+      writePosition = 0;
+      spill.setLength(0);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (LensEvent) in.readObject();
+    }
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Closes and deletes the file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    spill.close();
+    if (!file.delete()) {
+      throw new IOException("Could not delete spill file " + file);
+    }
+  }
+}
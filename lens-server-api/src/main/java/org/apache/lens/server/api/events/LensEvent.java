@@ -18,11 +18,14 @@
  */
 package org.apache.lens.server.api.events;
 
+import java.io.Serializable;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 /**
- * Super class of all event types. Event objects should be immutable
+ * Super class of all event types. Event objects should be immutable. Events are serialized only when an asynchronous
+ * event listener configured to spill its overflowing events to disk can't keep up with them.
  */
 
 /**
@@ -30,7 +33,9 @@ import lombok.Getter;
  *
  */
 @AllArgsConstructor
-public abstract class LensEvent {
+public abstract class LensEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /**
    * The event time.
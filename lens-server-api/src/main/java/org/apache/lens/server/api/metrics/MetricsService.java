@@ -18,7 +18,13 @@
  */
 package org.apache.lens.server.api.metrics;
 
+import java.util.List;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.api.query.QueryPhase;
+import org.apache.lens.api.query.QueryPhaseLatency;
 import org.apache.lens.server.api.LensService;
+import org.apache.lens.server.api.events.AsyncEventListener;
 
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.model.ResourceMethod;
@@ -94,6 +100,33 @@ public interface MetricsService extends LensService {
    */
   long getCounter(Class<?> cls, String counter);
 
+  /**
+   * Record the latency of a query phase. The latency is recorded against the driver and the priority of the query, and
+   * against the user when per user latencies are enabled, each in a histogram of its own.
+   *
+   * @param phase         the query phase
+   * @param driver        the driver executing the query, null if no driver is selected yet
+   * @param user          the user submitting the query
+   * @param priority      the priority of the query, null if no priority is decided yet
+   * @param latencyMillis the latency of the phase in millis
+   */
+  void updateQueryPhaseLatency(QueryPhase phase, String driver, String user, Priority priority, long latencyMillis);
+
+  /**
+   * Get the distribution of query phase latencies recorded so far.
+   *
+   * @return latency percentiles for each phase, dimension and value
+   */
+  List<QueryPhaseLatency> getQueryPhaseLatencies();
+
+  /**
+   * Register the metrics of an asynchronous event listener, replacing the ones registered earlier by a listener of the
+   * same name.
+   *
+   * @param listener the listener
+   */
+  void registerEventListener(AsyncEventListener<?> listener);
+
   /**
    * Query engine counter names.
    */
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.Priority;
 import org.apache.lens.api.query.FailedAttempt;
+import org.apache.lens.api.query.LensQuery;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.server.api.driver.LensDriver;
@@ -259,6 +260,21 @@ public class FinishedLensQuery {
     return qctx;
   }
 
+  /**
+   * Convert to LensQuery directly, without building the query context. Used while listing queries, where the query
+   * may have been fetched without conf and other large fields.
+   *
+   * @return the lens query
+   */
+  public LensQuery toLensQuery() {
+    QueryStatus queryStatus = new QueryStatus(0.0, null, QueryStatus.Status.valueOf(getStatus()), null,
+      getResult() != null, null, getErrorMessage() == null ? "" : getErrorMessage(), null);
+    return new LensQuery(QueryHandle.fromString(handle), userQuery, submitter,
+      getPriority() == null ? null : Priority.valueOf(getPriority()), getResult() != null, driverName, driverQuery,
+      queryStatus, getResult(), null, this.conf, submissionTime, startTime, driverStartTime, driverEndTime, endTime,
+      0, queryName, failedAttempts, null);
+  }
+
   private LensDriver getDriverFromName(Collection<LensDriver> drivers) {
     for (LensDriver driver : drivers) {
       if (driverName.equals(driver.getFullyQualifiedName())) {
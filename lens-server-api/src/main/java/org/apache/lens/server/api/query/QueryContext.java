@@ -21,12 +21,16 @@ package org.apache.lens.server.api.query;
 import static org.apache.lens.server.api.LensConfConstants.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.query.FailedAttempt;
 import org.apache.lens.api.query.LensQuery;
 import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryPhase;
+import org.apache.lens.api.query.QueryPhaseTime;
 import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.api.query.QueryStatus.Status;
 import org.apache.lens.server.api.LensConfConstants;
@@ -203,6 +207,16 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
   @Setter
   List<FailedAttempt> failedAttempts = Lists.newArrayList();
 
+  /**
+   * The phases the query has gone through. The last phase is in progress, if its end time is not set.
+   */
+  private List<QueryPhaseTime> phaseTimeline = Lists.newArrayList();
+
+  /**
+   * Futures waiting for the status of the query to meet a condition.
+   */
+  private transient List<StatusFuture> statusFutures;
+
   @Getter
   @Setter
   private BackOffRetryHandler<QueryContext> driverRetryPolicy;
@@ -352,7 +366,83 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
       getSelectedDriverQuery(),
       status,
       resultSetPath, driverOpHandle, lensConf, submissionTime, launchTime, driverStatus.getDriverStartTime(),
-      driverStatus.getDriverFinishTime(), endTime, closedTime, queryName, getFailedAttempts());
+      driverStatus.getDriverFinishTime(), endTime, closedTime, queryName, getFailedAttempts(), getPhaseTimeline());
+  }
+
+  private List<QueryPhaseTime> getTimeline() {
+    if (phaseTimeline == null) {
+      // query context persisted before phase timeline was introduced
+      phaseTimeline = Lists.newArrayList();
+    }
+    return phaseTimeline;
+  }
+
+  /**
+   * @return the phases the query has gone through, with their start and end times
+   */
+  public synchronized List<QueryPhaseTime> getPhaseTimeline() {
+    return new ArrayList<>(getTimeline());
+  }
+
+  /**
+   * Start the phase, ending the phase in progress. Nothing is done if the query is in the same phase already.
+   *
+   * @param phase the phase
+   * @param time  the start time
+   * @return the ended phase, null if no phase ended
+   */
+  public synchronized QueryPhaseTime startPhase(QueryPhase phase, long time) {
+    List<QueryPhaseTime> timeline = getTimeline();
+    if (!timeline.isEmpty()) {
+      QueryPhaseTime last = timeline.get(timeline.size() - 1);
+      if (last.getEndTime() == 0 && last.getPhase() == phase) {
+        return null;
+      }
+    }
+    QueryPhaseTime ended = endPhase(time);
+    timeline.add(new QueryPhaseTime(phase, time, 0));
+    return ended;
+  }
+
+  /**
+   * End the phase in progress.
+   *
+   * @param time the end time
+   * @return the ended phase, null if no phase is in progress
+   */
+  public synchronized QueryPhaseTime endPhase(long time) {
+    List<QueryPhaseTime> timeline = getTimeline();
+    if (timeline.isEmpty()) {
+      return null;
+    }
+    QueryPhaseTime last = timeline.get(timeline.size() - 1);
+    if (last.getEndTime() != 0) {
+      return null;
+    }
+    QueryPhaseTime ended = new QueryPhaseTime(last.getPhase(), last.getStartTime(), Math.max(time,
+      last.getStartTime()));
+    timeline.set(timeline.size() - 1, ended);
+    return ended;
+  }
+
+  /**
+   * Add a phase which has ended already. The phase in progress, if any, is not ended and stays last in the timeline,
+   * the added phase is placed before it.
+   *
+   * @param phase     the phase
+   * @param startTime the start time
+   * @param endTime   the end time
+   * @return the added phase
+   */
+  public synchronized QueryPhaseTime addPhase(QueryPhase phase, long startTime, long endTime) {
+    QueryPhaseTime added = new QueryPhaseTime(phase, startTime, Math.max(startTime, endTime));
+    List<QueryPhaseTime> timeline = getTimeline();
+    if (!timeline.isEmpty() && timeline.get(timeline.size() - 1).getEndTime() == 0) {
+      timeline.add(timeline.size() - 1, added);
+    } else {
+      timeline.add(added);
+    }
+    return added;
   }
 
   public boolean isResultAvailableInDriver() {
@@ -377,12 +467,88 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
    */
   public void setStatusSkippingTransitionTest(final QueryStatus newStatus) {
     this.status = newStatus;
+    completeStatusFutures();
   }
 
   public synchronized void setStatus(final QueryStatus newStatus) throws LensException {
     validateTransition(newStatus);
     log.info("Updating status of {} from {} to {}", getQueryHandle(), this.status, newStatus);
     this.status = newStatus;
+    completeStatusFutures();
+  }
+
+  /**
+   * Future of the query status, pending till the status of the query meets the given condition. The future is
+   * completed while holding the lock on this context, so dependent actions should be run asynchronously.
+   *
+   * @param condition the condition on status
+   * @return future of the status meeting the condition
+   */
+  public synchronized CompletableFuture<QueryStatus> getStatusFuture(Predicate<QueryStatus> condition) {
+    StatusFuture statusFuture = new StatusFuture(condition);
+    if (!statusFuture.completeIfMet(status)) {
+      if (statusFutures == null) {
+        statusFutures = new ArrayList<>();
+      }
+      statusFutures.add(statusFuture);
+    }
+    return statusFuture.future;
+  }
+
+  /**
+   * @return future of the query status, completed once the query is out of the queue
+   */
+  public CompletableFuture<QueryStatus> getLaunchedFuture() {
+    return getStatusFuture(queryStatus -> !queryStatus.queued() && queryStatus.getStatus() != Status.NEW);
+  }
+
+  /**
+   * @return future of the query status, completed once the driver is done executing the query or the query finishes
+   */
+  public CompletableFuture<QueryStatus> getExecutedFuture() {
+    return getStatusFuture(queryStatus -> queryStatus.executed() || queryStatus.finished());
+  }
+
+  /**
+   * @return future of the query status, completed once the query finishes
+   */
+  public CompletableFuture<QueryStatus> getFinishedFuture() {
+    return getStatusFuture(QueryStatus::finished);
+  }
+
+  private synchronized void completeStatusFutures() {
+    if (statusFutures == null) {
+      return;
+    }
+    Iterator<StatusFuture> iterator = statusFutures.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().completeIfMet(status)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Future pending till the query status meets the condition.
+   */
+  private static class StatusFuture {
+    private final Predicate<QueryStatus> condition;
+    private final CompletableFuture<QueryStatus> future = new CompletableFuture<>();
+
+    StatusFuture(Predicate<QueryStatus> condition) {
+      this.condition = condition;
+    }
+
+    boolean completeIfMet(QueryStatus status) {
+      if (future.isDone()) {
+        return true;
+      }
+      if (status != null && condition.test(status)) {
+        future.complete(status);
+        return true;
+      }
+      return false;
+    }
   }
 
   /**
@@ -394,23 +560,51 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
    */
   public synchronized void updateDriverStatus(BackOffRetryHandler statusUpdateRetryHandler)
     throws LensException {
-    if (statusUpdateRetryHandler.canTryOpNow(statusUpdateFailures)) {
+    if (canUpdateDriverStatus(statusUpdateRetryHandler)) {
+      LensException failure = null;
       try {
         getSelectedDriver().updateStatus(this);
-        statusUpdateFailures.clear();
       } catch (LensException exc) {
-        if (LensUtil.isSocketException(exc)) {
-          statusUpdateFailures.updateFailure();
-          if (!statusUpdateRetryHandler.hasExhaustedRetries(statusUpdateFailures)) {
-            // retries are not exhausted, so failure is ignored and update will be tried later
-            log.warn("Exception during update status from driver and update will be tried again at {}",
-              statusUpdateRetryHandler.getOperationNextTime(statusUpdateFailures), exc);
-            return;
-          }
-        }
-        throw exc;
+        failure = exc;
+      }
+      onDriverStatusUpdate(statusUpdateRetryHandler, failure);
+    }
+  }
+
+  /**
+   * Whether status can be updated from driver now, or has to wait because of earlier transient failures.
+   *
+   * @param statusUpdateRetryHandler The exponential retry handler
+   * @return true if status update can be tried now
+   */
+  public synchronized boolean canUpdateDriverStatus(BackOffRetryHandler statusUpdateRetryHandler) {
+    return statusUpdateRetryHandler.canTryOpNow(statusUpdateFailures);
+  }
+
+  /**
+   * Record outcome of a status update from selected driver.
+   *
+   * @param statusUpdateRetryHandler The exponential retry handler
+   * @param failure                  The failure in status update, null if update was successful
+   *
+   * @throws LensException Throws the failure if it is not transient, or retries for it are exhausted.
+   */
+  public synchronized void onDriverStatusUpdate(BackOffRetryHandler statusUpdateRetryHandler, LensException failure)
+    throws LensException {
+    if (failure == null) {
+      statusUpdateFailures.clear();
+      return;
+    }
+    if (LensUtil.isSocketException(failure)) {
+      statusUpdateFailures.updateFailure();
+      if (!statusUpdateRetryHandler.hasExhaustedRetries(statusUpdateFailures)) {
+        // retries are not exhausted, so failure is ignored and update will be tried later
+        log.warn("Exception during update status from driver and update will be tried again at {}",
+          statusUpdateRetryHandler.getOperationNextTime(statusUpdateFailures), failure);
+        return;
       }
     }
+    throw failure;
   }
 
   public String getResultHeader() {
@@ -19,6 +19,7 @@
 package org.apache.lens.server.api.query;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.ws.rs.core.Response;
 
@@ -121,6 +122,20 @@ public interface QueryExecutionService extends LensService, SessionValidator {
   QueryHandleWithResultSet executePrepare(LensSessionHandle sessionHandle, QueryPrepareHandle prepareHandle,
     long timeoutmillis, LensConf conf, String queryName) throws LensException;
 
+  /**
+   * Execute already prepared query with timeout, without blocking the caller till the query completes.
+   *
+   * @param sessionHandle the session handle
+   * @param prepareHandle The {@link QueryPrepareHandle}
+   * @param timeoutmillis The timeout after which it will return handle, if query did not finish before.
+   * @param conf          The configuration for the query to execute
+   * @param queryName     the query name
+   * @return future of the query handle with result set, completed when the query completes or the timeout elapses
+   * @throws LensException the lens exception
+   */
+  CompletableFuture<QueryHandleWithResultSet> executePrepareWithTimeout(LensSessionHandle sessionHandle,
+    QueryPrepareHandle prepareHandle, long timeoutmillis, LensConf conf, String queryName) throws LensException;
+
   /**
    * Asynchronously execute the query.
    *
@@ -160,6 +175,20 @@ public interface QueryExecutionService extends LensService, SessionValidator {
   QueryHandleWithResultSet execute(LensSessionHandle sessionHandle, String query, long timeoutmillis,
     LensConf conf, String queryName) throws LensException;
 
+  /**
+   * Execute the query with a timeout, without blocking the caller till the query completes.
+   *
+   * @param sessionHandle the session handle
+   * @param query         The query should be in HiveQL(SQL like)
+   * @param timeoutmillis The timeout after which it will return handle, if query did not finish before.
+   * @param conf          The query configuration
+   * @param queryName     the query name
+   * @return future of the query handle with result set, completed when the query completes or the timeout elapses
+   * @throws LensException the lens exception
+   */
+  CompletableFuture<QueryHandleWithResultSet> executeWithTimeout(LensSessionHandle sessionHandle, String query,
+    long timeoutmillis, LensConf conf, String queryName) throws LensException;
+
   /**
    * Get the query, specified by the handle.
    *
@@ -170,6 +199,20 @@ public interface QueryExecutionService extends LensService, SessionValidator {
    */
   LensQuery getQuery(LensSessionHandle sessionHandle, QueryHandle queryHandle) throws LensException;
 
+  /**
+   * Get the query, specified by the handle, once its status is different from the given status. The returned future
+   * completes immediately if the query is not in the given status already. Cancelling the future stops waiting for
+   * the status change.
+   *
+   * @param sessionHandle the session handle
+   * @param queryHandle   The query handle
+   * @param status        the status of the query last known to the caller
+   * @return future of the query, completed on status change
+   * @throws LensException the lens exception
+   */
+  CompletableFuture<LensQuery> getQueryOnStatusChange(LensSessionHandle sessionHandle, QueryHandle queryHandle,
+    QueryStatus.Status status) throws LensException;
+
   /**
    * Get the result set metadata - list of columns(names and types) and result size.
    *
@@ -204,6 +247,20 @@ public interface QueryExecutionService extends LensService, SessionValidator {
    */
   Response getHttpResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle) throws LensException;
 
+  /**
+   * Get the http end point for the result set, serving the part of the result asked for by the http request.
+   *
+   * @param sessionHandle  The lens session handle
+   * @param queryHandle    The query handle
+   * @param range          Value of the Range header of the request, a single byte range is supported
+   * @param ifRange        Value of the If-Range header, range is served only if this matches the ETag of the result
+   * @param acceptEncoding Value of the Accept-Encoding header, whole result is gzip compressed if gzip is accepted
+   * @return returns javax.ws.rs.core.Response object
+   * @throws LensException the lens exception
+   */
+  Response getHttpResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle, String range, String ifRange,
+    String acceptEncoding) throws LensException;
+
   /**
    * Closes result set by releasing any resources used in serving the resultset.
    *
@@ -260,6 +317,51 @@ public interface QueryExecutionService extends LensService, SessionValidator {
   List<LensQuery> getAllQueryDetails(LensSessionHandle sessionHandle, String states, String user, String driver,
     String queryName, String fromDate, String toDate) throws LensException;
 
+  /**
+   * Returns a page of queries in the specified state, for the given user and matching query name. Queries are ordered
+   * by submission time, latest first.
+   *
+   * @param sessionHandle the session handle
+   * @param states        return queries in these state. if null, all queries will be returned. Multiple states can
+   *                      be supplied separated by comma
+   * @param user          Get queries submitted by a specific user.
+   *                      If this set to "all", queries of all users are returned
+   * @param driver        Get queries submitted on a specific driver.
+   * @param queryName     return queries containing the query name. If null, all queries will be returned
+   * @param fromDate      start date of time range interval
+   * @param toDate        end date of the time range interval
+   * @param after         last query of the previous page. If null, the first page is returned
+   * @param pageSize      maximum number of queries to return. If not positive, all queries are returned
+   * @return List of query handles
+   * @throws LensException the lens exception
+   */
+  List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String states, String user, String driver,
+    String queryName, String fromDate, String toDate, QueryHandle after, int pageSize) throws LensException;
+
+  /**
+   * Returns a page of queries in the specified state, for the given user and matching query name. Queries are ordered
+   * by submission time, latest first.
+   *
+   * @param sessionHandle the session handle
+   * @param states        return queries in these state. if null, all queries will be returned. Multiple states can
+   *                      be supplied separated by comma
+   * @param user          Get queries submitted by a specific user.
+   *                      If this set to "all", queries of all users are returned
+   * @param driver        Get queries submitted on a specific driver.
+   * @param queryName     return queries containing the query name. If null, all queries will be returned
+   * @param fromDate      start date of time range interval
+   * @param toDate        end date of the time range interval
+   * @param summary       whether only summary of finished queries is needed. Conf, driver query and failed attempts
+   *                      of finished queries are not returned in that case
+   * @param after         last query of the previous page. If null, the first page is returned
+   * @param pageSize      maximum number of queries to return. If not positive, all queries are returned
+   * @return List of Lens Query object
+   * @throws LensException the lens exception
+   */
+  List<LensQuery> getAllQueryDetails(LensSessionHandle sessionHandle, String states, String user, String driver,
+    String queryName, String fromDate, String toDate, boolean summary, QueryHandle after, int pageSize)
+    throws LensException;
+
   /**
    * Returns all the prepared queries for the specified user. If no user is passed, queries of all users will be
    * returned.
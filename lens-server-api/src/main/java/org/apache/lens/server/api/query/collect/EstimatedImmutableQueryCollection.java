@@ -33,6 +33,9 @@ import org.apache.lens.server.api.query.cost.QueryCost;
  * IllegalStateException shall be thrown from add behaviours when selected driver is not set or a valid selected driver
  * query cost is not present for the given query.
  *
+ * Query counts and total query costs are checked by launching constraints for every candidate query, so
+ * implementations should maintain them as queries are added and removed, instead of computing them on every call.
+ *
  */
 public interface EstimatedImmutableQueryCollection extends ImmutableQueryCollection {
 
@@ -40,9 +43,8 @@ public interface EstimatedImmutableQueryCollection extends ImmutableQueryCollect
    *
    * @param driver Driver for which queries have to be returned.
    *
-   * @return A set of queries for which given driver is the selected driver. A new set is created and returned.
-   * Elements in the set are not cloned or copied. Multiple iterations over returned set are guaranteed to be in same
-   * order. If there are no queries, then an empty set is returned. null is never returned.
+   * @return A set of queries for which given driver is the selected driver. Elements in the set are not cloned or
+   * copied. If there are no queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries(final LensDriver driver);
 
@@ -62,4 +64,40 @@ public interface EstimatedImmutableQueryCollection extends ImmutableQueryCollect
    * @return total query cost of all queries of user
    */
   QueryCost getTotalQueryCost(final String user);
+
+  /**
+   *
+   * Get total query cost of all queries of given driver
+   *
+   * @param driver
+   * @return total query cost of all queries of driver
+   */
+  QueryCost getTotalQueryCost(final LensDriver driver);
+
+  /**
+   *
+   * Get total query cost of all queries of given user on given driver
+   *
+   * @param user
+   * @param driver
+   * @return total query cost of all queries of user on driver
+   */
+  QueryCost getTotalQueryCost(final String user, final LensDriver driver);
+
+  /**
+   *
+   * @param user User for whom count of queries have to be returned.
+   *
+   * @return count of queries of given user.
+   */
+  int getQueriesCount(final String user);
+
+  /**
+   *
+   * @param user User for whom count of queries have to be returned.
+   * @param driver Driver for which count of queries have to be returned.
+   *
+   * @return count of queries of given user on given driver.
+   */
+  int getQueriesCount(final String user, final LensDriver driver);
 }
@@ -26,21 +26,23 @@ import org.apache.lens.server.api.query.QueryContext;
  *
  * {@link ImmutableQueryCollection} interface defines immutable behaviours on queries existing in lens system.
  *
+ * Sets returned by get behaviours are either copies, or unmodifiable views whose iteration is weakly consistent with
+ * concurrent modifications of the collection. Callers should not modify returned sets, and should copy them if they
+ * need a snapshot.
+ *
  */
 public interface ImmutableQueryCollection {
 
   /**
    *
-   * @return A new set copied from this collection of queries. Elements in the set are not cloned or copied.
-   * Multiple iterations over returned set are guaranteed to be in same order. If there are no queries, then an empty
-   * set is returned. null is never returned.
+   * @return A set of queries in this collection. Elements in the set are not cloned or copied. If there are no
+   * queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries();
 
   /**
    * @param user User for whom queries have to be returned.
-   * @return A set of queries submitted by the given user. A new set is created and returned. Elements in the set
-   * are not cloned or copied. Multiple iterations over returned set are guaranteed to be in same order. If there are
+   * @return A set of queries submitted by the given user. Elements in the set are not cloned or copied. If there are
    * no queries, then an empty set is returned. null is never returned.
    */
   Set<QueryContext> getQueries(final String user);
@@ -26,4 +26,9 @@ public class FIFOQueryComparator implements QueryComparator {
   public int compare(QueryContext o1, QueryContext o2) {
     return Long.compare(o1.getSubmissionTime(), o2.getSubmissionTime());
   }
+
+  @Override
+  public Comparable getOrderingAttribute(final QueryContext query) {
+    return query.getSubmissionTime();
+  }
 }
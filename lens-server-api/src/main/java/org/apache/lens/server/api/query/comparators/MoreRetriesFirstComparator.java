@@ -27,4 +27,10 @@ public class MoreRetriesFirstComparator implements QueryComparator {
     // swap order for reverse sorting
     return Integer.compare(o2.getFailedAttempts().size(), o1.getFailedAttempts().size());
   }
+
+  @Override
+  public Comparable getOrderingAttribute(final QueryContext query) {
+    // negated for reverse sorting
+    return -query.getFailedAttempts().size();
+  }
 }
@@ -25,4 +25,16 @@ import java.util.Comparator;
 import org.apache.lens.server.api.query.QueryContext;
 
 public interface QueryComparator extends Comparator<QueryContext> {
+
+  /**
+   * Attribute of the query by which this comparator orders queries. Attributes of two queries compare the same way as
+   * the queries do. Collections keeping queries ordered take the attribute when a query is added, so that the query
+   * can be found in its place even if the attribute changes afterwards.
+   *
+   * @param query the query
+   * @return the attribute, null if queries can only be ordered by comparing them
+   */
+  default Comparable getOrderingAttribute(QueryContext query) {
+    return null;
+  }
 }
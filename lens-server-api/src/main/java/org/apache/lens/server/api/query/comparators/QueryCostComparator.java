@@ -26,5 +26,10 @@ public class QueryCostComparator implements QueryComparator {
   public int compare(final QueryContext o1, final QueryContext o2) {
     return o1.getSelectedDriverQueryCost().compareTo(o2.getSelectedDriverQueryCost());
   }
+
+  @Override
+  public Comparable getOrderingAttribute(final QueryContext query) {
+    return query.getSelectedDriverQueryCost();
+  }
 }
 
@@ -26,4 +26,9 @@ public class QueryPriorityComparator implements QueryComparator {
   public int compare(final QueryContext o1, final QueryContext o2) {
     return o1.getPriority().compareTo(o2.getPriority());
   }
+
+  @Override
+  public Comparable getOrderingAttribute(final QueryContext query) {
+    return query.getPriority();
+  }
 }
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.constraint;
+
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+/**
+ * A {@link QueryLaunchingConstraint} on the launched queries of the submitting user, across drivers. It only looks at
+ * the count and total cost of launched queries of the user, so that it can be checked atomically with adding the
+ * candidate query to them. Queries of different drivers are launched together without a lock in between, and a
+ * constraint spanning drivers which doesn't implement this interface can be passed by two of them at once.
+ */
+public interface UserQueryLaunchingConstraint extends QueryLaunchingConstraint {
+
+  /**
+   * Returns whether this constraint allows candidate query to be launched. Can be called more than once for a launch
+   * decision, so it should not have side effects.
+   *
+   * @param candidateQuery      The query which is the next candidate to be launched.
+   * @param launchedQueryCount  Count of launched queries of the submitted user of candidate query
+   * @param launchedQueriesCost Total cost of launched queries of the submitted user of candidate query
+   * @return null if allowed to launch, otherwise a String containing the reason to block launch
+   */
+  String allowsLaunchOf(QueryContext candidateQuery, int launchedQueryCount, QueryCost launchedQueriesCost);
+
+  @Override
+  default String allowsLaunchOf(QueryContext candidateQuery, EstimatedImmutableQueryCollection launchedQueries) {
+    String user = candidateQuery.getSubmittedUser();
+    return allowsLaunchOf(candidateQuery, launchedQueries.getQueriesCount(user),
+      launchedQueries.getTotalQueryCost(user));
+  }
+}
@@ -45,6 +45,12 @@ public class FactPartitionBasedQueryCost implements QueryCost<FactPartitionBased
     return new FactPartitionBasedQueryCost(partitionCost + other.partitionCost);
   }
 
+  @Override
+  public FactPartitionBasedQueryCost subtract(final FactPartitionBasedQueryCost other) {
+    // rounding errors shouldn't make the cost negative
+    return new FactPartitionBasedQueryCost(Math.max(0, partitionCost - other.partitionCost));
+  }
+
   @Override
   public QueryCostType getQueryCostType() {
     return partitionCost == 0 ? QueryCostType.LOW : QueryCostType.HIGH;
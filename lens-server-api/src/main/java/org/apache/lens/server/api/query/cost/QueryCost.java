@@ -32,6 +32,18 @@ public interface QueryCost<T extends QueryCost> extends Comparable<T> {
 
   T add(final T queryCost);
 
+  /**
+   * Default implementation is not supported, in which case totals of costs are summed afresh when needed, instead of
+   * being subtracted from.
+   *
+   * @param queryCost the cost to be subtracted, which is expected to have been added to this cost earlier
+   * @return cost after subtracting given cost from this cost
+   * @throws UnsupportedOperationException if costs can't be subtracted
+   */
+  default T subtract(final T queryCost) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException("Subtracting " + getClass().getSimpleName() + " is not supported");
+  }
+
   QueryCostType getQueryCostType();
 
   long getEstimatedExecTimeMillis() throws UnsupportedOperationException;
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.MockQueryContext;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestAbstractLensDriver {
+
+  @Test
+  public void testStatusPollDelayBackOff() throws LensException {
+    MockQueryContext ctx = new MockQueryContext();
+    LensDriver driver = ctx.getSelectedDriver();
+
+    // Just launched queries are polled at min interval
+    ctx.setLaunchTime(System.currentTimeMillis());
+    assertEquals(driver.getStatusPollDelayMillis(ctx), DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS);
+
+    // Delay grows with the time query has been running for
+    ctx.setLaunchTime(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10));
+    long delay = driver.getStatusPollDelayMillis(ctx);
+    long expected = (long) (TimeUnit.MINUTES.toMillis(10) * DEFAULT_STATUS_POLL_RUNTIME_FRACTION);
+    assertEquals(delay / 100, expected / 100);
+
+    // Long running queries are polled at max interval
+    ctx.setLaunchTime(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(5));
+    assertEquals(driver.getStatusPollDelayMillis(ctx), DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS);
+  }
+
+  @Test
+  public void testBatchStatusUpdate() throws LensException {
+    Configuration conf = new Configuration();
+    List<LensDriver> drivers = MockQueryContext.getDrivers(conf);
+    LensDriver driver = drivers.get(0);
+    QueryContext succeeding = new MockQueryContext("mock query", new LensConf(), conf, drivers);
+    QueryContext failing = new MockQueryContext("simulate status failure", new LensConf(), conf, drivers);
+
+    Map<QueryHandle, LensException> failures = driver.updateStatus(Lists.newArrayList(succeeding, failing));
+
+    // Failure of one query's status update doesn't affect the other queries in the batch
+    assertEquals(failures.size(), 1);
+    assertTrue(failures.containsKey(failing.getQueryHandle()));
+    assertTrue(succeeding.getDriverStatus().isSuccessful());
+  }
+}
@@ -22,8 +22,13 @@ package org.apache.lens.server.api.query;
 import static org.testng.Assert.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.QueryPhase;
+import org.apache.lens.api.query.QueryPhaseTime;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.api.query.QueryStatus.Status;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.driver.MockDriver;
 import org.apache.lens.server.api.error.LensException;
@@ -96,4 +101,56 @@ public class TestQueryContext {
       // pass
     }
   }
+
+  @Test
+  public void testPhaseTimeline() throws LensException {
+    Configuration conf = new Configuration();
+    List<LensDriver> drivers = MockQueryContext.getDrivers(conf);
+    MockQueryContext ctx = new MockQueryContext("simulate phases", new LensConf(), conf, drivers);
+    assertNull(ctx.endPhase(100));
+    assertEquals(ctx.addPhase(QueryPhase.REWRITE, 100, 110), new QueryPhaseTime(QueryPhase.REWRITE, 100, 110));
+    assertNull(ctx.startPhase(QueryPhase.QUEUE_WAIT, 120));
+    // starting the phase in progress again doesn't restart it
+    assertNull(ctx.startPhase(QueryPhase.QUEUE_WAIT, 130));
+    QueryPhaseTime queueWait = ctx.startPhase(QueryPhase.LAUNCH, 150);
+    assertEquals(queueWait, new QueryPhaseTime(QueryPhase.QUEUE_WAIT, 120, 150));
+    assertEquals(queueWait.getDurationMillis(), 30);
+    assertEquals(ctx.getPhaseTimeline().get(2).getDurationMillis(), -1);
+    // adding an ended phase keeps the phase in progress going
+    assertEquals(ctx.addPhase(QueryPhase.ESTIMATE, 140, 145), new QueryPhaseTime(QueryPhase.ESTIMATE, 140, 145));
+    assertEquals(ctx.getPhaseTimeline().get(2).getPhase(), QueryPhase.ESTIMATE);
+    assertEquals(ctx.endPhase(155), new QueryPhaseTime(QueryPhase.LAUNCH, 150, 155));
+    assertNull(ctx.endPhase(160));
+    assertEquals(ctx.getPhaseTimeline().size(), 4);
+  }
+
+  private static QueryStatus newStatus(Status status) {
+    return new QueryStatus(0.0, null, status, null, false, null, null, null);
+  }
+
+  @Test
+  public void testStatusFutures() throws LensException {
+    Configuration conf = new Configuration();
+    List<LensDriver> drivers = MockQueryContext.getDrivers(conf);
+    MockQueryContext ctx = new MockQueryContext("simulate status futures", new LensConf(), conf, drivers);
+    CompletableFuture<QueryStatus> launched = ctx.getLaunchedFuture();
+    CompletableFuture<QueryStatus> executed = ctx.getExecutedFuture();
+    CompletableFuture<QueryStatus> finished = ctx.getFinishedFuture();
+    assertFalse(launched.isDone());
+
+    ctx.setStatusSkippingTransitionTest(QueryStatus.getQueuedStatus());
+    assertFalse(launched.isDone());
+    ctx.setStatusSkippingTransitionTest(newStatus(Status.LAUNCHED));
+    assertEquals(launched.join().getStatus(), Status.LAUNCHED);
+    assertFalse(executed.isDone());
+    ctx.setStatusSkippingTransitionTest(newStatus(Status.EXECUTED));
+    assertEquals(executed.join().getStatus(), Status.EXECUTED);
+    assertFalse(finished.isDone());
+    ctx.setStatusSkippingTransitionTest(newStatus(Status.SUCCESSFUL));
+    assertEquals(finished.join().getStatus(), Status.SUCCESSFUL);
+
+    // futures asked for after the status is reached are completed already
+    assertTrue(ctx.getLaunchedFuture().isDone());
+    assertEquals(ctx.getExecutedFuture().join().getStatus(), Status.SUCCESSFUL);
+  }
 }
@@ -45,6 +45,12 @@ public class TestFactPartitionBasedQueryCost {
     assertEquals(cost1.add(cost2), new FactPartitionBasedQueryCost(0.5));
   }
 
+  @Test
+  public void testSubtract() throws Exception {
+    assertEquals(cost1.add(cost2).subtract(cost2), cost1);
+    assertEquals(cost1.subtract(cost2), cost0);
+  }
+
   @Test
   public void testGetQueryCostType() throws Exception {
     assertEquals(cost1.getQueryCostType(), QueryCostType.HIGH);
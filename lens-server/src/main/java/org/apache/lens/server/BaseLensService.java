@@ -228,12 +228,8 @@ public abstract class BaseLensService extends CompositeService implements Extern
   }
 
   private void updateSessionsPerUser(String userName) {
-    Integer numOfSessions = SESSIONS_PER_USER.get(userName);
-    if (null == numOfSessions) {
-      SESSIONS_PER_USER.put(userName, 1);
-    } else {
-      SESSIONS_PER_USER.put(userName, ++numOfSessions);
-    }
+    // sessions are restored in parallel on restart, so the count has to be updated atomically
+    SESSIONS_PER_USER.merge(userName, 1, Integer::sum);
   }
 
   protected LensEventService getEventService() {
@@ -511,6 +507,43 @@ public abstract class BaseLensService extends CompositeService implements Extern
   public void writeExternal(ObjectOutput out) throws IOException {
   }
 
+  /**
+   * Whether the service journals changes to its state through {@link #writeJournal(ObjectOutput)}. State of services
+   * which don't journal their state is persisted in full, through {@link #writeExternal(ObjectOutput)}, every time.
+   *
+   * @return true if the service journals its state
+   */
+  public boolean isStateJournaled() {
+    return false;
+  }
+
+  /**
+   * Write the changes to the state of the service since the last call to this method or to {@link #clearJournal()}.
+   * Journals are replayed in order by {@link #readJournal(ObjectInput)} over the state read by
+   * {@link #readExternal(ObjectInput)}.
+   *
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeJournal(ObjectOutput out) throws IOException {
+  }
+
+  /**
+   * Replay a journal written by {@link #writeJournal(ObjectOutput)}.
+   *
+   * @param in the in
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  public void readJournal(ObjectInput in) throws IOException, ClassNotFoundException {
+  }
+
+  /**
+   * Forget the changes tracked so far, as the full state of the service is about to be persisted.
+   */
+  public void clearJournal() {
+  }
+
 
   /**
    * Method that uses PathValidator to get appropriate path.
@@ -19,16 +19,22 @@
 package org.apache.lens.server;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
+import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.events.AsyncEventListener;
 import org.apache.lens.server.api.events.LensEvent;
 import org.apache.lens.server.api.events.LensEventListener;
 import org.apache.lens.server.api.events.LensEventService;
 import org.apache.lens.server.api.health.HealthStatus;
+import org.apache.lens.server.api.metrics.MetricsService;
+import org.apache.lens.server.api.query.events.QueryEvent;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -46,9 +52,23 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
   private final Map<Class<? extends LensEvent>, List<LensEventListener>> eventListeners
     = new HashMap<Class<? extends LensEvent>, List<LensEventListener>>();
 
+  /**
+   * Listeners of each concrete event class, including the listeners of its super classes. Filled lazily and replaced
+   * by an empty table whenever listeners change, so that dispatching an event does not walk the event class
+   * hierarchy or take the listeners lock.
+   */
+  private volatile ConcurrentMap<Class<? extends LensEvent>, List<LensEventListener>> dispatchTable
+    = new ConcurrentHashMap<>();
+
   /** The event handler pool. */
   private ExecutorService eventHandlerPool;
 
+  /**
+   * Single threaded executors, each handling events of a subset of queries, so that events of a query are delivered
+   * in order. Null if ordered delivery of query events is disabled.
+   */
+  private ExecutorService[] queryEventHandlers;
+
   /**
    * Instantiates a new event service impl.
    *
@@ -71,8 +91,20 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
       .daemon(false)
       .priority(Thread.NORM_PRIORITY)
       .build();
-    eventHandlerPool = Executors.newFixedThreadPool(hiveConf.getInt(LensConfConstants.EVENT_SERVICE_THREAD_POOL_SIZE,
-      numProcs), factory);
+    int poolSize = hiveConf.getInt(LensConfConstants.EVENT_SERVICE_THREAD_POOL_SIZE, numProcs);
+    eventHandlerPool = Executors.newFixedThreadPool(poolSize, factory);
+    if (hiveConf.getBoolean(LensConfConstants.EVENT_SERVICE_QUERY_ORDERED_DELIVERY,
+      LensConfConstants.DEFAULT_EVENT_SERVICE_QUERY_ORDERED_DELIVERY)) {
+      ThreadFactory queryEventFactory = new BasicThreadFactory.Builder()
+        .namingPattern("Event_Service_Query_Thread-%d")
+        .daemon(false)
+        .priority(Thread.NORM_PRIORITY)
+        .build();
+      queryEventHandlers = new ExecutorService[poolSize];
+      for (int i = 0; i < poolSize; i++) {
+        queryEventHandlers[i] = Executors.newSingleThreadExecutor(queryEventFactory);
+      }
+    }
     super.init(hiveConf);
   }
 
@@ -91,7 +123,35 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
           log.info("Removed listener {}", listener);
         }
       }
+      dispatchTable = new ConcurrentHashMap<>();
+    }
+  }
+
+  /**
+   * Get listeners of an event class from the dispatch table, computing them if not yet done.
+   *
+   * @param evtClass the event class
+   * @return listeners of the event class and its super classes, in that order
+   */
+  private List<LensEventListener> getDispatchListeners(Class<? extends LensEvent> evtClass) {
+    ConcurrentMap<Class<? extends LensEvent>, List<LensEventListener>> table = dispatchTable;
+    List<LensEventListener> listeners = table.get(evtClass);
+    if (listeners == null) {
+      synchronized (eventListeners) {
+        List<LensEventListener> all = new ArrayList<>();
+        Class<?> eventType = evtClass;
+        // listeners directly listening for this event type first, then the ones listening for its super types
+        while (LensEvent.class.isAssignableFrom(eventType)) {
+          if (eventListeners.containsKey(eventType)) {
+            all.addAll(eventListeners.get(eventType));
+          }
+          eventType = eventType.getSuperclass();
+        }
+        listeners = Collections.unmodifiableList(all);
+        table.put(evtClass, listeners);
+      }
     }
+    return listeners;
   }
 
   /**
@@ -138,18 +198,7 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
      * @see java.lang.Runnable#run()
      */
     public void run() {
-      Class<? extends LensEvent> evtClass = event.getClass();
-      // Call listeners directly listening for this event type
-      handleEvent(eventListeners.get(evtClass), event);
-      Class<?> superClass = evtClass.getSuperclass();
-
-      // Call listeners which listen of super types of this event type
-      while (LensEvent.class.isAssignableFrom(superClass)) {
-        if (eventListeners.containsKey(superClass)) {
-          handleEvent(eventListeners.get(superClass), event);
-        }
-        superClass = superClass.getSuperclass();
-      }
+      handleEvent(getDispatchListeners(event.getClass()), event);
     }
   }
 
@@ -168,7 +217,24 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
     if (evt == null) {
       return;
     }
-    eventHandlerPool.submit(new EventHandler(evt));
+    getEventExecutor(evt).submit(new EventHandler(evt));
+  }
+
+  /**
+   * Executor handling the event. Events of a query are handled by the same single threaded executor if ordered
+   * delivery of query events is enabled, all other events are handled by the shared event handler pool.
+   *
+   * @param evt the event
+   * @return the executor
+   */
+  private ExecutorService getEventExecutor(LensEvent evt) {
+    if (queryEventHandlers != null && evt instanceof QueryEvent) {
+      QueryHandle handle = ((QueryEvent<?>) evt).getQueryHandle();
+      if (handle != null) {
+        return queryEventHandlers[(handle.hashCode() & Integer.MAX_VALUE) % queryEventHandlers.length];
+      }
+    }
+    return eventHandlerPool;
   }
 
   /*
@@ -195,9 +261,16 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
 
   @Override
   public HealthStatus getHealthStatus() {
+    boolean queryEventHandlersRunning = true;
+    if (queryEventHandlers != null) {
+      for (ExecutorService handler : queryEventHandlers) {
+        queryEventHandlersRunning &= !handler.isShutdown();
+      }
+    }
     return (this.getServiceState().equals(STATE.STARTED)
         && !eventHandlerPool.isShutdown()
-        && !eventHandlerPool.isTerminated())
+        && !eventHandlerPool.isTerminated()
+        && queryEventHandlersRunning)
         ? new HealthStatus(true, "Event service is healthy.")
         : new HealthStatus(false, "Event service is unhealthy.");
   }
@@ -220,8 +293,13 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
   @Override
   public void stop() {
     if (eventHandlerPool != null) {
-      List<Runnable> pending = eventHandlerPool.shutdownNow();
-      if (pending != null && !pending.isEmpty()) {
+      List<Runnable> pending = new ArrayList<>(eventHandlerPool.shutdownNow());
+      if (queryEventHandlers != null) {
+        for (ExecutorService handler : queryEventHandlers) {
+          pending.addAll(handler.shutdownNow());
+        }
+      }
+      if (!pending.isEmpty()) {
         StringBuilder pendingMsg = new StringBuilder("Pending Events:");
         for (Runnable handler : pending) {
           if (handler instanceof EventHandler) {
@@ -255,10 +333,29 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
         eventListeners.put(eventType, listeners);
       }
       listeners.add(listener);
+      dispatchTable = new ConcurrentHashMap<>();
+    }
+    if (listener instanceof AsyncEventListener) {
+      configureAsyncListener((AsyncEventListener<?>) listener);
     }
     log.info("Added listener {} for type:{}", listener, eventType.getName());
   }
 
+  /**
+   * Configure the queue of an asynchronous listener and register its metrics.
+   *
+   * @param listener the listener
+   */
+  private void configureAsyncListener(AsyncEventListener<?> listener) {
+    if (getHiveConf() != null) {
+      listener.configure(getHiveConf());
+    }
+    MetricsService metricsService = LensServices.get().getService(MetricsService.NAME);
+    if (metricsService != null) {
+      metricsService.registerEventListener(listener);
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -274,6 +371,7 @@ public class EventServiceImpl extends AbstractService implements LensEventServic
           log.info("Removed listener {}", listener);
         }
       }
+      dispatchTable = new ConcurrentHashMap<>();
     }
   }
 }
@@ -20,6 +20,7 @@ package org.apache.lens.server;
 
 import static org.apache.lens.server.api.LensConfConstants.*;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -44,8 +45,10 @@ import org.apache.lens.server.user.UserConfigLoaderFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hive.service.CompositeService;
 import org.apache.hive.service.Service;
@@ -122,6 +125,17 @@ public class LensServices extends CompositeService implements ServiceProvider {
 
   private long serverStatePersistenceInterval;
 
+  /** Whether changes to state of services are journaled at every persistence interval */
+  private boolean isServerStateJournalEnabled;
+
+  /** Number of journals after which state of services is persisted in full */
+  private int serverStateJournalCompactionThreshold;
+
+  /** Sequence number of the next journal */
+  private long nextJournalSeq;
+
+  /** Number of journals written since state of services was persisted in full */
+  private int numJournalsSinceCompaction;
 
   @Getter
   private final LogSegregationContext logSegregationContext;
@@ -272,6 +286,10 @@ public class LensServices extends CompositeService implements ServiceProvider {
         }
         serverStatePersistenceInterval = conf.getLong(SERVER_STATE_PERSISTENCE_INTERVAL_MILLIS,
           DEFAULT_SERVER_STATE_PERSISTENCE_INTERVAL_MILLIS);
+        isServerStateJournalEnabled = conf.getBoolean(SERVER_STATE_JOURNAL_ENABLED,
+          DEFAULT_SERVER_STATE_JOURNAL_ENABLED);
+        serverStateJournalCompactionThreshold = conf.getInt(SERVER_STATE_JOURNAL_COMPACTION_THRESHOLD,
+          DEFAULT_SERVER_STATE_JOURNAL_COMPACTION_THRESHOLD);
       }
       log.info("Initialized services: {}", services.keySet().toString());
     }
@@ -302,7 +320,11 @@ public class LensServices extends CompositeService implements ServiceProvider {
           try {
             final String runId = UUID.randomUUID().toString();
             logSegregationContext.setLogSegregationId(runId);
-            persistLensServiceState();
+            if (isServerStateJournalEnabled) {
+              journalLensServiceState();
+            } else {
+              persistLensServiceState();
+            }
             log.info("SnapShot of Lens Services created");
           } catch (Exception e) {
             incrCounter(SERVER_STATE_PERSISTENCE_ERRORS);
@@ -325,21 +347,71 @@ public class LensServices extends CompositeService implements ServiceProvider {
     for (BaseLensService service : lensServices) {
       ObjectInputStream in = null;
       Path path = getServicePersistPath(service);
+      long snapshotJournalSeq = -1;
       try {
         try {
           in = new ObjectInputStream(persistenceFS.open(path));
         } catch (FileNotFoundException fe) {
           log.warn("Persisted state not available for service: {} at: {}", service.getName(), path);
-          continue;
         }
-        service.readExternal(in);
-        log.info("Recovered service {} from persisted state {}", service.getName(), path);
+        if (in != null) {
+          service.readExternal(in);
+          snapshotJournalSeq = readSnapshotJournalSeq(in);
+          log.info("Recovered service {} from persisted state {}", service.getName(), path);
+        }
       } finally {
         if (in != null) {
           in.close();
         }
       }
+      nextJournalSeq = Math.max(nextJournalSeq, snapshotJournalSeq + 1);
+      replayJournals(service, snapshotJournalSeq);
+    }
+  }
+
+  /**
+   * Read the sequence number of the last journal included in the persisted state, written after the state.
+   *
+   * @param in the stream of persisted state, positioned after the state
+   * @return the sequence number, -1 if the state was persisted without one
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static long readSnapshotJournalSeq(ObjectInputStream in) throws IOException {
+    try {
+      return in.readLong();
+    } catch (EOFException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Replay journals of the service written since its state was last persisted in full, in the order of writing.
+   * Journals left behind by a crash after the state was persisted are already included in the state, and skipped.
+   *
+   * @param service            the service
+   * @param snapshotJournalSeq sequence number of the last journal included in the persisted state
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  private void replayJournals(BaseLensService service, long snapshotJournalSeq)
+    throws IOException, ClassNotFoundException {
+    int replayed = 0;
+    for (Path journalPath : getJournalPaths(service)) {
+      if (getJournalSeq(journalPath) <= snapshotJournalSeq) {
+        log.info("Skipping journal {} of service {} included in persisted state", journalPath, service.getName());
+        continue;
+      }
+      ObjectInputStream in = new ObjectInputStream(persistenceFS.open(journalPath));
+      try {
+        service.readJournal(in);
+      } finally {
+        in.close();
+      }
+      nextJournalSeq = Math.max(nextJournalSeq, getJournalSeq(journalPath) + 1);
+      replayed++;
+      log.info("Replayed journal {} of service {}", journalPath, service.getName());
     }
+    numJournalsSinceCompaction = Math.max(numJournalsSinceCompaction, replayed);
   }
 
   /**
@@ -349,24 +421,81 @@ public class LensServices extends CompositeService implements ServiceProvider {
     synchronized (statePersistenceLock) {
       log.info("Persisting server state in {}", persistDir);
       String now = "" + System.currentTimeMillis();
+      boolean failed = false;
       for (BaseLensService service : lensServices) {
         try {
           persistState(service, now);
         } catch (Exception e) {
+          failed = true;
           incrCounter(SERVER_STATE_PERSISTENCE_ERRORS);
           log.error("Error while persisting state for service {}", service.getName(), e);
         }
       }
+      // on failure, changes cleared from journal are persisted by retrying at next interval
+      numJournalsSinceCompaction = failed ? serverStateJournalCompactionThreshold : 0;
     }
   }
 
+  /**
+   * Journal changes to the state of services which support it, and persist the state of other services in full. The
+   * state of all services is persisted in full instead, once the number of journals reaches compaction threshold.
+   */
+  private void journalLensServiceState() {
+    synchronized (statePersistenceLock) {
+      if (numJournalsSinceCompaction >= serverStateJournalCompactionThreshold) {
+        persistLensServiceState();
+        return;
+      }
+      log.info("Journaling server state in {}", persistDir);
+      String now = "" + System.currentTimeMillis();
+      long seq = nextJournalSeq++;
+      numJournalsSinceCompaction++;
+      for (BaseLensService service : lensServices) {
+        try {
+          if (service.isStateJournaled()) {
+            journalState(service, seq);
+          } else {
+            persistState(service, now);
+          }
+        } catch (Exception e) {
+          // changes in the failed journal are lost, persist the whole state at next interval
+          numJournalsSinceCompaction = serverStateJournalCompactionThreshold;
+          incrCounter(SERVER_STATE_PERSISTENCE_ERRORS);
+          log.error("Error while journaling state for service {}", service.getName(), e);
+        }
+      }
+    }
+  }
+
+  private void journalState(BaseLensService service, long seq) throws IOException {
+    Path journalWritePath = new Path(persistDir, service.getName() + ".journal.out." + seq);
+    ObjectOutputStream out = null;
+    try {
+      out = new ObjectOutputStream(persistenceFS.create(journalWritePath));
+      service.writeJournal(out);
+    } finally {
+      if (out != null) {
+        out.close();
+      }
+    }
+    Path journalPath = getJournalPath(service, seq);
+    if (!persistenceFS.rename(journalWritePath, journalPath)) {
+      throw new IOException("Failed to rename " + journalWritePath + " to " + journalPath);
+    }
+    log.info("Journaled service {} to [{}]", service.getName(), journalPath);
+  }
+
   private void persistState(BaseLensService service, String time) throws IOException {
     log.info("Persisting state of service: {}", service.getName());
+    // changes from now on are journaled over the state being persisted, in journals after the ones written so far
+    service.clearJournal();
+    long snapshotJournalSeq = nextJournalSeq - 1;
     Path serviceWritePath = new Path(persistDir, service.getName() + ".out" + "." + time);
     ObjectOutputStream out = null;
     try {
       out = new ObjectOutputStream(persistenceFS.create(serviceWritePath));
       service.writeExternal(out);
+      out.writeLong(snapshotJournalSeq);
     } finally {
       if (out != null) {
         out.close();
@@ -382,6 +511,12 @@ public class LensServices extends CompositeService implements ServiceProvider {
     if (!persistenceFS.rename(serviceWritePath, servicePath)) {
       throw new IOException("Failed to rename " + serviceWritePath + " to " + servicePath);
     }
+    // journals included in the new state are skipped on restore, even if the server goes down before deleting them
+    for (Path journalPath : getJournalPaths(service)) {
+      if (getJournalSeq(journalPath) <= snapshotJournalSeq && !persistenceFS.delete(journalPath, false)) {
+        throw new IOException("Failed to delete " + journalPath);
+      }
+    }
     log.info("Persisted service {} to [{}]", service.getName(), servicePath);
   }
 
@@ -395,6 +530,47 @@ public class LensServices extends CompositeService implements ServiceProvider {
     return new Path(persistDir, service.getName() + ".final");
   }
 
+  private Path getJournalPath(BaseLensService service, long seq) {
+    return new Path(persistDir, service.getName() + ".journal." + seq);
+  }
+
+  private static long getJournalSeq(Path journalPath) {
+    String name = journalPath.getName();
+    return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+  }
+
+  /**
+   * Gets the paths of journals of the service, in the order of writing.
+   *
+   * @param service the service
+   * @return the journal paths
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private List<Path> getJournalPaths(BaseLensService service) throws IOException {
+    final String journalPrefix = service.getName() + ".journal.";
+    List<Path> journalPaths = new ArrayList<>();
+    if (!persistenceFS.exists(persistDir)) {
+      return journalPaths;
+    }
+    FileStatus[] statuses = persistenceFS.listStatus(persistDir, new PathFilter() {
+      @Override
+      public boolean accept(Path path) {
+        return path.getName().startsWith(journalPrefix)
+          && StringUtils.isNumeric(path.getName().substring(journalPrefix.length()));
+      }
+    });
+    for (FileStatus status : statuses) {
+      journalPaths.add(status.getPath());
+    }
+    Collections.sort(journalPaths, new Comparator<Path>() {
+      @Override
+      public int compare(Path path1, Path path2) {
+        return Long.compare(getJournalSeq(path1), getJournalSeq(path2));
+      }
+    });
+    return journalPaths;
+  }
+
   /*
    * (non-Javadoc)
    *
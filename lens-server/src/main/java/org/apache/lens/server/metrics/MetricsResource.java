@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.lens.api.query.QueryPhase;
+import org.apache.lens.api.query.QueryPhaseLatency;
+import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.metrics.MetricsService;
+
+/**
+ * The metrics resource
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+  private MetricsService getMetricsService() {
+    return LensServices.get().getService(MetricsService.NAME);
+  }
+
+  /**
+   * Tells whether metrics resource if up or not
+   *
+   * @return message
+   */
+  @GET
+  @Produces(MediaType.TEXT_PLAIN)
+  public String getMessage() {
+    return "Metrics resource is up!";
+  }
+
+  /**
+   * Get latency percentiles of query phases, recorded against drivers and priorities of the queries, and against users
+   * when lens.server.enable.per.user.query.phase.latency is set.
+   *
+   * @param phase     Optional, only latencies of the given phase are returned
+   * @param dimension Optional, only latencies recorded against the given dimension are returned. One of driver, user
+   *                  and priority
+   * @return List of {@link QueryPhaseLatency} objects
+   */
+  @GET
+  @Path("queryphases")
+  @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+  public List<QueryPhaseLatency> getQueryPhaseLatencies(@QueryParam("phase") QueryPhase phase,
+    @QueryParam("dimension") String dimension) {
+    List<QueryPhaseLatency> latencies = new ArrayList<>();
+    for (QueryPhaseLatency latency : getMetricsService().getQueryPhaseLatencies()) {
+      if ((phase == null || phase == latency.getPhase())
+        && (dimension == null || dimension.equalsIgnoreCase(latency.getDimension()))) {
+        latencies.add(latency);
+      }
+    }
+    return latencies;
+  }
+}
@@ -26,8 +26,14 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.lens.api.Priority;
+import org.apache.lens.api.query.QueryPhase;
+import org.apache.lens.api.query.QueryPhaseLatency;
 import org.apache.lens.api.query.QueryStatus.Status;
 import org.apache.lens.server.BaseLensService;
 import org.apache.lens.server.EventServiceImpl;
@@ -65,6 +71,7 @@ import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import info.ganglia.gmetric4j.gmetric.GMetric;
 import info.ganglia.gmetric4j.gmetric.GMetric.UDPAddressingMode;
+import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -87,6 +94,12 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
   @Getter
   private List<ScheduledReporter> reporters;
 
+  /** Whether query phase latencies are recorded per user, which takes a histogram for each user */
+  private boolean enablePerUserQueryPhaseLatency;
+
+  /** The query phase latency histograms, registered with the metric registry as well */
+  private final ConcurrentMap<PhaseLatencyKey, Histogram> phaseLatencies = new ConcurrentHashMap<>();
+
   /** The health check. */
   @Getter
   private HealthCheckRegistry healthCheck;
@@ -249,14 +262,16 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
    */
   @Override
   public synchronized void init(HiveConf hiveConf) {
+    metricRegistry = LensMetricsRegistry.getStaticRegistry();
     queryStatusListener = new AsyncQueryStatusListener();
     sessionEventListener = new AsyncSessionEventListener();
     LensEventService eventService = LensServices.get().getService(LensEventService.NAME);
     eventService.addListenerForType(queryStatusListener, StatusChange.class);
     eventService.addListenerForType(sessionEventListener, SessionEvent.class);
-    metricRegistry = LensMetricsRegistry.getStaticRegistry();
     methodMetricsFactory = new MethodMetricsFactory(metricRegistry);
     setEnableResourceMethodMetering(hiveConf.getBoolean(LensConfConstants.ENABLE_RESOURCE_METHOD_METERING, false));
+    enablePerUserQueryPhaseLatency = hiveConf.getBoolean(LensConfConstants.ENABLE_PER_USER_QUERY_PHASE_LATENCY,
+      LensConfConstants.DEFAULT_ENABLE_PER_USER_QUERY_PHASE_LATENCY);
     healthCheck = new HealthCheckRegistry();
     healthCheck.register(CubeMetastoreService.NAME, new LensServiceHealthCheck(CubeMetastoreService.NAME));
     healthCheck.register(HiveSessionService.NAME, new LensServiceHealthCheck(HiveSessionService.NAME));
@@ -633,4 +648,68 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     return totalSuccessfulQueries.getCount();
   }
 
+  /**
+   * Dimension value against which query phase latencies are recorded.
+   */
+  @Data
+  private static class PhaseLatencyKey {
+    private final QueryPhase phase;
+    private final String dimension;
+    private final String value;
+  }
+
+  private Histogram getPhaseLatencyHistogram(QueryPhase phase, String dimension, String value) {
+    PhaseLatencyKey key = new PhaseLatencyKey(phase, dimension, value);
+    Histogram histogram = phaseLatencies.get(key);
+    if (histogram == null) {
+      histogram = metricRegistry.histogram(MetricRegistry.name(QueryExecutionService.class, "phase-latency",
+        phase.name().toLowerCase(Locale.ENGLISH), dimension, value));
+      Histogram existing = phaseLatencies.putIfAbsent(key, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    return histogram;
+  }
+
+  @Override
+  public void updateQueryPhaseLatency(QueryPhase phase, String driver, String user, Priority priority,
+    long latencyMillis) {
+    if (driver != null) {
+      getPhaseLatencyHistogram(phase, "driver", driver).update(latencyMillis);
+    }
+    if (user != null && enablePerUserQueryPhaseLatency) {
+      getPhaseLatencyHistogram(phase, "user", user).update(latencyMillis);
+    }
+    if (priority != null) {
+      getPhaseLatencyHistogram(phase, "priority", priority.name()).update(latencyMillis);
+    }
+  }
+
+  @Override
+  public List<QueryPhaseLatency> getQueryPhaseLatencies() {
+    List<QueryPhaseLatency> latencies = new ArrayList<>(phaseLatencies.size());
+    for (Map.Entry<PhaseLatencyKey, Histogram> entry : phaseLatencies.entrySet()) {
+      PhaseLatencyKey key = entry.getKey();
+      Snapshot snapshot = entry.getValue().getSnapshot();
+      latencies.add(new QueryPhaseLatency(key.getPhase(), key.getDimension(), key.getValue(),
+        entry.getValue().getCount(), snapshot.getMin(), snapshot.getMean(), snapshot.getMedian(),
+        snapshot.get75thPercentile(), snapshot.get95thPercentile(), snapshot.get99thPercentile(),
+        snapshot.get999thPercentile(), snapshot.getMax()));
+    }
+    return latencies;
+  }
+
+  @Override
+  public synchronized void registerEventListener(AsyncEventListener<?> listener) {
+    final String prefix = MetricRegistry.name(LensEventService.class, listener.getName());
+    metricRegistry.removeMatching(new MetricFilter() {
+      @Override
+      public boolean matches(String name, Metric metric) {
+        return name.startsWith(prefix + ".");
+      }
+    });
+    metricRegistry.register(prefix, listener.getMetrics());
+  }
+
 }
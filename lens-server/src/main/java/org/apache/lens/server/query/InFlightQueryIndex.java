@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.util.UtilityMethods;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.hadoop.conf.Configuration;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Server wide index of queries which have been submitted and have not finished yet.
+ *
+ * Queries are indexed by a fingerprint of the normalized user query, the current database and the hash of the
+ * effective query conf, so that an identical query submitted from any session can attach to the running one instead
+ * of being executed again. Identity of the submitting user is left out of the conf hash, whether a query may share
+ * another is decided by the caller. Only the first of identical queries, the leader, is indexed. Leaders are indexed
+ * before they are rewritten, so that identical queries submitted meanwhile wait for the leader to be submitted.
+ */
+@Slf4j
+public class InFlightQueryIndex {
+
+  /**
+   * A leader query and its submission, which completes with the query handle once the query is submitted, or
+   * exceptionally if the submission fails.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  static class InFlightQuery {
+    private final QueryContext query;
+    private final CompletableFuture<QueryHandle> submission = new CompletableFuture<>();
+  }
+
+  /** Leader queries keyed by fingerprint */
+  private final ConcurrentMap<String, InFlightQuery> leaders = new ConcurrentHashMap<>();
+
+  /** Fingerprints of leader queries, to remove them from index */
+  private final ConcurrentMap<QueryHandle, String> fingerprints = new ConcurrentHashMap<>();
+
+  /**
+   * Index the query as leader, if no identical query is in flight already. Done before the query is rewritten.
+   *
+   * @param ctx the query, which has its conf set
+   * @return the identical query in flight, null if the query got indexed or can't be indexed
+   */
+  InFlightQuery register(QueryContext ctx) {
+    if (ctx.getQueryConfHash() == null || ctx.finished()) {
+      return null;
+    }
+    String fingerprint = getFingerprint(ctx);
+    InFlightQuery inFlightQuery = new InFlightQuery(ctx);
+    while (true) {
+      InFlightQuery leader = leaders.putIfAbsent(fingerprint, inFlightQuery);
+      if (leader == null) {
+        fingerprints.put(ctx.getQueryHandle(), fingerprint);
+        log.debug("Indexed {} as in-flight query", ctx.getQueryHandleString());
+        return null;
+      }
+      if (!leader.getQuery().finished()) {
+        return leader;
+      }
+      // query finished before it got removed
+      leaders.remove(fingerprint, leader);
+    }
+  }
+
+  /**
+   * Mark the leader query submitted, so that identical queries waiting for it can share it.
+   *
+   * @param ctx the submitted query
+   */
+  void submitted(QueryContext ctx) {
+    InFlightQuery inFlightQuery = get(ctx);
+    if (inFlightQuery != null) {
+      inFlightQuery.getSubmission().complete(ctx.getQueryHandle());
+    }
+  }
+
+  /**
+   * Remove the leader query whose submission failed. Identical queries waiting for it are failed as well, so that
+   * they can take its place.
+   *
+   * @param ctx   the query
+   * @param cause the failure
+   */
+  void failed(QueryContext ctx, Throwable cause) {
+    InFlightQuery inFlightQuery = get(ctx);
+    if (inFlightQuery != null) {
+      inFlightQuery.getSubmission().completeExceptionally(cause);
+    }
+    remove(ctx);
+  }
+
+  /**
+   * Index a submitted query, like a query restored on restart, as leader if no identical query is in flight already.
+   *
+   * @param ctx the submitted query
+   * @return true if the query got indexed
+   */
+  boolean add(QueryContext ctx) {
+    if (ctx.getQueryConfHash() == null || ctx.finished() || register(ctx) != null) {
+      return false;
+    }
+    submitted(ctx);
+    return true;
+  }
+
+  /**
+   * Remove the query from index, if it is indexed as leader. Identical queries waiting for the query to be submitted
+   * share it, as a query can finish while being submitted, like when served from result cache.
+   *
+   * @param ctx the finished query
+   */
+  void remove(QueryContext ctx) {
+    InFlightQuery inFlightQuery = get(ctx);
+    String fingerprint = fingerprints.remove(ctx.getQueryHandle());
+    if (inFlightQuery != null) {
+      leaders.remove(fingerprint, inFlightQuery);
+      inFlightQuery.getSubmission().complete(ctx.getQueryHandle());
+    }
+  }
+
+  private InFlightQuery get(QueryContext ctx) {
+    String fingerprint = fingerprints.get(ctx.getQueryHandle());
+    InFlightQuery inFlightQuery = fingerprint == null ? null : leaders.get(fingerprint);
+    return inFlightQuery != null && inFlightQuery.getQuery() == ctx ? inFlightQuery : null;
+  }
+
+  @VisibleForTesting
+  int size() {
+    return leaders.size();
+  }
+
+  private static String getFingerprint(QueryContext ctx) {
+    return getFingerprint(ctx.getUserQuery(), ctx.getDatabase(), getSharedConfHash(ctx.getConf()));
+  }
+
+  @VisibleForTesting
+  static String getFingerprint(String query, String database, byte[] confHash) {
+    return normalize(query) + '\n' + database + '\n' + (confHash == null ? "" : Hex.encodeHexString(confHash));
+  }
+
+  /**
+   * Hash of the query conf without the users of the session, which are the same for identical queries only if they
+   * are submitted by the same user.
+   */
+  @VisibleForTesting
+  static byte[] getSharedConfHash(Configuration conf) {
+    Configuration sharedConf = new Configuration(conf);
+    sharedConf.unset(LensConfConstants.SESSION_LOGGEDIN_USER);
+    sharedConf.unset(LensConfConstants.SESSION_CLUSTER_USER);
+    return UtilityMethods.generateHashOfWritable(sharedConf);
+  }
+
+  /**
+   * Normalize the query by lower casing it and collapsing white spaces outside quoted literals, and dropping
+   * trailing semicolons.
+   *
+   * @param query the query
+   * @return the normalized query
+   */
+  @VisibleForTesting
+  static String normalize(String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    char quote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        normalized.append(c);
+        if (c == '\\' && i + 1 < query.length()) {
+          normalized.append(query.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (Character.isWhitespace(c)) {
+        pendingSpace = normalized.length() > 0;
+      } else {
+        if (pendingSpace) {
+          normalized.append(' ');
+          pendingSpace = false;
+        }
+        if (c == '\'' || c == '"') {
+          quote = c;
+        }
+        normalized.append(Character.toLowerCase(c));
+      }
+    }
+    int end = normalized.length();
+    while (end > 0 && (normalized.charAt(end - 1) == ';' || normalized.charAt(end - 1) == ' ')) {
+      end--;
+    }
+    normalized.setLength(end);
+    return normalized.toString();
+  }
+}
@@ -19,10 +19,9 @@
 package org.apache.lens.server.query;
 
 import java.nio.charset.Charset;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -38,6 +37,7 @@ import org.apache.lens.server.util.UtilityMethods;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.dbutils.*;
 import org.apache.commons.dbutils.handlers.BeanHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 
@@ -99,6 +99,11 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.warn("Unable to create finished queries table", e);
     }
+    createIndex("finished_queries_submitter_idx", "finished_queries", "submitter, submissiontime");
+    createIndex("finished_queries_status_idx", "finished_queries", "status, submissiontime");
+    createIndex("finished_queries_submissiontime_idx", "finished_queries", "submissiontime");
+    createIndex("finished_queries_drivername_idx", "finished_queries", "drivername");
+    createIndex("finished_queries_queryname_idx", "finished_queries", "queryname");
   }
   public void createFailedAttemptsTable() throws Exception {
     String sql = "CREATE TABLE if not exists failed_attempts (handle varchar(255) not null,"
@@ -111,8 +116,66 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.error("Unable to create failed_attempts table", e);
     }
+    createIndex("failed_attempts_handle_idx", "failed_attempts", "handle");
   }
 
+  /**
+   * Create index on the table, if it doesn't exist already.
+   *
+   * @param name    the index name
+   * @param table   the table name
+   * @param columns comma separated columns to be indexed
+   */
+  private void createIndex(String name, String table, String columns) {
+    try {
+      // Most databases don't support 'if not exists' for indexes
+      if (indexExists(name, table)) {
+        log.debug("Index {} on {} exists already", name, table);
+        return;
+      }
+      QueryRunner runner = new QueryRunner(ds);
+      runner.update("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+      log.info("Created index {} on {}", name, table);
+    } catch (SQLException e) {
+      log.warn("Unable to create index {} on {}", name, table, e);
+    }
+  }
+
+  /**
+   * Whether the index exists on the table. Table name is looked up as given, and in upper and lower case, as
+   * databases differ in the case they keep unquoted names in.
+   *
+   * @param name  the index name
+   * @param table the table name
+   * @return true if the index exists
+   * @throws SQLException the SQL exception
+   */
+  boolean indexExists(String name, String table) throws SQLException {
+    try (Connection conn = getConnection()) {
+      DatabaseMetaData metaData = conn.getMetaData();
+      for (String tableName : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, true)) {
+          while (indexes.next()) {
+            if (name.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static final String INSERT_FINISHED_QUERY_SQL = "insert into finished_queries (handle, userquery, "
+    + "submitter, priority, starttime,endtime,result,status,metadata,rows,filesize,"
+    + "errormessage,driverstarttime,driverendtime, drivername, queryname, submissiontime, driverquery, conf, "
+    + "numfailedattempts)"
+    + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+  private static final String INSERT_FAILED_ATTEMPT_SQL = "insert into failed_attempts(handle, attempt_number, "
+    + "drivername, progress, progressmessage, errormessage, driverstarttime, driverendtime) "
+    + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
   /**
    * DAO method to insert a new Finished query into Table.
    *
@@ -120,35 +183,14 @@ public class LensServerDAO {
    * @throws SQLException the exception
    */
   public void insertFinishedQuery(FinishedLensQuery query) throws SQLException {
-    FinishedLensQuery alreadyExisting = getQuery(query.getHandle());
-    if (alreadyExisting == null) {
-      // The expected case
-      String sql = "insert into finished_queries (handle, userquery, submitter, priority, "
-        + "starttime,endtime,result,status,metadata,rows,filesize,"
-        + "errormessage,driverstarttime,driverendtime, drivername, queryname, submissiontime, driverquery, conf, "
-        + "numfailedattempts)"
-        + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-      Connection conn = null;
-      try {
-        conn = getConnection();
-        conn.setAutoCommit(false);
-        QueryRunner runner = new QueryRunner();
-        runner.update(conn, sql, query.getHandle(), query.getUserQuery(), query.getSubmitter(), query.getPriority(),
-            query.getStartTime(), query.getEndTime(), query.getResult(), query.getStatus(), query.getMetadata(),
-            query.getRows(), query.getFileSize(), query.getErrorMessage(), query.getDriverStartTime(),
-            query.getDriverEndTime(), query.getDriverName(), query.getQueryName(), query.getSubmissionTime(),
-            query.getDriverQuery(), serializeConf(query.getConf()),
-            query.getFailedAttempts() == null ? 0 : query.getFailedAttempts().size());
-        if (query.getFailedAttempts() != null) {
-          for (int i = 0; i < query.getFailedAttempts().size(); i++) {
-            insertFailedAttempt(runner, conn, query.getHandle(), query.getFailedAttempts().get(i), i);
-          }
-        }
-        conn.commit();
-      } finally {
-        DbUtils.closeQuietly(conn);
+    try {
+      // The expected case. Unique handle column detects re-inserts, so there is no need to look the query up first
+      insertFinishedQueries(Collections.singletonList(query));
+    } catch (SQLException e) {
+      FinishedLensQuery alreadyExisting = isIntegrityConstraintViolation(e) ? getQuery(query.getHandle()) : null;
+      if (alreadyExisting == null) {
+        throw e;
       }
-    } else {
       log.warn("Re insert happening in purge: " + Thread.currentThread().getStackTrace());
       if (alreadyExisting.equals(query)) {
         // This is also okay
@@ -160,6 +202,80 @@ public class LensServerDAO {
       }
     }
   }
+
+  /**
+   * DAO method to insert a batch of finished queries along with their failed attempts, in a single transaction.
+   *
+   * @param queries to be inserted
+   * @throws SQLException if any of the queries could not be inserted. None of the queries are inserted in that case.
+   */
+  public void insertFinishedQueries(List<FinishedLensQuery> queries) throws SQLException {
+    if (queries.isEmpty()) {
+      return;
+    }
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      conn.setAutoCommit(false);
+      QueryRunner runner = new QueryRunner();
+      try (PreparedStatement queryStmt = conn.prepareStatement(INSERT_FINISHED_QUERY_SQL);
+           PreparedStatement attemptStmt = conn.prepareStatement(INSERT_FAILED_ATTEMPT_SQL)) {
+        int numAttempts = 0;
+        for (FinishedLensQuery query : queries) {
+          runner.fillStatement(queryStmt, query.getHandle(), query.getUserQuery(), query.getSubmitter(),
+            query.getPriority(), query.getStartTime(), query.getEndTime(), query.getResult(), query.getStatus(),
+            query.getMetadata(), query.getRows(), query.getFileSize(), query.getErrorMessage(),
+            query.getDriverStartTime(), query.getDriverEndTime(), query.getDriverName(), query.getQueryName(),
+            query.getSubmissionTime(), query.getDriverQuery(), serializeConf(query.getConf()),
+            query.getFailedAttempts() == null ? 0 : query.getFailedAttempts().size());
+          queryStmt.addBatch();
+          if (query.getFailedAttempts() != null) {
+            for (int i = 0; i < query.getFailedAttempts().size(); i++) {
+              FailedAttempt attempt = query.getFailedAttempts().get(i);
+              runner.fillStatement(attemptStmt, query.getHandle(), i, attempt.getDriverName(), attempt.getProgress(),
+                attempt.getProgressMessage(), attempt.getErrorMessage(), attempt.getDriverStartTime(),
+                attempt.getDriverFinishTime());
+              attemptStmt.addBatch();
+              numAttempts++;
+            }
+          }
+        }
+        queryStmt.executeBatch();
+        if (numAttempts > 0) {
+          attemptStmt.executeBatch();
+        }
+      }
+      conn.commit();
+    } catch (SQLException e) {
+      if (conn != null) {
+        try {
+          conn.rollback();
+        } catch (SQLException re) {
+          log.warn("Couldn't rollback insert of finished queries", re);
+        }
+      }
+      throw e;
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
+  }
+
+  /**
+   * Whether the exception is caused by violation of an integrity constraint, like inserting a duplicate key.
+   *
+   * @param e the exception
+   * @return true if integrity constraint is violated
+   */
+  static boolean isIntegrityConstraintViolation(SQLException e) {
+    for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+      if (cause instanceof SQLIntegrityConstraintViolationException
+        || (cause.getSQLState() != null && cause.getSQLState().startsWith("23"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * DAO method to insert a new Finished query into Table.
    *
@@ -171,9 +287,7 @@ public class LensServerDAO {
    */
   public void insertFailedAttempt(QueryRunner runner, Connection conn, String handle, FailedAttempt attempt, int index)
     throws SQLException {
-    String sql = "insert into failed_attempts(handle, attempt_number, drivername, progress, progressmessage, "
-      + "errormessage, driverstarttime, driverendtime) values (?, ?, ?, ?, ?, ?, ?, ?)";
-    runner.update(conn, sql, handle, index, attempt.getDriverName(),
+    runner.update(conn, INSERT_FAILED_ATTEMPT_SQL, handle, index, attempt.getDriverName(),
       attempt.getProgress(), attempt.getProgressMessage(), attempt.getErrorMessage(),
       attempt.getDriverStartTime(), attempt.getDriverFinishTime());
   }
@@ -214,6 +328,24 @@ public class LensServerDAO {
         Charset.defaultCharset()), LensConf.class);
   }
 
+  /**
+   * Fetch submission time of finished query from Database.
+   *
+   * @param handle the query handle
+   * @return submission time of the query, null if the query is not found
+   * @throws LensException the lens exception
+   */
+  public Long getSubmissionTime(String handle) throws LensException {
+    QueryRunner runner = new QueryRunner(ds);
+    try {
+      Number submissionTime = runner.query("select submissiontime from finished_queries where handle=?",
+        new ScalarHandler<Number>(), handle);
+      return submissionTime == null ? null : submissionTime.longValue();
+    } catch (SQLException e) {
+      throw new LensException(e);
+    }
+  }
+
   /**
    * Fetch Finished query from Database.
    *
@@ -276,6 +408,13 @@ public class LensServerDAO {
     }
   }
 
+  /**
+   * Columns of finished_queries needed to list queries. Excludes the large columns, and the conf, which would
+   * otherwise be deserialized for every query.
+   */
+  private static final String SUMMARY_COLUMNS = "handle, userquery, submitter, priority, starttime, endtime, "
+    + "result, status, errormessage, driverstarttime, driverendtime, drivername, queryname, submissiontime";
+
   /**
    * Find finished queries.
    *
@@ -290,9 +429,32 @@ public class LensServerDAO {
    */
   public List<FinishedLensQuery> findFinishedQueryDetails(List<QueryStatus.Status> states, String user,
     String driverName, String queryName, long fromDate, long toDate) throws LensException {
+    return findFinishedQueryDetails(states, user, driverName, queryName, fromDate, toDate, false, null, 0);
+  }
+
+  /**
+   * Find a page of finished queries, ordered by submission time and handle, latest first.
+   *
+   * @param states     the state
+   * @param user       the user
+   * @param driverName the driver's fully qualified Name
+   * @param queryName  the query name
+   * @param fromDate   the from date
+   * @param toDate     the to date
+   * @param summary    whether to fetch only the summary fields. Conf, driver query, result metadata and failed
+   *                   attempts are not fetched in that case
+   * @param after      the query after which the page starts, null for the first page
+   * @param pageSize   maximum number of queries to return, all queries are returned if not positive
+   * @return the list
+   * @throws LensException the lens exception
+   */
+  public List<FinishedLensQuery> findFinishedQueryDetails(List<QueryStatus.Status> states, String user,
+    String driverName, String queryName, long fromDate, long toDate, boolean summary, QueryCursor after,
+    int pageSize) throws LensException {
     ResultSetHandler<FinishedLensQuery> handler = new NestedResultHandler<>(FinishedLensQuery.class,
         new BasicRowProcessor(new FinishedLensQueryBeanProcessor()));
-    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, "*");
+    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler,
+      summary ? SUMMARY_COLUMNS : "*", after, pageSize);
   }
 
   /**
@@ -311,11 +473,12 @@ public class LensServerDAO {
     String queryName, long fromDate, long toDate) throws LensException {
 
     ResultSetHandler<QueryHandle> handler = new QueryHandleNestedHandler();
-    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, "handle");
+    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, "handle", null, 0);
   }
 
   private <T> List<T> findInternal(List<QueryStatus.Status> states, String user, String driverName, String queryName,
-    long fromDate, long toDate, final ResultSetHandler<T> handler, String projection) throws LensException {
+    long fromDate, long toDate, final ResultSetHandler<T> handler, String projection, QueryCursor after,
+    int pageSize) throws LensException {
     StringBuilder builder = new StringBuilder("SELECT " + projection + " FROM finished_queries");
     List<Object> params = new ArrayList<>(3);
     builder.append(" WHERE ");
@@ -350,7 +513,17 @@ public class LensServerDAO {
     filters.add("submissiontime BETWEEN ? AND ?");
     params.add(fromDate);
     params.add(toDate);
+
+    if (after != null) {
+      filters.add("(submissiontime < ? OR (submissiontime = ? AND handle < ?))");
+      params.add(after.getSubmissionTime());
+      params.add(after.getSubmissionTime());
+      params.add(after.getHandle());
+    }
     builder.append(StringUtils.join(filters, " AND "));
+    if (after != null || pageSize > 0) {
+      builder.append(" ORDER BY submissiontime DESC, handle DESC");
+    }
 
     ResultSetHandler<List<T>> resultSetHandler = new ResultSetHandler<List<T>>() {
       @Override
@@ -367,12 +540,23 @@ public class LensServerDAO {
       }
     };
 
-    QueryRunner runner = new QueryRunner(ds);
-    String query = builder.toString();
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet resultSet = null;
     try {
-      return runner.query(query, resultSetHandler, params.toArray());
+      conn = getConnection();
+      stmt = conn.prepareStatement(builder.toString());
+      if (pageSize > 0) {
+        // Limit through JDBC, since the SQL syntax to limit rows differs across databases
+        stmt.setMaxRows(pageSize);
+      }
+      new QueryRunner().fillStatement(stmt, params.toArray());
+      resultSet = stmt.executeQuery();
+      return resultSetHandler.handle(resultSet);
     } catch (SQLException e) {
       throw new LensException(e);
+    } finally {
+      DbUtils.closeQuietly(conn, stmt, resultSet);
     }
   }
 
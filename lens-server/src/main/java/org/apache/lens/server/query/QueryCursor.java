@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.Comparator;
+
+import org.apache.lens.api.query.LensQuery;
+
+import lombok.Data;
+
+/**
+ * Position of a query in query listing, which is ordered by submission time and query handle, latest first. A page
+ * of queries starting after the cursor is looked up through indexes, instead of skipping the previous pages.
+ */
+@Data
+public class QueryCursor {
+
+  /**
+   * Listing order of queries.
+   */
+  public static final Comparator<LensQuery> LISTING_ORDER = new Comparator<LensQuery>() {
+    @Override
+    public int compare(LensQuery q1, LensQuery q2) {
+      int cmp = Long.compare(q2.getSubmissionTime(), q1.getSubmissionTime());
+      return cmp != 0 ? cmp : q2.getQueryHandle().toString().compareTo(q1.getQueryHandle().toString());
+    }
+  };
+
+  private final long submissionTime;
+  private final String handle;
+
+  /**
+   * Whether the query comes after the cursor in listing order.
+   *
+   * @param query the query
+   * @return true if the query comes after the cursor
+   */
+  public boolean isBefore(LensQuery query) {
+    return query.getSubmissionTime() < submissionTime
+      || (query.getSubmissionTime() == submissionTime && query.getQueryHandle().toString().compareTo(handle) < 0);
+  }
+}
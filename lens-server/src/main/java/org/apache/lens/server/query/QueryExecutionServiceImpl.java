@@ -27,17 +27,16 @@ import static org.apache.lens.server.session.LensSessionImpl.ResourceEntry;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.LensSessionHandle;
@@ -45,6 +44,7 @@ import org.apache.lens.api.Priority;
 import org.apache.lens.api.error.ErrorCollection;
 import org.apache.lens.api.query.*;
 import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.cube.metadata.DateUtil;
 import org.apache.lens.driver.hive.HiveDriver;
 import org.apache.lens.server.BaseLensService;
@@ -75,18 +75,18 @@ import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
 import org.apache.lens.server.query.collect.*;
 import org.apache.lens.server.query.constraint.DefaultQueryLaunchingConstraintsChecker;
 import org.apache.lens.server.query.constraint.QueryLaunchingConstraintsChecker;
+import org.apache.lens.server.query.cursor.ResultCursor;
+import org.apache.lens.server.query.cursor.ResultCursorStore;
 import org.apache.lens.server.rewrite.RewriteUtil;
 import org.apache.lens.server.rewrite.UserQueryToCubeQueryRewriter;
 import org.apache.lens.server.session.LensSessionImpl;
 import org.apache.lens.server.stats.StatisticsService;
-import org.apache.lens.server.util.FairPriorityBlockingQueue;
 import org.apache.lens.server.util.UtilityMethods;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -138,6 +138,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   public static final String PREPARED_QUERY_PURGER_COUNTER = "prepared-query-purger-errors";
 
+  /**
+   * The Constant QUERY_RESULT_CACHE_HITS_COUNTER.
+   */
+  public static final String QUERY_RESULT_CACHE_HITS_COUNTER = "query-result-cache-hits";
+
   /**
    * The millis in week.
    */
@@ -151,7 +156,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   /**
    * The accepted queries.
    */
-  private FairPriorityBlockingQueue<QueryContext> queuedQueries;
+  private QueryQueue queuedQueries;
 
   /**
    * The launched queries.
@@ -184,6 +189,23 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   protected final ConcurrentMap<QueryHandle, QueryContext> allQueries = new ConcurrentHashMap<>();
 
+  /**
+   * Queries added, changed or removed since they were last journaled.
+   */
+  private final Set<QueryHandle> changedQueries = Collections.newSetFromMap(
+    new ConcurrentHashMap<QueryHandle, Boolean>());
+
+  /**
+   * Finished queries recovered on restart, which are yet to be restored. They are kept out of allQueries until
+   * restored, as their conf is not set.
+   */
+  private final ConcurrentMap<QueryHandle, QueryContext> unrestoredQueries = new ConcurrentHashMap<>();
+
+  /**
+   * Pool restoring queries on restart.
+   */
+  private ExecutorService queryRestorePool;
+
   /**
    * The conf.
    */
@@ -195,6 +217,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private boolean isDuplicateQueryAllowed;
 
+  /**
+   * Index of queries not completed yet, to look up duplicate queries across sessions. Null when duplicate queries are
+   * allowed or looked up only in the same session.
+   */
+  private InFlightQueryIndex inFlightQueryIndex;
+
+  /**
+   * Callbacks of clients waiting for status change of queries.
+   */
+  private final QueryStatusWatcher statusWatcher = new QueryStatusWatcher();
+
   /**
    * The query submitter runnable.
    */
@@ -205,17 +238,97 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   protected Thread querySubmitter;
 
+  /**
+   * Submitters of queued queries of each driver, when queries are submitted per driver. Empty otherwise. Queries of a
+   * driver without a submitter of its own are submitted by {@link #querySubmitterRunnable}.
+   */
+  private Map<LensDriver, QuerySubmitter> driverQuerySubmitters = Collections.emptyMap();
+
+  /**
+   * Threads running {@link #driverQuerySubmitters}.
+   */
+  private final List<Thread> driverQuerySubmitterThreads = new ArrayList<>();
+
+  /**
+   * Cache of results of OLAP queries shared across sessions. Null when result caching is disabled.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  @Setter(AccessLevel.PACKAGE)
+  @VisibleForTesting
+  private QueryResultCache queryResultCache;
+
+  /**
+   * Cache of rewrites and estimates of user queries shared across sessions. Null when rewrite caching is disabled.
+   */
+  private QueryRewriteCache queryRewriteCache;
+
+  /**
+   * Number of queries removed from launched queries so far. Submitters which don't hold
+   * {@link #removalFromLaunchedQueriesLock} use this to find out whether a launched query got removed while they were
+   * deciding to add a query to waiting queries.
+   */
+  private final AtomicLong launchedQueriesRemovals = new AtomicLong();
+
+  /**
+   * Locks held by submitters while checking launch constraints of a query and adding it to launched queries, one for
+   * each driver, so that a slow launch decision for one driver doesn't hold up launches on other drivers. Constraints
+   * on queries of a user across drivers are checked atomically with adding the query to launched queries instead.
+   */
+  private final ConcurrentMap<LensDriver, Object> driverLaunchLocks = new ConcurrentHashMap<>();
+
+  /**
+   * Queue of the submitter each queued query has been added to. Selected driver of a queued query can change, while
+   * the query has to be removed from the queue it was added to.
+   */
+  private final ConcurrentMap<QueryHandle, QueryQueue> queuedQueriesQueues = new ConcurrentHashMap<>();
+
   private final AsyncStatusUpdater asyncStatusUpdater = new AsyncStatusUpdater();
   /**
    * The status poller.
    */
   private final Thread statusPoller = new Thread(new StatusPoller(), "StatusPoller");
 
+  /**
+   * Status polls of launched queries, ordered by the time at which they are due.
+   */
+  private final DelayQueue<StatusPollRequest> statusPollQueue = new DelayQueue<>();
+
+  /**
+   * The latest status poll scheduled for each launched query. Any other request for the query found in
+   * statusPollQueue is stale and is ignored.
+   */
+  private final ConcurrentMap<QueryHandle, StatusPollRequest> scheduledStatusPolls = new ConcurrentHashMap<>();
+
+  /**
+   * Thread pool used for polling status of queries which are due for a status poll.
+   */
+  private ExecutorService statusPollerPool;
+
+  /**
+   * Maximum number of queries of a driver polled for status together.
+   */
+  private int statusPollBatchSize;
+
   /**
    * The query purger.
    */
   private final Thread queryPurger = new Thread(new QueryPurger(), "QueryPurger");
 
+  /**
+   * The finished query persister, persisting queries handed off by the query purger in batches.
+   */
+  private final Thread finishedQueryPersister = new Thread(new FinishedQueryPersister(), "FinishedQueryPersister");
+
+  /**
+   * Purgeable queries handed off by the query purger to the finished query persister.
+   */
+  private BlockingQueue<FinishedQuery> purgeableQueries;
+
+  /**
+   * Maximum number of finished queries persisted in a single transaction.
+   */
+  private int purgeBatchSize;
+
   /**
    * The query expiry thread which cancels timedout queries.
    */
@@ -290,6 +403,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private ExecutorService queryCancellationPool;
 
+  /**
+   * The pool running steps of queries executed with timeout, as the queries reach the status each step waits for.
+   */
+  private ScheduledExecutorService timedExecutionPool;
+
   private final LogSegregationContext logSegregationContext;
 
   private final ErrorCollection errorCollection = LensServices.get().getErrorCollection();
@@ -319,6 +437,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   @Setter
   private long inMemoryResultsetTTLMillis;
 
+  /**
+   * Store of cursors buffering in memory results, null if result cursors are disabled.
+   */
+  private ResultCursorStore resultCursorStore;
+
   /**
    * The driver event listener.
    */
@@ -371,6 +494,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   }
 
   private void initializeListeners() {
+    getEventService().addListenerForType(statusWatcher, StatusChange.class);
     if (conf.getBoolean(QUERY_STATE_LOGGER_ENABLED, true)) {
       getEventService().addListenerForType(new QueryStatusLogger(), StatusChange.class);
       log.info("Registered query state logger");
@@ -421,6 +545,34 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Creates a queue for accepted queries, of the configured class.
+   */
+  private QueryQueue createQueryQueue() {
+    Class<? extends QueryQueue> queueClass = conf.getClass(QUERY_QUEUE_CLASS, FairPriorityQueryQueue.class,
+      QueryQueue.class);
+    try {
+      return queueClass.getConstructor(Comparator.class, Configuration.class).newInstance(queryComparator, conf);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create query queue of class " + queueClass.getName(), e);
+    }
+  }
+
+  /**
+   * Creates a queue and a submitter for queued queries of each driver.
+   */
+  private void initDriverQuerySubmitters() {
+    Map<LensDriver, QuerySubmitter> submitters = new HashMap<>();
+    for (LensDriver driver : drivers.values()) {
+      QuerySubmitter submitter = new QuerySubmitter(createQueryQueue(), this.waitingQueries,
+        this.queryConstraintsChecker, false);
+      submitters.put(driver, submitter);
+      driverQuerySubmitterThreads.add(new Thread(submitter, "QuerySubmitter-" + driver.getFullyQualifiedName()));
+    }
+    this.driverQuerySubmitters = Collections.unmodifiableMap(submitters);
+    log.info("Queued queries will be submitted per driver, by {} submitters", submitters.size());
+  }
+
   /**
    * Loads drivers for the configured Driver types in lens-site.xml
    *
@@ -512,6 +664,38 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     return metricsService;
   }
 
+  /**
+   * Move the query to the given phase, recording the latency of the phase it was in.
+   *
+   * @param ctx   the query context
+   * @param phase the phase
+   */
+  private void startQueryPhase(QueryContext ctx, QueryPhase phase) {
+    recordPhaseLatency(ctx, ctx.startPhase(phase, System.currentTimeMillis()));
+  }
+
+  /**
+   * End the phase the query is in, recording its latency.
+   *
+   * @param ctx the query context
+   */
+  private void endQueryPhase(QueryContext ctx) {
+    recordPhaseLatency(ctx, ctx.endPhase(System.currentTimeMillis()));
+  }
+
+  private void recordPhaseLatency(QueryContext ctx, QueryPhaseTime phaseTime) {
+    if (phaseTime == null) {
+      return;
+    }
+    try {
+      String driver = ctx.getSelectedDriver() == null ? null : ctx.getSelectedDriver().getFullyQualifiedName();
+      getMetrics().updateQueryPhaseLatency(phaseTime.getPhase(), driver, ctx.getSubmittedUser(), ctx.getPriority(),
+        phaseTime.getDurationMillis());
+    } catch (Exception e) {
+      log.warn("Couldn't record latency of phase {} for query {}", phaseTime.getPhase(), ctx.getQueryHandle(), e);
+    }
+  }
+
   private StatisticsService getStatisticsService() {
     if (statisticsService == null) {
       statisticsService = LensServices.get().getService(StatisticsService.STATS_SVC_NAME);
@@ -580,6 +764,8 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     private LensResultSet driverRS;
 
+    private boolean driverRSFetched;
+
     /**
      * Instantiates a new finished query.
      *
@@ -593,26 +779,45 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       } else {
         this.finishTime = new Date(ctx.getEndTime());
       }
-      if (ctx.isResultAvailableInDriver()) {
-        try {
-          driverRS = ctx.getSelectedDriver().fetchResultSet(getCtx());
-        } catch (Exception e) {
-          log.error(
-            "Error while getting result set form driver {}. Driver result set based purging logic will be ignored",
-            ctx.getSelectedDriver(), e);
+    }
+
+    /**
+     * Get the driver result set, fetching it from driver on first access.
+     *
+     * @return the driver result set, null if result is not available in driver
+     */
+    private synchronized LensResultSet getDriverRS() {
+      if (!driverRSFetched) {
+        driverRSFetched = true;
+        if (ctx.isResultAvailableInDriver()) {
+          try {
+            driverRS = ctx.getSelectedDriver().fetchResultSet(getCtx());
+          } catch (Exception e) {
+            log.error(
+              "Error while getting result set form driver {}. Driver result set based purging logic will be ignored",
+              ctx.getSelectedDriver(), e);
+          }
         }
       }
+      return driverRS;
     }
+
     public boolean canBePurged() {
       try {
         if (getCtx().getStatus().getStatus().equals(SUCCESSFUL) && getCtx().getStatus().isResultSetAvailable()) {
           LensResultSet serverRS = getResultset();
+          LensResultSet driverResultSet = getDriverRS();
           log.info("Server Resultset for {} is {}", getQueryHandle(), serverRS.getClass().getSimpleName());
+          // driver result read through a cursor is purged along with the cursor
+          if (serverRS instanceof ResultCursor) {
+            return serverRS.canBePurged() || hasResultSetExceededTTL(serverRS);
+          }
           // driverRS and serverRS will not match when server persistence is enabled. Check for purgability of both
           // result sets in this case
-          if (driverRS != null && driverRS != serverRS) {
-            log.info("Driver Resultset for {} is {}", getQueryHandle(), driverRS.getClass().getSimpleName());
-            return serverRS.canBePurged() && (driverRS.canBePurged() || hasResultSetExceededTTL(driverRS));
+          if (driverResultSet != null && driverResultSet != serverRS) {
+            log.info("Driver Resultset for {} is {}", getQueryHandle(), driverResultSet.getClass().getSimpleName());
+            return serverRS.canBePurged()
+              && (driverResultSet.canBePurged() || hasResultSetExceededTTL(driverResultSet));
           } else {
             return serverRS.canBePurged() || hasResultSetExceededTTL(serverRS);
           }
@@ -672,15 +877,31 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
      */
     private boolean pausedForTest = false;
 
+    /**
+     * Queued queries submitted by this submitter
+     */
+    private final QueryQueue queue;
+
     private final EstimatedQueryCollection waitingQueries;
 
     private final QueryLaunchingConstraintsChecker constraintsChecker;
 
-    public QuerySubmitter(@NonNull final EstimatedQueryCollection waitingQueries,
-                          @NonNull final QueryLaunchingConstraintsChecker constraintsChecker) {
+    /**
+     * Whether this submitter holds {@link #removalFromLaunchedQueriesLock} while deciding whether to launch a query.
+     * Submitters of a driver don't, so that adding a query to waiting queries of one driver doesn't delay launches on
+     * other drivers. Launch decisions of a driver are serialized through its lock in {@link #driverLaunchLocks}.
+     */
+    private final boolean lockingRemovals;
+
+    public QuerySubmitter(@NonNull final QueryQueue queue,
+                          @NonNull final EstimatedQueryCollection waitingQueries,
+                          @NonNull final QueryLaunchingConstraintsChecker constraintsChecker,
+                          final boolean lockingRemovals) {
 
+      this.queue = queue;
       this.waitingQueries = waitingQueries;
       this.constraintsChecker = constraintsChecker;
+      this.lockingRemovals = lockingRemovals;
     }
 
     /*
@@ -690,14 +911,15 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
      */
     @Override
     public void run() {
-      log.info("Starting QuerySubmitter thread");
-      while (!stopped && !querySubmitter.isInterrupted()) {
+      log.info("Starting {} thread", Thread.currentThread().getName());
+      while (!stopped && !Thread.currentThread().isInterrupted()) {
         try {
           if (pausedForTest) {
             Thread.sleep(100);
             continue;
           }
-          final QueryContext query = queuedQueries.take();
+          final QueryContext query = queue.take();
+          queuedQueriesQueues.remove(query.getQueryHandle(), queue);
           synchronized (query) {
             /* Setting log segregation id */
             logSegregationContext.setLogSegragationAndQueryId(query.getQueryHandleString());
@@ -708,44 +930,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
             }
 
             log.info("Processing query:{}", query.getUserQuery());
-            /* Check javadoc of QueryExecutionServiceImpl#removalFromLaunchedQueriesLock for reason for existence
-             of this lock. */
-            log.debug("Acquiring lock in QuerySubmitter");
-            removalFromLaunchedQueriesLock.lock();
-            try {
-              if (this.constraintsChecker.canLaunch(query, launchedQueries)) {
-
-                /* Query is not going to be added to waiting queries. No need to keep the lock.
-                 First release lock, then launch query */
-                removalFromLaunchedQueriesLock.unlock();
-                // add it to launched queries data structure immediately sothat other constraint checks can start seeing
-                // this query
-                query.setLaunching(true);
-                launchedQueries.add(query);
-                Future launcherFuture = queryLauncherPool.submit(new QueryLauncher(query));
-                query.setQueryLauncher(launcherFuture);
-              } else {
-                /* Query is going to be added to waiting queries. Keep holding the lock to avoid any removal from
-                launched queries. First add to waiting queries, then release lock */
-                addToWaitingQueries(query);
-                removalFromLaunchedQueriesLock.unlock();
-                if (query.getRetryPolicy() != null) {
-                  waitingQueriesSelectionSvc.schedule(new Runnable() {
-                    @Override
-                    public void run() {
-                      if (waitingQueries.remove(query)) {
-                        queuedQueries.add(query);
-                      }
-                    }
-                  }, query.getRetryPolicy().getOperationNextTime(query) - System.currentTimeMillis(),
-                    TimeUnit.MILLISECONDS);
-                }
-              }
-            } finally {
-              if (removalFromLaunchedQueriesLock.isHeldByCurrentThread()) {
-                removalFromLaunchedQueriesLock.unlock();
-              }
-            }
+            submit(query);
           }
         } catch (InterruptedException e) {
           log.info("Query Submitter has been interrupted, exiting");
@@ -755,7 +940,77 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           log.error("Error in query submitter", e);
         }
       }
-      log.info("QuerySubmitter exited");
+      log.info("{} exited", Thread.currentThread().getName());
+    }
+
+    private void submit(final QueryContext query) throws LensException {
+      /* Check javadoc of QueryExecutionServiceImpl#removalFromLaunchedQueriesLock for reason for existence
+       of this lock. */
+      if (lockingRemovals) {
+        log.debug("Acquiring lock in QuerySubmitter");
+        removalFromLaunchedQueriesLock.lock();
+      }
+      try {
+        final long removalsBeforeDecision = launchedQueriesRemovals.get();
+        final boolean canLaunch;
+        synchronized (getDriverLaunchLock(query.getSelectedDriver())) {
+          // added to launched queries data structure immediately sothat other constraint checks can start seeing
+          // this query
+          query.setLaunching(true);
+          canLaunch = this.constraintsChecker.addIfCanLaunch(query, launchedQueries);
+          if (!canLaunch) {
+            query.setLaunching(false);
+          }
+        }
+        if (canLaunch) {
+
+          /* Query is not going to be added to waiting queries. No need to keep the lock.
+           First release lock, then launch query */
+          unlockRemovalFromLaunchedQueries();
+          Future launcherFuture = queryLauncherPool.submit(new QueryLauncher(query));
+          query.setQueryLauncher(launcherFuture);
+        } else {
+          /* Query is going to be added to waiting queries. Keep holding the lock to avoid any removal from
+          launched queries. First add to waiting queries, then release lock */
+          addToWaitingQueries(query);
+          final long removalsAfterDecision = launchedQueriesRemovals.get();
+          unlockRemovalFromLaunchedQueries();
+          if (removalsAfterDecision != removalsBeforeDecision) {
+            /* Without the lock, a launched query might have been removed after the decision was taken and waiting
+            queries might have been processed before this query was added to them. Give it another chance. */
+            log.debug("Launched queries got removed while deciding, re queueing {}", query.getQueryHandleString());
+            if (waitingQueries.remove(query)) {
+              addToQueuedQueries(query);
+            }
+          } else if (query.getRetryPolicy() != null) {
+            waitingQueriesSelectionSvc.schedule(new Runnable() {
+              @Override
+              public void run() {
+                if (waitingQueries.remove(query)) {
+                  addToQueuedQueries(query);
+                }
+              }
+            }, query.getRetryPolicy().getOperationNextTime(query) - System.currentTimeMillis(),
+              TimeUnit.MILLISECONDS);
+          }
+        }
+      } finally {
+        unlockRemovalFromLaunchedQueries();
+      }
+    }
+
+    private Object getDriverLaunchLock(final LensDriver driver) {
+      Object lock = driverLaunchLocks.get(driver);
+      if (lock == null) {
+        lock = driverLaunchLocks.computeIfAbsent(driver, d -> new Object());
+      }
+      return lock;
+    }
+
+    private void unlockRemovalFromLaunchedQueries() {
+      if (removalFromLaunchedQueriesLock.isHeldByCurrentThread()) {
+        removalFromLaunchedQueriesLock.unlock();
+      }
     }
 
     private void addToWaitingQueries(final QueryContext query) throws LensException {
@@ -774,6 +1029,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.info("Query launcher created for query {} on driver {}", query.getQueryHandle(),
         query.getSelectedDriver().getFullyQualifiedName());
       query.setLaunchTime(System.currentTimeMillis());
+      startQueryPhase(query, QueryPhase.LAUNCH);
     }
 
     @Override
@@ -823,8 +1079,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       // Check if we need to pass session's effective resources to selected driver
       addSessionResourcesToDriver(query);
       query.getSelectedDriver().executeAsync(query);
+      startQueryPhase(query, QueryPhase.DRIVER_EXECUTION);
       query.setStatusSkippingTransitionTest(newStatus);
       query.clearTransientStateAfterLaunch();
+      scheduleStatusPoll(query);
       log.info("Added to launched queries. QueryId:{}", query.getQueryHandleString());
       fireStatusChangeEvent(query, newStatus, oldStatus);
     }
@@ -843,6 +1101,37 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   public void pauseQuerySubmitter(boolean pause) {
     querySubmitterRunnable.pausedForTest = pause;
+    for (QuerySubmitter driverQuerySubmitter : driverQuerySubmitters.values()) {
+      driverQuerySubmitter.pausedForTest = pause;
+    }
+  }
+
+  private QuerySubmitter getQuerySubmitter(final QueryContext query) {
+    QuerySubmitter submitter = query.getSelectedDriver() == null ? null
+      : driverQuerySubmitters.get(query.getSelectedDriver());
+    return submitter != null ? submitter : querySubmitterRunnable;
+  }
+
+  private boolean addToQueuedQueries(final QueryContext query) {
+    startQueryPhase(query, QueryPhase.QUEUE_WAIT);
+    QueryQueue queue = getQuerySubmitter(query).queue;
+    queuedQueriesQueues.put(query.getQueryHandle(), queue);
+    if (!queue.add(query)) {
+      queuedQueriesQueues.remove(query.getQueryHandle(), queue);
+      return false;
+    }
+    return true;
+  }
+
+  private void addAllToQueuedQueries(final Collection<QueryContext> queries) {
+    for (QueryContext query : queries) {
+      addToQueuedQueries(query);
+    }
+  }
+
+  private boolean removeFromQueuedQueries(final QueryContext query) {
+    QueryQueue queue = queuedQueriesQueues.remove(query.getQueryHandle());
+    return queue != null && queue.remove(query);
   }
 
   private class AsyncStatusUpdater implements QueryDriverStatusUpdateListener {
@@ -857,14 +1146,50 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
   /**
-   * The Class StatusPoller.
+   * A status poll of a launched query, due at {@link #pollTime}.
    */
-  private class StatusPoller implements Runnable {
+  private static class StatusPollRequest implements Delayed {
+    @Getter
+    private final QueryContext ctx;
+    private final long pollTime;
 
-    /**
-     * The poll interval.
-     */
-    long pollInterval = 1000;
+    StatusPollRequest(QueryContext ctx, long delayMillis) {
+      this.ctx = ctx;
+      this.pollTime = System.currentTimeMillis() + delayMillis;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(pollTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  /**
+   * Schedules the next status poll of the query after the delay suggested by its selected driver.
+   *
+   * @param ctx the query context
+   */
+  private void scheduleStatusPoll(QueryContext ctx) {
+    scheduleStatusPoll(ctx, ctx.getSelectedDriver().getStatusPollDelayMillis(ctx));
+  }
+
+  private void scheduleStatusPoll(QueryContext ctx, long delayMillis) {
+    StatusPollRequest request = new StatusPollRequest(ctx, delayMillis);
+    scheduledStatusPolls.put(ctx.getQueryHandle(), request);
+    statusPollQueue.add(request);
+  }
+
+  /**
+   * The Class StatusPoller. Takes the status polls which are due, groups them by driver and hands them over to the
+   * status poller pool in batches, so that polling cost depends on the number of queries due for a poll and not on the
+   * number of launched queries.
+   */
+  private class StatusPoller implements Runnable {
 
     /*
      * (non-Javadoc)
@@ -876,26 +1201,32 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.info("Starting Status poller thread");
       while (!stopped && !statusPoller.isInterrupted()) {
         try {
-          Set<QueryContext> launched = launchedQueries.getQueries();
-
-          for (QueryContext ctx : launched) {
-            if (stopped || statusPoller.isInterrupted()) {
-              return;
-            }
-            if (ctx.isLaunching()) {
+          List<StatusPollRequest> duePolls = new ArrayList<>();
+          duePolls.add(statusPollQueue.take());
+          statusPollQueue.drainTo(duePolls);
+          Map<LensDriver, List<QueryContext>> duePollsByDriver = new HashMap<>();
+          for (StatusPollRequest request : duePolls) {
+            if (!scheduledStatusPolls.remove(request.getCtx().getQueryHandle(), request)) {
+              // A later poll has been scheduled for the query
               continue;
             }
-            logSegregationContext.setLogSegragationAndQueryId(ctx.getQueryHandleString());
-            log.debug("Polling status for {}", ctx.getQueryHandle());
-            try {
-              // session is not required to update status of the query
-              // don't need to wrap this with acquire/release
-              updateStatus(ctx.getQueryHandle());
-            } catch (LensException e) {
-              log.error("Error updating status ", e);
+            LensDriver driver = request.getCtx().getSelectedDriver();
+            if (!duePollsByDriver.containsKey(driver)) {
+              duePollsByDriver.put(driver, new ArrayList<QueryContext>());
+            }
+            duePollsByDriver.get(driver).add(request.getCtx());
+          }
+          for (Map.Entry<LensDriver, List<QueryContext>> entry : duePollsByDriver.entrySet()) {
+            final LensDriver driver = entry.getKey();
+            for (final List<QueryContext> batch : Lists.partition(entry.getValue(), statusPollBatchSize)) {
+              statusPollerPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                  pollStatus(driver, batch);
+                }
+              });
             }
           }
-          Thread.sleep(pollInterval);
         } catch (InterruptedException e) {
           log.info("Status poller has been interrupted, exiting");
           return;
@@ -907,6 +1238,55 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.info("StatusPoller exited");
     }
   }
+
+  /**
+   * Polls status of the queries from their driver in one call, and schedules the next poll of the queries which are
+   * still launched.
+   *
+   * @param driver   the driver selected for all the queries
+   * @param contexts the query contexts
+   */
+  private void pollStatus(LensDriver driver, List<QueryContext> contexts) {
+    if (stopped) {
+      return;
+    }
+    try {
+      List<QueryContext> toUpdate = new ArrayList<>(contexts.size());
+      for (QueryContext ctx : contexts) {
+        if (!ctx.isLaunching() && allQueries.containsKey(ctx.getQueryHandle()) && !ctx.queued() && !ctx.finished()
+          && ctx.canUpdateDriverStatus(statusUpdateRetryHandler)) {
+          toUpdate.add(ctx);
+        }
+      }
+      if (toUpdate.isEmpty()) {
+        return;
+      }
+      log.debug("Polling status for {} queries from driver {}", toUpdate.size(), driver.getFullyQualifiedName());
+      // session is not required to update status of the queries
+      // don't need to wrap this with acquire/release
+      Map<QueryHandle, LensException> failures = driver.updateStatus(toUpdate);
+      for (QueryContext ctx : toUpdate) {
+        try {
+          updateStatus(ctx, failures.get(ctx.getQueryHandle()));
+        } catch (Exception e) {
+          incrCounter(STATUS_UPDATE_COUNTER);
+          log.error("Error updating status of {}", ctx.getQueryHandle(), e);
+        }
+      }
+    } catch (Exception e) {
+      incrCounter(STATUS_UPDATE_COUNTER);
+      log.error("Error updating status ", e);
+    } finally {
+      for (QueryContext ctx : contexts) {
+        // Queued queries get a new poll scheduled when they are launched again
+        if (ctx.isLaunching()
+          || (allQueries.containsKey(ctx.getQueryHandle()) && !ctx.queued() && !ctx.finished())) {
+          scheduleStatusPoll(ctx);
+        }
+      }
+    }
+  }
+
   private boolean handleRetries(QueryContext ctx) throws LensException {
     // TODO: handle retries for post-processing, e.g. result formatting failure doesn't need query rerun
     if (ctx.getStatus().failing()) {
@@ -919,7 +1299,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         ctx.extractFailedAttempt();
         ctx.setStatus(QueryStatus.getQueuedStatus());
         ctx.getSelectedDriver().closeQuery(ctx.getQueryHandle());
-        return queuedQueries.add(ctx);
+        return addToQueuedQueries(ctx);
       } else if (!getServerRetryPolicy(ctx).hasExhaustedRetries(ctx)) {
         LensDriver selectedDriver = ctx.getSelectedDriver();
         ctx.getDriverContext().blacklist(selectedDriver);
@@ -937,7 +1317,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         ctx.extractFailedAttempt(selectedDriver);
         ctx.setStatus(QueryStatus.getQueuedStatus());
         selectedDriver.closeQuery(ctx.getQueryHandle());
-        return queuedQueries.add(ctx);
+        return addToQueuedQueries(ctx);
       }
       ctx.setStatus(new QueryStatus(1.0f, null, FAILED, ctx.getStatus().getStatusMessage(), false, null,
         ctx.getStatus().getErrorMessage(), ctx.getStatus().getLensErrorTO()));
@@ -1002,6 +1382,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    * @param before the before
    */
   private void updateFinishedQuery(QueryContext ctx, QueryStatus before) {
+    endQueryPhase(ctx);
     // before would be null in case of server restart
     if (before != null) {
       /* Seems like query is cancelled, remove it from both queuedQueries and waitingQueries because we don't know
@@ -1009,18 +1390,29 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
        * when we removed it from waiting, it was in queued. We might just miss removing it from everywhere due to this
        * hide and seek. Then QuerySubmitter thread will come to rescue, as it always checks that a query should be in
        * queued state before processing it after deque. If it is in cancelled state, then it will skip it. */
-      queuedQueries.remove(ctx);
+      removeFromQueuedQueries(ctx);
       waitingQueries.remove(ctx);
       // Remove it from launched queries as well - the query got cancelled or failed to launch or failed to execute
       if (removeFromLaunchedQueries(ctx)) {
         processWaitingQueriesAsync(ctx);
       }
     }
+    if (queryResultCache != null) {
+      queryResultCache.queryFinished(ctx);
+    }
+    if (inFlightQueryIndex != null) {
+      inFlightQueryIndex.remove(ctx);
+    }
     // Remove from active queries
     if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
       getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).removeFromActiveQueries(ctx.getQueryHandle());
     }
-    finishedQueries.add(new FinishedQuery(ctx));
+    FinishedQuery finishedQuery = new FinishedQuery(ctx);
+    if (before != null) {
+      // Fetch driver result set while the query is open on driver. For restored queries, it's fetched while purging
+      finishedQuery.getDriverRS();
+    }
+    finishedQueries.add(finishedQuery);
     ctx.clearTransientStateAfterLaunch();
   }
 
@@ -1047,7 +1439,6 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       logSegregationContext.setLogSegragationAndQueryId(ctx.getLogHandle());
       log.info("Updating status for {}", ctx.getQueryHandle());
       synchronized (ctx) {
-        QueryStatus before = ctx.getStatus();
         if (!ctx.queued() && !ctx.finished()) {
           if (updateDriverStatus) {
             try {
@@ -1059,22 +1450,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
               return;
             }
           }
-          ctx.setStatus(ctx.getDriverStatus().toQueryStatus());
-          // query is successfully executed by driver and
-          // if query result need not be persisted or there is no result available in driver, move the query to
-          // succeeded state immediately, otherwise result formatter will format the result and move it to succeeded
-          if (ctx.getStatus().getStatus().equals(EXECUTED) && (!ctx.isPersistent()
-            || !ctx.isResultAvailableInDriver())) {
-            setSuccessState(ctx);
-          } else {
-            if (ctx.getStatus().failing()) {
-              handleRetries(ctx);
-            }
-            if (ctx.getStatus().finished()) {
-              updateFinishedQuery(ctx, before);
-            }
-            fireStatusChangeEvent(ctx, ctx.getStatus(), before);
-          }
+          updateStatusFromDriverStatus(ctx);
         }
         if (ctx.queued()) {
           Integer queryIndex = waitingQueries.getQueryIndex(ctx);
@@ -1088,6 +1464,61 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Update status of a query whose driver status has been fetched as part of a batch.
+   *
+   * @param ctx     the query context
+   * @param failure failure in fetching driver status, null if driver status was fetched successfully
+   * @throws LensException the lens exception
+   */
+  private void updateStatus(QueryContext ctx, LensException failure) throws LensException {
+    logSegregationContext.setLogSegragationAndQueryId(ctx.getLogHandle());
+    log.info("Updating status for {}", ctx.getQueryHandle());
+    synchronized (ctx) {
+      if (ctx.queued() || ctx.finished()) {
+        return;
+      }
+      try {
+        ctx.onDriverStatusUpdate(statusUpdateRetryHandler, failure);
+      } catch (LensException exc) {
+        // Status update from driver failed
+        setFailedStatus(ctx, "Status update failed", exc);
+        log.error("Status update failed for {}", ctx.getQueryHandle(), exc);
+        return;
+      }
+      updateStatusFromDriverStatus(ctx);
+    }
+  }
+
+  /**
+   * Moves the query to the state corresponding to its driver status. Should be called holding lock on ctx.
+   *
+   * @param ctx the query context
+   * @throws LensException the lens exception
+   */
+  private void updateStatusFromDriverStatus(QueryContext ctx) throws LensException {
+    QueryStatus before = ctx.getStatus();
+    ctx.setStatus(ctx.getDriverStatus().toQueryStatus());
+    // query is successfully executed by driver and
+    // if query result need not be persisted or there is no result available in driver, move the query to
+    // succeeded state immediately, otherwise result formatter will format the result and move it to succeeded
+    if (ctx.getStatus().getStatus().equals(EXECUTED) && (!ctx.isPersistent()
+      || !ctx.isResultAvailableInDriver())) {
+      setSuccessState(ctx);
+    } else {
+      if (ctx.getStatus().getStatus().equals(EXECUTED)) {
+        startQueryPhase(ctx, QueryPhase.RESULT_FORMATTING);
+      }
+      if (ctx.getStatus().failing()) {
+        handleRetries(ctx);
+      }
+      if (ctx.getStatus().finished()) {
+        updateFinishedQuery(ctx, before);
+      }
+      fireStatusChangeEvent(ctx, ctx.getStatus(), before);
+    }
+  }
+
   /**
    * New status change event.
    *
@@ -1144,6 +1575,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     if (ctx == null || current == null) {
       return;
     }
+    markQueryChanged(ctx.getQueryHandle());
 
     QueryStatus.Status prevState = before.getStatus();
     QueryStatus.Status currentStatus = current.getStatus();
@@ -1163,7 +1595,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   }
 
   /**
-   * The Class QueryPurger.
+   * The Class QueryPurger. Hands off purgeable finished queries to the finished query persister.
    */
   private class QueryPurger implements Runnable {
 
@@ -1182,35 +1614,15 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           while (iter.hasNext()) {
             finished = iter.next();
             if (finished.canBePurged()) {
+              iter.remove();
               try {
-                persistQuery(finished);
-                iter.remove();
-              } catch (Exception e) {
-                log.warn("Exception while purging query {}", finished.getQueryHandle(), e);
-                continue;
-              } finally {
-                if (!finished.getCtx().isQueryClosedOnDriver()) {
-                  try {
-                    if (finished.getCtx().getSelectedDriver() != null) {
-                      finished.getCtx().getSelectedDriver().closeQuery(finished.getQueryHandle());
-                    }
-                    finished.getCtx().setQueryClosedOnDriver(true);
-                  } catch (Exception e) {
-                    log.warn("Exception while closing query with selected driver.", e);
-                  }
-                  processWaitingQueriesAsync(finished.ctx);
-                }
+                // blocks when persister falls behind
+                startQueryPhase(finished.ctx, QueryPhase.PERSISTENCE);
+                purgeableQueries.put(finished);
+              } catch (InterruptedException e) {
+                finishedQueries.add(finished);
+                throw e;
               }
-              synchronized (finished.ctx) {
-                finished.ctx.setFinishedQueryPersisted(true);
-                log.info("Purging: {}", finished.getQueryHandle());
-                allQueries.remove(finished.getQueryHandle());
-                resultSets.remove(finished.getQueryHandle());
-              }
-              fireStatusChangeEvent(finished.getCtx(),
-                new QueryStatus(1f, null, CLOSED, "Query purged", false, null, null, null), finished.getCtx()
-                  .getStatus());
-              log.info("Query purged: {}", finished.getQueryHandle());
             }
           }
           Thread.sleep(purgeInterval);
@@ -1223,8 +1635,97 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       }
       log.info("QueryPurger exited");
     }
+  }
+
+  /**
+   * The Class FinishedQueryPersister. Persists purgeable finished queries in batches, and purges them from memory.
+   */
+  private class FinishedQueryPersister implements Runnable {
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      log.info("Starting finished query persister thread");
+      List<FinishedQuery> batch = new ArrayList<>(purgeBatchSize);
+      while (!stopped && !finishedQueryPersister.isInterrupted()) {
+        try {
+          batch.add(purgeableQueries.take());
+          purgeableQueries.drainTo(batch, purgeBatchSize - 1);
+          persistQueries(batch);
+        } catch (InterruptedException e) {
+          log.info("Finished query persister interrupted");
+        } catch (Throwable e) {
+          log.error("Finished query persister giving error", e);
+          incrCounter(QUERY_PURGER_COUNTER);
+        } finally {
+          batch.clear();
+        }
+      }
+      log.info("FinishedQueryPersister exited");
+    }
+
+    private void persistQueries(List<FinishedQuery> batch) {
+      List<FinishedLensQuery> finishedLensQueries = new ArrayList<>(batch.size());
+      for (FinishedQuery finished : batch) {
+        finishedLensQueries.add(toFinishedLensQuery(finished));
+      }
+      List<FinishedQuery> persisted = batch;
+      try {
+        lensServerDao.insertFinishedQueries(finishedLensQueries);
+        log.info("Saved {} queries to DB", batch.size());
+      } catch (Exception e) {
+        // Whole batch is rolled back. Persist one query at a time, so that a bad query doesn't fail others
+        log.warn("Couldn't save batch of {} queries to DB, saving them one by one", batch.size(), e);
+        persisted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+          try {
+            lensServerDao.insertFinishedQuery(finishedLensQueries.get(i));
+            log.info("Saved query {} to DB", batch.get(i).getQueryHandle());
+            persisted.add(batch.get(i));
+          } catch (Exception qe) {
+            log.warn("Exception while purging query {}", batch.get(i).getQueryHandle(), qe);
+            finishedQueries.add(batch.get(i));
+          }
+        }
+      }
+      for (FinishedQuery finished : batch) {
+        closeQueryOnDriver(finished);
+      }
+      for (FinishedQuery finished : persisted) {
+        synchronized (finished.ctx) {
+          finished.ctx.setFinishedQueryPersisted(true);
+          endQueryPhase(finished.ctx);
+          log.info("Purging: {}", finished.getQueryHandle());
+          allQueries.remove(finished.getQueryHandle());
+          markQueryChanged(finished.getQueryHandle());
+          removeResultSet(finished.getQueryHandle());
+        }
+        fireStatusChangeEvent(finished.getCtx(),
+          new QueryStatus(1f, null, CLOSED, "Query purged", false, null, null, null), finished.getCtx()
+            .getStatus());
+        log.info("Query purged: {}", finished.getQueryHandle());
+      }
+    }
+
+    private void closeQueryOnDriver(FinishedQuery finished) {
+      if (!finished.getCtx().isQueryClosedOnDriver()) {
+        try {
+          if (finished.getCtx().getSelectedDriver() != null) {
+            finished.getCtx().getSelectedDriver().closeQuery(finished.getQueryHandle());
+          }
+          finished.getCtx().setQueryClosedOnDriver(true);
+        } catch (Exception e) {
+          log.warn("Exception while closing query with selected driver.", e);
+        }
+        processWaitingQueriesAsync(finished.ctx);
+      }
+    }
 
-    private void persistQuery(FinishedQuery finished) throws SQLException {
+    private FinishedLensQuery toFinishedLensQuery(FinishedQuery finished) {
       FinishedLensQuery finishedQuery = new FinishedLensQuery(finished.getCtx());
       if (finished.ctx.getStatus().getStatus() == SUCCESSFUL) {
         if (finished.ctx.getStatus().isResultSetAvailable()) {
@@ -1246,8 +1747,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           }
         }
       }
-      lensServerDao.insertFinishedQuery(finishedQuery);
-      log.info("Saved query {} to DB", finishedQuery.getHandle());
+      return finishedQuery;
     }
   }
 
@@ -1295,6 +1795,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     this.conf = hiveConf;
     this.isDuplicateQueryAllowed = conf.getBoolean(LensConfConstants.SERVER_DUPLICATE_QUERY_ALLOWED,
         LensConfConstants.DEFAULT_SERVER_DUPLICATE_QUERY_ALLOWED);
+    if (!isDuplicateQueryAllowed && conf.getBoolean(LensConfConstants.SERVER_DUPLICATE_QUERY_COALESCING_ENABLED,
+      LensConfConstants.DEFAULT_SERVER_DUPLICATE_QUERY_COALESCING_ENABLED)) {
+      inFlightQueryIndex = new InFlightQueryIndex();
+    }
     try {
       loadQueryComparator();
     } catch (LensException e) {
@@ -1303,19 +1807,18 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
 
     this.launchedQueries
-      = new ThreadSafeEstimatedQueryCollection(new DefaultEstimatedQueryCollection(new DefaultQueryCollection()));
-    this.queuedQueries
-      = new FairPriorityBlockingQueue<QueryContext>(queryComparator);
+      = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+    this.queuedQueries = createQueryQueue();
 
-    this.waitingQueries = new ThreadSafeEstimatedQueryCollection(new DefaultEstimatedQueryCollection(
-      new DefaultQueryCollection(new TreeSet<QueryContext>(queryComparator))));
+    this.waitingQueries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection(queryComparator));
 
     ImmutableSet<QueryLaunchingConstraint> queryConstraints = getImplementations(
       QUERY_LAUNCHING_CONSTRAINT_FACTORIES_KEY, hiveConf);
 
     this.queryConstraintsChecker = new DefaultQueryLaunchingConstraintsChecker(queryConstraints);
 
-    this.querySubmitterRunnable = new QuerySubmitter(this.waitingQueries, this.queryConstraintsChecker);
+    this.querySubmitterRunnable = new QuerySubmitter(this.queuedQueries, this.waitingQueries,
+      this.queryConstraintsChecker, true);
     this.querySubmitter = new Thread(querySubmitterRunnable, "QuerySubmitter");
 
     ImmutableSet<WaitingQueriesSelectionPolicy> selectionPolicies = getImplementations(
@@ -1348,11 +1851,26 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       log.error("Error while loading drivers", e);
       throw new IllegalStateException("Could not load drivers", e);
     }
+    if (conf.getBoolean(QUERY_SUBMITTER_PER_DRIVER, DEFAULT_QUERY_SUBMITTER_PER_DRIVER)) {
+      initDriverQuerySubmitters();
+    }
+    if (conf.getBoolean(QUERY_RESULT_CACHE_ENABLED, DEFAULT_QUERY_RESULT_CACHE_ENABLED)) {
+      queryResultCache = new QueryResultCache(conf);
+      CubeMetastoreClient.addPartitionChangeListener(queryResultCache);
+    }
+    if (conf.getBoolean(QUERY_REWRITE_CACHE_ENABLED, DEFAULT_QUERY_REWRITE_CACHE_ENABLED)) {
+      queryRewriteCache = new QueryRewriteCache(conf);
+    }
     purgeInterval = conf.getInt(PURGE_INTERVAL, DEFAULT_PURGE_INTERVAL);
+    purgeBatchSize = conf.getInt(PURGE_BATCH_SIZE, DEFAULT_PURGE_BATCH_SIZE);
+    purgeableQueries = new ArrayBlockingQueue<>(conf.getInt(PURGE_QUEUE_CAPACITY, DEFAULT_PURGE_QUEUE_CAPACITY));
     initalizeFinishedQueryStore(conf);
 
     inMemoryResultsetTTLMillis = conf.getInt(
         LensConfConstants.INMEMORY_RESULT_SET_TTL_SECS, LensConfConstants.DEFAULT_INMEMORY_RESULT_SET_TTL_SECS) * 1000;
+    if (conf.getBoolean(RESULT_CURSOR_ENABLED, DEFAULT_RESULT_CURSOR_ENABLED)) {
+      resultCursorStore = new ResultCursorStore(conf);
+    }
 
     int statusUpdateRetries = conf.getInt(LensConfConstants.STATUS_UPDATE_EXPONENTIAL_RETRIES,
       LensConfConstants.DEFAULT_STATUS_UPDATE_EXPONENTIAL_RETRIES);
@@ -1413,7 +1931,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   public void prepareStopping() {
     super.prepareStopping();
-    Thread[] threadsToStop = new Thread[]{querySubmitter, statusPoller, queryPurger, prepareQueryPurger};
+    List<Thread> threadsToStop = Lists.newArrayList(querySubmitter, statusPoller, queryPurger, finishedQueryPersister,
+      prepareQueryPurger);
+    threadsToStop.addAll(driverQuerySubmitterThreads);
     // Nudge the threads to stop
     for (Thread th : threadsToStop) {
       th.interrupt();
@@ -1428,12 +1948,15 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     estimatePool.shutdown();
     // shutdown launcher pool
     queryLauncherPool.shutdown();
+    // Hard shutdown, since pending status polls will be scheduled again in the next restart
+    statusPollerPool.shutdownNow();
     // Soft shutdown for result purger too. Purging shouldn't take much time.
     if (null != queryResultPurger) {
       queryResultPurger.shutdown();
     }
     // shutdown query expirer
     queryExpirer.shutdownNow();
+    timedExecutionPool.shutdownNow();
     // Soft shutdown right now, will await termination in this method itself, since cancellation pool
     // should be terminated before query state gets persisted.
     queryCancellationPool.shutdown();
@@ -1462,7 +1985,16 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     super.stop();
     awaitTermination(waitingQueriesSelectionSvc);
     awaitTermination(estimatePool);
+    awaitTermination(statusPollerPool);
+    awaitTermination(timedExecutionPool);
     awaitTermination(queryResultPurger);
+    if (queryRestorePool != null) {
+      queryRestorePool.shutdownNow();
+      awaitTermination(queryRestorePool);
+    }
+    if (queryResultCache != null) {
+      CubeMetastoreClient.removePartitionChangeListener(queryResultCache);
+    }
     log.info("Query execution service stopped");
   }
 
@@ -1473,75 +2005,75 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   public synchronized void start() {
     synchronized (allQueries) {
-      // populate the query queues
-      final List<QueryContext> allRestoredQueuedQueries = new LinkedList<QueryContext>();
-      for (QueryContext ctx : allQueries.values()) {
-        // recover query configurations from session
-        try {
-          if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
-            // try setting configuration if the query session is still not closed
-            ctx.setConf(getLensConf(getSessionHandle(ctx.getLensSessionIdentifier()), ctx.getLensConf()));
-            // Add queryHandle to active queries
-            getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
-          } else {
-            ctx.setConf(getLensConf(ctx.getLensConf()));
-          }
-          for (LensDriver driver : drivers.values()) {
-            if (ctx.getDriverContext() != null) {
-              ctx.getDriverContext().setDriverConf(driver, ctx.getConf());
-            }
-          }
-        } catch (LensException e) {
-          log.error("Could not set query conf ", e);
-        }
-        // Add queries to the queue.
+      // Active queries are restored in parallel before the server starts launching queries. Finished queries are
+      // restored in background, or on first access whichever happens first.
+      queryRestorePool = newQueryRestorePool();
+      final List<QueryContext> allRestoredQueuedQueries = Collections.synchronizedList(
+        new LinkedList<QueryContext>());
+      List<Future<?>> activeQueryRestores = new ArrayList<>();
+      for (final QueryContext ctx : allQueries.values()) {
         switch (ctx.getStatus().getStatus()) {
-        case NEW:
-        case QUEUED:
-          allRestoredQueuedQueries.add(ctx);
-          break;
-        case LAUNCHED:
-        case RUNNING:
-        case EXECUTED:
-          try {
-            launchedQueries.add(ctx);
-          } catch (final Exception e) {
-            log.error("Query not restored:QueryContext:{}", ctx, e);
-          }
-          // If EXECUTED, try to nudge result formatting forward
-          if (ctx.getStatus().getStatus() == EXECUTED) {
-            try {
-              getEventService().notifyEvent(newStatusChangeEvent(ctx, null, ctx.getStatus().getStatus()));
-            } catch (LensException e) {
-              log.error("Couldn't notify event for query executed for {}", ctx, e);
-            }
-          }
-          break;
         case SUCCESSFUL:
         case FAILED:
         case CANCELED:
-          updateFinishedQuery(ctx, null);
+          unrestoredQueries.put(ctx.getQueryHandle(), ctx);
+          allQueries.remove(ctx.getQueryHandle());
           break;
         case CLOSED:
           allQueries.remove(ctx.getQueryHandle());
+          markQueryChanged(ctx.getQueryHandle());
           if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
             getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).removeFromActiveQueries(ctx.getQueryHandle());
           }
           log.info("Removed closed query from all Queries:" + ctx.getQueryHandle());
+          break;
+        default:
+          activeQueryRestores.add(queryRestorePool.submit(new Runnable() {
+            @Override
+            public void run() {
+              restoreActiveQuery(ctx, allRestoredQueuedQueries);
+            }
+          }));
         }
       }
-      queuedQueries.addAll(allRestoredQueuedQueries);
-      log.info("Recovered {} queries", allQueries.size());
+      for (Future<?> restore : activeQueryRestores) {
+        try {
+          restore.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while restoring active queries", e);
+        } catch (ExecutionException e) {
+          log.error("Query not restored", e.getCause());
+        }
+      }
+      addAllToQueuedQueries(allRestoredQueuedQueries);
+      for (final QueryHandle handle : unrestoredQueries.keySet()) {
+        queryRestorePool.submit(new Runnable() {
+          @Override
+          public void run() {
+            restoreFinishedQuery(handle);
+          }
+        });
+      }
+      queryRestorePool.shutdown();
+      log.info("Recovered {} active queries, restoring {} finished queries in background", activeQueryRestores.size(),
+        unrestoredQueries.size());
     }
     super.start();
 
     startEstimatePool();
     startLauncherPool();
     startQueryCancellationPool();
+    startTimedExecutionPool();
+    startStatusPollerPool();
 
     querySubmitter.start();
+    for (Thread driverQuerySubmitter : driverQuerySubmitterThreads) {
+      driverQuerySubmitter.start();
+    }
     statusPoller.start();
     queryPurger.start();
+    finishedQueryPersister.start();
     prepareQueryPurger.start();
     startQueryExpirer();
 
@@ -1553,6 +2085,104 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  private ExecutorService newQueryRestorePool() {
+    int numThreads = conf.getInt(SERVER_STATE_RESTORE_THREADS, DEFAULT_SERVER_STATE_RESTORE_THREADS);
+    final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    final AtomicInteger thId = new AtomicInteger();
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread th = defaultFactory.newThread(r);
+        th.setName("query-restore-" + thId.incrementAndGet());
+        th.setDaemon(true);
+        return th;
+      }
+    };
+    return Executors.newFixedThreadPool(numThreads, threadFactory);
+  }
+
+  /**
+   * Recover query configuration from the session, if the session is still open.
+   *
+   * @param ctx the restored query
+   */
+  private void restoreQueryConf(QueryContext ctx) {
+    try {
+      if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
+        // try setting configuration if the query session is still not closed
+        ctx.setConf(getLensConf(getSessionHandle(ctx.getLensSessionIdentifier()), ctx.getLensConf()));
+        // Add queryHandle to active queries
+        getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
+      } else {
+        ctx.setConf(getLensConf(ctx.getLensConf()));
+      }
+      for (LensDriver driver : drivers.values()) {
+        if (ctx.getDriverContext() != null) {
+          ctx.getDriverContext().setDriverConf(driver, ctx.getConf());
+        }
+      }
+    } catch (LensException e) {
+      log.error("Could not set query conf ", e);
+    }
+  }
+
+  /**
+   * Restore a query which was queued or running before restart.
+   *
+   * @param ctx                     the restored query
+   * @param allRestoredQueuedQueries queued queries to be added to the query queues
+   */
+  private void restoreActiveQuery(QueryContext ctx, List<QueryContext> allRestoredQueuedQueries) {
+    restoreQueryConf(ctx);
+    if (inFlightQueryIndex != null) {
+      inFlightQueryIndex.add(ctx);
+    }
+    switch (ctx.getStatus().getStatus()) {
+    case NEW:
+    case QUEUED:
+      allRestoredQueuedQueries.add(ctx);
+      break;
+    default:
+      try {
+        launchedQueries.add(ctx);
+        scheduleStatusPoll(ctx, 0);
+      } catch (final Exception e) {
+        log.error("Query not restored:QueryContext:{}", ctx, e);
+      }
+      // If EXECUTED, try to nudge result formatting forward
+      if (ctx.getStatus().getStatus() == EXECUTED) {
+        try {
+          getEventService().notifyEvent(newStatusChangeEvent(ctx, null, ctx.getStatus().getStatus()));
+        } catch (LensException e) {
+          log.error("Couldn't notify event for query executed for {}", ctx, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Restore a query which had finished before restart, if it is not restored yet. Restoring a finished query
+   * hands it over to the purger.
+   *
+   * @param handle the query handle
+   */
+  private void restoreFinishedQuery(QueryHandle handle) {
+    QueryContext ctx = unrestoredQueries.get(handle);
+    if (ctx == null) {
+      return;
+    }
+    synchronized (ctx) {
+      // the query could have been restored by another thread while waiting
+      if (!unrestoredQueries.containsKey(handle)) {
+        return;
+      }
+      restoreQueryConf(ctx);
+      allQueries.put(handle, ctx);
+      unrestoredQueries.remove(handle);
+      updateFinishedQuery(ctx, null);
+    }
+  }
+
   private void startEstimatePool() {
     int minPoolSize = conf.getInt(ESTIMATE_POOL_MIN_THREADS,
       DEFAULT_ESTIMATE_POOL_MIN_THREADS);
@@ -1619,6 +2249,27 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     queryCancellationPool = new ThreadPoolExecutor(3, 3, 60, TimeUnit.SECONDS, new LinkedBlockingQueue(), factory);
   }
 
+  private void startTimedExecutionPool() {
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("timed-execution-%d")
+      .priority(Thread.NORM_PRIORITY)
+      .build();
+    int poolSize = conf.getInt(TIMED_EXECUTION_POOL_SIZE, DEFAULT_TIMED_EXECUTION_POOL_SIZE);
+    timedExecutionPool = Executors.newScheduledThreadPool(poolSize, factory);
+    log.info("Started timed execution pool with {} threads", poolSize);
+  }
+
+  private void startStatusPollerPool() {
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("status-poller-%d")
+      .priority(Thread.NORM_PRIORITY)
+      .build();
+    int poolSize = conf.getInt(STATUS_POLLER_POOL_SIZE, DEFAULT_STATUS_POLLER_POOL_SIZE);
+    statusPollerPool = Executors.newFixedThreadPool(poolSize, factory);
+    statusPollBatchSize = conf.getInt(STATUS_POLLER_BATCH_SIZE, DEFAULT_STATUS_POLLER_BATCH_SIZE);
+    log.info("Started status poller pool with {} threads", poolSize);
+  }
+
   private void startQueryExpirer() {
     ThreadFactory factory = new BasicThreadFactory.Builder()
       .namingPattern("QueryExpirer-%d")
@@ -1689,12 +2340,23 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       ctx.getSubmittedUser(), ctx.getLensSessionIdentifier());
     MethodMetricsContext parallelCallGauge = MethodMetricsFactory.createMethodGauge(ctx.getConf(), false,
       PARALLEL_CALL_GAUGE);
+    long rewriteStartTime = System.currentTimeMillis();
     try {
+      // cache key has to be taken before the metastore is read for rewriting
+      String rewriteCacheKey = queryRewriteCache == null ? null : queryRewriteCache.getKey(ctx);
+      Map<String, QueryRewriteCache.CachedRewrite> cachedRewrites = rewriteCacheKey == null
+        ? Collections.<String, QueryRewriteCache.CachedRewrite>emptyMap() : queryRewriteCache.lookup(rewriteCacheKey);
       userQueryToCubeQueryRewriter.rewrite(ctx);
       // Initially we obtain individual runnables for rewrite and estimate calls
       // These are mapped against the driver, so that later it becomes easy to chain them
       // for each driver.
-      Map<LensDriver, RewriteUtil.DriverRewriterRunnable> rewriteRunnables = RewriteUtil.rewriteQuery(ctx);
+      Map<LensDriver, RewriteUtil.DriverRewriterRunnable> rewriteRunnables;
+      if (isRewriteCachedForAllDrivers(ctx, cachedRewrites)) {
+        log.info("Using cached rewrites of the query for all drivers");
+        rewriteRunnables = Collections.emptyMap();
+      } else {
+        rewriteRunnables = RewriteUtil.rewriteQuery(ctx);
+      }
       Map<LensDriver, AbstractQueryContext.DriverEstimateRunnable> estimateRunnables = ctx.getDriverEstimateRunnables();
 
       int numDrivers = ctx.getDriverContext().getDrivers().size();
@@ -1707,7 +2369,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         RewriteEstimateRunnable r = new RewriteEstimateRunnable(driver,
           rewriteRunnables.get(driver),
           estimateRunnables.get(driver),
-          ctx, estimateCompletionLatch);
+          ctx, estimateCompletionLatch, rewriteCacheKey, cachedRewrites.get(driver.getFullyQualifiedName()));
 
         // Submit composite rewrite + estimate operation to background pool
         try {
@@ -1800,11 +2462,34 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       ctx.setPriority(priority == null ? Priority.NORMAL : priority);
       driver.getQueryHook().postDriverSelection(ctx);
       selectGauge.markSuccess();
+      if (ctx instanceof QueryContext) {
+        for (RewriteEstimateRunnable r : runnables) {
+          if (r.getDriver() == driver) {
+            recordRewriteAndEstimatePhases((QueryContext) ctx, rewriteStartTime, r);
+          }
+        }
+      }
     } finally {
       parallelCallGauge.markSuccess();
     }
   }
 
+  private static boolean isRewriteCachedForAllDrivers(AbstractQueryContext ctx,
+    Map<String, QueryRewriteCache.CachedRewrite> cachedRewrites) {
+    for (LensDriver driver : ctx.getDriverContext().getDrivers()) {
+      if (!cachedRewrites.containsKey(driver.getFullyQualifiedName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void recordRewriteAndEstimatePhases(QueryContext ctx, long rewriteStartTime, RewriteEstimateRunnable r) {
+    endQueryPhase(ctx);
+    recordPhaseLatency(ctx, ctx.addPhase(QueryPhase.REWRITE, rewriteStartTime, r.getRewriteEndTime()));
+    recordPhaseLatency(ctx, ctx.addPhase(QueryPhase.ESTIMATE, r.getEstimateStartTime(), r.getEstimateEndTime()));
+  }
+
   /**
    * Chains driver specific rewrite and estimate of the query in a single runnable, which can be processed in a
    * background thread
@@ -1816,6 +2501,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     private final AbstractQueryContext.DriverEstimateRunnable estimateRunnable;
     private final AbstractQueryContext ctx;
     private final CountDownLatch estimateCompletionLatch;
+    /** Key of the query in rewrite cache, null if the query is not to be cached */
+    private final String rewriteCacheKey;
+    /** Cached rewrite and estimate for the driver, null if not cached */
+    private final QueryRewriteCache.CachedRewrite cachedRewrite;
 
     @Getter
     private boolean succeeded;
@@ -1828,17 +2517,28 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     @Getter
     private volatile boolean completed;
 
+    @Getter
+    private long rewriteEndTime;
+    @Getter
+    private long estimateStartTime;
+    @Getter
+    private long estimateEndTime;
+
     public RewriteEstimateRunnable(
       LensDriver driver,
       RewriteUtil.DriverRewriterRunnable rewriterRunnable,
       AbstractQueryContext.DriverEstimateRunnable estimateRunnable,
       AbstractQueryContext ctx,
-      CountDownLatch estimateCompletionLatch) {
+      CountDownLatch estimateCompletionLatch,
+      String rewriteCacheKey,
+      QueryRewriteCache.CachedRewrite cachedRewrite) {
       this.driver = driver;
       this.rewriterRunnable = rewriterRunnable;
       this.estimateRunnable = estimateRunnable;
       this.ctx = ctx;
       this.estimateCompletionLatch = estimateCompletionLatch;
+      this.rewriteCacheKey = rewriteCacheKey;
+      this.cachedRewrite = cachedRewrite;
     }
 
     @Override
@@ -1852,8 +2552,18 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         log.info("Calling preRewrite hook for driver {}", driver.getFullyQualifiedName());
         driver.getQueryHook().preRewrite(ctx);
         // 1. Rewrite for driver
-        rewriterRunnable.run();
-        succeeded = rewriterRunnable.isSucceeded();
+        String rewrittenQuery = null;
+        DriverQueryPlan rewriterPlan = null;
+        if (cachedRewrite != null) {
+          log.info("Using cached rewrite for driver {}", driver.getFullyQualifiedName());
+          cachedRewrite.applyRewrite(ctx, driver);
+          succeeded = true;
+        } else {
+          rewriterRunnable.run();
+          succeeded = rewriterRunnable.isSucceeded();
+          rewrittenQuery = rewriterRunnable.getRewrittenQuery();
+          rewriterPlan = ctx.getDriverContext().getDriverRewriterPlan(driver);
+        }
         if (!succeeded) {
           failureCause = rewriterRunnable.getFailureCause();
           cause = rewriterRunnable.getCause();
@@ -1863,16 +2573,26 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         }
 
         rewriteGauge.markSuccess();
+        rewriteEndTime = System.currentTimeMillis();
 
         // 2. Estimate for driver only if rewrite succeeded.
         if (succeeded) {
           MethodMetricsContext estimateGauge = MethodMetricsFactory.createMethodGauge(ctx.getDriverConf(driver), true,
             DRIVER_ESTIMATE_GAUGE);
 
+          estimateStartTime = System.currentTimeMillis();
           log.info("Calling preEstimate hook for driver {}", driver.getFullyQualifiedName());
           driver.getQueryHook().preEstimate(ctx);
-          estimateRunnable.run();
-          succeeded = estimateRunnable.isSucceeded();
+          if (cachedRewrite != null) {
+            cachedRewrite.applyEstimate(ctx, driver);
+          } else {
+            estimateRunnable.run();
+            succeeded = estimateRunnable.isSucceeded();
+            if (succeeded && rewriteCacheKey != null) {
+              queryRewriteCache.put(rewriteCacheKey, driver, new QueryRewriteCache.CachedRewrite(rewrittenQuery,
+                rewriterPlan, ctx.getDriverQueryCost(driver), ctx.isOlapQuery()));
+            }
+          }
           if (!succeeded) {
             failureCause = estimateRunnable.getFailureCause();
             cause = estimateRunnable.getCause();
@@ -1883,6 +2603,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           }
 
           estimateGauge.markSuccess();
+          estimateEndTime = System.currentTimeMillis();
         } else {
           log.error("Estimate skipped since rewrite failed for driver {} cause: {}", driver, failureCause);
         }
@@ -1953,6 +2674,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    * @throws LensException the lens exception
    */
   LensResultSet getResultset(QueryHandle queryHandle) throws LensException {
+    restoreFinishedQuery(queryHandle);
     QueryContext ctx = allQueries.get(queryHandle);
 
     if (ctx == null) {
@@ -1970,6 +2692,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
             } else if (ctx.isResultAvailableInDriver() && !ctx.isQueryClosedOnDriver()) {
               //InMemory result can not be returned for a closed query
               resultSet = getDriverResultset(queryHandle);
+              if (resultCursorStore != null && resultSet instanceof InMemoryResultSet) {
+                resultSet = resultCursorStore.open(queryHandle, (InMemoryResultSet) resultSet);
+              }
               resultSets.put(queryHandle, resultSet);
             }
           }
@@ -1984,6 +2709,22 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Remove the result set of the query, closing its cursor if any.
+   *
+   * @param queryHandle the query handle
+   */
+  private void removeResultSet(QueryHandle queryHandle) {
+    LensResultSet resultSet = resultSets.remove(queryHandle);
+    if (resultSet instanceof ResultCursor) {
+      try {
+        ((ResultCursor) resultSet).close();
+      } catch (IOException e) {
+        log.warn("Could not close result cursor of query {}", queryHandle, e);
+      }
+    }
+  }
+
   /**
    * Gets the driver resultset.
    *
@@ -1992,6 +2733,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    * @throws LensException the lens exception
    */
   LensResultSet getDriverResultset(QueryHandle queryHandle) throws LensException {
+    restoreFinishedQuery(queryHandle);
     return allQueries.get(queryHandle).getSelectedDriver().fetchResultSet(allQueries.get(queryHandle));
   }
 
@@ -2119,6 +2861,13 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   @Override
   public QueryHandleWithResultSet executePrepare(LensSessionHandle sessionHandle, QueryPrepareHandle prepareHandle,
     long timeoutMillis, LensConf conf, String queryName) throws LensException {
+    return getTimedExecutionResult(executePrepareWithTimeout(sessionHandle, prepareHandle, timeoutMillis, conf,
+      queryName));
+  }
+
+  @Override
+  public CompletableFuture<QueryHandleWithResultSet> executePrepareWithTimeout(LensSessionHandle sessionHandle,
+    QueryPrepareHandle prepareHandle, long timeoutMillis, LensConf conf, String queryName) throws LensException {
     try {
       log.info("ExecutePrepare: session:{} prepareHandle: {} timeout:{}", sessionHandle,
         prepareHandle.getPrepareHandleId(), timeoutMillis);
@@ -2152,8 +2901,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       acquire(sessionHandle);
       Configuration qconf = getLensConf(sessionHandle, conf);
       accept(query, qconf, SubmitOp.EXECUTE);
+      byte[] confHash = UtilityMethods.generateHashOfWritable(qconf);
       if (!isDuplicateQueryAllowed) {
-        QueryHandle previousHandle = checkForDuplicateQuery(query, sessionHandle, qconf, queryName);
+        QueryHandle previousHandle = checkForDuplicateQuery(query, sessionHandle, confHash, queryName);
         if (previousHandle != null) {
           log.info("Query:{} Session:{} User:{} duplicate query found", query, sessionHandle, getSession(sessionHandle)
               .getLoggedInUser());
@@ -2162,33 +2912,82 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       }
       QueryContext ctx = createContext(query, getSession(sessionHandle).getLoggedInUser(), conf, qconf, 0);
       // Should be set only once
-      ctx.setQueryConfHash(UtilityMethods.generateHashOfWritable(qconf));
+      ctx.setQueryConfHash(confHash);
       ctx.setQueryName(queryName);
-      return executeAsyncInternal(sessionHandle, ctx);
+      if (inFlightQueryIndex == null) {
+        return executeAsyncInternal(sessionHandle, ctx);
+      }
+      QueryHandle leaderHandle = shareInFlightQuery(ctx);
+      if (leaderHandle != null) {
+        log.info("Query:{} Session:{} User:{} shares in-flight query {}", query, sessionHandle,
+          ctx.getSubmittedUser(), leaderHandle);
+        return leaderHandle;
+      }
+      QueryHandle handle;
+      try {
+        handle = executeAsyncInternal(sessionHandle, ctx);
+      } catch (LensException | RuntimeException e) {
+        inFlightQueryIndex.failed(ctx, e);
+        throw e;
+      }
+      inFlightQueryIndex.submitted(ctx);
+      return handle;
     } finally {
       release(sessionHandle);
     }
   }
 
+  /**
+   * Index the query as in-flight leader, or share the identical query in flight if the query is allowed to. Waits
+   * for the identical query to be submitted, and takes its place if its submission fails.
+   *
+   * @param ctx the query
+   * @return handle of the identical query in flight, null if the query got indexed and has to be submitted
+   * @throws LensException if interrupted while waiting for the identical query to be submitted
+   */
+  private QueryHandle shareInFlightQuery(QueryContext ctx) throws LensException {
+    while (true) {
+      InFlightQueryIndex.InFlightQuery leader = inFlightQueryIndex.register(ctx);
+      // the query reads data as its cluster user, results are shared only among queries of the same cluster user
+      if (leader == null || !Objects.equals(leader.getQuery().getClusterUser(), ctx.getClusterUser())) {
+        return null;
+      }
+      try {
+        return leader.getSubmission().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new LensException("Interrupted while waiting for query " + leader.getQuery().getQueryHandleString()
+          + " to be submitted", e);
+      } catch (ExecutionException | CancellationException e) {
+        log.info("Submission of in-flight query {} failed, retrying {}", leader.getQuery().getQueryHandleString(),
+          ctx.getQueryHandleString());
+      }
+    }
+  }
+
   /**
    * Returns the query handle if the same query is already launched by the user
    * in the same session.
    *
    * @param query
    * @param sessionHandle
-   * @param conf
+   * @param confHash
    * @param queryName
    * @return
    */
-  private QueryHandle checkForDuplicateQuery(String query, LensSessionHandle sessionHandle, Configuration conf,
+  private QueryHandle checkForDuplicateQuery(String query, LensSessionHandle sessionHandle, byte[] confHash,
       String queryName) {
     // Get all active queries of this session.
     List<QueryHandle> activeQueries = getSession(sessionHandle).getActiveQueries();
     synchronized (activeQueries) {
       for (QueryHandle handle : activeQueries) {
         QueryContext context = allQueries.get(handle);
+        if (context == null) {
+          // finished query which is yet to be restored
+          continue;
+        }
         if (queryName.equals(context.getQueryName()) && query.equals(context.getUserQuery())
-            && Arrays.equals(UtilityMethods.generateHashOfWritable(conf), context.getQueryConfHash())) {
+            && Arrays.equals(confHash, context.getQueryConfHash())) {
           return handle;
         }
       }
@@ -2248,10 +3047,14 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   private QueryHandle submitQuery(final QueryContext ctx) throws LensException {
     synchronized (ctx) {
       QueryStatus before = ctx.getStatus();
+      if (queryResultCache != null && serveFromResultCache(ctx, before)) {
+        return ctx.getQueryHandle();
+      }
       ctx.setStatus(QueryStatus.getQueuedStatus());
-      queuedQueries.add(ctx);
+      addToQueuedQueries(ctx);
       log.info("Added to Queued Queries:{}", ctx.getQueryHandleString());
       allQueries.put(ctx.getQueryHandle(), ctx);
+      markQueryChanged(ctx.getQueryHandle());
       // Add to session's active query list
       getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
       fireStatusChangeEvent(ctx, ctx.getStatus(), before);
@@ -2260,6 +3063,34 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Finish the query straight away with a cached result, if result of the same query is present in result cache.
+   *
+   * @param ctx    the query context, with driver selected
+   * @param before status of the query before submission
+   * @return true if the query got served from result cache, false otherwise
+   * @throws LensException the lens exception
+   */
+  private boolean serveFromResultCache(QueryContext ctx, QueryStatus before) throws LensException {
+    LensPersistentResult result = queryResultCache.lookup(ctx);
+    if (result == null) {
+      return false;
+    }
+    // The query never gets queued, called with lock on ctx
+    ctx.setStatusSkippingTransitionTest(new QueryStatus(1.0f, null, SUCCESSFUL, "Query result served from cache", true,
+      null, null, null));
+    resultSets.put(ctx.getQueryHandle(), result);
+    allQueries.put(ctx.getQueryHandle(), ctx);
+    markQueryChanged(ctx.getQueryHandle());
+    // Add to session's active query list, the query is removed from it as it finishes
+    getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
+    updateFinishedQuery(ctx, before);
+    fireStatusChangeEvent(ctx, ctx.getStatus(), before);
+    incrCounter(QUERY_RESULT_CACHE_HITS_COUNTER);
+    log.info("Returning handle {} served from result cache", ctx.getQueryHandle().getHandleId());
+    return true;
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -2275,6 +3106,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       QueryContext ctx = getUpdatedQueryContext(sessionHandle, queryHandle);
       if (ctx != null && (ctx.queued())) {
         ctx.updateConf(newconf.getProperties());
+        markQueryChanged(queryHandle);
         // TODO COnf changed event tobe raised
         return true;
       } else {
@@ -2332,6 +3164,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       boolean returnNullIfPurged) throws LensException {
     try {
       acquire(sessionHandle);
+      restoreFinishedQuery(queryHandle);
       QueryContext ctx = allQueries.get(queryHandle);
       if (ctx == null) {
         return (returnNullIfPurged ? null : getQueryContextOfFinishedQuery(queryHandle));
@@ -2360,6 +3193,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    * @return the query context
    */
   public QueryContext getQueryContext(QueryHandle queryHandle) {
+    restoreFinishedQuery(queryHandle);
     return allQueries.get(queryHandle);
   }
 
@@ -2374,6 +3208,31 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     return getUpdatedQueryContext(sessionHandle, queryHandle).toLensQuery();
   }
 
+  @Override
+  public CompletableFuture<LensQuery> getQueryOnStatusChange(final LensSessionHandle sessionHandle,
+    final QueryHandle queryHandle, QueryStatus.Status status) throws LensException {
+    LensQuery query = getQuery(sessionHandle, queryHandle);
+    if (query.getStatus().getStatus() != status) {
+      return CompletableFuture.completedFuture(query);
+    }
+    final CompletableFuture<LensQuery> future = new CompletableFuture<>();
+    final Runnable onStatusChange = () -> {
+      try {
+        future.complete(getQuery(sessionHandle, queryHandle));
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    };
+    statusWatcher.watch(queryHandle, onStatusChange);
+    future.whenComplete((changed, error) -> statusWatcher.unwatch(queryHandle, onStatusChange));
+    // status might have changed before the callback got registered
+    QueryContext ctx = allQueries.get(queryHandle);
+    if (ctx == null || ctx.getStatus().getStatus() != status) {
+      onStatusChange.run();
+    }
+    return future;
+  }
+
   /**
    * Gets the prepared query context.
    *
@@ -2418,6 +3277,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   @Override
   public QueryHandleWithResultSet execute(LensSessionHandle sessionHandle, String query, long timeoutMillis,
     LensConf conf, String queryName) throws LensException {
+    return getTimedExecutionResult(executeWithTimeout(sessionHandle, query, timeoutMillis, conf, queryName));
+  }
+
+  @Override
+  public CompletableFuture<QueryHandleWithResultSet> executeWithTimeout(LensSessionHandle sessionHandle,
+    String query, long timeoutMillis, LensConf conf, String queryName) throws LensException {
     try {
       log.info("Blocking execute session:{} query: {} timeout: {}", sessionHandle, query, timeoutMillis);
       acquire(sessionHandle);
@@ -2434,121 +3299,171 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   }
 
   /**
-   * Execute timeout internal.
+   * Execute timeout internal. The query is submitted in the calling thread, and rest of the execution waits for
+   * status transitions of the query through futures, so that no thread is blocked while the query runs.
    *
    * @param sessionHandle the session handle
    * @param ctx           the ctx
    * @param timeoutMillis the timeout millis
    * @param conf          the conf
-   * @return the query handle with result set
+   * @return future of the query handle with result set
    * @throws LensException the lens exception
    */
-  private QueryHandleWithResultSet executeTimeoutInternal(LensSessionHandle sessionHandle, QueryContext ctx,
-    long timeoutMillis, Configuration conf) throws LensException {
+  private CompletableFuture<QueryHandleWithResultSet> executeTimeoutInternal(LensSessionHandle sessionHandle,
+    QueryContext ctx, long timeoutMillis, Configuration conf) throws LensException {
     QueryHandle handle = submitQuery(ctx);
     long timeOutTime = ctx.getSubmissionTime() + timeoutMillis;
     log.info("query {} is executed with a timeout of {} and will timeout by {}", handle, timeoutMillis, timeOutTime);
-    QueryHandleWithResultSet result = new QueryHandleWithResultSet(handle);
+    return new TimedExecution(sessionHandle, ctx, timeoutMillis, timeOutTime, conf).start();
+  }
 
-    boolean isQueued = true;
-    while (isQueued && System.currentTimeMillis() < timeOutTime) {
-      try {
-        Thread.sleep(10);
-        isQueued = isQueued(sessionHandle, handle);
-      } catch (InterruptedException e) {
-        log.error("Encountered Interrupted exception.", e);
+  /**
+   * Wait for the result of a future of timed execution.
+   *
+   * @param future the future
+   * @return the query handle with result set
+   * @throws LensException the lens exception
+   */
+  private static QueryHandleWithResultSet getTimedExecutionResult(CompletableFuture<QueryHandleWithResultSet> future)
+    throws LensException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new LensException("Interrupted while waiting for the query to complete", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof LensException) {
+        throw (LensException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new LensException(e.getCause());
     }
-    if (isQueued) { //query is still queued even after waiting for timeoutMillis
-      result.setStatus(ctx.getStatus());
-      addQueryToCancellationPool(ctx, conf, timeoutMillis); //cancel the timed-out Query
-      return result;
+  }
+
+  /**
+   * Execution of a query with timeout. Each step runs in the timed execution pool, once the query reaches the status
+   * the step waits for or the timeout elapses.
+   */
+  private class TimedExecution {
+    private final LensSessionHandle sessionHandle;
+    private final QueryContext ctx;
+    private final QueryHandle handle;
+    private final long timeoutMillis;
+    private final Configuration conf;
+    private final QueryHandleWithResultSet result;
+
+    /**
+     * Completed when the timeout elapses.
+     */
+    private final CompletableFuture<Void> timeout = new CompletableFuture<>();
+    private final ScheduledFuture<?> timer;
+
+    TimedExecution(LensSessionHandle sessionHandle, QueryContext ctx, long timeoutMillis, long timeOutTime,
+      Configuration conf) {
+      this.sessionHandle = sessionHandle;
+      this.ctx = ctx;
+      this.handle = ctx.getQueryHandle();
+      this.timeoutMillis = timeoutMillis;
+      this.conf = conf;
+      this.result = new QueryHandleWithResultSet(handle);
+      this.timer = timedExecutionPool.schedule(new Runnable() {
+        @Override
+        public void run() {
+          timeout.complete(null);
+        }
+      }, Math.max(0, timeOutTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
     }
 
-    QueryContext queryCtx = getUpdatedQueryContext(sessionHandle, handle);
-    if (queryCtx.getSelectedDriver() == null) {
-      result.setStatus(queryCtx.getStatus());
-      return result;
+    CompletableFuture<QueryHandleWithResultSet> start() {
+      CompletableFuture<QueryHandleWithResultSet> future = whenStatusOrTimeout(ctx.getLaunchedFuture())
+        .thenComposeAsync(ignored -> afterLaunch(), timedExecutionPool);
+      future.whenComplete((queryResult, error) -> timer.cancel(false));
+      return future;
     }
 
-    QueryCompletionListenerImpl listener = new QueryCompletionListenerImpl(handle);
-    long totalWaitTime = timeOutTime - System.currentTimeMillis();
+    private CompletableFuture<Object> whenStatusOrTimeout(CompletableFuture<QueryStatus> status) {
+      return CompletableFuture.anyOf(status, timeout);
+    }
 
-    if (System.currentTimeMillis() < timeOutTime
-      && !queryCtx.getStatus().executed() && !queryCtx.getStatus().finished()) {
-      log.info("Registering for query {} completion notification", ctx.getQueryHandleString());
-      queryCtx.getSelectedDriver().registerForCompletionNotification(ctx, totalWaitTime, listener);
-      try {
-        // We will wait for a few millis at a time until we reach max required wait time and also check the state
-        // each time we come out of the wait.
-        // This is done because the registerForCompletionNotification and query execution completion can happen
-        // parallely especially in case of drivers like JDBC and in that case completion notification may not be
-        // received by this listener. So its better to break the wait into smaller ones.
-        long waitMillisPerCheck = totalWaitTime/10;
-        waitMillisPerCheck = (waitMillisPerCheck > 500) ? 500 : waitMillisPerCheck; // Lets keep max as 0.5 sec
-        synchronized (listener) {
-          while (System.currentTimeMillis() < timeOutTime
-            && !listener.querySuccessful
-            && !queryCtx.getStatus().executed()
-            && !queryCtx.getStatus().finished()) {
-            listener.wait(waitMillisPerCheck);
-            if (!listener.querySuccessful) {
-              //update ths status in case query is not successful yet
-              queryCtx = getUpdatedQueryContext(sessionHandle, handle);
-            }
-          }
-        }
-      } catch (InterruptedException e) {
-        log.info("{} query completion notification wait interrupted", queryCtx.getQueryHandleString());
-      }
+    private boolean timedOut() {
+      return timeout.isDone();
     }
 
-    // At this stage (since the listener waits only for driver completion and not server that may include result
-    // formatting and persistence) the query status can be RUNNING or EXECUTED or FAILED or SUCCESSFUL
-    LensResultSet resultSet = null;
-    queryCtx = getUpdatedQueryContext(sessionHandle, handle, true); // If the query is already purged queryCtx = null
-    if (queryCtx != null && queryCtx.getStatus().isResultSetAvailable()) {
-      resultSet = queryCtx.getSelectedDriver().fetchResultSet(queryCtx);
-      if (resultSet instanceof PartiallyFetchedInMemoryResultSet) {
-        PartiallyFetchedInMemoryResultSet partialnMemoryResult = (PartiallyFetchedInMemoryResultSet) resultSet;
-        if (partialnMemoryResult.isComplteleyFetched()) { // DO not stream the result if its not completely fetched
-          result.setResult(new InMemoryQueryResult(partialnMemoryResult.getPreFetchedRows()));
-          result.setResultMetadata(partialnMemoryResult.getMetadata().toQueryResultSetMetadata());
+    private CompletableFuture<QueryHandleWithResultSet> afterLaunch() {
+      try {
+        if (ctx.queued()) { //query is still queued even after waiting for timeoutMillis
+          result.setStatus(ctx.getStatus());
+          addQueryToCancellationPool(ctx, conf, timeoutMillis); //cancel the timed-out Query
+          return CompletableFuture.completedFuture(result);
+        }
+        QueryContext queryCtx = getUpdatedQueryContext(sessionHandle, handle);
+        if (queryCtx.getSelectedDriver() == null) {
           result.setStatus(queryCtx.getStatus());
-          return result;
+          return CompletableFuture.completedFuture(result);
         }
+        if (!timedOut() && !queryCtx.getStatus().executed() && !queryCtx.getStatus().finished()) {
+          log.info("Registering for query {} completion notification", ctx.getQueryHandleString());
+          // status poller would update the status anyway, notification gets it updated sooner
+          queryCtx.getSelectedDriver().registerForCompletionNotification(ctx, timer.getDelay(TimeUnit.MILLISECONDS),
+            new QueryCompletionListenerImpl(handle));
+        }
+        return whenStatusOrTimeout(ctx.getExecutedFuture()).thenComposeAsync(ignored -> afterExecution(),
+          timedExecutionPool);
+      } catch (LensException e) {
+        throw new CompletionException(e);
       }
     }
 
-    // Until timeOutTime, give this query a chance to reach FINISHED status if not already there.
-    queryCtx = getUpdatedQueryContext(sessionHandle, handle);
-    while (!queryCtx.finished() && System.currentTimeMillis() < timeOutTime) {
-      queryCtx = getUpdatedQueryContext(sessionHandle, handle);
+    private CompletableFuture<QueryHandleWithResultSet> afterExecution() {
       try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        // Ignore
+        // At this stage (since the driver is done with the query, but not the server that may include result
+        // formatting and persistence) the query status can be RUNNING or EXECUTED or FAILED or SUCCESSFUL
+        // If the query is already purged queryCtx = null
+        QueryContext queryCtx = getUpdatedQueryContext(sessionHandle, handle, true);
+        if (queryCtx != null && queryCtx.getStatus().isResultSetAvailable()) {
+          LensResultSet resultSet = queryCtx.getSelectedDriver().fetchResultSet(queryCtx);
+          if (resultSet instanceof PartiallyFetchedInMemoryResultSet) {
+            PartiallyFetchedInMemoryResultSet partialnMemoryResult = (PartiallyFetchedInMemoryResultSet) resultSet;
+            if (partialnMemoryResult.isComplteleyFetched()) { // DO not stream the result if its not completely fetched
+              result.setResult(new InMemoryQueryResult(partialnMemoryResult.getPreFetchedRows()));
+              result.setResultMetadata(partialnMemoryResult.getMetadata().toQueryResultSetMetadata());
+              result.setStatus(queryCtx.getStatus());
+              return CompletableFuture.completedFuture(result);
+            }
+          }
+        }
+        // Until timeOutTime, give this query a chance to reach FINISHED status if not already there.
+        return whenStatusOrTimeout(ctx.getFinishedFuture()).thenApplyAsync(ignored -> afterFinish(),
+          timedExecutionPool);
+      } catch (LensException e) {
+        throw new CompletionException(e);
       }
     }
 
-    if (queryCtx.finished() && queryCtx.getStatus().isResultSetAvailable()) {
-      resultSet = getResultset(handle);
-      result.setResultMetadata(resultSet.getMetadata().toQueryResultSetMetadata());
-      result.setResult(resultSet.toQueryResult());
-      result.setStatus(queryCtx.getStatus());
-      return result;
-    }
+    private QueryHandleWithResultSet afterFinish() {
+      try {
+        QueryContext queryCtx = getUpdatedQueryContext(sessionHandle, handle);
+        if (queryCtx.finished() && queryCtx.getStatus().isResultSetAvailable()) {
+          LensResultSet resultSet = getResultset(handle);
+          result.setResultMetadata(resultSet.getMetadata().toQueryResultSetMetadata());
+          result.setResult(resultSet.toQueryResult());
+          result.setStatus(queryCtx.getStatus());
+          return result;
+        }
 
-    // Result is not available. (Explicitly setting values to null for readability)
-    result.setResult(null);
-    result.setResultMetadata(null);
-    result.setStatus(queryCtx.getStatus());
+        // Result is not available. (Explicitly setting values to null for readability)
+        result.setResult(null);
+        result.setResultMetadata(null);
+        result.setStatus(queryCtx.getStatus());
 
-    if (!queryCtx.finished()) {
-      addQueryToCancellationPool(queryCtx, conf, timeoutMillis); //cancel the timed-out Query
+        if (!queryCtx.finished()) {
+          addQueryToCancellationPool(queryCtx, conf, timeoutMillis); //cancel the timed-out Query
+        }
+        return result;
+      } catch (LensException e) {
+        throw new CompletionException(e);
+      }
     }
-
-    return result;
   }
 
   /**
@@ -2567,26 +3482,13 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
-  private boolean isQueued(final LensSessionHandle sessionHandle, final QueryHandle handle)
-    throws LensException {
-    // getQueryContext calls updateStatus, which fires query events if there's a change in status
-    QueryContext query = getUpdatedQueryContext(sessionHandle, handle);
-    synchronized (query) {
-      return query.queued();
-    }
-  }
-
   /**
-   * The Class QueryCompletionListenerImpl.
+   * The Class QueryCompletionListenerImpl. Updates status of the query from driver, once the driver notifies about
+   * completion of the query.
    */
   @Data
   class QueryCompletionListenerImpl extends QueryCompletionListener {
 
-    /**
-     * The succeeded.
-     */
-    boolean querySuccessful = false;
-
     /**
      * The handle.
      */
@@ -2594,20 +3496,27 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     @Override
     public void onCompletion(QueryHandle handle) {
-      synchronized (this) {
-        querySuccessful = true;
-        log.info("Query {} with time out succeeded", handle);
-        this.notify();
-      }
+      log.info("Query {} with time out succeeded", handle);
+      updateStatusAsync();
     }
 
     @Override
     public void onError(QueryHandle handle, String error) {
-      synchronized (this) {
-        querySuccessful = false;
-        log.info("Query {} with time out failed", handle);
-        this.notify();
-      }
+      log.info("Query {} with time out failed", handle);
+      updateStatusAsync();
+    }
+
+    private void updateStatusAsync() {
+      timedExecutionPool.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            updateStatus(handle);
+          } catch (LensException e) {
+            log.warn("Couldn't update status of query {}", handle, e);
+          }
+        }
+      });
     }
   }
 
@@ -2648,7 +3557,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     try {
       log.info("FetchResultSet: session:{} query:{}", sessionHandle, queryHandle);
       acquire(sessionHandle);
-      return getResultset(queryHandle).toQueryResult();
+      LensResultSet resultSet = getResultset(queryHandle);
+      if (resultSet instanceof ResultCursor) {
+        return ((ResultCursor) resultSet).toQueryResult(startIndex, fetchSize);
+      }
+      return resultSet.toQueryResult();
     } finally {
       release(sessionHandle);
     }
@@ -2665,7 +3578,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     try {
       log.info("CloseResultSet:session:{} query:{}", sessionHandle, queryHandle);
       acquire(sessionHandle);
-      resultSets.remove(queryHandle);
+      removeResultSet(queryHandle);
       // Ask driver to close result set
       QueryContext ctx=getQueryContext(queryHandle);
       if (null != ctx) {
@@ -2696,6 +3609,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
 
   private boolean cancelQuery(@NonNull QueryHandle queryHandle) throws LensException {
+    restoreFinishedQuery(queryHandle);
     QueryContext ctx =  allQueries.get(queryHandle);
     if (ctx == null) {
       log.info("Could not cancel query {} as it has been purged already", queryHandle);
@@ -2739,6 +3653,20 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   @Override
   public List<LensQuery> getAllQueryDetails(LensSessionHandle sessionHandle, String states, String userName,
     String driver, String queryName, String fromDate, String toDate) throws LensException {
+    return getAllQueryDetails(sessionHandle, states, userName, driver, queryName, fromDate, toDate, false, null, 0);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getAllQueryDetails(
+   * org.apache.lens.api.LensSessionHandle, java.lang.String, java.lang.String,
+   * java.lang.String, java.lang.String, long, long, boolean, org.apache.lens.api.query.QueryHandle, int)
+   */
+  @Override
+  public List<LensQuery> getAllQueryDetails(LensSessionHandle sessionHandle, String states, String userName,
+    String driver, String queryName, String fromDate, String toDate, boolean summary, QueryHandle after,
+    int pageSize) throws LensException {
     long fromTime = -1;
     long toTime = Long.MAX_VALUE;
     Date now = new Date();
@@ -2756,22 +3684,32 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         userName = getSession(sessionHandle).getLoggedInUser();
       }
       Set<Status> statuses = getStatuses(states);
+      QueryCursor cursor = getQueryCursor(after);
+      // Persisted queries are overridden by in memory queries, in case a query is purged while listing
+      Map<QueryHandle, LensQuery> result = new HashMap<>();
+      for (LensQuery query : getPersistedQueries(userName, driver, queryName, fromTime, toTime, statuses, summary,
+        cursor, pageSize)) {
+        result.put(query.getQueryHandle(), query);
+      }
       List<QueryHandle> inMemoryHandles = getQueriesInMemory(statuses, userName, driver, queryName,
         fromTime, toTime);
-      Set<LensQuery> result = new HashSet<>();
       for (QueryHandle handle : inMemoryHandles) {
         QueryContext ctx = allQueries.get(handle);
         if (ctx == null) {
           continue;
         }
-        result.add(ctx.toLensQuery());
+        LensQuery query = ctx.toLensQuery();
+        if (cursor == null || cursor.isBefore(query)) {
+          result.put(handle, query);
+        }
       }
 
-      List<LensQuery> persistedQueries = getPersistedQueries(userName, driver, queryName,
-        fromTime, toTime, statuses);
-      result.addAll(persistedQueries);
-
-      return new ArrayList<>(result);
+      List<LensQuery> queries = new ArrayList<>(result.values());
+      Collections.sort(queries, QueryCursor.LISTING_ORDER);
+      if (pageSize > 0 && queries.size() > pageSize) {
+        return new ArrayList<>(queries.subList(0, pageSize));
+      }
+      return queries;
     } finally {
       release(sessionHandle);
     }
@@ -2817,8 +3755,55 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getAllQueries(org.apache.lens.api.LensSessionHandle,
+   * java.lang.String, java.lang.String, java.lang.String, java.lang.String, long, long,
+   * org.apache.lens.api.query.QueryHandle, int)
+   */
+  @Override
+  public List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String states, String userName, String driver,
+    String queryName, String fromDate, String toDate, QueryHandle after, int pageSize) throws LensException {
+    if (after == null && pageSize <= 0) {
+      return getAllQueries(sessionHandle, states, userName, driver, queryName, fromDate, toDate);
+    }
+    List<QueryHandle> handles = new ArrayList<>();
+    for (LensQuery query : getAllQueryDetails(sessionHandle, states, userName, driver, queryName, fromDate, toDate,
+      true, after, pageSize)) {
+      handles.add(query.getQueryHandle());
+    }
+    return handles;
+  }
+
+  /**
+   * Get cursor positioned at the given query.
+   *
+   * @param after the query handle
+   * @return the cursor, null if the query handle is null
+   * @throws LensException the lens exception
+   */
+  private QueryCursor getQueryCursor(QueryHandle after) throws LensException {
+    if (after == null) {
+      return null;
+    }
+    Long submissionTime;
+    restoreFinishedQuery(after);
+    QueryContext ctx = allQueries.get(after);
+    if (ctx != null) {
+      submissionTime = ctx.getSubmissionTime();
+    } else {
+      submissionTime = lensServerDao.getSubmissionTime(after.toString());
+    }
+    if (submissionTime == null) {
+      throw new BadRequestException("Query not found " + after);
+    }
+    return new QueryCursor(submissionTime, after.toString());
+  }
+
   private List<LensQuery> getPersistedQueries(String userName, String driver, String queryName,
-    long fromTime, long toTime, Set<Status> statuses) throws LensException {
+    long fromTime, long toTime, Set<Status> statuses, boolean summary, QueryCursor after, int pageSize)
+    throws LensException {
     // Unless user wants to get queries in 'non finished' state, get finished queries from DB as well
     List<Status> finishedStatusesQueried = finishedStatuses(statuses);
     if (finishedStatusesQueried == null || !finishedStatusesQueried.isEmpty()) {
@@ -2826,10 +3811,14 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         userName = null;
       }
       List<FinishedLensQuery> results = lensServerDao.findFinishedQueryDetails(finishedStatusesQueried,
-        userName, driver, queryName, fromTime, toTime);
+        userName, driver, queryName, fromTime, toTime, summary, after, pageSize);
       List<LensQuery> persistedQueries = new ArrayList<>();
       for (FinishedLensQuery finishedLensQuery : results) {
-        persistedQueries.add(finishedLensQuery.toQueryContext(conf, drivers.values()).toLensQuery());
+        if (summary) {
+          persistedQueries.add(finishedLensQuery.toLensQuery());
+        } else {
+          persistedQueries.add(finishedLensQuery.toQueryContext(conf, drivers.values()).toLensQuery());
+        }
       }
       if (!persistedQueries.isEmpty()) {
         log.info("Adding persisted queries {}", persistedQueries.size());
@@ -2887,11 +3876,20 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     boolean filterByDriver = StringUtils.isNotBlank(driver);
 
+    // finished queries yet to be restored are listed too
+    for (QueryHandle handle : unrestoredQueries.keySet()) {
+      restoreFinishedQuery(handle);
+    }
     List<QueryHandle> all = new ArrayList<QueryHandle>(allQueries.keySet());
     Iterator<QueryHandle> itr = all.iterator();
     while (itr.hasNext()) {
       QueryHandle q = itr.next();
       QueryContext context = allQueries.get(q);
+      if (context == null) {
+        // purged while listing
+        itr.remove();
+        continue;
+      }
       long querySubmitTime = context.getSubmissionTime();
       if ((!statuses.contains(context.getStatus().getStatus()))
         || (filterByQueryName && !context.getQueryName().toLowerCase().contains(queryName))
@@ -3120,6 +4118,110 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
     super.readExternal(in);
     // Restore drivers
+    readDrivers(in);
+
+    // Restore queries
+    synchronized (allQueries) {
+      int numQueries = in.readInt();
+
+      for (int i = 0; i < numQueries; i++) {
+        QueryContext ctx = readQuery(in);
+        if (ctx != null) {
+          allQueries.put(ctx.getQueryHandle(), ctx);
+        }
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.LensService#writeExternal(java.io.ObjectOutput)
+   */
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    super.writeExternal(out);
+    // persist all drivers
+    writeDrivers(out);
+    // persist allQueries, along with finished queries yet to be restored
+    synchronized (allQueries) {
+      Map<QueryHandle, QueryContext> persisted = new HashMap<>(unrestoredQueries);
+      persisted.putAll(allQueries);
+      out.writeInt(persisted.size());
+      for (QueryContext ctx : persisted.values()) {
+        writeQuery(out, ctx);
+      }
+      log.info("Persisted {} queries", persisted.size());
+    }
+  }
+
+  @Override
+  public boolean isStateJournaled() {
+    return true;
+  }
+
+  /**
+   * Journals state of all drivers, and the queries added, changed or removed since last call.
+   *
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void writeJournal(ObjectOutput out) throws IOException {
+    writeDrivers(out);
+    List<QueryHandle> changed = new ArrayList<>(changedQueries.size());
+    for (Iterator<QueryHandle> iter = changedQueries.iterator(); iter.hasNext();) {
+      changed.add(iter.next());
+      iter.remove();
+    }
+    out.writeInt(changed.size());
+    for (QueryHandle handle : changed) {
+      out.writeObject(handle);
+      QueryContext ctx = allQueries.get(handle);
+      if (ctx == null) {
+        ctx = unrestoredQueries.get(handle);
+      }
+      out.writeBoolean(ctx != null);
+      if (ctx != null) {
+        writeQuery(out, ctx);
+      }
+    }
+    log.info("Journaled {} changed queries", changed.size());
+  }
+
+  @Override
+  public void readJournal(ObjectInput in) throws IOException, ClassNotFoundException {
+    readDrivers(in);
+    synchronized (allQueries) {
+      int numChanged = in.readInt();
+      for (int i = 0; i < numChanged; i++) {
+        QueryHandle handle = (QueryHandle) in.readObject();
+        QueryContext ctx = in.readBoolean() ? readQuery(in) : null;
+        if (ctx != null) {
+          allQueries.put(handle, ctx);
+        } else {
+          allQueries.remove(handle);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void clearJournal() {
+    changedQueries.clear();
+  }
+
+  /**
+   * Mark the query to be journaled, as it is added, changed or removed.
+   *
+   * @param handle the query handle
+   */
+  private void markQueryChanged(QueryHandle handle) {
+    changedQueries.add(handle);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readDrivers(ObjectInput in) throws IOException, ClassNotFoundException {
     synchronized (drivers) {
       int numDrivers = in.readInt();
       String driverQualifiedName;
@@ -3145,47 +4247,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         driver.readExternal(in);
       }
     }
-
-    // Restore queries
-    synchronized (allQueries) {
-      int numQueries = in.readInt();
-
-      for (int i = 0; i < numQueries; i++) {
-        QueryContext ctx = (QueryContext) in.readObject();
-        ctx.initTransientState();
-
-        //Create DriverSelectorQueryContext by passing all the drivers and the user query
-        //Driver conf gets reset in start
-        DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
-          drivers.values());
-        ctx.setDriverContext(driverCtx);
-        boolean driverAvailable = in.readBoolean();
-        // set the selected driver if available, if not available for the cases of queued queries,
-        // query service will do the selection from existing drivers and update
-        if (driverAvailable) {
-          String selectedDriverQualifiedName = in.readUTF();
-          if (drivers.get(selectedDriverQualifiedName) != null) {
-            ctx.getDriverContext().setSelectedDriver(drivers.get(selectedDriverQualifiedName));
-            ctx.setDriverQuery(ctx.getSelectedDriver(), ctx.getSelectedDriverQuery());
-          } else {
-            log.info("Ignoring {} as the driver is not loaded", ctx.getQueryHandle());
-            continue;
-          }
-        }
-        allQueries.put(ctx.getQueryHandle(), ctx);
-      }
-    }
   }
 
-  /*
-   * (non-Javadoc)
-   *
-   * @see org.apache.lens.server.LensService#writeExternal(java.io.ObjectOutput)
-   */
-  @Override
-  public void writeExternal(ObjectOutput out) throws IOException {
-    super.writeExternal(out);
-    // persist all drivers
+  private void writeDrivers(ObjectOutput out) throws IOException {
     synchronized (drivers) {
       out.writeInt(drivers.size());
       LensDriver driver = null;
@@ -3198,20 +4262,47 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         }
       }
     }
-    // persist allQueries
-    synchronized (allQueries) {
-      out.writeInt(allQueries.size());
-      for (QueryContext ctx : allQueries.values()) {
-        synchronized (ctx) {
-          out.writeObject(ctx);
-          boolean isDriverAvailable = (ctx.getSelectedDriver() != null);
-          out.writeBoolean(isDriverAvailable);
-          if (isDriverAvailable) {
-            out.writeUTF(ctx.getSelectedDriver().getFullyQualifiedName());
-          }
-        }
+  }
+
+  /**
+   * Read a query written by {@link #writeQuery(ObjectOutput, QueryContext)}.
+   *
+   * @param in the in
+   * @return the query context, null if the driver selected for the query is not loaded
+   */
+  private QueryContext readQuery(ObjectInput in) throws IOException, ClassNotFoundException {
+    QueryContext ctx = (QueryContext) in.readObject();
+    ctx.initTransientState();
+
+    //Create DriverSelectorQueryContext by passing all the drivers and the user query
+    //Driver conf gets reset in start
+    DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
+      drivers.values());
+    ctx.setDriverContext(driverCtx);
+    boolean driverAvailable = in.readBoolean();
+    // set the selected driver if available, if not available for the cases of queued queries,
+    // query service will do the selection from existing drivers and update
+    if (driverAvailable) {
+      String selectedDriverQualifiedName = in.readUTF();
+      if (drivers.get(selectedDriverQualifiedName) != null) {
+        ctx.getDriverContext().setSelectedDriver(drivers.get(selectedDriverQualifiedName));
+        ctx.setDriverQuery(ctx.getSelectedDriver(), ctx.getSelectedDriverQuery());
+      } else {
+        log.info("Ignoring {} as the driver is not loaded", ctx.getQueryHandle());
+        return null;
+      }
+    }
+    return ctx;
+  }
+
+  private void writeQuery(ObjectOutput out, QueryContext ctx) throws IOException {
+    synchronized (ctx) {
+      out.writeObject(ctx);
+      boolean isDriverAvailable = (ctx.getSelectedDriver() != null);
+      out.writeBoolean(isDriverAvailable);
+      if (isDriverAvailable) {
+        out.writeUTF(ctx.getSelectedDriver().getFullyQualifiedName());
       }
-      log.info("Persisted {} queries", allQueries.size());
     }
   }
 
@@ -3233,6 +4324,16 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       details.append("Status poller thread is dead.");
     }
 
+    if (this.statusPollerPool.isShutdown() || this.statusPollerPool.isTerminated()) {
+      isHealthy = false;
+      details.append("Status poller Pool is dead.");
+    }
+
+    if (this.timedExecutionPool.isShutdown() || this.timedExecutionPool.isTerminated()) {
+      isHealthy = false;
+      details.append("Timed execution Pool is dead.");
+    }
+
     if (!this.prepareQueryPurger.isAlive()) {
       isHealthy = false;
       details.append("PrepareQuery purger thread is dead.");
@@ -3243,11 +4344,23 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       details.append("Query purger thread is dead.");
     }
 
+    if (!this.finishedQueryPersister.isAlive()) {
+      isHealthy = false;
+      details.append("Finished query persister thread is dead.");
+    }
+
     if (!this.querySubmitter.isAlive()) {
       isHealthy = false;
       details.append("Query submitter thread is dead.");
     }
 
+    for (Thread driverQuerySubmitter : driverQuerySubmitterThreads) {
+      if (!driverQuerySubmitter.isAlive()) {
+        isHealthy = false;
+        details.append(driverQuerySubmitter.getName()).append(" thread is dead.");
+      }
+    }
+
     if (this.queryLauncherPool.isShutdown() || this.queryLauncherPool.isTerminated()) {
       isHealthy = false;
       details.append("Query launcher Pool is dead.");
@@ -3295,6 +4408,18 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
   @Override
   public Response getHttpResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle) throws LensException {
+    return getHttpResultSet(sessionHandle, queryHandle, null, null, null);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getHttpResultSet(org.apache.lens.api.LensSessionHandle,
+   * org.apache.lens.api.query.QueryHandle, java.lang.String, java.lang.String, java.lang.String)
+   */
+  @Override
+  public Response getHttpResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle, String range,
+    String ifRange, String acceptEncoding) throws LensException {
     LensResultSet resultSet = getResultset(queryHandle);
     if (!resultSet.isHttpResultAvailable()) {
       throw new NotFoundException("http result not available");
@@ -3321,24 +4446,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
         throw new LensException(e);
       }
     } else {
-      StreamingOutput stream = new StreamingOutput() {
-        @Override
-        public void write(OutputStream os) throws IOException {
-          FSDataInputStream fin = null;
-          try {
-            FileSystem fs = resultPath.getFileSystem(ctx.getConf());
-            fin = fs.open(resultPath);
-            UtilityMethods.pipe(fin, os);
-          } finally {
-            if (fin != null) {
-              fin.close();
-            }
-
-          }
-        }
-      };
-      return Response.ok(stream).header("content-disposition", "attachment; filename = " + resultPath.getName())
-        .type(MediaType.APPLICATION_OCTET_STREAM).build();
+      try {
+        return ResultFileResponse.build(resultPath, ctx.getConf(), range, ifRange, acceptEncoding);
+      } catch (IOException e) {
+        throw new LensException(e);
+      }
     }
   }
 
@@ -3362,7 +4474,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
   @Override
   public long getQueuedQueriesCount() {
-    return queuedQueries.size();
+    long count = queuedQueries.size();
+    for (QuerySubmitter driverQuerySubmitter : driverQuerySubmitters.values()) {
+      count += driverQuerySubmitter.queue.size();
+    }
+    return count;
   }
 
   @Override
@@ -3377,7 +4493,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
   @Override
   public long getFinishedQueriesCount() {
-    return finishedQueries.size();
+    return finishedQueries.size() + purgeableQueries.size();
   }
 
   @Override
@@ -3555,6 +4671,9 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     try {
       modified = this.launchedQueries.remove(finishedQuery);
+      if (modified) {
+        launchedQueriesRemovals.incrementAndGet();
+      }
     } finally {
       removalFromLaunchedQueriesLock.unlock();
     }
@@ -3606,7 +4725,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       return;
     }
     waitingQueries.removeAll(eligibleWaitingQueries);
-    queuedQueries.addAll(eligibleWaitingQueries);
+    addAllToQueuedQueries(eligibleWaitingQueries);
     if (log.isDebugEnabled()) {
       log.debug("Added {} queries to queued queries", eligibleWaitingQueries.size());
     }
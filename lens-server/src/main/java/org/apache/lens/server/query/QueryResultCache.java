@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.cube.metadata.FactPartition;
+import org.apache.lens.cube.metadata.PartitionChangeListener;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryOutputFormatter;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of results of OLAP queries persisted on the server, shared across sessions.
+ *
+ * A result is keyed by the submitter of the query, the selected driver, the final driver query, the partitions read by
+ * the query and the query output settings, so that results are shared only between queries of the same user. Queries
+ * missing the cache are remembered till they finish, and their formatted result is cached if they succeed. Cached
+ * results and running queries are invalidated when partitions of any table they read change.
+ */
+@Slf4j
+public class QueryResultCache implements PartitionChangeListener {
+
+  private static final String OUTPUT_CONF_PFX = LensConfConstants.QUERY_PFX + "output.";
+  private static final String RESULT_CONF_PFX = LensConfConstants.QUERY_PFX + "result.";
+
+  /** The lens server conf */
+  private final Configuration conf;
+
+  /** Cached results keyed by cache key */
+  private final Cache<String, CachedResult> results;
+
+  /** Queries that missed the cache and have not finished yet */
+  private final Map<QueryHandle, PendingResult> pending = new ConcurrentHashMap<>();
+
+  public QueryResultCache(Configuration conf) {
+    this.conf = conf;
+    this.results = CacheBuilder.newBuilder()
+      .maximumSize(conf.getLong(LensConfConstants.QUERY_RESULT_CACHE_MAX_SIZE,
+        LensConfConstants.DEFAULT_QUERY_RESULT_CACHE_MAX_SIZE))
+      .expireAfterWrite(conf.getLong(LensConfConstants.QUERY_RESULT_CACHE_TTL_SECS,
+        LensConfConstants.DEFAULT_QUERY_RESULT_CACHE_TTL_SECS), TimeUnit.SECONDS)
+      .build();
+  }
+
+  @Data
+  private static class CachedResult {
+    private final Set<String> tables;
+    private final LensResultSetMetadata metadata;
+    private final String outputPath;
+    private final Integer numRows;
+    private final Long fileSize;
+  }
+
+  @Data
+  private static class PendingResult {
+    private final String key;
+    private final Set<String> tables;
+  }
+
+  /**
+   * Look up the result of a query whose driver has been selected. If the query is cacheable and its result is not
+   * cached, the query is remembered so that its result gets cached once it finishes successfully.
+   *
+   * @param ctx the query context
+   * @return the cached result for the query, null if the query is not cacheable or the result is not cached
+   */
+  LensPersistentResult lookup(QueryContext ctx) {
+    DriverQueryPlan plan = getRewriterPlan(ctx);
+    if (plan == null) {
+      return null;
+    }
+    String key = getKey(ctx, plan);
+    CachedResult result = results.getIfPresent(key);
+    if (result != null) {
+      if (resultExists(result)) {
+        log.info("Serving result of {} from query result cache, path:{}", ctx.getQueryHandle(), result.getOutputPath());
+        return new LensPersistentResult(ctx.getQueryHandle(), result.getMetadata(), result.getOutputPath(),
+          result.getNumRows(), result.getFileSize(), conf);
+      }
+      results.invalidate(key);
+    }
+    pending.put(ctx.getQueryHandle(), new PendingResult(key, getTables(plan)));
+    return null;
+  }
+
+  /**
+   * Cache the result of the query if it was looked up and missed the cache, and has finished successfully with a
+   * result persisted on the server.
+   *
+   * @param ctx the finished query
+   */
+  synchronized void queryFinished(QueryContext ctx) {
+    PendingResult pendingResult = pending.remove(ctx.getQueryHandle());
+    QueryOutputFormatter formatter = ctx.getQueryOutputFormatter();
+    if (pendingResult != null && ctx.successful() && formatter != null) {
+      results.put(pendingResult.getKey(), new CachedResult(pendingResult.getTables(), formatter.getMetadata(),
+        formatter.getFinalOutputPath(), formatter.getNumRows(), formatter.getFileSize()));
+    }
+  }
+
+  @Override
+  public synchronized void onPartitionChange(String storageTableName) {
+    Iterator<PendingResult> pendingIter = pending.values().iterator();
+    while (pendingIter.hasNext()) {
+      if (pendingIter.next().getTables().contains(storageTableName)) {
+        pendingIter.remove();
+      }
+    }
+    Iterator<CachedResult> resultIter = results.asMap().values().iterator();
+    while (resultIter.hasNext()) {
+      if (resultIter.next().getTables().contains(storageTableName)) {
+        log.info("Invalidating cached query results on {} after partition change", storageTableName);
+        resultIter.remove();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long size() {
+    results.cleanUp();
+    return results.size();
+  }
+
+  private boolean resultExists(CachedResult result) {
+    try {
+      Path path = new Path(result.getOutputPath());
+      return path.getFileSystem(conf).exists(path);
+    } catch (IOException e) {
+      log.warn("Unable to check cached result {}", result.getOutputPath(), e);
+      return false;
+    }
+  }
+
+  private static DriverQueryPlan getRewriterPlan(QueryContext ctx) {
+    if (!ctx.isOlapQuery() || !ctx.isPersistent() || ctx.getSelectedDriver() == null) {
+      return null;
+    }
+    return ctx.getDriverContext().getDriverRewriterPlan(ctx.getSelectedDriver());
+  }
+
+  @VisibleForTesting
+  static String getKey(QueryContext ctx, DriverQueryPlan plan) {
+    StringBuilder key = new StringBuilder(ctx.getSubmittedUser()).append('\n');
+    key.append(ctx.getSelectedDriver().getFullyQualifiedName()).append('\n');
+    String driverQuery = ctx.getFinalDriverQuery(ctx.getSelectedDriver());
+    key.append(driverQuery != null ? driverQuery : ctx.getSelectedDriverQuery()).append('\n');
+    for (Map.Entry<String, Set<?>> entry : new TreeMap<>(plan.getPartitions()).entrySet()) {
+      List<String> partitions = new ArrayList<>();
+      for (Object partition : entry.getValue()) {
+        partitions.add(String.valueOf(partition));
+      }
+      Collections.sort(partitions);
+      key.append(entry.getKey()).append(partitions).append('\n');
+    }
+    SortedMap<String, String> outputConf = new TreeMap<>();
+    for (Map.Entry<String, String> entry : ctx.getConf()) {
+      if (entry.getKey().startsWith(OUTPUT_CONF_PFX) || entry.getKey().startsWith(RESULT_CONF_PFX)) {
+        outputConf.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return key.append(outputConf).toString();
+  }
+
+  /**
+   * Names of the tables read by the query, as passed to {@link #onPartitionChange(String)}
+   */
+  @VisibleForTesting
+  static Set<String> getTables(DriverQueryPlan plan) {
+    Set<String> tables = new HashSet<>();
+    for (String table : plan.getTablesQueried()) {
+      tables.add(normalize(table));
+    }
+    for (Map.Entry<String, Set<?>> entry : plan.getPartitions().entrySet()) {
+      tables.add(normalize(entry.getKey()));
+      for (Object partition : entry.getValue()) {
+        if (partition instanceof FactPartition) {
+          for (String storageTable : ((FactPartition) partition).getStorageTables()) {
+            tables.add(normalize(storageTable));
+          }
+        }
+      }
+    }
+    return tables;
+  }
+
+  private static String normalize(String table) {
+    // strip alias and database
+    String name = table.trim().split("\\s+")[0];
+    return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.lens.server.query;
 
 import static org.apache.lens.server.api.LensConfConstants.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.concurrent.Executors;
@@ -42,7 +43,8 @@ import lombok.extern.slf4j.Slf4j;
 
 
 /**
- * The Class QueryResultPurger - Purges old files in query resultset directory and hdfs output directory.
+ * The Class QueryResultPurger - Purges old files in query resultset directory and hdfs output directory. Also purges
+ * spill files of result cursors left behind, for example by a server which didn't shut down cleanly.
  */
 @Slf4j
 public class QueryResultPurger implements Runnable {
@@ -66,6 +68,8 @@ public class QueryResultPurger implements Runnable {
 
   private Path hdfsOutputPath;
 
+  private Path resultCursorSpillPath;
+
   private Configuration conf;
 
   /**
@@ -83,6 +87,8 @@ public class QueryResultPurger implements Runnable {
     this.resultsetPath = new Path(conf.get(RESULT_SET_PARENT_DIR, RESULT_SET_PARENT_DIR_DEFAULT));
     this.hdfsOutputPath = new Path(resultsetPath.toString(),
       conf.get(QUERY_HDFS_OUTPUT_PATH, DEFAULT_HDFS_OUTPUT_PATH));
+    this.resultCursorSpillPath = new Path(new File(conf.get(RESULT_CURSOR_SPILL_DIR,
+      DEFAULT_RESULT_CURSOR_SPILL_DIR)).toURI());
     int purgeDelay = conf.getInt(RESULTSET_PURGE_INTERVAL_IN_SECONDS, DEFAULT_RESULTSET_PURGE_INTERVAL_IN_SECONDS);
 
     try {
@@ -132,6 +138,9 @@ public class QueryResultPurger implements Runnable {
     try {
       purgePaths(resultsetPath, resultsetRetention, false);
       purgePaths(hdfsOutputPath, hdfsOutputRetention, true);
+      if (resultCursorSpillPath.getFileSystem(conf).exists(resultCursorSpillPath)) {
+        purgePaths(resultCursorSpillPath, resultsetRetention, false);
+      }
     } catch (Exception e) {
       log.error("Error occurred in Query result purger", e);
       getMetrics().incrCounter(this.getClass(), QUERY_RESULT_PURGER_ERROR_COUNTER);
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.util.UtilityMethods;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Data;
+
+/**
+ * Cache of per driver rewrites and cost estimates of user queries, shared across sessions.
+ *
+ * Rewrites are keyed by the normalized user query, the hash of the effective query conf, the current database and the
+ * metastore epoch. Any change made to cubes, dimensions, tables, storages or partitions through
+ * {@link CubeMetastoreClient} moves the epoch, so that entries computed earlier are never looked up again and age out
+ * of the cache. Queries with time ranges relative to now are not cached, since their rewrite depends on the time.
+ *
+ * Cached rewrites are shared by all query contexts looking them up, and are not copied.
+ */
+public class QueryRewriteCache {
+
+  /** The now token of time ranges relative to the current time */
+  private static final Pattern NOW = Pattern.compile("\\bnow\\b", Pattern.CASE_INSENSITIVE);
+
+  /** Cached rewrites keyed by cache key, and then by driver name */
+  private final Cache<String, ConcurrentMap<String, CachedRewrite>> rewrites;
+
+  public QueryRewriteCache(Configuration conf) {
+    this.rewrites = CacheBuilder.newBuilder()
+      .maximumSize(conf.getLong(LensConfConstants.QUERY_REWRITE_CACHE_MAX_SIZE,
+        LensConfConstants.DEFAULT_QUERY_REWRITE_CACHE_MAX_SIZE))
+      .expireAfterWrite(conf.getLong(LensConfConstants.QUERY_REWRITE_CACHE_TTL_SECS,
+        LensConfConstants.DEFAULT_QUERY_REWRITE_CACHE_TTL_SECS), TimeUnit.SECONDS)
+      .build();
+  }
+
+  /**
+   * Rewrite and estimate of a query for a driver
+   */
+  @Data
+  static class CachedRewrite {
+    private final String driverQuery;
+    /** Rewriter plans are populated when constructed and only read afterwards, so they are shared as is */
+    private final DriverQueryPlan rewriterPlan;
+    /** Query costs are immutable, adding or subtracting costs gives a new cost */
+    private final QueryCost cost;
+    private final boolean olapQuery;
+
+    /**
+     * Set the cached rewrite on the query context, as rewriting the query would.
+     *
+     * @param ctx    the query context
+     * @param driver the driver
+     */
+    void applyRewrite(AbstractQueryContext ctx, LensDriver driver) {
+      if (olapQuery) {
+        ctx.setOlapQuery(true);
+      }
+      ctx.getDriverContext().setDriverRewriterPlan(driver, rewriterPlan);
+      ctx.setDriverQuery(driver, driverQuery);
+    }
+
+    /**
+     * Set the cached cost on the query context, as estimating the query would.
+     *
+     * @param ctx    the query context
+     * @param driver the driver
+     */
+    void applyEstimate(AbstractQueryContext ctx, LensDriver driver) {
+      ctx.setDriverCost(driver, cost);
+    }
+  }
+
+  /**
+   * Get the cache key of the query. The key has to be taken before rewriting the query, so that a rewrite racing
+   * with a metastore change is cached against the earlier epoch.
+   *
+   * @param ctx the query context
+   * @return the key, null if the query is not cacheable
+   */
+  String getKey(AbstractQueryContext ctx) {
+    String query = InFlightQueryIndex.normalize(ctx.getUserQuery());
+    if (NOW.matcher(query).find()) {
+      return null;
+    }
+    byte[] confHash = ctx instanceof QueryContext ? ((QueryContext) ctx).getQueryConfHash() : null;
+    if (confHash == null) {
+      confHash = UtilityMethods.generateHashOfWritable(ctx.getConf());
+    }
+    return getKey(query, confHash, ctx.getDatabase(), CubeMetastoreClient.getMetastoreEpoch());
+  }
+
+  @VisibleForTesting
+  static String getKey(String query, byte[] confHash, String database, long epoch) {
+    return InFlightQueryIndex.getFingerprint(query, confHash) + '\n' + database + '\n' + epoch;
+  }
+
+  /**
+   * Look up the rewrites of a query.
+   *
+   * @param key the cache key
+   * @return cached rewrites keyed by driver name, empty if none are cached
+   */
+  Map<String, CachedRewrite> lookup(String key) {
+    Map<String, CachedRewrite> cached = rewrites.getIfPresent(key);
+    return cached == null ? new ConcurrentHashMap<String, CachedRewrite>() : cached;
+  }
+
+  /**
+   * Cache the rewrite and estimate of a query for a driver.
+   *
+   * @param key     the cache key
+   * @param driver  the driver
+   * @param rewrite the rewrite and estimate, as set by rewriting and estimating the query before hooks ran
+   */
+  void put(String key, LensDriver driver, CachedRewrite rewrite) {
+    ConcurrentMap<String, CachedRewrite> cached = rewrites.asMap().get(key);
+    if (cached == null) {
+      cached = new ConcurrentHashMap<>();
+      ConcurrentMap<String, CachedRewrite> previous = rewrites.asMap().putIfAbsent(key, cached);
+      if (previous != null) {
+        cached = previous;
+      }
+    }
+    cached.put(driver.getFullyQualifiedName(), rewrite);
+  }
+
+  @VisibleForTesting
+  long size() {
+    rewrites.cleanUp();
+    return rewrites.size();
+  }
+}
@@ -23,8 +23,18 @@ import static org.apache.lens.server.error.LensServerErrorCode.INVALID_HANDLE;
 import static org.apache.lens.server.error.LensServerErrorCode.NULL_OR_EMPTY_OR_BLANK_QUERY;
 
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -34,7 +44,9 @@ import org.apache.lens.api.LensConf;
 import org.apache.lens.api.LensSessionHandle;
 import org.apache.lens.api.query.*;
 import org.apache.lens.api.result.LensAPIResult;
+import org.apache.lens.server.LensServerConf;
 import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.annotations.MultiPurposeResource;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.QueryExecutionService;
@@ -63,6 +75,9 @@ public class QueryServiceResource {
 
   private final LogSegregationContext logSegregationContext;
 
+  /** Maximum time for which a request waiting for status change of a query is held */
+  private final long maxStatusChangeWaitMillis;
+
   private void validateSessionId(final LensSessionHandle sessionHandle) throws LensException {
     queryServer.validateSession(sessionHandle);
   }
@@ -91,6 +106,8 @@ public class QueryServiceResource {
   public QueryServiceResource() throws LensException {
     queryServer = LensServices.get().getService(QueryExecutionService.NAME);
     logSegregationContext = LensServices.get().getLogSegregationContext();
+    maxStatusChangeWaitMillis = LensServerConf.getHiveConf().getLong(LensConfConstants.MAX_STATUS_CHANGE_WAIT_MILLIS,
+      LensConfConstants.DEFAULT_MAX_STATUS_CHANGE_WAIT_MILLIS);
   }
 
   /**
@@ -112,6 +129,9 @@ public class QueryServiceResource {
    *                  time_range_in function. Notably: yyyy[-MM[-dd[-HH-[mm...]]]], or now based relative format
    * @param toDate    to date to search queries in a time range, the range is inclusive(toDate &gt; submitTime)
    *                  possible formats it can take is same as fromDate
+   * @param after     Handle of the last query of previous page, to get the next page of queries. Queries are ordered
+   *                  by submission time, latest first
+   * @param pageSize  Maximum number of queries to return. By default, all the queries are returned.
    * @return List of {@link QueryHandle} objects
    */
   @GET
@@ -119,10 +139,12 @@ public class QueryServiceResource {
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
   public List<QueryHandle> getAllQueries(@QueryParam("sessionid") LensSessionHandle sessionid,
     @QueryParam("state") String states, @QueryParam("queryName") String queryName, @QueryParam("user") String user,
-    @QueryParam("driver") String driver, @QueryParam("fromDate") String fromDate, @QueryParam("toDate") String toDate)
+    @QueryParam("driver") String driver, @QueryParam("fromDate") String fromDate, @QueryParam("toDate") String toDate,
+    @QueryParam("after") String after, @DefaultValue("0") @QueryParam("pageSize") int pageSize)
     throws LensException {
     validateSessionId(sessionid);
-    return queryServer.getAllQueries(sessionid, states, user, driver, queryName, fromDate, toDate);
+    return queryServer.getAllQueries(sessionid, states, user, driver, queryName, fromDate, toDate,
+      after == null ? null : getQueryHandle(after), pageSize);
   }
 
   /**
@@ -144,6 +166,11 @@ public class QueryServiceResource {
    *                  time_range_in function. Notably: yyyy[-MM[-dd[-HH-[mm...]]]], or now based relative format
    * @param toDate    to date to search queries in a time range, the range is inclusive(toDate &gt; submitTime)
    *                  possible formats it can take is same as fromDate
+   * @param summary   If true, conf, driver query and failed attempts of finished queries are not returned, which
+   *                  makes listing lot of queries faster. By default, all the details are returned.
+   * @param after     Handle of the last query of previous page, to get the next page of queries. Queries are ordered
+   *                  by submission time, latest first
+   * @param pageSize  Maximum number of queries to return. By default, all the queries are returned.
    * @return List of {@link LensQuery} objects
    */
   @GET
@@ -151,10 +178,12 @@ public class QueryServiceResource {
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
   public List<LensQuery> getAllQueryDetails(@QueryParam("sessionid") LensSessionHandle sessionid,
     @QueryParam("state") String states, @QueryParam("queryName") String queryName, @QueryParam("user") String user,
-    @QueryParam("driver") String driver, @QueryParam("fromDate") String fromDate, @QueryParam("toDate") String toDate)
-    throws LensException {
+    @QueryParam("driver") String driver, @QueryParam("fromDate") String fromDate, @QueryParam("toDate") String toDate,
+    @DefaultValue("false") @QueryParam("summary") boolean summary, @QueryParam("after") String after,
+    @DefaultValue("0") @QueryParam("pageSize") int pageSize) throws LensException {
     validateSessionId(sessionid);
-    return queryServer.getAllQueryDetails(sessionid, states, user, driver, queryName, fromDate, toDate);
+    return queryServer.getAllQueryDetails(sessionid, states, user, driver, queryName, fromDate, toDate, summary,
+      after == null ? null : getQueryHandle(after), pageSize);
   }
 
   /**
@@ -176,23 +205,23 @@ public class QueryServiceResource {
    *                      Note: The timeout parameter is honored only in case of {@link
    *                      org.apache.lens.api.query.SubmitOp#EXECUTE_WITH_TIMEOUT} operation
    * @param queryName     human readable query name set by user (optional parameter)
-
-   * @return {@link LensAPIResult} with DATA as {@link QueryHandle} in case of
+   * @param asyncResponse The response, resumed with {@link LensAPIResult} with DATA as {@link QueryHandle} in case of
    * {@link org.apache.lens.api.query.SubmitOp#EXECUTE} operation.
    * {@link QueryPlan} in case of {@link org.apache.lens.api.query.SubmitOp#EXPLAIN} operation.
    * {@link QueryHandleWithResultSet} in case {@link org.apache.lens.api.query.SubmitOp#EXECUTE_WITH_TIMEOUT}
-   * operation. {@link org.apache.lens.api.result.QueryCostTO} in case of
-   * {@link org.apache.lens.api.query.SubmitOp#ESTIMATE} operation.
+   * operation, once the query completes or the timeout elapses. {@link org.apache.lens.api.result.QueryCostTO} in case
+   * of {@link org.apache.lens.api.query.SubmitOp#ESTIMATE} operation.
    */
   @POST
   @Path("queries")
   @Consumes({MediaType.MULTIPART_FORM_DATA})
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
   @MultiPurposeResource(formParamName = "operation")
-  public LensAPIResult<QuerySubmitResult> query(@FormDataParam("sessionid") LensSessionHandle sessionid,
+  public void query(@FormDataParam("sessionid") LensSessionHandle sessionid,
       @FormDataParam("query") String query, @FormDataParam("operation") String operation,
       @FormDataParam("conf") LensConf conf, @DefaultValue("30000") @FormDataParam("timeoutmillis") Long timeoutmillis,
-      @DefaultValue("") @FormDataParam("queryName") String queryName) throws LensException {
+      @DefaultValue("") @FormDataParam("queryName") String queryName, @Suspended final AsyncResponse asyncResponse)
+    throws LensException {
 
     final String requestId = this.logSegregationContext.getLogSegragationId();
     validateSessionId(sessionid);
@@ -211,12 +240,38 @@ public class QueryServiceResource {
       result = queryServer.explain(requestId, sessionid, query, conf);
       break;
     case EXECUTE_WITH_TIMEOUT:
-      result = queryServer.execute(sessionid, query, timeoutmillis, conf, queryName);
-      break;
+      // resumed once the query completes, without holding a container thread meanwhile
+      resumeOnCompletion(asyncResponse, queryServer.executeWithTimeout(sessionid, query, timeoutmillis, conf,
+        queryName), submitResult -> toEntity(submitResult, requestId));
+      return;
     default:
       throw new UnSupportedOpException(supportedOperations);
     }
-    return LensAPIResult.composedOf(null, requestId, result);
+    asyncResponse.resume(toEntity(result, requestId));
+  }
+
+  private static GenericEntity<LensAPIResult<QuerySubmitResult>> toEntity(QuerySubmitResult result,
+    String requestId) {
+    return new GenericEntity<LensAPIResult<QuerySubmitResult>>(LensAPIResult.composedOf(null, requestId, result)) {};
+  }
+
+  /**
+   * Resume the response once the result is available.
+   *
+   * @param asyncResponse the response
+   * @param result        future of the result
+   * @param toEntity      converts the result to response entity
+   */
+  private static <T> void resumeOnCompletion(final AsyncResponse asyncResponse, CompletableFuture<T> result,
+    final Function<T, ?> toEntity) {
+    result.whenComplete((submitResult, error) -> {
+      if (error == null) {
+        asyncResponse.resume(toEntity.apply(submitResult));
+      } else {
+        asyncResponse.resume(error instanceof CompletionException && error.getCause() != null
+          ? error.getCause() : error);
+      }
+    });
   }
 
   /**
@@ -253,7 +308,7 @@ public class QueryServiceResource {
     List<QueryHandle> handles = null;
     boolean failed = false;
     try {
-      handles = getAllQueries(sessionid, state, queryName, user, driver, fromDate, toDate);
+      handles = getAllQueries(sessionid, state, queryName, user, driver, fromDate, toDate, null, 0);
       for (QueryHandle handle : handles) {
         if (queryServer.cancelQuery(sessionid, handle)) {
           numCancelled++;
@@ -472,6 +527,56 @@ public class QueryServiceResource {
     return queryServer.getQuery(sessionid, getQueryHandle(queryHandle));
   }
 
+  /**
+   * Get lens query once its status changes. The request is held till the status of the query is different from the
+   * given status, or till the timeout elapses, so that clients waiting for a query to complete need not poll for
+   * its status.
+   *
+   * @param sessionid     The user session handle
+   * @param queryHandle   The query handle
+   * @param status        The status of the query last known to the client
+   * @param timeoutMillis Maximum time to hold the request, after which the query is returned in its current status.
+   *                      Default is one minute. Timeouts longer than lens.server.query.status.change.max.wait.millis,
+   *                      or not positive, are taken as that
+   * @param asyncResponse The response, resumed on status change or timeout
+   */
+  @GET
+  @Path("queries/{queryHandle}/statuschange")
+  @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+  public void waitForStatusChange(@QueryParam("sessionid") final LensSessionHandle sessionid,
+    @PathParam("queryHandle") String queryHandle, @QueryParam("status") QueryStatus.Status status,
+    @DefaultValue("60000") @QueryParam("timeoutMillis") long timeoutMillis,
+    @Suspended final AsyncResponse asyncResponse) throws LensException {
+    validateSessionId(sessionid);
+    if (status == null) {
+      throw new BadRequestException("Status of the query should be given");
+    }
+    final QueryHandle handle = getQueryHandle(queryHandle);
+    final CompletableFuture<LensQuery> query = queryServer.getQueryOnStatusChange(sessionid, handle, status);
+    asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+      @Override
+      public void handleTimeout(AsyncResponse response) {
+        query.cancel(false);
+        try {
+          response.resume(queryServer.getQuery(sessionid, handle));
+        } catch (LensException e) {
+          response.resume(e);
+        }
+      }
+    });
+    // non positive timeouts would suspend the response indefinitely
+    asyncResponse.setTimeout(timeoutMillis > 0 ? Math.min(timeoutMillis, maxStatusChangeWaitMillis)
+      : maxStatusChangeWaitMillis, TimeUnit.MILLISECONDS);
+    query.whenComplete((result, error) -> {
+      if (error == null) {
+        asyncResponse.resume(result);
+      } else if (!(error instanceof CancellationException)) {
+        asyncResponse.resume(error instanceof CompletionException && error.getCause() != null
+          ? error.getCause() : error);
+      }
+    });
+  }
+
   /**
    * Cancel the query specified by the handle.
    *
@@ -557,28 +662,34 @@ public class QueryServiceResource {
    * @param timeoutmillis The timeout for the query, honored only in case of
    * {@link org.apache.lens.api.query.SubmitOp#EXECUTE_WITH_TIMEOUT} operation
    * @param queryName     human readable query name set by user (optional parameter)
-   * @return {@link QueryHandle} in case of {link org.apache.lens.api.query.SubmitOp#EXECUTE} operation.
-   * {@link QueryHandleWithResultSet} in case {@link org.apache.lens.api.query.SubmitOp#EXECUTE_WITH_TIMEOUT
-   * } operation.
+   * @param asyncResponse The response, resumed with {@link QueryHandle} in case of
+   * {link org.apache.lens.api.query.SubmitOp#EXECUTE} operation. {@link QueryHandleWithResultSet} in case
+   * {@link org.apache.lens.api.query.SubmitOp#EXECUTE_WITH_TIMEOUT} operation, once the query completes or the
+   * timeout elapses.
    */
   @POST
   @Path("preparedqueries/{prepareHandle}")
   @Consumes({MediaType.MULTIPART_FORM_DATA})
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
   @MultiPurposeResource(formParamName = "operation")
-  public QuerySubmitResult executePrepared(@FormDataParam("sessionid") LensSessionHandle sessionid,
+  public void executePrepared(@FormDataParam("sessionid") LensSessionHandle sessionid,
     @PathParam("prepareHandle") String prepareHandle,
     @DefaultValue("EXECUTE") @FormDataParam("operation") String operation, @FormDataParam("conf") LensConf conf,
     @DefaultValue("30000") @FormDataParam("timeoutmillis") Long timeoutmillis,
-    @DefaultValue("") @FormDataParam("queryName") String queryName) throws LensException {
+    @DefaultValue("") @FormDataParam("queryName") String queryName, @Suspended final AsyncResponse asyncResponse)
+    throws LensException {
     validateSessionId(sessionid);
     SubmitOp[] supportedOperations = new SubmitOp[]{EXECUTE, EXECUTE_WITH_TIMEOUT};
     SubmitOp sop = UtilityMethods.checkAndGetOperation(operation, SubmitOp.class, supportedOperations);
     switch (sop) {
     case EXECUTE:
-      return queryServer.executePrepareAsync(sessionid, getPrepareHandle(prepareHandle), conf, queryName);
+      asyncResponse.resume(queryServer.executePrepareAsync(sessionid, getPrepareHandle(prepareHandle), conf,
+        queryName));
+      return;
     case EXECUTE_WITH_TIMEOUT:
-      return queryServer.executePrepare(sessionid, getPrepareHandle(prepareHandle), timeoutmillis, conf, queryName);
+      resumeOnCompletion(asyncResponse, queryServer.executePrepareWithTimeout(sessionid,
+        getPrepareHandle(prepareHandle), timeoutmillis, conf, queryName), Function.identity());
+      return;
     default:
       throw new UnSupportedOpException(supportedOperations);
     }
@@ -620,18 +731,26 @@ public class QueryServiceResource {
   }
 
   /**
-   * Get the http endpoint for result set.
+   * Get the http endpoint for result set. A single byte range of the result can be asked for with the Range header,
+   * to resume an interrupted download. The range is served only if the If-Range header, when given, matches the ETag
+   * of the result. The whole result is gzip compressed if the Accept-Encoding header allows it, and the result is not
+   * compressed already.
    *
-   * @param sessionid   The user session handle
-   * @param queryHandle The query handle
+   * @param sessionid      The user session handle
+   * @param queryHandle    The query handle
+   * @param range          The byte range of the result to be served, whole result is served if not given
+   * @param ifRange        The ETag of the result the range is asked for
+   * @param acceptEncoding The content encodings acceptable to the client
    * @return Response with result as octet stream
    */
   @GET
   @Path("queries/{queryHandle}/httpresultset")
   @Produces({MediaType.APPLICATION_OCTET_STREAM})
   public Response getHttpResultSet(@QueryParam("sessionid") LensSessionHandle sessionid,
-    @PathParam("queryHandle") String queryHandle) throws LensException {
-    return queryServer.getHttpResultSet(sessionid, getQueryHandle(queryHandle));
+    @PathParam("queryHandle") String queryHandle, @HeaderParam("Range") String range,
+    @HeaderParam("If-Range") String ifRange, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding)
+    throws LensException {
+    return queryServer.getHttpResultSet(sessionid, getQueryHandle(queryHandle), range, ifRange, acceptEncoding);
   }
 
   /**
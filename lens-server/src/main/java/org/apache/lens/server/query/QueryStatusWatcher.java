@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.query.events.StatusChange;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the callbacks waiting for status change of a query, when a status change event is fired for the query. Each
+ * callback is run once, for the first status change after it is registered.
+ */
+@Slf4j
+public class QueryStatusWatcher implements LensEventListener<StatusChange> {
+
+  /**
+   * Callbacks waiting for status change, by query handle. Callback sets are only modified while their mapping is
+   * being computed, and are not reachable once removed.
+   */
+  private final ConcurrentMap<QueryHandle, Set<Runnable>> callbacks = new ConcurrentHashMap<>();
+
+  /**
+   * Register the callback to be run on the next status change of the query.
+   *
+   * @param handle   the query handle
+   * @param callback the callback
+   */
+  public void watch(QueryHandle handle, final Runnable callback) {
+    callbacks.compute(handle, (queryHandle, registered) -> {
+      Set<Runnable> updated = registered == null ? new HashSet<Runnable>() : registered;
+      updated.add(callback);
+      return updated;
+    });
+  }
+
+  /**
+   * Remove the callback, if it is not run yet.
+   *
+   * @param handle   the query handle
+   * @param callback the callback
+   */
+  public void unwatch(QueryHandle handle, final Runnable callback) {
+    callbacks.computeIfPresent(handle, (queryHandle, registered) -> {
+      registered.remove(callback);
+      return registered.isEmpty() ? null : registered;
+    });
+  }
+
+  /**
+   * @return number of queries which have callbacks waiting for status change
+   */
+  public int getWatchedQueriesCount() {
+    return callbacks.size();
+  }
+
+  @Override
+  public void onEvent(StatusChange event) {
+    Set<Runnable> registered = callbacks.remove(event.getQueryHandle());
+    if (registered == null) {
+      return;
+    }
+    for (Runnable callback : registered) {
+      try {
+        callback.run();
+      } catch (Exception e) {
+        log.warn("Status change callback failed for query {}", event.getQueryHandle(), e);
+      }
+    }
+  }
+}
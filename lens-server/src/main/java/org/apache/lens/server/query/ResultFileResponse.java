@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+
+import lombok.Data;
+
+/**
+ * Builds the response streaming a result file over http. Supports single byte ranges of the file, conditional on the
+ * ETag of the result through If-Range, so that interrupted downloads can be resumed. Whole files are gzip compressed
+ * on the fly when the client accepts it, unless the file is compressed already.
+ */
+final class ResultFileResponse {
+
+  /** Response status for unsatisfiable ranges. */
+  static final int RANGE_NOT_SATISFIABLE = 416;
+
+  /** The gzip content encoding. */
+  static final String GZIP = "gzip";
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private ResultFileResponse() {
+  }
+
+  /**
+   * Byte range of a file, both ends inclusive.
+   */
+  @Data
+  static class ByteRange {
+    private final long start;
+    private final long end;
+
+    long getLength() {
+      return end - start + 1;
+    }
+  }
+
+  /**
+   * Build the response for the result file.
+   *
+   * @param resultPath     the result file
+   * @param conf           configuration to get the file system of the result
+   * @param range          value of the Range header, can be null
+   * @param ifRange        value of the If-Range header, can be null
+   * @param acceptEncoding value of the Accept-Encoding header, can be null
+   * @return the response
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static Response build(final Path resultPath, final Configuration conf, String range, String ifRange,
+    String acceptEncoding) throws IOException {
+    FileSystem fs = resultPath.getFileSystem(conf);
+    FileStatus status;
+    try {
+      status = fs.getFileStatus(resultPath);
+    } catch (FileNotFoundException e) {
+      throw new NotFoundException("Result file does not exist!");
+    }
+    final long length = status.getLen();
+    String eTag = getETag(fs.makeQualified(resultPath), length);
+
+    ByteRange byteRange = null;
+    if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+      try {
+        byteRange = parseRange(range, length);
+      } catch (IllegalArgumentException e) {
+        return Response.status(RANGE_NOT_SATISFIABLE).header("Content-Range", "bytes */" + length)
+          .header(HttpHeaders.ETAG, eTag).build();
+      }
+    }
+    final boolean gzip = byteRange == null && acceptsGzip(acceptEncoding) && !isCompressed(resultPath, conf);
+    final ByteRange served = byteRange == null ? new ByteRange(0, length - 1) : byteRange;
+
+    StreamingOutput stream = new StreamingOutput() {
+      @Override
+      public void write(OutputStream os) throws IOException {
+        if (gzip) {
+          GZIPOutputStream gzipOut = new GZIPOutputStream(os, GZIP_BUFFER_SIZE);
+          copy(resultPath, conf, served, gzipOut);
+          gzipOut.finish();
+        } else {
+          copy(resultPath, conf, served, os);
+        }
+        os.flush();
+      }
+    };
+    Response.ResponseBuilder builder = byteRange == null ? Response.ok(stream) : Response.status(
+      Response.Status.PARTIAL_CONTENT).entity(stream).header("Content-Range",
+      "bytes " + byteRange.getStart() + "-" + byteRange.getEnd() + "/" + length);
+    if (gzip) {
+      builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+    } else {
+      builder.header(HttpHeaders.CONTENT_LENGTH, served.getLength());
+    }
+    return builder.header("content-disposition", "attachment; filename = " + resultPath.getName())
+      .header("Accept-Ranges", "bytes").header(HttpHeaders.ETAG, eTag).header(HttpHeaders.VARY,
+        HttpHeaders.ACCEPT_ENCODING).type(MediaType.APPLICATION_OCTET_STREAM).build();
+  }
+
+  /**
+   * Strong ETag of a result file, derived from its path and size. Result files are not modified once written.
+   *
+   * @param qualifiedPath the fully qualified path of the result file
+   * @param length        the file size
+   * @return the ETag, quoted
+   */
+  static String getETag(Path qualifiedPath, long length) {
+    return "\"" + MD5Hash.digest(qualifiedPath.toString() + ":" + length) + "\"";
+  }
+
+  /**
+   * Parse the Range header, only a single range in bytes is supported.
+   *
+   * @param range  the header value
+   * @param length the file size
+   * @return the range to serve, null if the whole file is to be served
+   * @throws IllegalArgumentException if the range can not be satisfied
+   */
+  static ByteRange parseRange(String range, long length) {
+    String spec = range.trim();
+    if (!spec.startsWith("bytes=") || spec.indexOf(',') >= 0) {
+      return null;
+    }
+    spec = spec.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    long start;
+    long end;
+    try {
+      if (dash == 0) {
+        long suffix = Long.parseLong(spec.substring(1).trim());
+        if (suffix <= 0 || length == 0) {
+          throw new IllegalArgumentException("Unsatisfiable range " + range);
+        }
+        start = Math.max(0, length - suffix);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash).trim());
+        String last = spec.substring(dash + 1).trim();
+        if (last.isEmpty()) {
+          end = length - 1;
+        } else {
+          end = Long.parseLong(last);
+          if (end < start) {
+            return null;
+          }
+          end = Math.min(end, length - 1);
+        }
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (start >= length) {
+      throw new IllegalArgumentException("Unsatisfiable range " + range);
+    }
+    return new ByteRange(start, end);
+  }
+
+  /**
+   * Whether the Accept-Encoding header allows gzip encoding.
+   *
+   * @param acceptEncoding the header value, can be null
+   * @return true if gzip is acceptable
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Boolean wildcard = null;
+    for (String token : acceptEncoding.split(",")) {
+      String[] parts = token.split(";");
+      String coding = parts[0].trim().toLowerCase();
+      boolean accepted = true;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+          } catch (NumberFormatException e) {
+            accepted = false;
+          }
+        }
+      }
+      if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+        return accepted;
+      } else if (coding.equals("*")) {
+        wildcard = accepted;
+      }
+    }
+    return wildcard != null && wildcard;
+  }
+
+  private static boolean isCompressed(Path resultPath, Configuration conf) {
+    String name = resultPath.getName();
+    return name.endsWith(".zip") || name.endsWith(".orc") || name.endsWith(".parquet")
+      || new CompressionCodecFactory(conf).getCodec(resultPath) != null;
+  }
+
+  /**
+   * Copy the range of the file to the stream, through a buffer. The servlet output stream can't take a file channel,
+   * so the file is read into the buffer whatever file system it is on.
+   */
+  private static void copy(Path resultPath, Configuration conf, ByteRange range, OutputStream os) throws IOException {
+    if (range.getLength() <= 0) {
+      return;
+    }
+    try (FSDataInputStream in = resultPath.getFileSystem(conf).open(resultPath, COPY_BUFFER_SIZE)) {
+      in.seek(range.getStart());
+      byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      long remaining = range.getLength();
+      while (remaining > 0) {
+        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0) {
+          throw new IOException("Result file " + resultPath + " is shorter than " + (range.getEnd() + 1) + " bytes");
+        }
+        os.write(buffer, 0, read);
+        remaining -= read;
+      }
+    }
+  }
+}
@@ -18,7 +18,11 @@
  */
 package org.apache.lens.server.query;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.lib.query.FilePersistentFormatter;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.InMemoryResultSet;
@@ -31,6 +35,8 @@ import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.api.query.events.QueryExecuted;
 import org.apache.lens.server.model.LogSegregationContext;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.util.ReflectionUtils;
@@ -53,6 +59,9 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
 
   private final LogSegregationContext logSegregationContext;
 
+  /** Pool formatting part files of persisted results in parallel, null if part files are formatted one at a time */
+  private ExecutorService formattingPool;
+
   /**
    * Instantiates a new result formatter.
    *
@@ -64,6 +73,28 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
     this.logSegregationContext = logSegregationContext;
   }
 
+  @Override
+  public void configure(Configuration conf) {
+    super.configure(conf);
+    int poolSize = conf.getInt(LensConfConstants.RESULT_FORMATTER_PARALLEL_POOL_SIZE,
+      LensConfConstants.DEFAULT_RESULT_FORMATTER_PARALLEL_POOL_SIZE);
+    if (poolSize > 0 && formattingPool == null) {
+      formattingPool = Executors.newFixedThreadPool(poolSize, new BasicThreadFactory.Builder()
+        .namingPattern("result-formatting-%d")
+        .daemon(true)
+        .priority(Thread.NORM_PRIORITY)
+        .build());
+    }
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    if (formattingPool != null) {
+      formattingPool.shutdownNow();
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -118,7 +149,11 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
             log.info("Result formatter for {} in persistent result", queryHandle);
             Path persistedDirectory = new Path(ctx.getDriverResultPath());
             // write all files from persistent directory
-            ((PersistedOutputFormatter) formatter).addRowsFromPersistedPath(persistedDirectory);
+            if (formatter instanceof FilePersistentFormatter) {
+              ((FilePersistentFormatter) formatter).addRowsFromPersistedPath(persistedDirectory, formattingPool);
+            } else {
+              ((PersistedOutputFormatter) formatter).addRowsFromPersistedPath(persistedDirectory);
+            }
           } else {
             log.info("Result formatter for {} in inmemory result", queryHandle);
             InMemoryResultSet inmemory = (InMemoryResultSet) resultSet;
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+
+/**
+ * Thread safe implementation which doesn't lock while reading or modifying queries. Queries are sharded by selected
+ * driver on top of the given {@link QueryCollection}, which should be thread safe as well, e.g.
+ * {@link ConcurrentQueryCollection}. Query counts and total query costs are kept in {@link QueryCostAggregates}.
+ *
+ * Sets returned by get behaviours are unmodifiable, weakly consistent views of the collection instead of copies.
+ *
+ * @see EstimatedQueryCollection
+ */
+public class ConcurrentEstimatedQueryCollection implements EstimatedQueryCollection {
+
+  private final QueryCollection queries;
+  private final QueryShards<LensDriver> queriesByDriver = new QueryShards<>();
+  private final QueryCostAggregates aggregates = new QueryCostAggregates();
+
+  public ConcurrentEstimatedQueryCollection(@NonNull final QueryCollection queries) {
+    this.queries = queries;
+  }
+
+  @Override
+  public Set<QueryContext> getQueries(final LensDriver driver) {
+    return queriesByDriver.get(driver);
+  }
+
+  @Override
+  public int getQueriesCount(final LensDriver driver) {
+    return queriesByDriver.count(driver);
+  }
+
+  @Override
+  public QueryCost getTotalQueryCost(final String user) {
+    return this.aggregates.getTotalQueryCost(user);
+  }
+
+  @Override
+  public QueryCost getTotalQueryCost(final LensDriver driver) {
+    return this.aggregates.getTotalQueryCost(driver);
+  }
+
+  @Override
+  public QueryCost getTotalQueryCost(final String user, final LensDriver driver) {
+    return this.aggregates.getTotalQueryCost(user, driver);
+  }
+
+  @Override
+  public int getQueriesCount(final String user) {
+    return this.aggregates.getQueriesCount(user);
+  }
+
+  @Override
+  public int getQueriesCount(final String user, final LensDriver driver) {
+    return this.aggregates.getQueriesCount(user, driver);
+  }
+
+  /**
+   *
+   * @param query
+   * @return
+   * @throws IllegalStateException if selected driver or selected driver query cost is not set for the query
+   */
+  @Override
+  public boolean add(final QueryContext query) {
+    checkState(query);
+    if (!this.queries.add(query)) {
+      return false;
+    }
+    this.queriesByDriver.add(query.getSelectedDriver(), query);
+    this.aggregates.add(query);
+    return true;
+  }
+
+  /**
+   * Checks and reserves count and cost of the query in aggregates of its user through a compare and set, so that
+   * queries of a user are added together without locking.
+   */
+  @Override
+  public boolean addIf(final QueryContext query, final BiPredicate<Integer, QueryCost> userQueriesCheck) {
+    checkState(query);
+    if (!this.aggregates.addIf(query, userQueriesCheck)) {
+      return false;
+    }
+    if (!this.queries.add(query)) {
+      this.aggregates.remove(query);
+      return false;
+    }
+    this.queriesByDriver.add(query.getSelectedDriver(), query);
+    return true;
+  }
+
+  /**
+   *
+   * @param queries
+   * @throws IllegalStateException if selected driver or selected driver query cost is not set for any of the queries
+   */
+  @Override
+  public boolean addAll(final Set<QueryContext> queries) {
+    boolean modified = false;
+    for (QueryContext query : queries) {
+      modified |= add(query);
+    }
+    return modified;
+  }
+
+  @Override
+  public boolean remove(final QueryContext query) {
+    if (!this.queries.remove(query)) {
+      return false;
+    }
+    this.queriesByDriver.remove(query.getSelectedDriver(), query);
+    this.aggregates.remove(query);
+    return true;
+  }
+
+  @Override
+  public boolean removeAll(final Set<QueryContext> queries) {
+    boolean modified = false;
+    for (QueryContext query : queries) {
+      modified |= remove(query);
+    }
+    return modified;
+  }
+
+  @Override
+  public Set<QueryContext> getQueries() {
+    return this.queries.getQueries();
+  }
+
+  @Override
+  public Set<QueryContext> getQueries(final String user) {
+    return this.queries.getQueries(user);
+  }
+
+  @Override
+  public int getQueriesCount() {
+    return this.queries.getQueriesCount();
+  }
+
+  @Override
+  public Integer getQueryIndex(final QueryContext query) {
+    return this.queries.getQueryIndex(query);
+  }
+
+  @VisibleForTesting
+  void checkState(final QueryContext query) {
+    Preconditions.checkState(query.getSelectedDriver() != null);
+    Preconditions.checkState(query.getSelectedDriverQueryCost() != null);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(Queries=" + this.queries + ")";
+  }
+}
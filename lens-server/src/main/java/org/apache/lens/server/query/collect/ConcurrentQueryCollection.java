@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+
+import org.apache.lens.server.api.query.QueryContext;
+
+/**
+ * Thread safe implementation which doesn't lock while reading or modifying queries. Queries are kept in a
+ * {@link ConcurrentQuerySet} and are sharded by submitted user, so that callers working on queries of different users
+ * don't contend with each other.
+ *
+ * Sets returned by get behaviours are unmodifiable, weakly consistent views of the collection instead of copies.
+ * Adding or removing a query updates the views one after another, so a concurrent reader can see a query in one view
+ * and not yet in another.
+ *
+ * @see QueryCollection
+ */
+public class ConcurrentQueryCollection implements QueryCollection {
+
+  private final ConcurrentQuerySet queries;
+  private final QueryShards<String> queriesByUser = new QueryShards<>();
+
+  /**
+   * Creates a collection iterating queries in the order in which they were added.
+   */
+  public ConcurrentQueryCollection() {
+    this(null);
+  }
+
+  /**
+   * Creates a collection iterating queries in the order defined by the given comparator.
+   *
+   * @param order comparator defining order of queries, null for order in which queries were added
+   */
+  public ConcurrentQueryCollection(final Comparator<QueryContext> order) {
+    this.queries = new ConcurrentQuerySet(order);
+  }
+
+  @Override
+  public boolean add(final QueryContext query) {
+    if (!queries.add(query)) {
+      return false;
+    }
+    queriesByUser.add(query.getSubmittedUser(), query);
+    return true;
+  }
+
+  @Override
+  public boolean addAll(final Set<QueryContext> queries) {
+    boolean modified = false;
+    for (QueryContext query : queries) {
+      modified |= add(query);
+    }
+    return modified;
+  }
+
+  @Override
+  public boolean remove(final QueryContext query) {
+    if (!queries.remove(query)) {
+      return false;
+    }
+    queriesByUser.remove(query.getSubmittedUser(), query);
+    return true;
+  }
+
+  @Override
+  public boolean removeAll(final Set<QueryContext> queries) {
+    boolean modified = false;
+    for (QueryContext query : queries) {
+      modified |= remove(query);
+    }
+    return modified;
+  }
+
+  @Override
+  public Set<QueryContext> getQueries() {
+    return Collections.unmodifiableSet(queries);
+  }
+
+  @Override
+  public Set<QueryContext> getQueries(final String user) {
+    return queriesByUser.get(user);
+  }
+
+  @Override
+  public int getQueriesCount() {
+    return queries.size();
+  }
+
+  @Override
+  public Integer getQueryIndex(final QueryContext query) {
+    int index = 1;
+    for (QueryContext existingQuery : queries) {
+      if (existingQuery.getQueryHandle().equals(query.getQueryHandle())) {
+        return index;
+      }
+      index += 1;
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(queries=" + queries + ")";
+  }
+}
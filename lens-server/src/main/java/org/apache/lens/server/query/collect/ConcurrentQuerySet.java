@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.comparators.ChainedComparator;
+import org.apache.lens.server.api.query.comparators.QueryComparator;
+
+import com.google.common.collect.Iterators;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A set of queries which can be read and modified concurrently without locking.
+ *
+ * Queries are iterated in the order defined by the comparator given while creating the set, and queries which are
+ * equal as per the comparator are iterated in the order in which they were added. Without a comparator, queries are
+ * iterated in the order in which they were added. A query keeps the place it got when it was added, even if the
+ * attributes by which it is ordered change afterwards, as long as the comparators are {@link QueryComparator}s
+ * providing ordering attributes, or chains of them. Iteration is weakly consistent: iterators never throw
+ * {@link java.util.ConcurrentModificationException}, and may or may not reflect modifications done after they were
+ * created. Iterators do not support removal.
+ */
+class ConcurrentQuerySet extends AbstractSet<QueryContext> {
+
+  /**
+   * Position of a query in the iteration order, with the ordering attributes of the query when it was added.
+   */
+  @RequiredArgsConstructor
+  private static class Position {
+    private final QueryContext query;
+    private final long sequence;
+    /** Attribute for each comparator, null for comparators which compare the queries themselves */
+    private final Comparable[] attributes;
+  }
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final ConcurrentMap<QueryContext, Position> positions = new ConcurrentHashMap<>();
+  private final ConcurrentNavigableMap<Position, QueryContext> queries;
+  /** Comparators defining the order, applied one after another */
+  private final List<Comparator<QueryContext>> order;
+
+  ConcurrentQuerySet() {
+    this(null);
+  }
+
+  ConcurrentQuerySet(final Comparator<QueryContext> order) {
+    this.order = getComparators(order);
+    this.queries = new ConcurrentSkipListMap<>(new Comparator<Position>() {
+      @Override
+      public int compare(Position p1, Position p2) {
+        int result = compareAttributes(p1, p2);
+        return result != 0 ? result : Long.compare(p1.sequence, p2.sequence);
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Comparator<QueryContext>> getComparators(final Comparator<QueryContext> order) {
+    if (order == null) {
+      return Collections.emptyList();
+    }
+    if (order instanceof ChainedComparator) {
+      return ((ChainedComparator<QueryContext>) order).getComparators();
+    }
+    return Collections.singletonList(order);
+  }
+
+  private Comparable[] getAttributes(final QueryContext query) {
+    Comparable[] attributes = new Comparable[order.size()];
+    for (int i = 0; i < attributes.length; i++) {
+      if (order.get(i) instanceof QueryComparator) {
+        attributes[i] = ((QueryComparator) order.get(i)).getOrderingAttribute(query);
+      }
+    }
+    return attributes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compareAttributes(final Position p1, final Position p2) {
+    for (int i = 0; i < p1.attributes.length; i++) {
+      Comparable attribute1 = p1.attributes[i];
+      Comparable attribute2 = p2.attributes[i];
+      int result = attribute1 != null && attribute2 != null ? attribute1.compareTo(attribute2)
+        : order.get(i).compare(p1.query, p2.query);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public boolean add(final QueryContext query) {
+    Position position = new Position(query, sequence.incrementAndGet(), getAttributes(query));
+    if (positions.putIfAbsent(query, position) != null) {
+      return false;
+    }
+    queries.put(position, query);
+    if (positions.get(query) != position) {
+      // query was removed concurrently, before it could be placed in iteration order
+      queries.remove(position);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(final Object query) {
+    Position position = positions.remove(query);
+    if (position == null) {
+      return false;
+    }
+    // position is looked up by the attributes the query had when it was added
+    queries.remove(position);
+    return true;
+  }
+
+  @Override
+  public boolean contains(final Object query) {
+    return positions.containsKey(query);
+  }
+
+  @Override
+  public int size() {
+    return positions.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return positions.isEmpty();
+  }
+
+  @Override
+  public Iterator<QueryContext> iterator() {
+    return Iterators.transform(Iterators.filter(queries.keySet().iterator(), this::isCurrent), p -> p.query);
+  }
+
+  private boolean isCurrent(final Position position) {
+    return positions.get(position.query) == position;
+  }
+}
@@ -26,7 +26,6 @@ import java.util.Set;
 
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.QueryContext;
-import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -34,26 +33,25 @@ import org.apache.commons.collections.map.MultiValueMap;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import lombok.NonNull;
 import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  *
  * Implementation which creates multiple in memory views of queries existing in lens system and owns responsibility of
- * keeping all the views consistent with each other.
+ * keeping all the views consistent with each other. Query counts and total query costs are kept in
+ * {@link QueryCostAggregates}.
  *
  * @see EstimatedQueryCollection
  *
  */
-@Slf4j
 @ToString
 public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection {
 
   private final QueryCollection queries;
   private final MultiValueMap queriesByDriver = MultiValueMap.decorate(new HashMap(), LinkedHashSet.class);
+  private final QueryCostAggregates aggregates = new QueryCostAggregates();
 
   public DefaultEstimatedQueryCollection(@NonNull final QueryCollection queries) {
     this.queries = queries;
@@ -72,8 +70,27 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
 
   @Override
   public QueryCost getTotalQueryCost(final String user) {
+    return this.aggregates.getTotalQueryCost(user);
+  }
+
+  @Override
+  public QueryCost getTotalQueryCost(final LensDriver driver) {
+    return this.aggregates.getTotalQueryCost(driver);
+  }
+
+  @Override
+  public QueryCost getTotalQueryCost(final String user, final LensDriver driver) {
+    return this.aggregates.getTotalQueryCost(user, driver);
+  }
 
-    return getTotalQueryCost(this.queries.getQueries(user));
+  @Override
+  public int getQueriesCount(final String user) {
+    return this.aggregates.getQueriesCount(user);
+  }
+
+  @Override
+  public int getQueriesCount(final String user, final LensDriver driver) {
+    return this.aggregates.getQueriesCount(user, driver);
   }
 
   /**
@@ -86,6 +103,7 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
   public boolean add(QueryContext query) {
     checkState(query);
     this.queriesByDriver.put(query.getSelectedDriver(), query);
+    this.aggregates.add(query);
     return this.queries.add(query);
   }
 
@@ -112,6 +130,7 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
   @Override
   public boolean remove(QueryContext query) {
     this.queriesByDriver.remove(query.getSelectedDriver(), query);
+    this.aggregates.remove(query);
     return this.queries.remove(query);
   }
 
@@ -157,23 +176,6 @@ public class DefaultEstimatedQueryCollection implements EstimatedQueryCollection
     return driverQueries != null ? driverQueries : CollectionUtils.EMPTY_COLLECTION;
   }
 
-  private QueryCost getTotalQueryCost(final Collection<QueryContext> queries) {
-
-    if (queries.isEmpty()) {
-      return new FactPartitionBasedQueryCost(0);
-    }
-
-    QueryContext query0 = Iterables.get(queries, 0);
-    QueryCost totalQueryCost = query0.getSelectedDriverQueryCost();
-
-    for (QueryContext query : queries) {
-      QueryCost queryCost = query.getSelectedDriverQueryCost();
-      totalQueryCost = totalQueryCost.add(queryCost);
-    }
-    log.debug("Total Query Cost:{}", totalQueryCost);
-    return totalQueryCost;
-  }
-
   @Override
   public synchronized String toString() {
     return getClass().getSimpleName() + "(Queries=" + this.queries + ")";
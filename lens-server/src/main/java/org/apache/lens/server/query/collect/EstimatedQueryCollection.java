@@ -19,7 +19,11 @@
 
 package org.apache.lens.server.query.collect;
 
+import java.util.function.BiPredicate;
+
+import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.cost.QueryCost;
 
 /**
  *
@@ -27,4 +31,19 @@ import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollectio
  * @see MutableQueryCollection
  */
 public interface EstimatedQueryCollection extends EstimatedImmutableQueryCollection, MutableQueryCollection {
+
+  /**
+   * Add the query if count and total cost of queries of its submitted user pass the given check. Thread safe
+   * implementations should do the check and the add atomically with respect to other adds and removes of queries of
+   * the user, and may call the check more than once.
+   *
+   * @param query            the query
+   * @param userQueriesCheck check on count and total cost of queries of the user, before the query is added
+   * @return true if the query got added
+   * @throws IllegalStateException if selected driver or selected driver query cost is not set for the query
+   */
+  default boolean addIf(final QueryContext query, final BiPredicate<Integer, QueryCost> userQueriesCheck) {
+    final String user = query.getSubmittedUser();
+    return userQueriesCheck.test(getQueriesCount(user), getTotalQueryCost(user)) && add(query);
+  }
 }
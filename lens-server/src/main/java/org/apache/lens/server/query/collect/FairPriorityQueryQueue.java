@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.util.FairPriorityBlockingQueue;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ *
+ * {@link QueryQueue} which orders all queries by the query comparator alone. Queries added together through addAll get
+ * equal chance in scheduling.
+ *
+ * @see FairPriorityBlockingQueue
+ */
+public class FairPriorityQueryQueue implements QueryQueue {
+
+  private final FairPriorityBlockingQueue<QueryContext> queue;
+
+  public FairPriorityQueryQueue(final Comparator<QueryContext> comparator, final Configuration conf) {
+    this.queue = new FairPriorityBlockingQueue<>(comparator);
+  }
+
+  @Override
+  public boolean add(final QueryContext query) {
+    return queue.add(query);
+  }
+
+  @Override
+  public void addAll(final Collection<QueryContext> queries) {
+    queue.addAll(queries);
+  }
+
+  @Override
+  public boolean remove(final QueryContext query) {
+    return queue.remove(query);
+  }
+
+  @Override
+  public QueryContext take() throws InterruptedException {
+    return queue.take();
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.apache.lens.server.query.collect.QueryShards.maskNull;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+import lombok.Value;
+
+/**
+ * Count and total cost of queries per user, per driver and per user and driver. Aggregates are updated as queries are
+ * added and removed, so that they can be read in constant time irrespective of the number of queries. Costs which
+ * can't be subtracted are summed afresh over the queries when read, once a query is removed. Thread safe.
+ */
+class QueryCostAggregates {
+
+  private static final QueryCost ZERO_COST = new FactPartitionBasedQueryCost(0);
+
+  /**
+   * Count and total cost of some queries. Total cost is null when there are no queries, or when it is not known as a
+   * cost could not be subtracted from it.
+   */
+  @Value
+  private static class Aggregate {
+    private static final Aggregate EMPTY = new Aggregate(0, null, true);
+
+    private final int count;
+    private final QueryCost cost;
+    private final boolean costKnown;
+
+    @SuppressWarnings("unchecked")
+    Aggregate plus(final QueryCost queryCost) {
+      if (!costKnown) {
+        return new Aggregate(count + 1, null, false);
+      }
+      return new Aggregate(count + 1, cost == null ? queryCost : cost.add(queryCost), true);
+    }
+
+    @SuppressWarnings("unchecked")
+    Aggregate minus(final QueryCost queryCost) {
+      // starting afresh when there are no queries left, so that rounding errors don't pile up
+      if (count <= 1) {
+        return EMPTY;
+      }
+      if (costKnown) {
+        try {
+          return new Aggregate(count - 1, cost.subtract(queryCost), true);
+        } catch (UnsupportedOperationException e) {
+          // summed afresh when read
+        }
+      }
+      return new Aggregate(count - 1, null, false);
+    }
+  }
+
+  @Value
+  private static class UserDriver {
+    private final String user;
+    private final LensDriver driver;
+  }
+
+  /**
+   * The user, driver and cost with which a query was aggregated, so that the query can be removed from same
+   * aggregates with same cost even if the query changes in between.
+   */
+  @Value
+  private static class Contribution {
+    private final String user;
+    private final LensDriver driver;
+    private final QueryCost cost;
+  }
+
+  private final ConcurrentMap<QueryContext, Contribution> contributions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, AtomicReference<Aggregate>> byUser = new ConcurrentHashMap<>();
+  private final ConcurrentMap<LensDriver, AtomicReference<Aggregate>> byDriver = new ConcurrentHashMap<>();
+  private final ConcurrentMap<UserDriver, AtomicReference<Aggregate>> byUserAndDriver = new ConcurrentHashMap<>();
+
+  void add(final QueryContext query) {
+    Contribution contribution = new Contribution(query.getSubmittedUser(), query.getSelectedDriver(),
+      query.getSelectedDriverQueryCost());
+    // locked till the contribution is aggregated, so that a concurrent remove of the query can't overtake it
+    synchronized (contribution) {
+      if (contributions.putIfAbsent(query, contribution) == null) {
+        update(contribution, true);
+      }
+    }
+  }
+
+  /**
+   * Add the query if count and total cost of queries of its user pass the check. Aggregate of the user is updated
+   * through compare and set, which is retried with the check when other queries of the user are added or removed in
+   * between, so that the check and the add are atomic without a lock shared by the user's queries.
+   *
+   * @return true if the query got added
+   */
+  boolean addIf(final QueryContext query, final BiPredicate<Integer, QueryCost> userQueriesCheck) {
+    final Contribution contribution = new Contribution(query.getSubmittedUser(), query.getSelectedDriver(),
+      query.getSelectedDriverQueryCost());
+    synchronized (contribution) {
+      if (contributions.putIfAbsent(query, contribution) != null) {
+        return false;
+      }
+      final String user = contribution.getUser();
+      final Predicate<Contribution> otherUserQueries = c -> c != contribution && Objects.equals(c.getUser(), user);
+      final AtomicReference<Aggregate> userAggregate = getAggregate(byUser, maskNull(user));
+      Aggregate current;
+      do {
+        current = userAggregate.get();
+        if (!userQueriesCheck.test(current.getCount(), getCost(current, otherUserQueries))) {
+          contributions.remove(query, contribution);
+          return false;
+        }
+      } while (!userAggregate.compareAndSet(current, current.plus(contribution.getCost())));
+      updateDriverAggregates(contribution, true);
+    }
+    return true;
+  }
+
+  void remove(final QueryContext query) {
+    Contribution contribution = contributions.remove(query);
+    if (contribution != null) {
+      synchronized (contribution) {
+        update(contribution, false);
+      }
+    }
+  }
+
+  private void update(final Contribution contribution, final boolean added) {
+    getAggregate(byUser, maskNull(contribution.getUser())).updateAndGet(getUpdate(contribution, added));
+    updateDriverAggregates(contribution, added);
+  }
+
+  private void updateDriverAggregates(final Contribution contribution, final boolean added) {
+    UnaryOperator<Aggregate> update = getUpdate(contribution, added);
+    getAggregate(byDriver, contribution.getDriver()).updateAndGet(update);
+    UserDriver userDriver = new UserDriver(contribution.getUser(), contribution.getDriver());
+    getAggregate(byUserAndDriver, userDriver).updateAndGet(update);
+  }
+
+  QueryCost getTotalQueryCost(final String user) {
+    return getCost(byUser.get(maskNull(user)), c -> Objects.equals(c.getUser(), user));
+  }
+
+  QueryCost getTotalQueryCost(final LensDriver driver) {
+    return getCost(byDriver.get(driver), c -> Objects.equals(c.getDriver(), driver));
+  }
+
+  QueryCost getTotalQueryCost(final String user, final LensDriver driver) {
+    return getCost(byUserAndDriver.get(new UserDriver(user, driver)),
+      c -> Objects.equals(c.getUser(), user) && Objects.equals(c.getDriver(), driver));
+  }
+
+  int getQueriesCount(final String user) {
+    return getCount(byUser.get(maskNull(user)));
+  }
+
+  int getQueriesCount(final String user, final LensDriver driver) {
+    return getCount(byUserAndDriver.get(new UserDriver(user, driver)));
+  }
+
+  private static UnaryOperator<Aggregate> getUpdate(final Contribution contribution, final boolean added) {
+    final QueryCost cost = contribution.getCost();
+    return added ? a -> a.plus(cost) : a -> a.minus(cost);
+  }
+
+  private static <K> AtomicReference<Aggregate> getAggregate(final ConcurrentMap<K, AtomicReference<Aggregate>> map,
+    final K key) {
+    AtomicReference<Aggregate> aggregate = map.get(key);
+    if (aggregate == null) {
+      aggregate = map.computeIfAbsent(key, k -> new AtomicReference<>(Aggregate.EMPTY));
+    }
+    return aggregate;
+  }
+
+  private QueryCost getCost(final AtomicReference<Aggregate> aggregate, final Predicate<Contribution> filter) {
+    return aggregate == null ? ZERO_COST : getCost(aggregate.get(), filter);
+  }
+
+  private QueryCost getCost(final Aggregate aggregate, final Predicate<Contribution> filter) {
+    QueryCost cost = aggregate.isCostKnown() ? aggregate.getCost() : sumCosts(filter);
+    return cost != null ? cost : ZERO_COST;
+  }
+
+  @SuppressWarnings("unchecked")
+  private QueryCost sumCosts(final Predicate<Contribution> filter) {
+    QueryCost sum = null;
+    for (Contribution contribution : contributions.values()) {
+      if (filter.test(contribution)) {
+        sum = sum == null ? contribution.getCost() : sum.add(contribution.getCost());
+      }
+    }
+    return sum;
+  }
+
+  private static int getCount(final AtomicReference<Aggregate> aggregate) {
+    return aggregate == null ? 0 : aggregate.get().getCount();
+  }
+}
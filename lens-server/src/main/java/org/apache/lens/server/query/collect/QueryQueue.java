@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Collection;
+
+import org.apache.lens.server.api.query.QueryContext;
+
+/**
+ *
+ * Queue of queries accepted by lens server, from which query submitter takes the next query to be launched. The
+ * queueing discipline, i.e. the order in which queries are taken out, is decided by the implementation.
+ *
+ * Implementations are instantiated through a public constructor taking the query comparator configured for the server
+ * (a {@link java.util.Comparator} of {@link QueryContext}) and the server configuration
+ * (a {@link org.apache.hadoop.conf.Configuration}), and have to be thread safe.
+ *
+ * @see FairPriorityQueryQueue
+ * @see WeightedFairQueryQueue
+ */
+public interface QueryQueue {
+
+  /**
+   * Adds a query to the queue.
+   *
+   * @param query
+   * @return true if the query got added
+   */
+  boolean add(final QueryContext query);
+
+  /**
+   * Adds all given queries to the queue, such that no query is taken out before all of them are added.
+   *
+   * @param queries
+   */
+  void addAll(final Collection<QueryContext> queries);
+
+  /**
+   * Removes a query from the queue.
+   *
+   * @param query
+   * @return true if the query was in the queue
+   */
+  boolean remove(final QueryContext query);
+
+  /**
+   * Takes out the next query, waiting till a query is available.
+   *
+   * @return the next query
+   * @throws InterruptedException if interrupted while waiting
+   */
+  QueryContext take() throws InterruptedException;
+
+  /**
+   *
+   * @return number of queries in the queue
+   */
+  int size();
+}
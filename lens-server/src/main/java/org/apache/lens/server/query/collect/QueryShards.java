@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.server.api.query.QueryContext;
+
+/**
+ * Queries partitioned into concurrent sets by a key, like submitted user or selected driver. Queries within a shard are
+ * not ordered. A shard is created when first query of its key is added, and is retained after its queries are removed
+ * so that adding and removing queries never has to lock the shard.
+ *
+ * @param <K> type of the key
+ */
+class QueryShards<K> {
+
+  /** Key used for queries having null key, since concurrent maps don't accept null keys */
+  private static final Object NULL_KEY = new Object();
+
+  private final ConcurrentMap<Object, Set<QueryContext>> shards = new ConcurrentHashMap<>();
+
+  void add(final K key, final QueryContext query) {
+    Object shardKey = maskNull(key);
+    Set<QueryContext> shard = shards.get(shardKey);
+    if (shard == null) {
+      shard = shards.computeIfAbsent(shardKey, k -> ConcurrentHashMap.<QueryContext>newKeySet());
+    }
+    shard.add(query);
+  }
+
+  void remove(final K key, final QueryContext query) {
+    Set<QueryContext> shard = shards.get(maskNull(key));
+    if (shard != null) {
+      shard.remove(query);
+    }
+  }
+
+  /**
+   * @param key the key
+   * @return An unmodifiable, weakly consistent view of the queries of given key. Empty set if there are no queries.
+   */
+  Set<QueryContext> get(final K key) {
+    Set<QueryContext> shard = shards.get(maskNull(key));
+    return shard != null ? Collections.unmodifiableSet(shard) : Collections.<QueryContext>emptySet();
+  }
+
+  int count(final K key) {
+    Set<QueryContext> shard = shards.get(maskNull(key));
+    return shard != null ? shard.size() : 0;
+  }
+
+  static Object maskNull(final Object key) {
+    return key != null ? key : NULL_KEY;
+  }
+
+  @Override
+  public String toString() {
+    return shards.toString();
+  }
+}
@@ -20,6 +20,7 @@
 package org.apache.lens.server.query.collect;
 
 import java.util.Set;
+import java.util.function.BiPredicate;
 
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.QueryContext;
@@ -54,6 +55,26 @@ public class ThreadSafeEstimatedQueryCollection implements EstimatedQueryCollect
     return this.estimatedQueries.getTotalQueryCost(user);
   }
 
+  @Override
+  public synchronized QueryCost getTotalQueryCost(LensDriver driver) {
+    return this.estimatedQueries.getTotalQueryCost(driver);
+  }
+
+  @Override
+  public synchronized QueryCost getTotalQueryCost(String user, LensDriver driver) {
+    return this.estimatedQueries.getTotalQueryCost(user, driver);
+  }
+
+  @Override
+  public synchronized int getQueriesCount(String user) {
+    return this.estimatedQueries.getQueriesCount(user);
+  }
+
+  @Override
+  public synchronized int getQueriesCount(String user, LensDriver driver) {
+    return this.estimatedQueries.getQueriesCount(user, driver);
+  }
+
   @Override
   public synchronized Set<QueryContext> getQueries() {
     return this.estimatedQueries.getQueries();
@@ -79,6 +100,11 @@ public class ThreadSafeEstimatedQueryCollection implements EstimatedQueryCollect
     return this.estimatedQueries.add(query);
   }
 
+  @Override
+  public synchronized boolean addIf(QueryContext query, BiPredicate<Integer, QueryCost> userQueriesCheck) {
+    return this.estimatedQueries.addIf(query, userQueriesCheck);
+  }
+
   @Override
   public synchronized boolean addAll(Set<QueryContext> queries) {
     return this.estimatedQueries.addAll(queries);
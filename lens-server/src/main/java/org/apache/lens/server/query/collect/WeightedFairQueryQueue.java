@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryExecutionService;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ *
+ * {@link QueryQueue} which keeps a sub queue of queries for each user, or for each tenant when
+ * {@link org.apache.lens.server.api.LensConfConstants#WEIGHTED_FAIR_QUEUE_TENANT_CONF_KEY} is set, and takes queries
+ * out of the sub queues in weighted deficit round robin. A sub queue with weight w gets w queries taken out for every
+ * query of a sub queue with weight 1, so a user with a large backlog can't starve other users.
+ *
+ * Within a sub queue, queries are taken out in the order of the query comparator. A query which has been in the queue
+ * for longer than {@link org.apache.lens.server.api.LensConfConstants#WEIGHTED_FAIR_QUEUE_AGING_MILLIS} is taken out
+ * ahead of the sub queue's queries with higher priority.
+ *
+ * Adding and taking out queries take O(log n) time. Time spent by queries in the queue is published to a timer metric
+ * for each sub queue.
+ */
+public class WeightedFairQueryQueue implements QueryQueue {
+
+  static final String QUEUE_WAIT_TIME = "queue-wait-time";
+
+  private final Comparator<Entry> entryComparator;
+  private final String tenantConfKey;
+  private final Map<String, Double> weights;
+  private final double defaultWeight;
+  private final long agingMillis;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+
+  private final Map<QueryContext, Entry> entries = new HashMap<>();
+  private final Map<String, SubQueue> subQueues = new HashMap<>();
+
+  /**
+   * Sub queues in round robin order, the head being served currently. A sub queue which got emptied by a removal is
+   * dropped when it reaches the head.
+   */
+  private final Deque<SubQueue> activeSubQueues = new ArrayDeque<>();
+
+  private long sequence = 0;
+
+  @RequiredArgsConstructor
+  private static class Entry {
+    private final QueryContext query;
+    private final SubQueue subQueue;
+    private final long sequence;
+    private final long enqueueTime;
+  }
+
+  private class SubQueue {
+    private final double weight;
+    private final Timer waitTime;
+
+    /* Queries in the order of query comparator */
+    private final TreeSet<Entry> byPriority = new TreeSet<>(entryComparator);
+    /* Queries in the order in which they entered the queue */
+    private final LinkedHashSet<Entry> byAge = new LinkedHashSet<>();
+
+    private double deficit = 0;
+    private boolean active = false;
+
+    SubQueue(final String name) {
+      this.weight = weights.containsKey(name) ? weights.get(name) : defaultWeight;
+      this.waitTime = LensMetricsRegistry.getStaticRegistry().timer(
+        MetricRegistry.name(QueryExecutionService.class, QUEUE_WAIT_TIME, name));
+    }
+
+    boolean isEmpty() {
+      return byAge.isEmpty();
+    }
+
+    void add(final Entry entry) {
+      byPriority.add(entry);
+      byAge.add(entry);
+    }
+
+    void remove(final Entry entry) {
+      byAge.remove(entry);
+      if (!byPriority.remove(entry)) {
+        // ordering attributes of the query have changed since it was added
+        byPriority.removeIf(e -> e == entry);
+      }
+    }
+
+    Entry next(final long now) {
+      Entry oldest = byAge.iterator().next();
+      return agingMillis > 0 && now - oldest.enqueueTime >= agingMillis ? oldest : byPriority.first();
+    }
+  }
+
+  public WeightedFairQueryQueue(@NonNull final Comparator<QueryContext> comparator,
+    @NonNull final Configuration conf) {
+    this.entryComparator = Comparator.<Entry, QueryContext>comparing(e -> e.query, comparator)
+      .thenComparingLong(e -> e.sequence);
+    this.tenantConfKey = StringUtils.trimToNull(conf.get(WEIGHTED_FAIR_QUEUE_TENANT_CONF_KEY));
+    this.defaultWeight = conf.getDouble(WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT, DEFAULT_WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT);
+    Preconditions.checkArgument(defaultWeight > 0, "%s should be positive", WEIGHTED_FAIR_QUEUE_DEFAULT_WEIGHT);
+    this.weights = parseWeights(conf.getTrimmedStringCollection(WEIGHTED_FAIR_QUEUE_WEIGHTS));
+    this.agingMillis = conf.getLong(WEIGHTED_FAIR_QUEUE_AGING_MILLIS, DEFAULT_WEIGHTED_FAIR_QUEUE_AGING_MILLIS);
+  }
+
+  private static Map<String, Double> parseWeights(final Collection<String> nameWeights) {
+    Map<String, Double> weights = new HashMap<>();
+    for (String nameWeight : nameWeights) {
+      int separator = nameWeight.lastIndexOf(':');
+      Preconditions.checkArgument(separator > 0, "Invalid weight %s in %s. Expected name:weight", nameWeight,
+        WEIGHTED_FAIR_QUEUE_WEIGHTS);
+      double weight = Double.parseDouble(nameWeight.substring(separator + 1).trim());
+      Preconditions.checkArgument(weight > 0, "Weight of %s in %s should be positive", nameWeight,
+        WEIGHTED_FAIR_QUEUE_WEIGHTS);
+      weights.put(nameWeight.substring(0, separator).trim(), weight);
+    }
+    return weights;
+  }
+
+  @VisibleForTesting
+  String getSubQueueName(final QueryContext query) {
+    String name = null;
+    if (tenantConfKey != null && query.getConf() != null) {
+      name = query.getConf().get(tenantConfKey);
+    }
+    return name != null ? name : String.valueOf(query.getSubmittedUser());
+  }
+
+  @Override
+  public boolean add(final QueryContext query) {
+    lock.lock();
+    try {
+      boolean modified = enqueue(query);
+      notEmpty.signal();
+      return modified;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void addAll(final Collection<QueryContext> queries) {
+    lock.lock();
+    try {
+      for (QueryContext query : queries) {
+        enqueue(query);
+      }
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean enqueue(final QueryContext query) {
+    if (entries.containsKey(query)) {
+      return false;
+    }
+    String name = getSubQueueName(query);
+    SubQueue subQueue = subQueues.get(name);
+    if (subQueue == null) {
+      subQueue = new SubQueue(name);
+      subQueues.put(name, subQueue);
+    }
+    Entry entry = new Entry(query, subQueue, sequence++, System.currentTimeMillis());
+    entries.put(query, entry);
+    subQueue.add(entry);
+    if (!subQueue.active) {
+      subQueue.active = true;
+      activeSubQueues.addLast(subQueue);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(final QueryContext query) {
+    lock.lock();
+    try {
+      Entry entry = entries.remove(query);
+      if (entry == null) {
+        return false;
+      }
+      entry.subQueue.remove(entry);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public QueryContext take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (entries.isEmpty()) {
+        notEmpty.await();
+      }
+      final long now = System.currentTimeMillis();
+      for (;;) {
+        SubQueue subQueue = activeSubQueues.peekFirst();
+        if (subQueue.isEmpty()) {
+          deactivate(activeSubQueues.pollFirst());
+          continue;
+        }
+        if (subQueue.deficit < 1) {
+          // start of the sub queue's turn
+          subQueue.deficit += subQueue.weight;
+          if (subQueue.deficit < 1) {
+            // weight less than one, sub queue has to wait for more turns to take a query out
+            activeSubQueues.addLast(activeSubQueues.pollFirst());
+            continue;
+          }
+        }
+        Entry entry = subQueue.next(now);
+        entries.remove(entry.query);
+        subQueue.remove(entry);
+        subQueue.deficit -= 1;
+        if (subQueue.isEmpty()) {
+          deactivate(activeSubQueues.pollFirst());
+        } else if (subQueue.deficit < 1) {
+          activeSubQueues.addLast(activeSubQueues.pollFirst());
+        }
+        subQueue.waitTime.update(now - entry.enqueueTime, TimeUnit.MILLISECONDS);
+        return entry.query;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void deactivate(final SubQueue subQueue) {
+    subQueue.active = false;
+    subQueue.deficit = 0;
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -19,13 +19,17 @@
 
 package org.apache.lens.server.query.constraint;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.constraint.UserQueryLaunchingConstraint;
 import org.apache.lens.server.api.retry.BackOffRetryHandler;
+import org.apache.lens.server.query.collect.EstimatedQueryCollection;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
@@ -56,17 +60,47 @@ public class DefaultQueryLaunchingConstraintsChecker implements QueryLaunchingCo
     Set<QueryLaunchingConstraint> allConstraints = prepareAllConstraints(candidateQuery);
 
     for (QueryLaunchingConstraint queryConstraint : allConstraints) {
-      String launchRejectionMessage = queryConstraint.allowsLaunchOf(candidateQuery, launchedQueries);
-      if (launchRejectionMessage != null) {
-        log.info("query {} not allowed to launch. Constraint failed: {} with message: {}",
-          candidateQuery, queryConstraint, launchRejectionMessage);
-        candidateQuery.getStatus().setProgressMessage(launchRejectionMessage);
+      if (isRejected(candidateQuery, queryConstraint, queryConstraint.allowsLaunchOf(candidateQuery,
+        launchedQueries))) {
         return false;
       }
     }
     return true;
   }
 
+  @Override
+  public boolean addIfCanLaunch(final QueryContext candidateQuery, final EstimatedQueryCollection launchedQueries) {
+    final List<UserQueryLaunchingConstraint> userConstraints = new ArrayList<>();
+    for (QueryLaunchingConstraint queryConstraint : prepareAllConstraints(candidateQuery)) {
+      if (queryConstraint instanceof UserQueryLaunchingConstraint) {
+        userConstraints.add((UserQueryLaunchingConstraint) queryConstraint);
+      } else if (isRejected(candidateQuery, queryConstraint, queryConstraint.allowsLaunchOf(candidateQuery,
+        launchedQueries))) {
+        return false;
+      }
+    }
+    return launchedQueries.addIf(candidateQuery, (launchedQueryCount, launchedQueriesCost) -> {
+      for (UserQueryLaunchingConstraint userConstraint : userConstraints) {
+        if (isRejected(candidateQuery, userConstraint, userConstraint.allowsLaunchOf(candidateQuery,
+          launchedQueryCount, launchedQueriesCost))) {
+          return false;
+        }
+      }
+      return true;
+    });
+  }
+
+  private static boolean isRejected(final QueryContext candidateQuery, final QueryLaunchingConstraint queryConstraint,
+    final String launchRejectionMessage) {
+    if (launchRejectionMessage == null) {
+      return false;
+    }
+    log.info("query {} not allowed to launch. Constraint failed: {} with message: {}",
+      candidateQuery, queryConstraint, launchRejectionMessage);
+    candidateQuery.getStatus().setProgressMessage(launchRejectionMessage);
+    return true;
+  }
+
   @VisibleForTesting
   Set<QueryLaunchingConstraint> prepareAllConstraints(final QueryContext candidateQuery) {
 
@@ -21,6 +21,7 @@ package org.apache.lens.server.query.constraint;
 
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.query.collect.EstimatedQueryCollection;
 
 /**
  *
@@ -30,4 +31,15 @@ import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollectio
 public interface QueryLaunchingConstraintsChecker {
 
   boolean canLaunch(final QueryContext candidateQuery, final EstimatedImmutableQueryCollection launchedQueries);
+
+  /**
+   * Adds the candidate query to launched queries if it can be launched. Constraints on launched queries of the
+   * submitted user are checked atomically with the add, other constraints are checked before it. Callers should not
+   * decide launches of the same driver concurrently.
+   *
+   * @param candidateQuery  the query
+   * @param launchedQueries the launched queries
+   * @return true if the query got added to launched queries
+   */
+  boolean addIfCanLaunch(final QueryContext candidateQuery, final EstimatedQueryCollection launchedQueries);
 }
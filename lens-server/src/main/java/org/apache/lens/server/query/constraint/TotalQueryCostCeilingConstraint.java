@@ -19,8 +19,7 @@
 package org.apache.lens.server.query.constraint;
 
 import org.apache.lens.server.api.query.QueryContext;
-import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
-import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.constraint.UserQueryLaunchingConstraint;
 import org.apache.lens.server.api.query.cost.QueryCost;
 
 import com.google.common.base.Optional;
@@ -30,7 +29,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @EqualsAndHashCode
-public class TotalQueryCostCeilingConstraint implements QueryLaunchingConstraint {
+public class TotalQueryCostCeilingConstraint implements UserQueryLaunchingConstraint {
 
   /**
    * Per user total query cost ceiling for launching a new query.
@@ -53,22 +52,20 @@ public class TotalQueryCostCeilingConstraint implements QueryLaunchingConstraint
    * the total query cost ceiling per user  is not present.
    *
    * @param candidateQuery The query which is the next candidate to be launched.
-   * @param launchedQueries Current launched queries
+   * @param launchedQueryCount Count of launched queries of the user
+   * @param launchedQueriesCost Total cost of launched queries of the user
    * @return
    */
   @Override
-  public String allowsLaunchOf(
-    final QueryContext candidateQuery, final EstimatedImmutableQueryCollection launchedQueries) {
+  public String allowsLaunchOf(final QueryContext candidateQuery, final int launchedQueryCount,
+    final QueryCost launchedQueriesCost) {
 
     if (!totalQueryCostCeilingPerUser.isPresent()) {
       return null;
     }
 
-    final String currentUser = candidateQuery.getSubmittedUser();
-    QueryCost totalQueryCostForCurrentUser = launchedQueries.getTotalQueryCost(currentUser);
-
-    if (totalQueryCostForCurrentUser.compareTo(totalQueryCostCeilingPerUser.get()) > 0) {
-      return totalQueryCostForCurrentUser + "/" + totalQueryCostCeilingPerUser + " capacity utilized by "
+    if (launchedQueriesCost.compareTo(totalQueryCostCeilingPerUser.get()) > 0) {
+      return launchedQueriesCost + "/" + totalQueryCostCeilingPerUser + " capacity utilized by "
         + candidateQuery.getSubmittedUser();
     }
     return null;
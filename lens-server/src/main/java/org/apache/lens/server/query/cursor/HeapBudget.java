@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Heap bytes shared by result cursors to keep their rows in.
+ */
+class HeapBudget {
+
+  /** The budget. */
+  @Getter
+  private final long limit;
+
+  /** Bytes reserved. */
+  private final AtomicLong used = new AtomicLong();
+
+  HeapBudget(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Reserve bytes, if they are within the budget.
+   *
+   * @param bytes the bytes
+   * @return true if reserved, false if the budget doesn't have as many bytes left
+   */
+  boolean tryReserve(long bytes) {
+    while (true) {
+      long current = used.get();
+      if (current + bytes > limit) {
+        return false;
+      }
+      if (used.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Reserve bytes, even if they are beyond the budget. For bytes which have to be on heap anyway, so that other
+   * reservations see them.
+   *
+   * @param bytes the bytes
+   */
+  void reserve(long bytes) {
+    used.addAndGet(bytes);
+  }
+
+  void release(long bytes) {
+    used.addAndGet(-bytes);
+  }
+
+  long getUsed() {
+    return used.get();
+  }
+}
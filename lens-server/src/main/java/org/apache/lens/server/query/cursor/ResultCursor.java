@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lens.api.query.InMemoryQueryResult;
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.driver.InMemoryResultSet;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.error.LensException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Server side cursor over an in memory result of a driver. Rows are read from the driver result as far as they are
+ * fetched, and kept in a {@link RowStore}, so that rows can be fetched from any index, any number of times, by any
+ * number of clients.
+ *
+ * The cursor is fully accessed once a fetch reaches the end of the result. Rows can still be fetched after that, till
+ * the cursor is closed along with the query.
+ */
+@Slf4j
+public class ResultCursor extends InMemoryResultSet implements Closeable {
+
+  /** The driver result. */
+  private final InMemoryResultSet driverResultSet;
+
+  /** The rows read from driver result. */
+  private final RowStore rows;
+
+  /** Metadata of the driver result, cached since driver result can be closed before the cursor. */
+  private final LensResultSetMetadata metadata;
+
+  /** Whether all the rows of driver result are read. */
+  private volatile boolean exhausted;
+
+  /** Index of the next row for {@link #hasNext()} and {@link #next()}. */
+  private long position;
+
+  ResultCursor(InMemoryResultSet driverResultSet, RowStore rows) throws LensException {
+    this.driverResultSet = driverResultSet;
+    this.rows = rows;
+    this.metadata = driverResultSet.getMetadata();
+  }
+
+  /**
+   * Read rows from driver result till the given number of rows are available, or the driver result ends.
+   */
+  private synchronized void fill(long count) throws LensException {
+    try {
+      while (!exhausted && rows.getSize() < count) {
+        if (driverResultSet.hasNext()) {
+          rows.add(driverResultSet.next());
+        } else {
+          rows.finish();
+          exhausted = true;
+          driverResultSet.setFullyAccessed(true);
+          log.info("Buffered {} rows of result in cursor, {} bytes on heap and {} bytes spilled", rows.getSize(),
+            rows.getHeapBytes(), rows.getSpilledBytes());
+        }
+      }
+    } catch (IOException e) {
+      throw new LensException("Could not buffer result rows", e);
+    }
+  }
+
+  /**
+   * Get the rows starting at the index.
+   *
+   * @param startIndex index of the first row
+   * @param fetchSize  maximum number of rows, all the rows from start index if not positive
+   * @return the rows
+   * @throws LensException the lens exception
+   */
+  public List<ResultRow> getRows(long startIndex, int fetchSize) throws LensException {
+    if (startIndex < 0) {
+      throw new IllegalArgumentException("Invalid start index " + startIndex);
+    }
+    long end = fetchSize > 0 ? startIndex + fetchSize : Long.MAX_VALUE;
+    fill(end);
+    long available = Math.min(end, rows.getSize());
+    List<ResultRow> result = new ArrayList<>((int) Math.max(0, Math.min(available - startIndex, 1024)));
+    try {
+      for (long i = startIndex; i < available; i++) {
+        result.add(rows.get(i));
+      }
+    } catch (IOException e) {
+      throw new LensException("Could not read result rows", e);
+    }
+    if (exhausted && end >= rows.getSize()) {
+      setFullyAccessed(true);
+    }
+    return result;
+  }
+
+  /**
+   * Get the result from the index.
+   *
+   * @param startIndex index of the first row
+   * @param fetchSize  maximum number of rows, all the rows from start index if not positive
+   * @return the result
+   * @throws LensException the lens exception
+   */
+  public InMemoryQueryResult toQueryResult(long startIndex, int fetchSize) throws LensException {
+    return new InMemoryQueryResult(getRows(startIndex, fetchSize));
+  }
+
+  /**
+   * Get all the rows of the result, from the first row.
+   */
+  @Override
+  public InMemoryQueryResult toQueryResult() throws LensException {
+    return toQueryResult(0, 0);
+  }
+
+  @Override
+  public synchronized boolean hasNext() throws LensException {
+    fill(position + 1);
+    return position < rows.getSize();
+  }
+
+  @Override
+  public synchronized ResultRow next() throws LensException {
+    try {
+      return rows.get(position++);
+    } catch (IOException e) {
+      throw new LensException("Could not read result row", e);
+    }
+  }
+
+  @Override
+  public void setFetchSize(int size) throws LensException {
+    driverResultSet.setFetchSize(size);
+  }
+
+  @Override
+  public Integer size() throws LensException {
+    return exhausted ? (int) rows.getSize() : driverResultSet.size();
+  }
+
+  @Override
+  public LensResultSetMetadata getMetadata() throws LensException {
+    return metadata;
+  }
+
+  /**
+   * TTL of the cursor starts with the driver result.
+   */
+  @Override
+  public long getCreationTime() {
+    return driverResultSet.getCreationTime();
+  }
+
+  /**
+   * Drop the rows buffered, deleting their spill file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    rows.close();
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.io.File;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.driver.InMemoryResultSet;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.conf.Configuration;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens result cursors over in memory results, sharing a heap budget for their rows. Rows beyond the budget are
+ * spilled to memory mapped files in the spill directory.
+ */
+@Slf4j
+public class ResultCursorStore {
+
+  /** Bytes of rows in a chunk, the unit in which rows are kept on heap or spilled. */
+  static final int CHUNK_SIZE = 1024 * 1024;
+
+  /** The spill directory. */
+  @Getter
+  private final File spillDir;
+
+  private final HeapBudget budget;
+
+  /**
+   * Instantiates a new result cursor store.
+   *
+   * @param conf the server configuration
+   */
+  public ResultCursorStore(Configuration conf) {
+    this.spillDir = new File(conf.get(RESULT_CURSOR_SPILL_DIR, DEFAULT_RESULT_CURSOR_SPILL_DIR));
+    this.budget = new HeapBudget(conf.getLong(RESULT_CURSOR_HEAP_BUDGET_BYTES,
+      DEFAULT_RESULT_CURSOR_HEAP_BUDGET_BYTES));
+    log.info("Result cursors have a heap budget of {} bytes and spill to {}", budget.getLimit(), spillDir);
+  }
+
+  /**
+   * Open a cursor over the in memory result of the query.
+   *
+   * @param handle       the query handle
+   * @param driverResult the in memory result from driver
+   * @return the cursor
+   * @throws LensException the lens exception
+   */
+  public ResultCursor open(QueryHandle handle, InMemoryResultSet driverResult) throws LensException {
+    return new ResultCursor(driverResult, new RowStore(spillDir, handle.toString(), CHUNK_SIZE, budget));
+  }
+
+  /**
+   * @return heap bytes used by rows of all open cursors
+   */
+  public long getHeapBytes() {
+    return budget.getUsed();
+  }
+}
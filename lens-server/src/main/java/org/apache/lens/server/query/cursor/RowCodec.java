@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lens.api.query.ResultRow;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Compact binary form of result rows. A row is written as the number of values followed by each value, as a type tag
+ * and the value. Numbers are written as variable length integers where possible, and values of types without a tag
+ * are written with java serialization.
+ */
+final class RowCodec {
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte DECIMAL = 10;
+  private static final byte TIMESTAMP = 11;
+  private static final byte DATE = 12;
+  private static final byte BYTES = 13;
+  private static final byte SERIALIZED = 14;
+
+  private RowCodec() {
+  }
+
+  /**
+   * Write the row.
+   *
+   * @param row the row
+   * @param out the output
+   * @throws IOException Signals that an I/O exception has occurred, including a value not being serializable.
+   */
+  static void write(ResultRow row, DataOutput out) throws IOException {
+    List<Object> values = row.getValues();
+    if (values == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+    WritableUtils.writeVInt(out, values.size());
+    for (Object value : values) {
+      writeValue(value, out);
+    }
+  }
+
+  private static void writeValue(Object value, DataOutput out) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      WritableUtils.writeVInt(out, (Short) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      WritableUtils.writeVInt(out, (Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      WritableUtils.writeVLong(out, (Long) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      Text.writeString(out, (String) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      Text.writeString(out, value.toString());
+    } else if (value instanceof Timestamp) {
+      out.writeByte(TIMESTAMP);
+      WritableUtils.writeVLong(out, ((Timestamp) value).getTime());
+      WritableUtils.writeVInt(out, ((Timestamp) value).getNanos());
+    } else if (value instanceof Date) {
+      out.writeByte(DATE);
+      WritableUtils.writeVLong(out, ((Date) value).getTime());
+    } else if (value instanceof byte[]) {
+      out.writeByte(BYTES);
+      WritableUtils.writeVInt(out, ((byte[]) value).length);
+      out.write((byte[]) value);
+    } else {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+        objectOut.writeObject(value);
+      }
+      out.writeByte(SERIALIZED);
+      WritableUtils.writeVInt(out, bytes.size());
+      out.write(bytes.toByteArray());
+    }
+  }
+
+  /**
+   * Read a row written by {@link #write(ResultRow, DataOutput)}.
+   *
+   * @param in the input
+   * @return the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static ResultRow read(DataInput in) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      return new ResultRow(null);
+    }
+    List<Object> values = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      values.add(readValue(in));
+    }
+    return new ResultRow(values);
+  }
+
+  private static Object readValue(DataInput in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case FALSE:
+      return false;
+    case TRUE:
+      return true;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return (short) WritableUtils.readVInt(in);
+    case INT:
+      return WritableUtils.readVInt(in);
+    case LONG:
+      return WritableUtils.readVLong(in);
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case STRING:
+      return Text.readString(in);
+    case DECIMAL:
+      return new BigDecimal(Text.readString(in));
+    case TIMESTAMP:
+      Timestamp timestamp = new Timestamp(WritableUtils.readVLong(in));
+      timestamp.setNanos(WritableUtils.readVInt(in));
+      return timestamp;
+    case DATE:
+      return new Date(WritableUtils.readVLong(in));
+    case BYTES:
+      byte[] bytes = new byte[WritableUtils.readVInt(in)];
+      in.readFully(bytes);
+      return bytes;
+    case SERIALIZED:
+      byte[] serialized = new byte[WritableUtils.readVInt(in)];
+      in.readFully(serialized);
+      try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+        return objectIn.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Could not read value of result row", e);
+      }
+    default:
+      throw new IOException("Unknown type tag " + tag + " in result row");
+    }
+  }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lens.api.query.ResultRow;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rows of a result in compact binary form, which can be read by row index. Rows are appended to a chunk on heap, which
+ * is always charged to the shared heap budget and is kept within the chunk size, unless a single row is larger. Full
+ * chunks are kept on heap while the budget allows, and are written to a spill file and memory mapped beyond it.
+ *
+ * Rows are appended by a single writer at a time. Any number of readers can read the rows appended already,
+ * concurrently with the writer.
+ */
+class RowStore implements Closeable {
+
+  /**
+   * Sealed chunk of rows.
+   */
+  @RequiredArgsConstructor
+  private static class Chunk {
+    /** Index of the first row in the chunk. */
+    private final long startRow;
+
+    /** Offsets of the rows in data. */
+    private final int[] offsets;
+
+    /** Rows, either on heap or memory mapped. */
+    private final ByteBuffer data;
+
+    int getEnd(int row) {
+      return row + 1 < offsets.length ? offsets[row + 1] : data.limit();
+    }
+  }
+
+  private final File spillDir;
+  private final String name;
+  private final int chunkSize;
+  private final HeapBudget budget;
+
+  /** Sealed chunks, in row order. */
+  private final List<Chunk> chunks = new ArrayList<>();
+
+  /** Rows of the chunk being appended to. */
+  private byte[] current;
+  private int currentLength;
+  private int[] currentOffsets = new int[64];
+  private int currentRows;
+  private long currentStartRow;
+
+  /** Number of rows. */
+  @Getter
+  private long size;
+
+  /** Heap bytes reserved from budget by sealed chunks. */
+  @Getter
+  private long heapBytes;
+
+  /** Heap bytes reserved from budget by the chunk being appended to. */
+  private long currentHeapBytes;
+
+  /** Bytes written to the spill file. */
+  @Getter
+  private long spilledBytes;
+
+  private File spillFile;
+  private FileChannel spill;
+  private boolean closed;
+
+  private final DataOutputBuffer encoded = new DataOutputBuffer();
+
+  /**
+   * Instantiates a new row store.
+   *
+   * @param spillDir  the directory to create the spill file in
+   * @param name      prefix of the spill file name
+   * @param chunkSize bytes of rows in a chunk
+   * @param budget    the heap budget
+   */
+  RowStore(File spillDir, String name, int chunkSize, HeapBudget budget) {
+    this.spillDir = spillDir;
+    this.name = name;
+    this.chunkSize = chunkSize;
+    this.budget = budget;
+    setCurrent(new byte[Math.min(4096, chunkSize)]);
+  }
+
+  /**
+   * Append a row.
+   *
+   * @param row the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void add(ResultRow row) throws IOException {
+    checkOpen();
+    encoded.reset();
+    RowCodec.write(row, encoded);
+    int length = encoded.getLength();
+    if (currentRows > 0 && currentLength + length > chunkSize) {
+      seal();
+    }
+    if (currentLength + length > current.length) {
+      setCurrent(Arrays.copyOf(current, Math.max(Math.min(current.length * 2, chunkSize), currentLength + length)));
+    }
+    if (currentRows == currentOffsets.length) {
+      currentOffsets = Arrays.copyOf(currentOffsets, Math.max(16, currentOffsets.length * 2));
+    }
+    System.arraycopy(encoded.getData(), 0, current, currentLength, length);
+    currentOffsets[currentRows++] = currentLength;
+    currentLength += length;
+    size++;
+    if (currentLength >= chunkSize) {
+      seal();
+    }
+  }
+
+  /**
+   * Seal the rows appended after the last full chunk, as no more rows are going to be added.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void finish() throws IOException {
+    checkOpen();
+    if (currentRows > 0) {
+      seal();
+    }
+    setCurrent(new byte[0]);
+    currentOffsets = new int[0];
+  }
+
+  /**
+   * Set the buffer of the chunk being appended to, charging it to the budget in place of the earlier buffer.
+   */
+  private void setCurrent(byte[] buffer) {
+    budget.reserve(buffer.length - currentHeapBytes);
+    currentHeapBytes = buffer.length;
+    current = buffer;
+  }
+
+  private void seal() throws IOException {
+    byte[] bytes = currentLength == current.length ? current : Arrays.copyOf(current, currentLength);
+    // the sealed chunk is charged on its own, the buffer appended to next is charged afresh
+    budget.release(currentHeapBytes);
+    currentHeapBytes = 0;
+    ByteBuffer data;
+    if (budget.tryReserve(bytes.length)) {
+      heapBytes += bytes.length;
+      data = ByteBuffer.wrap(bytes);
+    } else {
+      data = spill(bytes);
+    }
+    chunks.add(new Chunk(currentStartRow, Arrays.copyOf(currentOffsets, currentRows), data));
+    currentStartRow = size;
+    currentRows = 0;
+    currentLength = 0;
+    if (current == bytes || current.length > chunkSize) {
+      current = new byte[Math.min(current.length, chunkSize)];
+    }
+    setCurrent(current);
+  }
+
+  private ByteBuffer spill(byte[] bytes) throws IOException {
+    if (spill == null) {
+      if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+        throw new IOException("Could not create spill directory " + spillDir);
+      }
+      spillFile = File.createTempFile(name + "-", ".rows", spillDir);
+      spill = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    long position = spilledBytes;
+    ByteBuffer source = ByteBuffer.wrap(bytes);
+    while (source.hasRemaining()) {
+      spilledBytes += spill.write(source, spilledBytes);
+    }
+    return spill.map(FileChannel.MapMode.READ_ONLY, position, bytes.length);
+  }
+
+  /**
+   * Read the row at the index.
+   *
+   * @param index the row index
+   * @return the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  ResultRow get(long index) throws IOException {
+    byte[] bytes;
+    synchronized (this) {
+      checkOpen();
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+      }
+      if (index >= currentStartRow) {
+        int row = (int) (index - currentStartRow);
+        int end = row + 1 < currentRows ? currentOffsets[row + 1] : currentLength;
+        bytes = Arrays.copyOfRange(current, currentOffsets[row], end);
+      } else {
+        Chunk chunk = findChunk(index);
+        int row = (int) (index - chunk.startRow);
+        bytes = new byte[chunk.getEnd(row) - chunk.offsets[row]];
+        ByteBuffer data = chunk.data.duplicate();
+        data.position(chunk.offsets[row]);
+        data.get(bytes);
+      }
+    }
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(bytes, bytes.length);
+    return RowCodec.read(in);
+  }
+
+  private Chunk findChunk(long index) {
+    int low = 0;
+    int high = chunks.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (chunks.get(mid).startRow <= index) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return chunks.get(low);
+  }
+
+  /**
+   * @return the spill file, null if no rows are spilled
+   */
+  synchronized File getSpillFile() {
+    return spillFile;
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Rows of " + name + " are closed");
+    }
+  }
+
+  /**
+   * Release the heap budget and delete the spill file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    budget.release(heapBytes + currentHeapBytes);
+    heapBytes = 0;
+    currentHeapBytes = 0;
+    chunks.clear();
+    current = null;
+    currentOffsets = null;
+    if (spill != null) {
+      // mapped chunks are unmapped when they are garbage collected, the file is gone once they are
+      spill.close();
+      if (!spillFile.delete()) {
+        throw new IOException("Could not delete spill file " + spillFile);
+      }
+    }
+  }
+}
@@ -18,16 +18,15 @@
  */
 package org.apache.lens.server.rewrite;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.cube.parse.CubeQueryRewriter;
 import org.apache.lens.cube.parse.HQLParser;
 import org.apache.lens.driver.cube.RewriterPlan;
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.error.LensException;
@@ -68,6 +67,28 @@ public final class RewriteUtil {
 
     /** The cube ast. */
     ASTNode cubeAST;
+
+    /** AST of the query parsed on its own, copied for every rewrite of the query. */
+    ASTNode queryAST;
+  }
+
+  /**
+   * Outcome of rewriting the cube queries of a user query, shared by the drivers whose query conf is the same as far
+   * as rewriting is concerned. The first of those drivers to run rewrites the query, the others reuse the outcome.
+   */
+  static class SharedRewrite {
+
+    /** Whether the rewrite has been attempted. */
+    private boolean done;
+
+    /** The rewritten query. */
+    private String rewrittenQuery;
+
+    /** Cube query contexts of the rewritten cube queries. */
+    private List<CubeQueryContext> cubeQueryCtx;
+
+    /** Failure of the rewrite. */
+    private Exception failure;
   }
 
   /**
@@ -88,6 +109,7 @@ public final class RewriteUtil {
     findCubePositions(ast, cubeQueries, query, conf);
     for (CubeQueryInfo cqi : cubeQueries) {
       cqi.query = query.substring(cqi.startPos, cqi.endPos);
+      cqi.queryAST = HQLParser.parseHQL(cqi.query, conf);
     }
     return cubeQueries;
   }
@@ -282,6 +304,27 @@ public final class RewriteUtil {
     return query.replaceAll("[\\n\\r]", " ").replaceAll("&&", " AND ").replaceAll("\\|\\|", " OR ").trim();
   }
 
+  /** Prefix of settings read by the cube query rewriter */
+  private static final String CUBE_QUERY_CONF_PFX = "lens.cube.query.";
+
+  /**
+   * Entries of the driver specific query conf which are read by the cube query rewriter. Drivers whose confs have the
+   * same entries share the rewrite, however much the rest of their confs differ.
+   *
+   * @param driverConf the driver specific query conf
+   * @return the entries
+   */
+  static Map<String, String> getRewriteConf(Configuration driverConf) {
+    Map<String, String> rewriteConf = new HashMap<>();
+    for (Map.Entry<String, String> entry : driverConf) {
+      if (entry.getKey().startsWith(CUBE_QUERY_CONF_PFX)
+        || entry.getKey().equals(LensConfConstants.QUERY_CURRENT_TIME_IN_MILLIS)) {
+        rewriteConf.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return rewriteConf;
+  }
+
   private static final String REWRITE_QUERY_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery";
   private static final String TOHQL_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery-toHQL";
 
@@ -299,8 +342,20 @@ public final class RewriteUtil {
       Map<LensDriver, DriverRewriterRunnable> runnables = new LinkedHashMap<>();
       List<RewriteUtil.CubeQueryInfo> cubeQueries = findCubePositions(replacedQuery, ctx.getHiveConf());
 
+      Map<Map<String, String>, SharedRewrite> sharedRewrites = new HashMap<>();
       for (LensDriver driver : ctx.getDriverContext().getEligibleDrivers()) {
-        runnables.put(driver, new DriverRewriterRunnable(driver, ctx, cubeQueries, replacedQuery));
+        SharedRewrite sharedRewrite = null;
+        if (!cubeQueries.isEmpty()) {
+          Map<String, String> rewriteConf = getRewriteConf(ctx.getDriverContext().getDriverConf(driver));
+          sharedRewrite = sharedRewrites.get(rewriteConf);
+          if (sharedRewrite == null) {
+            sharedRewrite = new SharedRewrite();
+            sharedRewrites.put(rewriteConf, sharedRewrite);
+          } else {
+            log.debug("Driver {} shares the rewrite of the query with another driver", driver);
+          }
+        }
+        runnables.put(driver, new DriverRewriterRunnable(driver, ctx, cubeQueries, replacedQuery, sharedRewrite));
       }
 
       return runnables;
@@ -327,6 +382,8 @@ public final class RewriteUtil {
     private final AbstractQueryContext ctx;
     private final List<CubeQueryInfo> cubeQueries;
     private final String replacedQuery;
+    /** Rewrite shared with other drivers */
+    private final SharedRewrite sharedRewrite;
     /** Cube query context - set after rewriting */
     private List<CubeQueryContext> cubeQueryCtx;
 
@@ -349,13 +406,19 @@ public final class RewriteUtil {
       AbstractQueryContext ctx,
       List<CubeQueryInfo> cubeQueries,
       String replacedQuery) {
+      this(driver, ctx, cubeQueries, replacedQuery, null);
+    }
+
+    DriverRewriterRunnable(LensDriver driver,
+      AbstractQueryContext ctx,
+      List<CubeQueryInfo> cubeQueries,
+      String replacedQuery,
+      SharedRewrite sharedRewrite) {
       this.driver = driver;
       this.ctx = ctx;
       this.cubeQueries = cubeQueries;
       this.replacedQuery = replacedQuery;
-      if (cubeQueries != null) {
-        cubeQueryCtx = new ArrayList<>(cubeQueries.size());
-      }
+      this.sharedRewrite = sharedRewrite != null ? sharedRewrite : new SharedRewrite();
     }
 
     @Override
@@ -366,16 +429,52 @@ public final class RewriteUtil {
         return;
       }
 
+      try {
+        if (cubeQueries.size() > 0) {
+          ctx.setOlapQuery(true);
+        }
+        synchronized (sharedRewrite) {
+          if (!sharedRewrite.done) {
+            rewrite(sharedRewrite);
+          }
+        }
+        if (sharedRewrite.failure != null) {
+          throw sharedRewrite.failure;
+        }
+        cubeQueryCtx = sharedRewrite.cubeQueryCtx;
+        rewrittenQuery = sharedRewrite.rewrittenQuery;
+        // set rewriter plan
+        ctx.getDriverContext().setDriverRewriterPlan(driver, getRewriterPlan(this));
+        succeeded = true;
+        ctx.setDriverQuery(driver, rewrittenQuery);
+        log.info("Final rewritten query for driver: {} is: {}", driver, rewrittenQuery);
+      } catch (final LensException e) {
+
+        this.cause = e;
+        captureExceptionInformation(e);
+      } catch (Exception e) {
+
+        // we are catching all exceptions sothat other drivers can be picked in case of driver bugs
+        captureExceptionInformation(e);
+      }
+    }
+
+    /**
+     * Rewrite the cube queries with the conf of this driver, and record the outcome.
+     *
+     * @param shared the rewrite to record the outcome in
+     */
+    private void rewrite(SharedRewrite shared) {
       MethodMetricsContext rewriteGauge = MethodMetricsFactory
         .createMethodGauge(ctx.getDriverConf(driver), true, REWRITE_QUERY_GAUGE);
       StringBuilder builder = new StringBuilder();
       int start = 0;
       CubeQueryRewriter rewriter = null;
+      List<CubeQueryContext> cubeQueryContexts = new ArrayList<>(cubeQueries.size());
       try {
         if (cubeQueries.size() > 0) {
           // avoid creating rewriter if there are no cube queries
           rewriter = getCubeRewriter(ctx.getDriverContext().getDriverConf(driver), ctx.getHiveConf());
-          ctx.setOlapQuery(true);
         }
 
         // We have to rewrite each sub cube query which might be present in the original
@@ -388,13 +487,13 @@ public final class RewriteUtil {
             builder.append(replacedQuery.substring(start, cqi.startPos));
           }
 
-          // Parse and rewrite individual cube query
-          CubeQueryContext cqc = rewriter.rewrite(cqi.query);
+          // Rewrite a copy of the individual cube query parsed already, rewriting modifies the AST
+          CubeQueryContext cqc = rewriter.rewrite(MetastoreUtil.copyAST(cqi.queryAST));
           MethodMetricsContext toHQLGauge = MethodMetricsFactory
             .createMethodGauge(ctx.getDriverConf(driver), true, qIndex + "-" + TOHQL_GAUGE);
           // toHQL actually generates the rewritten query
           String hqlQuery = cqc.toHQL();
-          cubeQueryCtx.add(cqc);
+          cubeQueryContexts.add(cqc);
           toHQLGauge.markSuccess();
           qIndex++;
 
@@ -406,22 +505,12 @@ public final class RewriteUtil {
 
         builder.append(replacedQuery.substring(start));
 
-        rewrittenQuery = builder.toString();
-        // set rewriter plan
-        ctx.getDriverContext().setDriverRewriterPlan(driver, getRewriterPlan(this));
-        succeeded = true;
-        ctx.setDriverQuery(driver, rewrittenQuery);
-        log.info("Final rewritten query for driver: {} is: {}", driver, rewrittenQuery);
-
-      } catch (final LensException e) {
-
-        this.cause = e;
-        captureExceptionInformation(e);
+        shared.rewrittenQuery = builder.toString();
+        shared.cubeQueryCtx = cubeQueryContexts;
       } catch (Exception e) {
-
-        // we are catching all exceptions sothat other drivers can be picked in case of driver bugs
-        captureExceptionInformation(e);
+        shared.failure = e;
       } finally {
+        shared.done = true;
         if (rewriter != null) {
           rewriter.clear();
         }
@@ -59,8 +59,11 @@ import lombok.extern.slf4j.Slf4j;
 public class HiveSessionService extends BaseLensService implements SessionService {
 
 
-  /** The restorable sessions. */
-  private List<LensSessionImpl.LensSessionPersistInfo> restorableSessions;
+  /** The restorable sessions, keyed by public id. */
+  private Map<String, LensSessionImpl.LensSessionPersistInfo> restorableSessions;
+
+  /** Public ids of the sessions persisted or journaled last, to find out sessions closed since. */
+  private Set<String> journaledSessions = new HashSet<>();
 
   /** The session expiry thread. */
   private ScheduledExecutorService sessionExpiryThread;
@@ -352,48 +355,80 @@ public class HiveSessionService extends BaseLensService implements SessionServic
     sessionExpiryThread.scheduleWithFixedDelay(sessionExpiryRunnable, sessionExpiryInterval,
         sessionExpiryInterval, TimeUnit.SECONDS);
 
+    // Sessions recovered from persisted state, closed before they are persisted again, have to be journaled as closed
+    journaledSessions = new HashSet<>(SESSION_MAP.keySet());
+
     // Restore sessions if any
     if (restorableSessions == null || restorableSessions.size() <= 0) {
       log.info("No sessions to restore");
       return;
     }
 
-    for (LensSessionImpl.LensSessionPersistInfo persistInfo : restorableSessions) {
-      try {
-        LensSessionHandle sessionHandle = persistInfo.getSessionHandle();
-        restoreSession(sessionHandle, persistInfo.getUsername(), persistInfo.getPassword());
-        LensSessionImpl session = getSession(sessionHandle);
-        session.getLensSessionPersistInfo().setLastAccessTime(persistInfo.getLastAccessTime());
-        session.getLensSessionPersistInfo().setConfig(persistInfo.getConfig());
-        session.getLensSessionPersistInfo().setResources(persistInfo.getResources());
-        session.setCurrentDatabase(persistInfo.getDatabase());
-        session.getLensSessionPersistInfo().setMarkedForClose(persistInfo.isMarkedForClose());
-
-        // Add resources for restored sessions
-        for (LensSessionImpl.ResourceEntry resourceEntry : session.getResources()) {
-          try {
-            addResourceUponRestart(sessionHandle, resourceEntry);
-          } catch (Exception e) {
-            log.error("Failed to restore resource for session: " + session + " resource: " + resourceEntry, e);
+    // Restore sessions in parallel. Query service restores queries on the restored sessions, so wait for all of them
+    int numRestoreThreads = conf.getInt(LensConfConstants.SERVER_STATE_RESTORE_THREADS,
+      LensConfConstants.DEFAULT_SERVER_STATE_RESTORE_THREADS);
+    ExecutorService sessionRestorePool = Executors.newFixedThreadPool(numRestoreThreads);
+    try {
+      List<Future<?>> sessionRestores = new ArrayList<>();
+      for (final LensSessionImpl.LensSessionPersistInfo persistInfo : restorableSessions.values()) {
+        sessionRestores.add(sessionRestorePool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws LensException {
+            restoreSession(persistInfo);
+            return null;
           }
-        }
-
-        // Add config for restored sessions
-        try{
-          setSessionParametersOnRestore(sessionHandle, session.getConfig());
-        } catch (Exception e) {
-          log.error("Error setting parameters " + session.getConfig()
-            + " for session: " + session, e);
-        }
-        log.info("Restored session " + persistInfo.getSessionHandle().getPublicId());
-        notifyEvent(new SessionRestored(System.currentTimeMillis(), sessionHandle));
-      } catch (LensException e) {
-        throw new RuntimeException(e);
+        }));
+      }
+      for (Future<?> sessionRestore : sessionRestores) {
+        sessionRestore.get();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while restoring sessions", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      sessionRestorePool.shutdownNow();
     }
     log.info("Session service restored " + restorableSessions.size() + " sessions");
   }
 
+  /**
+   * Restore session along with its resources and config from persisted info.
+   *
+   * @param persistInfo the persisted session info
+   * @throws LensException the lens exception
+   */
+  private void restoreSession(LensSessionImpl.LensSessionPersistInfo persistInfo) throws LensException {
+    LensSessionHandle sessionHandle = persistInfo.getSessionHandle();
+    restoreSession(sessionHandle, persistInfo.getUsername(), persistInfo.getPassword());
+    LensSessionImpl session = getSession(sessionHandle);
+    session.getLensSessionPersistInfo().setLastAccessTime(persistInfo.getLastAccessTime());
+    session.getLensSessionPersistInfo().setConfig(persistInfo.getConfig());
+    session.getLensSessionPersistInfo().setResources(persistInfo.getResources());
+    session.setCurrentDatabase(persistInfo.getDatabase());
+    session.getLensSessionPersistInfo().setMarkedForClose(persistInfo.isMarkedForClose());
+
+    // Add resources for restored sessions
+    for (LensSessionImpl.ResourceEntry resourceEntry : session.getResources()) {
+      try {
+        addResourceUponRestart(sessionHandle, resourceEntry);
+      } catch (Exception e) {
+        log.error("Failed to restore resource for session: " + session + " resource: " + resourceEntry, e);
+      }
+    }
+
+    // Add config for restored sessions
+    try{
+      setSessionParametersOnRestore(sessionHandle, session.getConfig());
+    } catch (Exception e) {
+      log.error("Error setting parameters " + session.getConfig()
+        + " for session: " + session, e);
+    }
+    log.info("Restored session " + persistInfo.getSessionHandle().getPublicId());
+    notifyEvent(new SessionRestored(System.currentTimeMillis(), sessionHandle));
+  }
+
   private int getSessionExpiryInterval() {
     return conf.getInt(LensConfConstants.SESSION_EXPIRY_SERVICE_INTERVAL_IN_SECS,
         LensConfConstants.DEFAULT_SESSION_EXPIRY_SERVICE_INTERVAL_IN_SECS);
@@ -428,6 +463,84 @@ public class HiveSessionService extends BaseLensService implements SessionServic
     log.info("Session service pesristed " + SESSION_MAP.size() + " sessions");
   }
 
+  @Override
+  public boolean isStateJournaled() {
+    return true;
+  }
+
+  /**
+   * Journals the sessions opened or changed, and the sessions closed since last call.
+   *
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void writeJournal(ObjectOutput out) throws IOException {
+    Set<String> current = new HashSet<>();
+    List<LensSessionImpl.LensSessionPersistInfo> changed = new ArrayList<>();
+    for (LensSessionHandle sessionHandle : SESSION_MAP.values()) {
+      LensSessionImpl session;
+      try {
+        session = getSession(sessionHandle);
+      } catch (ClientErrorException e) {
+        // closed in the meanwhile
+        continue;
+      }
+      current.add(sessionHandle.getPublicId().toString());
+      if (session.checkAndResetPersistInfoChanged()) {
+        changed.add(session.getLensSessionPersistInfo());
+      }
+    }
+    Set<String> closed = new HashSet<>(journaledSessions);
+    closed.removeAll(current);
+    journaledSessions = current;
+
+    out.writeInt(changed.size());
+    for (LensSessionImpl.LensSessionPersistInfo persistInfo : changed) {
+      persistInfo.writeExternal(out);
+    }
+    out.writeInt(closed.size());
+    for (String publicId : closed) {
+      out.writeUTF(publicId);
+    }
+    log.info("Session service journaled {} changed and {} closed sessions", changed.size(), closed.size());
+  }
+
+  @Override
+  public void readJournal(ObjectInput in) throws IOException, ClassNotFoundException {
+    if (restorableSessions == null) {
+      restorableSessions = new LinkedHashMap<>();
+    }
+    int numChanged = in.readInt();
+    for (int i = 0; i < numChanged; i++) {
+      LensSessionImpl.LensSessionPersistInfo persistInfo = new LensSessionImpl.LensSessionPersistInfo();
+      persistInfo.readExternal(in);
+      String publicId = persistInfo.getSessionHandle().getPublicId().toString();
+      restorableSessions.put(publicId, persistInfo);
+      SESSION_MAP.put(publicId, persistInfo.getSessionHandle());
+    }
+    int numClosed = in.readInt();
+    for (int i = 0; i < numClosed; i++) {
+      String publicId = in.readUTF();
+      restorableSessions.remove(publicId);
+      SESSION_MAP.remove(publicId);
+    }
+  }
+
+  @Override
+  public void clearJournal() {
+    Set<String> current = new HashSet<>();
+    for (LensSessionHandle sessionHandle : SESSION_MAP.values()) {
+      try {
+        getSession(sessionHandle).checkAndResetPersistInfoChanged();
+        current.add(sessionHandle.getPublicId().toString());
+      } catch (ClientErrorException e) {
+        // closed in the meanwhile
+      }
+    }
+    journaledSessions = current;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -446,12 +559,12 @@ public class HiveSessionService extends BaseLensService implements SessionServic
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
     int numSessions = in.readInt();
-    restorableSessions = new ArrayList<LensSessionImpl.LensSessionPersistInfo>();
+    restorableSessions = new LinkedHashMap<>();
 
     for (int i = 0; i < numSessions; i++) {
       LensSessionImpl.LensSessionPersistInfo persistInfo = new LensSessionImpl.LensSessionPersistInfo();
       persistInfo.readExternal(in);
-      restorableSessions.add(persistInfo);
+      restorableSessions.put(persistInfo.getSessionHandle().getPublicId().toString(), persistInfo);
       SESSION_MAP.put(persistInfo.getSessionHandle().getPublicId().toString(), persistInfo.getSessionHandle());
     }
     log.info("Session service recovered " + SESSION_MAP.size() + " sessions");
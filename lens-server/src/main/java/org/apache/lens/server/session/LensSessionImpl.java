@@ -25,6 +25,7 @@ import java.io.ObjectOutput;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lens.api.LensSessionHandle;
@@ -103,6 +104,11 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
   @Setter(AccessLevel.PROTECTED)
   private DatabaseResourceService dbResService;
 
+  /**
+   * Whether persist info of this session changed since it was last journaled
+   */
+  private final AtomicBoolean persistInfoChanged = new AtomicBoolean(true);
+
 
   /**
    * Inits the persist info.
@@ -299,6 +305,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
    */
   public void setConfig(Map<String, String> config) {
     persistInfo.getConfig().putAll(config);
+    persistInfoChanged.set(true);
   }
 
   /**
@@ -315,6 +322,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
         itr.remove();
       }
     }
+    persistInfoChanged.set(true);
     // New classloaders will be created. Remove resource is expensive, add resource is cheap.
     updateAllSessionClassLoaders();
   }
@@ -329,6 +337,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
   public void addResource(String type, String path, String finalLocation) {
     ResourceEntry resource = new ResourceEntry(type, path, finalLocation);
     persistInfo.getResources().add(resource);
+    persistInfoChanged.set(true);
     // The following call updates the existing classloaders without creating new instances.
     // Add resource is cheap :)
     addResourceToAllSessionClassLoaders(resource);
@@ -344,6 +353,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
 
   public void setCurrentDatabase(String currentDatabase) {
     persistInfo.setDatabase(currentDatabase);
+    persistInfoChanged.set(true);
     getSessionState().setCurrentDatabase(currentDatabase);
     // Make sure entry is there in classloader cache
     synchronized (sessionDbClassLoaders) {
@@ -472,6 +482,16 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
 
   public void setLastAccessTime(long lastAccessTime) {
     persistInfo.lastAccessTime = lastAccessTime;
+    persistInfoChanged.set(true);
+  }
+
+  /**
+   * Returns whether persist info of this session changed since the last call, and resets the same.
+   *
+   * @return true if persist info changed
+   */
+  public boolean checkAndResetPersistInfoChanged() {
+    return persistInfoChanged.getAndSet(false);
   }
 
   public long getLastAccessTime() {
@@ -517,6 +537,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
   public void markForClose() {
     log.info("Marking session {} for close. Operations on this session will be rejected", this);
     persistInfo.markedForClose = true;
+    persistInfoChanged.set(true);
   }
 
   /**
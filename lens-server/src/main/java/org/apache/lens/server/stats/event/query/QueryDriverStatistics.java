@@ -18,13 +18,17 @@
  */
 package org.apache.lens.server.stats.event.query;
 
+import java.io.Serializable;
+
 import lombok.Getter;
 import lombok.Setter;
 
 /**
  * Statistics class for capturing query driver information.
  */
-public class QueryDriverStatistics {
+public class QueryDriverStatistics implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   /** The name. */
   @Getter
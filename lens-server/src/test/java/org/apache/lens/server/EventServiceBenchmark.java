@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.events.LensEvent;
+import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.query.events.*;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of events per second handled by {@link EventServiceImpl}, with listeners registered for an event
+ * type and its super types as done by the query service.
+ *
+ * Benchmarks are not run as part of tests. Run {@link #main(String[])} with test classpath of lens-server to run them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventServiceBenchmark {
+
+  private static final int QUERIES = 1000;
+  private static final int EVENTS_PER_INVOCATION = 1000;
+
+  @Param({"false", "true"})
+  private boolean orderedDelivery;
+
+  private EventServiceImpl eventService;
+  private final AtomicLong delivered = new AtomicLong();
+  private QueryHandle[] handles;
+  private int next;
+
+  @Setup
+  public void setup() {
+    HiveConf conf = new HiveConf();
+    conf.setBoolean(LensConfConstants.EVENT_SERVICE_QUERY_ORDERED_DELIVERY, orderedDelivery);
+    eventService = new EventServiceImpl(LensEventService.NAME);
+    eventService.init(conf);
+    eventService.start();
+    LensEventListener<LensEvent> counter = new LensEventListener<LensEvent>() {
+      @Override
+      public void onEvent(LensEvent event) throws LensException {
+        delivered.incrementAndGet();
+      }
+    };
+    eventService.addListenerForType(counter, StatusChange.class);
+    eventService.addListenerForType(counter, QueryEnded.class);
+    eventService.addListenerForType(counter, QueryExecuted.class);
+    eventService.addListenerForType(counter, LensEvent.class);
+    handles = new QueryHandle[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      handles[i] = new QueryHandle(UUID.randomUUID());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    eventService.stop();
+  }
+
+  private LensEvent nextEvent() {
+    next = (next + 1) % QUERIES;
+    return new QueryExecuted(System.currentTimeMillis(), Status.RUNNING, Status.EXECUTED, handles[next]);
+  }
+
+  /**
+   * Event dispatched to its listeners on the notifying thread, which measures the cost of looking up listeners.
+   */
+  @Benchmark
+  public void notifySync() throws LensException {
+    eventService.notifyEventSync(nextEvent());
+  }
+
+  /**
+   * Events notified asynchronously, waiting till all of them are delivered to listeners.
+   */
+  @Benchmark
+  @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+  public void notifyAsync() throws LensException {
+    // every event is delivered to the listeners of QueryExecuted, StatusChange and LensEvent
+    long expected = delivered.get() + EVENTS_PER_INVOCATION * 3;
+    for (int i = 0; i < EVENTS_PER_INVOCATION; i++) {
+      eventService.notifyEvent(nextEvent());
+    }
+    while (delivered.get() < expected) {
+      Thread.yield();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EventServiceBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -244,9 +244,26 @@ public abstract class LensJerseyTest extends JerseyTest {
    * @param pauseQuerySubmitter whether to pause query submitter while starting lens server
    */
   public void restartLensServer(HiveConf conf, boolean pauseQuerySubmitter) {
+    stopLensServer();
+    startLensServer(conf, pauseQuerySubmitter);
+  }
+
+  /**
+   * Stop lens server, to be started again with {@link #startLensServer(HiveConf, boolean)}.
+   */
+  protected void stopLensServer() {
     LensServices.get().stop();
     LensMetricsUtil.clearRegistry();
     System.out.println("Lens services stopped!");
+  }
+
+  /**
+   * Start lens server stopped with {@link #stopLensServer()}.
+   *
+   * @param conf the conf
+   * @param pauseQuerySubmitter whether to pause query submitter while starting lens server
+   */
+  protected void startLensServer(HiveConf conf, boolean pauseQuerySubmitter) {
     LensServices.setInstance(new LensServices(LensServices.LENS_SERVICES_NAME, this.logSegregationContext));
     LensServices.get().init(conf);
     if (pauseQuerySubmitter) {
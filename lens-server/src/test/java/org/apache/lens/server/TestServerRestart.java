@@ -55,6 +55,11 @@ import org.apache.lens.server.session.LensSessionImpl;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hive.service.Service;
 
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
@@ -430,6 +435,63 @@ public class TestServerRestart extends LensAllApplicationJerseyTest {
     assertEquals(result.getStatus(), APIResult.Status.SUCCEEDED);
   }
 
+  /**
+   * Test session restart, with changes to server state journaled.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSessionRestartWithStateJournal() throws Exception {
+    HiveConf journalConf = new HiveConf(getServerConf());
+    journalConf.setBoolean(LensConfConstants.SERVER_STATE_JOURNAL_ENABLED, true);
+    restartLensServer(journalConf);
+    try {
+      LensSessionHandle sessionHandle = LensServerTestUtil.openSession(target(), "foo", "bar", new LensConf(),
+        defaultMT);
+      setParams(sessionHandle);
+
+      // wait till the session service journals its state
+      Path persistDir = new Path(journalConf.get(LensConfConstants.SERVER_STATE_PERSIST_LOCATION,
+        LensConfConstants.DEFAULT_SERVER_STATE_PERSIST_LOCATION));
+      FileSystem fs = persistDir.getFileSystem(journalConf);
+      List<Path> journals = getJournals(fs, persistDir);
+      while (journals.isEmpty()) {
+        Thread.sleep(100);
+        journals = getJournals(fs, persistDir);
+      }
+      Path journal = journals.get(0);
+      Path journalCopy = new Path(persistDir, "copy." + journal.getName());
+      FileUtil.copy(fs, journal, fs, journalCopy, false, journalConf);
+
+      restartLensServer(journalConf);
+      verifyParamOnRestart(sessionHandle);
+      // whole state is persisted on stop
+      assertTrue(getJournals(fs, persistDir).isEmpty());
+
+      HiveSessionService service = LensServices.get().getService(SessionService.NAME);
+      service.closeSession(sessionHandle);
+
+      // a journal left behind by a crash after the whole state got persisted is not replayed over the state
+      stopLensServer();
+      assertTrue(fs.rename(journalCopy, journal));
+      startLensServer(journalConf, false);
+      service = LensServices.get().getService(SessionService.NAME);
+      assertFalse(service.isOpen(sessionHandle));
+    } finally {
+      restartLensServer(getServerConf());
+    }
+  }
+
+  private List<Path> getJournals(FileSystem fs, Path persistDir) throws IOException {
+    List<Path> journals = new ArrayList<>();
+    for (FileStatus status : fs.listStatus(persistDir)) {
+      if (status.getPath().getName().matches(SessionService.NAME + "\\.journal\\.\\d+")) {
+        journals.add(status.getPath());
+      }
+    }
+    return journals;
+  }
+
   private void setParams(LensSessionHandle lensSessionHandle) {
     FormDataMultiPart setpart = new FormDataMultiPart();
     setpart.bodyPart(new FormDataBodyPart(FormDataContentDisposition.name("sessionid").build(), lensSessionHandle,
@@ -22,6 +22,10 @@ import static org.testng.Assert.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.MediaType;
@@ -197,4 +201,71 @@ public class TestDuplicateQueries extends LensJerseyTest {
       log.info("Restarted lens server!");
     }
   }
+
+  /**
+   * Checks that identical queries submitted concurrently from sessions of different users, which run as the same
+   * cluster user, share a single query when coalescing is enabled.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testExecuteAsyncCoalesced() throws Exception {
+    LensSessionHandle session1 = null;
+    LensSessionHandle session2 = null;
+    LensSessionHandle session3 = null;
+    ExecutorService submitters = Executors.newFixedThreadPool(2);
+    try {
+      HiveConf serverConf = getServerConfLocal();
+      serverConf.setBoolean(LensConfConstants.SERVER_DUPLICATE_QUERY_COALESCING_ENABLED, true);
+      restartLensServer(serverConf, false);
+
+      queryService = LensServices.get().getService(QueryExecutionService.NAME);
+      Map<String, String> sessionconf = new HashMap<>();
+      sessionconf.put(LensConfConstants.SESSION_CLUSTER_USER, "lens");
+      session1 = queryService.openSession("foo", "bar", sessionconf);
+      session2 = queryService.openSession("foo@localhost", "bar", sessionconf);
+      session3 = queryService.openSession("baz", "bar", new HashMap<String, String>());
+      LensServerTestUtil.createTable(TEST_TABLE, target(), session1, defaultMT);
+      LensServerTestUtil.loadDataFromClasspath(TEST_TABLE, TestResourceFile.TEST_DATA2_FILE.getValue(), target(),
+        session1, defaultMT);
+      queryService.pauseQuerySubmitter(true);
+      final String query = "select ID, IDSTR from " + TEST_TABLE;
+
+      Future<QueryHandle> handle1 = submitters.submit(executeAsync(session1, query));
+      Future<QueryHandle> handle2 = submitters.submit(executeAsync(session2, "SELECT ID, IDSTR\nFROM " + TEST_TABLE));
+      assertNotNull(handle1.get());
+      assertEquals(handle1.get(), handle2.get());
+
+      // a user running as a different cluster user doesn't share the query
+      QueryHandle handle3 = executeAsync(session3, query).call();
+      assertNotEquals(handle3, handle1.get());
+      queryService.cancelQuery(session1, handle1.get());
+      queryService.cancelQuery(session3, handle3);
+
+      // once the query is done, an identical query is submitted again
+      QueryHandle handle4 = executeAsync(session2, query).call();
+      assertNotEquals(handle4, handle1.get());
+      queryService.cancelQuery(session2, handle4);
+    } finally {
+      submitters.shutdownNow();
+      queryService.pauseQuerySubmitter(false);
+      LensServerTestUtil.dropTable(TEST_TABLE, target(), session1, defaultMT);
+      for (LensSessionHandle session : new LensSessionHandle[]{session1, session2, session3}) {
+        if (session != null) {
+          queryService.closeSession(session);
+        }
+      }
+      restartLensServer();
+    }
+  }
+
+  private Callable<QueryHandle> executeAsync(final LensSessionHandle session, final String query) {
+    return new Callable<QueryHandle>() {
+      @Override
+      public QueryHandle call() throws Exception {
+        return RestAPITestUtil.executeAndGetHandle(target(), Optional.of(session), Optional.of(query),
+          Optional.of(new LensConf()), defaultMT);
+      }
+    };
+  }
 }
@@ -20,10 +20,8 @@ package org.apache.lens.server.query;
 
 import static org.testng.Assert.*;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
+import java.io.File;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -47,9 +45,14 @@ import org.apache.lens.server.api.session.SessionRestored;
 import org.apache.lens.server.query.QueryExecutionServiceImpl.QueryStatusLogger;
 import org.apache.lens.server.stats.event.query.QueryExecutionStatistics;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Counter;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -543,6 +546,143 @@ public class TestEventService {
       "DummyAsncEventListener_AsyncThread-5")));
   }
 
+  private static final String BLOCKING_LISTENER_PFX = LensConfConstants.EVENT_LISTENER_PFX + "BlockingEventListener.";
+
+  @Test
+  public void testAsyncEventListenerDropOldest() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(BLOCKING_LISTENER_PFX + "queue.size", 2);
+    conf.set(BLOCKING_LISTENER_PFX + "overflow.policy", "drop_oldest");
+    BlockingEventListener listener = notifyBlocked(conf, 5);
+    assertEquals(listener.awaitProcessed(3), Arrays.asList(Arrays.asList("0"), Arrays.asList("3"),
+      Arrays.asList("4")));
+    assertEquals(((Counter) listener.getMetrics().getMetrics().get("dropped-events")).getCount(), 2);
+    listener.stop();
+  }
+
+  @Test
+  public void testAsyncEventListenerSpill() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(BLOCKING_LISTENER_PFX + "queue.size", 2);
+    conf.set(BLOCKING_LISTENER_PFX + "overflow.policy", "SPILL");
+    conf.set(LensConfConstants.EVENT_LISTENER_SPILL_DIR, new File("target/event-spill").getAbsolutePath());
+    BlockingEventListener listener = notifyBlocked(conf, 5);
+    assertEquals(listener.awaitProcessed(5), Arrays.asList(Arrays.asList("0"), Arrays.asList("1"),
+      Arrays.asList("2"), Arrays.asList("3"), Arrays.asList("4")));
+    assertEquals(((Counter) listener.getMetrics().getMetrics().get("spilled-events")).getCount(), 2);
+    listener.stop();
+  }
+
+  @Test
+  public void testAsyncEventListenerBatch() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(LensConfConstants.EVENT_LISTENER_QUEUE_SIZE, 0);
+    conf.setInt(BLOCKING_LISTENER_PFX + "batch.size", 3);
+    BlockingEventListener listener = notifyBlocked(conf, 5);
+    assertEquals(listener.awaitProcessed(5), Arrays.asList(Arrays.asList("0"), Arrays.asList("1", "2", "3"),
+      Arrays.asList("4")));
+    listener.stop();
+  }
+
+  /**
+   * Notify events to a listener while it is blocked processing the first one, then unblock it.
+   */
+  private BlockingEventListener notifyBlocked(Configuration conf, int numEvents) throws Exception {
+    BlockingEventListener listener = new BlockingEventListener();
+    listener.configure(conf);
+    listener.onEvent(new TestEvent("0"));
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i < numEvents; i++) {
+      listener.onEvent(new TestEvent(String.valueOf(i)));
+    }
+    listener.release.countDown();
+    return listener;
+  }
+
+  private static class BlockingEventListener extends AsyncEventListener<TestEvent> {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+    @Override
+    public void process(List<TestEvent> events) {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      List<String> ids = new ArrayList<>();
+      for (TestEvent event : events) {
+        ids.add(event.getEventId());
+      }
+      batches.add(ids);
+    }
+
+    @Override
+    public void process(TestEvent event) {
+    }
+
+    List<List<String>> awaitProcessed(int numEvents) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (System.currentTimeMillis() < deadline) {
+        int processed = 0;
+        synchronized (batches) {
+          for (List<String> batch : batches) {
+            processed += batch.size();
+          }
+          if (processed >= numEvents) {
+            return new ArrayList<>(batches);
+          }
+        }
+        Thread.sleep(10);
+      }
+      fail("Events not processed in time, processed so far " + batches);
+      return null;
+    }
+  }
+
+  @Test
+  public void testOrderedQueryEventDelivery() throws Exception {
+    HiveConf conf = LensServerConf.createHiveConf();
+    conf.setBoolean(LensConfConstants.EVENT_SERVICE_QUERY_ORDERED_DELIVERY, true);
+    conf.setInt(LensConfConstants.EVENT_SERVICE_THREAD_POOL_SIZE, 4);
+    EventServiceImpl orderedService = new EventServiceImpl(LensEventService.NAME);
+    orderedService.init(conf);
+    orderedService.start();
+    final int numEvents = 1000;
+    final QueryHandle[] handles = {new QueryHandle(UUID.randomUUID()), new QueryHandle(UUID.randomUUID())};
+    final Map<QueryHandle, List<Integer>> positions = new HashMap<>();
+    final CountDownLatch delivered = new CountDownLatch(handles.length * numEvents);
+    for (QueryHandle handle : handles) {
+      positions.put(handle, Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+    orderedService.addListenerForType(new LensEventListener<QueuePositionChange>() {
+      @Override
+      public void onEvent(QueuePositionChange event) throws LensException {
+        positions.get(event.getQueryHandle()).add(event.getCurrentValue());
+        delivered.countDown();
+      }
+    }, QueuePositionChange.class);
+    try {
+      for (int i = 0; i < numEvents; i++) {
+        for (QueryHandle handle : handles) {
+          orderedService.notifyEvent(new QueuePositionChange(System.currentTimeMillis(), i + 1, i, handle));
+        }
+      }
+      assertTrue(delivered.await(30, TimeUnit.SECONDS));
+      for (QueryHandle handle : handles) {
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < numEvents; i++) {
+          expected.add(i);
+        }
+        assertEquals(positions.get(handle), expected);
+      }
+    } finally {
+      orderedService.stop();
+    }
+  }
+
   /**
    * Test synchronous events
    * @throws Exception
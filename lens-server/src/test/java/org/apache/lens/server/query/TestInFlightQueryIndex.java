@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestInFlightQueryIndex {
+
+  private static final byte[] CONF_HASH = {1, 2, 3};
+
+  private QueryContext mockQuery(String query, byte[] confHash, String user) {
+    Configuration conf = new Configuration(false);
+    conf.set("test.key", "value");
+    conf.set(LensConfConstants.SESSION_LOGGEDIN_USER, user);
+    conf.set(LensConfConstants.SESSION_CLUSTER_USER, user);
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getQueryHandle()).thenReturn(new QueryHandle(UUID.randomUUID()));
+    when(ctx.getUserQuery()).thenReturn(query);
+    when(ctx.getQueryConfHash()).thenReturn(confHash);
+    when(ctx.getDatabase()).thenReturn("default");
+    when(ctx.getConf()).thenReturn(conf);
+    return ctx;
+  }
+
+  private QueryContext mockQuery(String query, byte[] confHash) {
+    return mockQuery(query, confHash, "foo");
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals(InFlightQueryIndex.normalize("  SELECT id,\n\tname FROM  t ; "), "select id, name from t");
+    assertEquals(InFlightQueryIndex.normalize("select * from t where a = 'A  b;'"),
+      "select * from t where a = 'A  b;'");
+    assertEquals(InFlightQueryIndex.normalize("select * from t where a = 'it\\'S  X'"),
+      "select * from t where a = 'it\\'S  X'");
+    assertNotEquals(InFlightQueryIndex.getFingerprint("select * from t", "default", CONF_HASH),
+      InFlightQueryIndex.getFingerprint("select * from t", "default", new byte[]{1, 2, 4}));
+    assertNotEquals(InFlightQueryIndex.getFingerprint("select * from t", "default", CONF_HASH),
+      InFlightQueryIndex.getFingerprint("select * from t", "db1", CONF_HASH));
+  }
+
+  @Test
+  public void testSharedConfHash() {
+    Configuration conf = mockQuery("select * from t", CONF_HASH, "foo").getConf();
+    Configuration otherUserConf = mockQuery("select * from t", CONF_HASH, "bar").getConf();
+    assertEquals(InFlightQueryIndex.getSharedConfHash(conf), InFlightQueryIndex.getSharedConfHash(otherUserConf));
+    otherUserConf.set("test.key", "other");
+    assertNotEquals(InFlightQueryIndex.getSharedConfHash(conf),
+      InFlightQueryIndex.getSharedConfHash(otherUserConf));
+    // the query conf itself is left untouched
+    assertEquals(conf.get(LensConfConstants.SESSION_LOGGEDIN_USER), "foo");
+  }
+
+  @Test
+  public void testLeader() throws Exception {
+    InFlightQueryIndex index = new InFlightQueryIndex();
+    QueryContext leader = mockQuery("select * from t", CONF_HASH);
+    QueryContext follower = mockQuery("SELECT *\nFROM t", CONF_HASH, "bar");
+    assertNull(index.register(leader));
+    InFlightQueryIndex.InFlightQuery inFlightQuery = index.register(follower);
+    assertNotNull(inFlightQuery);
+    assertEquals(inFlightQuery.getQuery(), leader);
+    assertFalse(inFlightQuery.getSubmission().isDone());
+    assertNull(index.register(mockQuery("select * from t2", CONF_HASH)));
+    assertEquals(index.size(), 2);
+
+    index.submitted(leader);
+    assertEquals(inFlightQuery.getSubmission().get(), leader.getQueryHandle());
+    assertFalse(index.add(follower));
+
+    // removing a query which is not the leader doesn't affect the leader
+    index.remove(follower);
+    assertEquals(index.register(follower).getQuery(), leader);
+    index.remove(leader);
+    assertEquals(index.size(), 1);
+    assertNull(index.register(follower));
+  }
+
+  @Test
+  public void testFailedLeader() throws Exception {
+    InFlightQueryIndex index = new InFlightQueryIndex();
+    QueryContext leader = mockQuery("select * from t", CONF_HASH);
+    QueryContext follower = mockQuery("select * from t", CONF_HASH);
+    assertNull(index.register(leader));
+    InFlightQueryIndex.InFlightQuery inFlightQuery = index.register(follower);
+    index.failed(leader, new LensException("rewrite failed"));
+    try {
+      inFlightQuery.getSubmission().get();
+      fail("Expected submission to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof LensException);
+    }
+    assertEquals(index.size(), 0);
+    // the follower takes place of the failed leader
+    assertNull(index.register(follower));
+    assertEquals(index.size(), 1);
+  }
+
+  @Test
+  public void testFinishedLeader() throws Exception {
+    InFlightQueryIndex index = new InFlightQueryIndex();
+    QueryContext leader = mockQuery("select * from t", CONF_HASH);
+    assertNull(index.register(leader));
+    InFlightQueryIndex.InFlightQuery inFlightQuery = index.register(mockQuery("select * from t", CONF_HASH));
+    // a query finishing while being submitted is shared
+    index.remove(leader);
+    assertEquals(inFlightQuery.getSubmission().get(), leader.getQueryHandle());
+
+    assertTrue(index.add(leader));
+    when(leader.finished()).thenReturn(true);
+    assertNull(index.register(mockQuery("select * from t", CONF_HASH)));
+    assertEquals(index.size(), 1);
+    assertFalse(index.add(leader));
+    assertFalse(index.add(mockQuery("select * from t", null)));
+  }
+}
@@ -22,6 +22,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -182,4 +183,133 @@ public class TestLensDAO extends LensJerseyTest {
     Assert.assertEquals(daoTestQueryHandles.get(0).getHandleId().toString(), finishedHandle);
     service.closeSession(session);
   }
+
+  private FinishedLensQuery newFinishedQuery(QueryExecutionServiceImpl service, String queryName) throws Exception {
+    QueryContext queryContext = service.createContext("SELECT ID FROM testTable", "foo@localhost", new LensConf(),
+      new Configuration(), 0);
+    queryContext.setQueryName(queryName);
+    FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+    finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+    finishedLensQuery.setPriority(Priority.NORMAL.toString());
+    finishedLensQuery.setFailedAttempts(Lists.newArrayList(
+      new FailedAttempt("driver1", 1.0, "progress full", "no error", 0L, 1L)));
+    return finishedLensQuery;
+  }
+
+  /**
+   * Test batched insert of finished queries, and compare its throughput with inserting one query at a time.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testBatchInsertFinishedQueries() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    final int numQueries = 500;
+    List<FinishedLensQuery> singleInserts = Lists.newArrayList();
+    List<FinishedLensQuery> batchInserts = Lists.newArrayList();
+    for (int i = 0; i < numQueries; i++) {
+      singleInserts.add(newFinishedQuery(service, "daoSingleInsert"));
+      batchInserts.add(newFinishedQuery(service, "daoBatchInsert"));
+    }
+
+    long startTime = System.nanoTime();
+    for (FinishedLensQuery query : singleInserts) {
+      service.lensServerDao.insertFinishedQuery(query);
+    }
+    long singleInsertNanos = System.nanoTime() - startTime;
+    startTime = System.nanoTime();
+    for (List<FinishedLensQuery> batch : Lists.partition(batchInserts, 100)) {
+      service.lensServerDao.insertFinishedQueries(batch);
+    }
+    long batchInsertNanos = System.nanoTime() - startTime;
+    log.info("Inserted {} finished queries in {} ms one at a time, and in {} ms in batches of 100", numQueries,
+      singleInsertNanos / 1000000, batchInsertNanos / 1000000);
+
+    for (FinishedLensQuery query : Lists.newArrayList(batchInserts.get(0), batchInserts.get(numQueries - 1))) {
+      FinishedLensQuery actual = service.lensServerDao.getQuery(query.getHandle());
+      Assert.assertEquals(actual, query);
+      Assert.assertEquals(actual.getFailedAttempts().size(), 1);
+    }
+    Assert.assertEquals(service.lensServerDao.findFinishedQueries(null, null, null, "daobatchinsert", -1L,
+      Long.MAX_VALUE).size(), numQueries);
+
+    // Batch having an already persisted query is rolled back as a whole
+    FinishedLensQuery notPersisted = newFinishedQuery(service, "daoBatchInsert");
+    try {
+      service.lensServerDao.insertFinishedQueries(Lists.newArrayList(notPersisted, batchInserts.get(0)));
+      Assert.fail("Batch with duplicate query should fail");
+    } catch (SQLException e) {
+      Assert.assertTrue(LensServerDAO.isIntegrityConstraintViolation(e), e.toString());
+    }
+    Assert.assertNull(service.lensServerDao.getQuery(notPersisted.getHandle()));
+    // Re-inserting the same query individually is a no-op
+    service.lensServerDao.insertFinishedQuery(batchInserts.get(0));
+  }
+
+  /**
+   * Test that indexes of finished queries are created, and are looked up instead of being created again.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFinishedQueriesIndexes() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    Assert.assertTrue(service.lensServerDao.indexExists("finished_queries_submitter_idx", "finished_queries"));
+    Assert.assertTrue(service.lensServerDao.indexExists("failed_attempts_handle_idx", "failed_attempts"));
+    Assert.assertFalse(service.lensServerDao.indexExists("finished_queries_missing_idx", "finished_queries"));
+    // tables and indexes are created on every start
+    service.lensServerDao.createFinishedQueriesTable();
+    Assert.assertTrue(service.lensServerDao.indexExists("finished_queries_submitter_idx", "finished_queries"));
+  }
+
+  /**
+   * Test keyset pagination and summary projection of finished queries.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFindFinishedQueriesPaginated() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    List<FinishedLensQuery> queries = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      FinishedLensQuery query = newFinishedQuery(service, "daoPageQuery");
+      // two queries with same submission time are ordered by handle
+      query.setSubmissionTime(1000L + i / 2);
+      queries.add(query);
+    }
+    service.lensServerDao.insertFinishedQueries(queries);
+
+    List<LensQuery> sorted = Lists.newArrayList();
+    for (FinishedLensQuery query : queries) {
+      sorted.add(query.toLensQuery());
+    }
+    Collections.sort(sorted, QueryCursor.LISTING_ORDER);
+    List<String> expected = Lists.newArrayList();
+    for (LensQuery query : sorted) {
+      expected.add(query.getQueryHandle().toString());
+    }
+
+    List<String> actual = Lists.newArrayList();
+    QueryCursor cursor = null;
+    List<FinishedLensQuery> page;
+    do {
+      page = service.lensServerDao.findFinishedQueryDetails(null, null, null, "daopagequery", -1L, Long.MAX_VALUE,
+        true, cursor, 2);
+      Assert.assertTrue(page.size() <= 2);
+      for (FinishedLensQuery query : page) {
+        actual.add(query.getHandle());
+        // summary doesn't fetch conf and driver query
+        Assert.assertNull(query.getConf());
+        Assert.assertNull(query.getDriverQuery());
+        Assert.assertEquals(query.getQueryName(), "daopagequery");
+      }
+      if (!page.isEmpty()) {
+        FinishedLensQuery last = page.get(page.size() - 1);
+        cursor = new QueryCursor(last.getSubmissionTime(), last.getHandle());
+      }
+    } while (!page.isEmpty());
+    Assert.assertEquals(actual, expected);
+    Assert.assertEquals(service.lensServerDao.getSubmissionTime(queries.get(4).getHandle()), Long.valueOf(1002L));
+    Assert.assertNull(service.lensServerDao.getSubmissionTime("non-existing-handle"));
+  }
 }
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.LensDriver;
+
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the tests of {@link TestQueryConstraints} with queued queries of each driver submitted by a submitter of its
+ * own.
+ */
+@Test(groups = "two-working-drivers", dependsOnGroups = "filter-test")
+public class TestQueryConstraintsWithSubmitterPerDriver extends TestQueryConstraints {
+
+  /* TestNG invokes inherited @BeforeTest and @AfterTest methods on one instance only */
+  @BeforeTest
+  public void setUpSubmitterPerDriver() throws Exception {
+    setUp();
+  }
+
+  @AfterTest
+  public void tearDownSubmitterPerDriver() throws Exception {
+    tearDown();
+  }
+
+  @Override
+  public Map<String, String> getServerConfOverWrites() {
+    Map<String, String> overWrites = new HashMap<>(super.getServerConfOverWrites());
+    overWrites.put(LensConfConstants.QUERY_SUBMITTER_PER_DRIVER, "true");
+    return overWrites;
+  }
+
+  @Test
+  public void testSubmitterThreadPerDriver() {
+    Set<String> threadNames = new HashSet<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      threadNames.add(thread.getName());
+    }
+    for (LensDriver driver : queryService.getDrivers()) {
+      assertTrue(threadNames.contains("QuerySubmitter-" + driver.getFullyQualifiedName()), threadNames.toString());
+    }
+    assertTrue(queryService.getHealthStatus().isHealthy(), queryService.getHealthStatus().getDetails());
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.query.DriverSelectorQueryContext;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryOutputFormatter;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+
+@Test(groups = "unit-test")
+public class TestQueryResultCache {
+
+  private final LensDriver driver = mock(LensDriver.class);
+  private final File resultDir = new File("target/" + getClass().getSimpleName());
+  private String resultPath;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    when(driver.getFullyQualifiedName()).thenReturn("hive/hive1");
+    File result = new File(resultDir, "result.csv");
+    FileUtils.writeStringToFile(result, "a,b\n");
+    resultPath = result.getAbsolutePath();
+  }
+
+  @AfterClass
+  public void cleanup() throws IOException {
+    FileUtils.deleteDirectory(resultDir);
+  }
+
+  private QueryContext mockQuery(String driverQuery, Set<String> dimPartitions, String resultPath) {
+    return mockQuery("user1", driverQuery, dimPartitions, resultPath);
+  }
+
+  private QueryContext mockQuery(String user, String driverQuery, Set<String> dimPartitions, String resultPath) {
+    DriverQueryPlan plan = new DriverQueryPlan() {
+      {
+        addTablesQueried("db.c1_testfact testfact");
+        addTablesQueried("c1_citytable");
+      }
+
+      @Override
+      public String getPlan() {
+        return null;
+      }
+
+      @Override
+      public QueryCost getCost() {
+        return null;
+      }
+    };
+    plan.getPartitions().put("citydim", dimPartitions);
+    DriverSelectorQueryContext driverCtx = mock(DriverSelectorQueryContext.class);
+    when(driverCtx.getDriverRewriterPlan(driver)).thenReturn(plan);
+    QueryOutputFormatter formatter = mock(QueryOutputFormatter.class);
+    when(formatter.getFinalOutputPath()).thenReturn(resultPath);
+    when(formatter.getMetadata()).thenReturn(mock(LensResultSetMetadata.class));
+    when(formatter.getNumRows()).thenReturn(1);
+    when(formatter.getFileSize()).thenReturn(4L);
+
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getQueryHandle()).thenReturn(new QueryHandle(UUID.randomUUID()));
+    when(ctx.getSubmittedUser()).thenReturn(user);
+    when(ctx.isOlapQuery()).thenReturn(true);
+    when(ctx.isPersistent()).thenReturn(true);
+    when(ctx.getSelectedDriver()).thenReturn(driver);
+    when(ctx.getDriverContext()).thenReturn(driverCtx);
+    when(ctx.getFinalDriverQuery(driver)).thenReturn(driverQuery);
+    when(ctx.getConf()).thenReturn(new Configuration(false));
+    when(ctx.successful()).thenReturn(true);
+    when(ctx.getQueryOutputFormatter()).thenReturn(formatter);
+    return ctx;
+  }
+
+  private QueryResultCache cacheQuery(QueryContext ctx) {
+    QueryResultCache cache = new QueryResultCache(new Configuration(false));
+    assertNull(cache.lookup(ctx));
+    cache.queryFinished(ctx);
+    assertEquals(cache.size(), 1);
+    return cache;
+  }
+
+  @Test
+  public void testHitAcrossQueries() throws Exception {
+    QueryResultCache cache = cacheQuery(mockQuery("select * from t", Sets.newHashSet("latest"), resultPath));
+
+    QueryContext repeated = mockQuery("select * from t", Sets.newHashSet("latest"), resultPath);
+    LensPersistentResult result = cache.lookup(repeated);
+    assertNotNull(result);
+    assertEquals(result.getOutputPath(), resultPath);
+    assertEquals(result.size(), Integer.valueOf(1));
+    assertEquals(result.getFileSize(), Long.valueOf(4));
+
+    assertNull(cache.lookup(mockQuery("select * from t2", Sets.newHashSet("latest"), resultPath)));
+    assertNull(cache.lookup(mockQuery("select * from t", Sets.newHashSet("dt=2016"), resultPath)));
+  }
+
+  @Test
+  public void testNotSharedAcrossUsers() {
+    QueryResultCache cache = cacheQuery(mockQuery("user1", "select * from t", Sets.newHashSet("latest"), resultPath));
+    assertNull(cache.lookup(mockQuery("user2", "select * from t", Sets.newHashSet("latest"), resultPath)));
+    assertNotNull(cache.lookup(mockQuery("user1", "select * from t", Sets.newHashSet("latest"), resultPath)));
+  }
+
+  @Test
+  public void testPartitionChangeInvalidates() {
+    QueryResultCache cache = cacheQuery(mockQuery("select * from t", Sets.newHashSet("latest"), resultPath));
+    cache.onPartitionChange("c2_testfact");
+    assertEquals(cache.size(), 1);
+    cache.onPartitionChange("c1_testfact");
+    assertEquals(cache.size(), 0);
+
+    // query running across a partition change is not cached
+    QueryContext running = mockQuery("select * from t", Sets.newHashSet("latest"), resultPath);
+    assertNull(cache.lookup(running));
+    cache.onPartitionChange("c1_citytable");
+    cache.queryFinished(running);
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testMissingResultNotServed() {
+    String missingPath = new File(resultDir, "missing.csv").getAbsolutePath();
+    QueryResultCache cache = cacheQuery(mockQuery("select * from t", Sets.newHashSet("latest"), missingPath));
+    assertNull(cache.lookup(mockQuery("select * from t", Sets.newHashSet("latest"), missingPath)));
+  }
+
+  @Test
+  public void testTables() {
+    QueryContext ctx = mockQuery("select * from t", Sets.newHashSet("latest"), resultPath);
+    assertEquals(QueryResultCache.getTables(ctx.getDriverContext().getDriverRewriterPlan(driver)),
+      Sets.newHashSet("c1_testfact", "c1_citytable", "citydim"));
+  }
+}
@@ -54,6 +54,7 @@ public class TestQueryResultPurger {
     conf.set(LensConfConstants.QUERY_RESULTSET_RETENTION, "1 day");
     conf.set(LensConfConstants.HDFS_OUTPUT_RETENTION, "1 day");
     conf.set(LensConfConstants.RESULTSET_PURGE_INTERVAL_IN_SECONDS, "1");
+    conf.set(LensConfConstants.RESULT_CURSOR_SPILL_DIR, resultsetPath + "-cursors");
     createTestFiles();
   }
 
@@ -62,6 +63,7 @@ public class TestQueryResultPurger {
     Path dir = new Path(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR));
     FileSystem fs = dir.getFileSystem(conf);
     fs.delete(dir, true);
+    fs.delete(new Path(conf.get(LensConfConstants.RESULT_CURSOR_SPILL_DIR)), true);
   }
 
   @Test
@@ -69,6 +71,7 @@ public class TestQueryResultPurger {
     verify(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR), 2);
     verify(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR) + "/" + conf.get(LensConfConstants.QUERY_HDFS_OUTPUT_PATH),
       1);
+    verify(conf.get(LensConfConstants.RESULT_CURSOR_SPILL_DIR), 2);
     QueryResultPurger queryResultPurger = new QueryResultPurger();
     queryResultPurger.init(conf);
     Thread.sleep(2000); // sleep for 2 seconds, enough to run query purger
@@ -76,6 +79,7 @@ public class TestQueryResultPurger {
     verify(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR), 1);
     verify(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR) + "/" + conf.get(LensConfConstants.QUERY_HDFS_OUTPUT_PATH),
       0);
+    verify(conf.get(LensConfConstants.RESULT_CURSOR_SPILL_DIR), 1);
   }
 
   private void verify(String path, int count) {
@@ -94,5 +98,11 @@ public class TestQueryResultPurger {
     File resultFile = new File(conf.get(LensConfConstants.RESULT_SET_PARENT_DIR) + "/test-result.txt");
     resultFile.createNewFile();
     resultFile.setLastModified(lastModified);
+    File spillDir = new File(conf.get(LensConfConstants.RESULT_CURSOR_SPILL_DIR));
+    spillDir.mkdirs();
+    File oldSpillFile = new File(spillDir, "old.rows");
+    oldSpillFile.createNewFile();
+    oldSpillFile.setLastModified(lastModified);
+    new File(spillDir, "new.rows").createNewFile();
   }
 }
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.Map;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.DriverSelectorQueryContext;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestQueryRewriteCache {
+
+  private static final byte[] CONF_HASH = {1, 2, 3};
+
+  private QueryContext mockQuery(String query) {
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getUserQuery()).thenReturn(query);
+    when(ctx.getQueryConfHash()).thenReturn(CONF_HASH);
+    when(ctx.getDatabase()).thenReturn("default");
+    when(ctx.getDriverContext()).thenReturn(mock(DriverSelectorQueryContext.class));
+    return ctx;
+  }
+
+  @Test
+  public void testKey() {
+    QueryRewriteCache cache = new QueryRewriteCache(new Configuration());
+    String key = cache.getKey(mockQuery("cube select msr from c where time_range_in(dt, '2016-01-01', '2016-01-02')"));
+    assertEquals(key, QueryRewriteCache.getKey("CUBE SELECT msr\nFROM c WHERE time_range_in(dt, '2016-01-01', "
+      + "'2016-01-02')", CONF_HASH, "default", CubeMetastoreClient.getMetastoreEpoch()));
+    assertNotEquals(key, QueryRewriteCache.getKey("cube select msr from c where time_range_in(dt, '2016-01-01', "
+      + "'2016-01-02')", CONF_HASH, "default", CubeMetastoreClient.getMetastoreEpoch() + 1));
+    assertNotEquals(key, QueryRewriteCache.getKey("cube select msr from c where time_range_in(dt, '2016-01-01', "
+      + "'2016-01-02')", CONF_HASH, "db1", CubeMetastoreClient.getMetastoreEpoch()));
+    assertNotEquals(key, QueryRewriteCache.getKey("cube select msr from c where time_range_in(dt, '2016-01-01', "
+      + "'2016-01-02')", new byte[]{1, 2, 4}, "default", CubeMetastoreClient.getMetastoreEpoch()));
+    // rewrite of queries relative to now depends on the time
+    assertNull(cache.getKey(mockQuery("cube select msr from c where time_range_in(dt, 'now.day - 1day', 'NOW.day')")));
+    // identifiers containing now are not time ranges relative to now
+    assertNotNull(cache.getKey(mockQuery("cube select known from snow_fact where time_range_in(dt, '2016-01-01', "
+      + "'2016-01-02')")));
+  }
+
+  @Test
+  public void testCachedRewrite() {
+    QueryRewriteCache cache = new QueryRewriteCache(new Configuration());
+    LensDriver driver1 = mock(LensDriver.class);
+    when(driver1.getFullyQualifiedName()).thenReturn("hive/hive1");
+    LensDriver driver2 = mock(LensDriver.class);
+    when(driver2.getFullyQualifiedName()).thenReturn("jdbc/jdbc1");
+    DriverQueryPlan plan = mock(DriverQueryPlan.class);
+    QueryCost cost = mock(QueryCost.class);
+
+    assertTrue(cache.lookup("key").isEmpty());
+    cache.put("key", driver1, new QueryRewriteCache.CachedRewrite("select 1", plan, cost, true));
+    cache.put("key", driver2, new QueryRewriteCache.CachedRewrite("select 2", plan, cost, true));
+    assertEquals(cache.size(), 1);
+    Map<String, QueryRewriteCache.CachedRewrite> cached = cache.lookup("key");
+    assertEquals(cached.size(), 2);
+    assertTrue(cache.lookup("other").isEmpty());
+
+    QueryContext ctx = mockQuery("cube select msr from c");
+    cached.get("hive/hive1").applyRewrite(ctx, driver1);
+    verify(ctx).setOlapQuery(true);
+    verify(ctx.getDriverContext()).setDriverRewriterPlan(driver1, plan);
+    verify(ctx).setDriverQuery(driver1, "select 1");
+    cached.get("hive/hive1").applyEstimate(ctx, driver1);
+    verify(ctx).setDriverCost(driver1, cost);
+  }
+
+  @Test
+  public void testMaxSize() {
+    Configuration conf = new Configuration();
+    conf.setLong(LensConfConstants.QUERY_REWRITE_CACHE_MAX_SIZE, 2);
+    QueryRewriteCache cache = new QueryRewriteCache(conf);
+    LensDriver driver = mock(LensDriver.class);
+    when(driver.getFullyQualifiedName()).thenReturn("hive/hive1");
+    for (int i = 0; i < 5; i++) {
+      cache.put("key" + i, driver, new QueryRewriteCache.CachedRewrite("select " + i, null, null, false));
+    }
+    assertTrue(cache.size() <= 2);
+  }
+}
@@ -30,6 +30,9 @@ import static org.apache.lens.server.api.user.MockDriverQueryHook.*;
 
 import static org.apache.lens.server.common.RestAPITestUtil.*;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.*;
 
 import java.io.*;
@@ -47,6 +50,7 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -65,6 +69,7 @@ import org.apache.lens.driver.hive.HiveDriver;
 import org.apache.lens.lib.query.FilePersistentFormatter;
 import org.apache.lens.lib.query.FileSerdeFormatter;
 import org.apache.lens.server.LensJerseyTest;
+import org.apache.lens.server.LensServerConf;
 import org.apache.lens.server.LensServerTestUtil;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
@@ -82,6 +87,7 @@ import org.apache.lens.server.common.RestAPITestUtil;
 import org.apache.lens.server.common.TestDataUtils;
 import org.apache.lens.server.common.TestResourceFile;
 import org.apache.lens.server.error.GenericExceptionMapper;
+import org.apache.lens.server.metrics.MetricsResource;
 import org.apache.lens.server.session.HiveSessionService;
 import org.apache.lens.server.session.LensSessionImpl;
 
@@ -98,6 +104,8 @@ import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.test.TestProperties;
 import org.junit.Assert;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.*;
 
 import com.codahale.metrics.MetricRegistry;
@@ -128,6 +136,7 @@ public class TestQueryService extends LensJerseyTest {
       classes.add(GenericExceptionMapper.class);
       classes.add(LensJAXBContextResolver.class);
       classes.add(TestQueryNotifictaionResource.class);
+      classes.add(MetricsResource.class);
       return classes;
     }
   }
@@ -1051,6 +1060,13 @@ public class TestQueryService extends LensJerseyTest {
       String result = new String(bos.toByteArray());
       List<String> actualRows = Arrays.asList(result.split("\n"));
       validatePersistentResult(actualRows, false);
+
+      // resume download from the middle of the result
+      Response rangeResponse = parent.path("queryapi/queries/" + handle.toString() + "/httpresultset")
+        .queryParam("sessionid", lensSessionId).request().header("Range", "bytes=10-")
+        .header("If-Range", response.getHeaderString(HttpHeaders.ETAG)).get();
+      assertEquals(rangeResponse.getStatus(), PARTIAL_CONTENT.getStatusCode());
+      assertEquals(rangeResponse.readEntity(String.class), result.substring(10));
     } else {
       assertEquals(SEE_OTHER.getStatusCode(), response.getStatus());
       assertTrue(response.getHeaderString("Location").contains(redirectUrl));
@@ -1125,6 +1141,168 @@ public class TestQueryService extends LensJerseyTest {
     assertEquals(result.getStatus(), APIResult.Status.SUCCEEDED);
   }
 
+  /**
+   * Test that a repeated query is finished straight away with the result served by query result cache, and that its
+   * result can be fetched. Result cache serves only OLAP queries, so the cache is stubbed to serve the result of the
+   * first query.
+   */
+  @Test(dataProvider = "mediaTypeData")
+  public void testQueryServedFromResultCache(MediaType mt) throws Exception {
+    LensConf conf = new LensConf();
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_SET, "true");
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, "false");
+    String query = "select ID, IDSTR from " + TEST_TABLE;
+    LensQuery first = executeAndWaitForQueryToFinish(target(), lensSessionId, query, Optional.of(conf),
+      Optional.of(Status.SUCCESSFUL), mt);
+    final LensPersistentResult firstResult = (LensPersistentResult) queryService.getResultset(first.getQueryHandle());
+
+    QueryResultCache cache = mock(QueryResultCache.class);
+    when(cache.lookup(any(QueryContext.class))).thenAnswer(new Answer<LensPersistentResult>() {
+      @Override
+      public LensPersistentResult answer(InvocationOnMock invocation) throws Throwable {
+        QueryContext ctx = (QueryContext) invocation.getArguments()[0];
+        return new LensPersistentResult(ctx.getQueryHandle(), firstResult.getMetadata(), firstResult.getOutputPath(),
+          firstResult.size(), firstResult.getFileSize(), queryService.conf);
+      }
+    });
+    QueryResultCache backup = queryService.getQueryResultCache();
+    queryService.setQueryResultCache(cache);
+    try {
+      QueryHandle handle = executeAndGetHandle(target(), Optional.of(lensSessionId), Optional.of(query),
+        Optional.of(conf), mt);
+      assertNotEquals(handle, first.getQueryHandle());
+      LensQuery cached = getLensQuery(target(), lensSessionId, handle, mt);
+      assertEquals(cached.getStatus().getStatus(), Status.SUCCESSFUL);
+      assertTrue(cached.getStatus().isResultSetAvailable());
+      assertFalse(queryService.getSession(lensSessionId).getActiveQueries().contains(handle));
+
+      PersistentQueryResult result = getLensQueryResult(target(), lensSessionId, handle, mt);
+      assertEquals(result.getPersistedURI(), firstResult.getOutputPath());
+      assertEquals(result.getNumRows(), firstResult.size());
+    } finally {
+      queryService.setQueryResultCache(backup);
+    }
+  }
+
+  /**
+   * Test that status change requests of a running query are returned once the query moves out of the given status,
+   * so that a client following them sees the transitions of the query till it finishes.
+   */
+  @Test(dataProvider = "mediaTypeData")
+  public void testWaitForStatusChange(MediaType mt) throws InterruptedException {
+    LensConf conf = new LensConf();
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_SET, "true");
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, "true");
+    conf.addProperty(LensConfConstants.QUERY_OUTPUT_FORMATTER, DeferredPersistentResultFormatter.class.getName());
+    conf.addProperty("deferPersistenceByMillis", 5000); // keep the query executed for 5 secs
+    QueryHandle handle = executeAndGetHandle(target(), Optional.of(lensSessionId),
+      Optional.of("select ID, IDSTR from " + TEST_TABLE), Optional.of(conf), mt);
+    LensQuery query = getLensQuery(target(), lensSessionId, handle, mt);
+    assertFalse(query.getStatus().finished());
+
+    List<Status> transitions = new ArrayList<>();
+    transitions.add(query.getStatus().getStatus());
+    while (!query.getStatus().finished()) {
+      Status last = query.getStatus().getStatus();
+      query = target().path("queryapi/queries").path(handle.toString()).path("statuschange")
+        .queryParam("sessionid", lensSessionId).queryParam("status", last).queryParam("timeoutMillis", 30000)
+        .request(mt).get(LensQuery.class);
+      assertEquals(query.getQueryHandle(), handle);
+      assertNotEquals(query.getStatus().getStatus(), last, "Status change not returned before timeout");
+      transitions.add(query.getStatus().getStatus());
+    }
+    assertTrue(transitions.contains(Status.EXECUTED), transitions.toString());
+    assertEquals(transitions.get(transitions.size() - 1), Status.SUCCESSFUL, transitions.toString());
+  }
+
+  /**
+   * Test that status change requests are not held longer than the server allows, whatever the timeout asked for.
+   */
+  @Test
+  public void testStatusChangeWaitIsCapped() throws InterruptedException {
+    MediaType mt = MediaType.APPLICATION_XML_TYPE;
+    LensConf conf = new LensConf();
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_SET, "true");
+    conf.addProperty(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, "true");
+    conf.addProperty(LensConfConstants.QUERY_OUTPUT_FORMATTER, DeferredPersistentResultFormatter.class.getName());
+    conf.addProperty("deferPersistenceByMillis", 10000); // keep the query executed for 10 secs
+    QueryHandle handle = executeAndGetHandle(target(), Optional.of(lensSessionId),
+      Optional.of("select ID, IDSTR from " + TEST_TABLE), Optional.of(conf), mt);
+    LensQuery query = getLensQuery(target(), lensSessionId, handle, mt);
+    while (query.getStatus().getStatus() != Status.EXECUTED) {
+      assertFalse(query.getStatus().finished(), query.getStatus().toString());
+      Thread.sleep(100);
+      query = getLensQuery(target(), lensSessionId, handle, mt);
+    }
+
+    HiveConf serverConf = LensServerConf.getHiveConf();
+    serverConf.setLong(LensConfConstants.MAX_STATUS_CHANGE_WAIT_MILLIS, 1000);
+    try {
+      long start = System.currentTimeMillis();
+      query = target().path("queryapi/queries").path(handle.toString()).path("statuschange")
+        .queryParam("sessionid", lensSessionId).queryParam("status", Status.EXECUTED)
+        .queryParam("timeoutMillis", Long.MAX_VALUE).request(mt).get(LensQuery.class);
+      assertTrue(System.currentTimeMillis() - start < 8000, "Status change request held past the maximum wait");
+      assertEquals(query.getStatus().getStatus(), Status.EXECUTED);
+    } finally {
+      serverConf.unset(LensConfConstants.MAX_STATUS_CHANGE_WAIT_MILLIS);
+    }
+    waitForQueryToFinish(target(), lensSessionId, handle, Status.SUCCESSFUL, mt);
+  }
+
+  /**
+   * Test that latencies of the phases queries go through are served by the metrics resource, filtered by phase and
+   * dimension, and that latencies are not recorded per user unless enabled.
+   */
+  @Test(dataProvider = "mediaTypeData")
+  public void testQueryPhaseLatencies(MediaType mt) throws InterruptedException {
+    String driver = "test/phaselatency" + mt.getSubtype();
+    for (long latency : new long[]{10, 20, 30}) {
+      metricsSvc.updateQueryPhaseLatency(QueryPhase.REWRITE, driver, "phaselatencyuser", Priority.HIGH, latency);
+    }
+    WebTarget target = target().path("metrics/queryphases");
+    List<QueryPhaseLatency> latencies = target.queryParam("phase", QueryPhase.REWRITE)
+      .queryParam("dimension", "driver").request(mt).get(new GenericType<List<QueryPhaseLatency>>() {});
+    QueryPhaseLatency recorded = null;
+    for (QueryPhaseLatency latency : latencies) {
+      assertEquals(latency.getPhase(), QueryPhase.REWRITE);
+      assertEquals(latency.getDimension(), "driver");
+      if (latency.getValue().equals(driver)) {
+        recorded = latency;
+      }
+    }
+    assertNotNull(recorded, latencies.toString());
+    assertEquals(recorded.getCount(), 3);
+    assertEquals(recorded.getMin(), 10);
+    assertEquals(recorded.getMedian(), 20.0);
+    assertEquals(recorded.getMax(), 30);
+    assertTrue(target.queryParam("dimension", "user").request(mt)
+      .get(new GenericType<List<QueryPhaseLatency>>() {}).isEmpty());
+
+    // phases of an executed query are recorded against its driver and priority
+    QueryHandle handle = executeAndGetHandle(target(), Optional.of(lensSessionId),
+      Optional.of("select ID, IDSTR from " + TEST_TABLE), Optional.<LensConf>absent(), mt);
+    LensQuery query = waitForQueryToFinish(target(), lensSessionId, handle, Status.SUCCESSFUL, mt);
+    Set<String> expectedDimensions = new HashSet<>();
+    expectedDimensions.add("driver");
+    if (query.getPriority() != null) {
+      expectedDimensions.add("priority");
+    }
+    for (QueryPhase phase : new QueryPhase[]{QueryPhase.REWRITE, QueryPhase.LAUNCH, QueryPhase.DRIVER_EXECUTION}) {
+      latencies = target.queryParam("phase", phase).request(mt).get(new GenericType<List<QueryPhaseLatency>>() {});
+      Set<String> dimensions = new HashSet<>();
+      for (QueryPhaseLatency latency : latencies) {
+        if (latency.getValue().equals(query.getSelectedDriverName())
+          || (query.getPriority() != null && latency.getValue().equals(query.getPriority().name()))) {
+          assertTrue(latency.getCount() > 0, latency.toString());
+          assertTrue(latency.getMin() <= latency.getMax(), latency.toString());
+          dimensions.add(latency.getDimension());
+        }
+      }
+      assertEquals(dimensions, expectedDimensions, phase + ": " + latencies);
+    }
+  }
+
   @Test
   public void testTTLForInMemoryResult() throws InterruptedException, IOException, LensException {
     long inMemoryresultsetTTLMillisBackup = queryService.getInMemoryResultsetTTLMillis();
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.query.events.StatusChange;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestQueryStatusWatcher {
+
+  private StatusChange mockStatusChange(QueryHandle handle) {
+    StatusChange event = mock(StatusChange.class);
+    when(event.getQueryHandle()).thenReturn(handle);
+    return event;
+  }
+
+  private Runnable counting(final AtomicInteger count) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        count.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void testCallbacksRunOnce() {
+    QueryStatusWatcher watcher = new QueryStatusWatcher();
+    QueryHandle handle = new QueryHandle(UUID.randomUUID());
+    QueryHandle other = new QueryHandle(UUID.randomUUID());
+    AtomicInteger count = new AtomicInteger();
+    watcher.watch(handle, counting(count));
+    watcher.watch(handle, counting(count));
+    assertEquals(watcher.getWatchedQueriesCount(), 1);
+
+    watcher.onEvent(mockStatusChange(other));
+    assertEquals(count.get(), 0);
+    watcher.onEvent(mockStatusChange(handle));
+    assertEquals(count.get(), 2);
+    assertEquals(watcher.getWatchedQueriesCount(), 0);
+    // callbacks are not run again on next status change
+    watcher.onEvent(mockStatusChange(handle));
+    assertEquals(count.get(), 2);
+  }
+
+  @Test
+  public void testUnwatch() {
+    QueryStatusWatcher watcher = new QueryStatusWatcher();
+    QueryHandle handle = new QueryHandle(UUID.randomUUID());
+    AtomicInteger count = new AtomicInteger();
+    Runnable first = counting(count);
+    Runnable second = counting(count);
+    watcher.watch(handle, first);
+    watcher.watch(handle, second);
+    watcher.unwatch(handle, first);
+    assertEquals(watcher.getWatchedQueriesCount(), 1);
+    watcher.unwatch(handle, second);
+    assertEquals(watcher.getWatchedQueriesCount(), 0);
+    watcher.onEvent(mockStatusChange(handle));
+    assertEquals(count.get(), 0);
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.lens.server.query.ResultFileResponse.ByteRange;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestResultFileResponse {
+
+  private static final String CONTENT = "firstcol,secondcol\n1,one\n2,two\n3,three\n";
+
+  private final Configuration conf = new Configuration();
+  private File resultFile;
+  private String eTag;
+
+  @BeforeClass
+  public void createResultFile() throws IOException {
+    resultFile = new File("target/resultfileresponse/result.csv");
+    FileUtils.writeStringToFile(resultFile, CONTENT);
+    eTag = ResultFileResponse.getETag(new Path(resultFile.getAbsoluteFile().toURI()), CONTENT.length());
+  }
+
+  @AfterClass
+  public void deleteResultFile() throws IOException {
+    FileUtils.deleteDirectory(resultFile.getParentFile());
+  }
+
+  private Response build(String range, String ifRange, String acceptEncoding) throws IOException {
+    return ResultFileResponse.build(new Path(resultFile.getAbsolutePath()), conf, range, ifRange, acceptEncoding);
+  }
+
+  private static byte[] getContent(Response response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(out);
+    return out.toByteArray();
+  }
+
+  public void testParseRange() {
+    assertEquals(ResultFileResponse.parseRange("bytes=0-9", 100), new ByteRange(0, 9));
+    assertEquals(ResultFileResponse.parseRange("bytes=90-", 100), new ByteRange(90, 99));
+    assertEquals(ResultFileResponse.parseRange("bytes=90-200", 100), new ByteRange(90, 99));
+    assertEquals(ResultFileResponse.parseRange("bytes=-10", 100), new ByteRange(90, 99));
+    assertEquals(ResultFileResponse.parseRange("bytes=-200", 100), new ByteRange(0, 99));
+    assertNull(ResultFileResponse.parseRange("bytes=0-9,20-29", 100));
+    assertNull(ResultFileResponse.parseRange("bytes=9-0", 100));
+    assertNull(ResultFileResponse.parseRange("lines=0-9", 100));
+    assertNull(ResultFileResponse.parseRange("bytes=a-", 100));
+    for (String unsatisfiable : new String[]{"bytes=100-", "bytes=-0"}) {
+      try {
+        ResultFileResponse.parseRange(unsatisfiable, 100);
+        fail("Expected range " + unsatisfiable + " to be unsatisfiable");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testAcceptsGzip() {
+    assertFalse(ResultFileResponse.acceptsGzip(null));
+    assertTrue(ResultFileResponse.acceptsGzip("gzip"));
+    assertTrue(ResultFileResponse.acceptsGzip("deflate, gzip;q=0.5"));
+    assertTrue(ResultFileResponse.acceptsGzip("*"));
+    assertFalse(ResultFileResponse.acceptsGzip("gzip;q=0, *"));
+    assertFalse(ResultFileResponse.acceptsGzip("identity"));
+  }
+
+  public void testWholeResult() throws IOException {
+    Response response = build(null, null, null);
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertEquals(response.getHeaderString(HttpHeaders.ETAG), eTag);
+    assertEquals(response.getHeaderString("Accept-Ranges"), "bytes");
+    assertEquals(response.getHeaderString(HttpHeaders.CONTENT_LENGTH), String.valueOf(CONTENT.length()));
+    assertEquals(new String(getContent(response), StandardCharsets.UTF_8), CONTENT);
+  }
+
+  public void testRange() throws IOException {
+    Response response = build("bytes=19-", eTag, null);
+    assertEquals(response.getStatus(), Response.Status.PARTIAL_CONTENT.getStatusCode());
+    assertEquals(response.getHeaderString("Content-Range"), "bytes 19-" + (CONTENT.length() - 1) + "/"
+      + CONTENT.length());
+    assertEquals(new String(getContent(response), StandardCharsets.UTF_8), CONTENT.substring(19));
+
+    // ranges are not compressed
+    response = build("bytes=0-4", null, "gzip");
+    assertEquals(response.getStatus(), Response.Status.PARTIAL_CONTENT.getStatusCode());
+    assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(new String(getContent(response), StandardCharsets.UTF_8), CONTENT.substring(0, 5));
+  }
+
+  public void testRangeOfChangedResult() throws IOException {
+    Response response = build("bytes=19-", "\"changed\"", null);
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertEquals(new String(getContent(response), StandardCharsets.UTF_8), CONTENT);
+  }
+
+  public void testUnsatisfiableRange() throws IOException {
+    Response response = build("bytes=" + CONTENT.length() + "-", null, null);
+    assertEquals(response.getStatus(), ResultFileResponse.RANGE_NOT_SATISFIABLE);
+    assertEquals(response.getHeaderString("Content-Range"), "bytes */" + CONTENT.length());
+  }
+
+  public void testCompressedResult() throws IOException {
+    Response response = build(null, null, "gzip, deflate");
+    assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    assertEquals(response.getHeaderString(HttpHeaders.CONTENT_ENCODING), ResultFileResponse.GZIP);
+    assertNull(response.getHeaderString(HttpHeaders.CONTENT_LENGTH));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtils.copyBytes(new GZIPInputStream(new ByteArrayInputStream(getContent(response))), out, 4096, true);
+    assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8), CONTENT);
+  }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lens.api.query.QueryCostType;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+
+import org.testng.annotations.Test;
+
+import lombok.Data;
+
+public class ConcurrentEstimatedQueryCollectionTest {
+
+  private static final String MOCK_USER = "MockUserEmail";
+
+  private static final String OTHER_MOCK_USER = "OtherMockUserEmail";
+
+  private QueryContext createMockQuery(final LensDriver driver, final double cost) {
+    return createMockQuery(MOCK_USER, driver, cost);
+  }
+
+  private QueryContext createMockQuery(final String user, final LensDriver driver, final double cost) {
+    QueryContext mockQuery = mock(QueryContext.class);
+    when(mockQuery.getSubmittedUser()).thenReturn(user);
+    when(mockQuery.getSelectedDriver()).thenReturn(driver);
+    when(mockQuery.getSelectedDriverQueryCost()).thenReturn(new FactPartitionBasedQueryCost(cost));
+    return mockQuery;
+  }
+
+  @Test
+  public void testAddAndRemoveUpdateDriverViews() {
+    LensDriver driver1 = mock(LensDriver.class);
+    LensDriver driver2 = mock(LensDriver.class);
+    EstimatedQueryCollection queries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+    QueryContext query1 = createMockQuery(driver1, 10);
+    QueryContext query2 = createMockQuery(driver1, 20);
+    QueryContext query3 = createMockQuery(driver2, 30);
+
+    queries.add(query1);
+    queries.add(query2);
+    queries.add(query3);
+    assertEquals(queries.getQueriesCount(), 3);
+    assertEquals(queries.getQueriesCount(driver1), 2);
+    assertEquals(queries.getQueries(driver2).size(), 1);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(60));
+
+    queries.remove(query1);
+    queries.remove(query3);
+    assertEquals(queries.getQueriesCount(driver1), 1);
+    assertTrue(queries.getQueries(driver2).isEmpty());
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(20));
+
+    queries.remove(query2);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(0));
+  }
+
+  @Test
+  public void testAggregatesPerUserAndDriver() {
+    LensDriver driver1 = mock(LensDriver.class);
+    LensDriver driver2 = mock(LensDriver.class);
+    EstimatedQueryCollection queries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+    QueryContext query1 = createMockQuery(MOCK_USER, driver1, 10);
+    QueryContext query2 = createMockQuery(OTHER_MOCK_USER, driver1, 20);
+    QueryContext query3 = createMockQuery(MOCK_USER, driver2, 30);
+
+    queries.add(query1);
+    queries.add(query2);
+    queries.add(query3);
+    /* adding a query again must not be counted twice */
+    queries.add(query3);
+    assertEquals(queries.getTotalQueryCost(driver1), new FactPartitionBasedQueryCost(30));
+    assertEquals(queries.getTotalQueryCost(driver2), new FactPartitionBasedQueryCost(30));
+    assertEquals(queries.getTotalQueryCost(MOCK_USER, driver1), new FactPartitionBasedQueryCost(10));
+    assertEquals(queries.getTotalQueryCost(OTHER_MOCK_USER, driver2), new FactPartitionBasedQueryCost(0));
+    assertEquals(queries.getQueriesCount(MOCK_USER), 2);
+    assertEquals(queries.getQueriesCount(OTHER_MOCK_USER), 1);
+    assertEquals(queries.getQueriesCount(MOCK_USER, driver2), 1);
+
+    /* aggregates must be reduced by the cost the query was added with, even if its cost changed since */
+    when(query1.getSelectedDriverQueryCost()).thenReturn(new FactPartitionBasedQueryCost(100));
+    queries.remove(query1);
+    assertEquals(queries.getTotalQueryCost(driver1), new FactPartitionBasedQueryCost(20));
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(30));
+    assertEquals(queries.getQueriesCount(MOCK_USER, driver1), 0);
+
+    /* removing a query again must not be subtracted twice */
+    queries.remove(query1);
+    assertEquals(queries.getQueriesCount(MOCK_USER), 1);
+  }
+
+  /**
+   * Cost which can't be subtracted, like costs implemented before subtract was added to QueryCost.
+   */
+  @Data
+  private static class AdditiveQueryCost implements QueryCost<AdditiveQueryCost> {
+    private final double cost;
+
+    @Override
+    public AdditiveQueryCost add(final AdditiveQueryCost other) {
+      return new AdditiveQueryCost(cost + other.cost);
+    }
+
+    @Override
+    public QueryCostType getQueryCostType() {
+      return QueryCostType.HIGH;
+    }
+
+    @Override
+    public long getEstimatedExecTimeMillis() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double getEstimatedResourceUsage() {
+      return cost;
+    }
+
+    @Override
+    public int compareTo(final AdditiveQueryCost other) {
+      return Double.compare(cost, other.cost);
+    }
+  }
+
+  @Test
+  public void testAggregatesOfCostsWhichCantBeSubtracted() {
+    LensDriver driver = mock(LensDriver.class);
+    EstimatedQueryCollection queries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+    QueryContext query1 = createMockQuery(driver, 10);
+    QueryContext query2 = createMockQuery(driver, 20);
+    QueryContext query3 = createMockQuery(driver, 30);
+    when(query1.getSelectedDriverQueryCost()).thenReturn(new AdditiveQueryCost(10));
+    when(query2.getSelectedDriverQueryCost()).thenReturn(new AdditiveQueryCost(20));
+    when(query3.getSelectedDriverQueryCost()).thenReturn(new AdditiveQueryCost(30));
+
+    queries.add(query1);
+    queries.add(query2);
+    queries.add(query3);
+    assertEquals(queries.getTotalQueryCost(driver), new AdditiveQueryCost(60));
+
+    /* total is summed afresh, once a cost could not be subtracted from it */
+    queries.remove(query2);
+    assertEquals(queries.getTotalQueryCost(driver), new AdditiveQueryCost(40));
+    assertEquals(queries.getTotalQueryCost(MOCK_USER, driver), new AdditiveQueryCost(40));
+    assertEquals(queries.getQueriesCount(MOCK_USER), 2);
+    queries.remove(query1);
+    queries.remove(query3);
+    assertEquals(queries.getTotalQueryCost(driver), new FactPartitionBasedQueryCost(0));
+  }
+
+  @Test
+  public void testAddIfChecksQueriesOfUserAtomically() throws Exception {
+    final LensDriver driver1 = mock(LensDriver.class);
+    final LensDriver driver2 = mock(LensDriver.class);
+    final EstimatedQueryCollection queries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+    List<QueryContext> candidates = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      candidates.add(createMockQuery(i % 2 == 0 ? driver1 : driver2, 10));
+    }
+
+    /* queries of the user are added on both drivers together, while total cost of the user is below 50 */
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (final QueryContext candidate : candidates) {
+      results.add(pool.submit(() -> queries.addIf(candidate,
+        (count, cost) -> cost.getEstimatedResourceUsage() < 50)));
+    }
+    int added = 0;
+    for (Future<Boolean> result : results) {
+      if (result.get()) {
+        added++;
+      }
+    }
+    pool.shutdown();
+    assertEquals(added, 5);
+    assertEquals(queries.getQueriesCount(), 5);
+    assertEquals(queries.getQueriesCount(MOCK_USER), 5);
+    assertEquals(queries.getQueriesCount(driver1) + queries.getQueriesCount(driver2), 5);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(50));
+
+    /* queries of another user are checked against aggregates of that user */
+    QueryContext otherUserQuery = createMockQuery(OTHER_MOCK_USER, driver1, 10);
+    assertTrue(queries.addIf(otherUserQuery, (count, cost) -> count == 0));
+    assertFalse(queries.addIf(createMockQuery(OTHER_MOCK_USER, driver2, 10), (count, cost) -> count == 0));
+    assertEquals(queries.getQueriesCount(OTHER_MOCK_USER), 1);
+    assertEquals(queries.getTotalQueryCost(OTHER_MOCK_USER, driver2), new FactPartitionBasedQueryCost(0));
+
+    /* a query is not added twice */
+    assertFalse(queries.addIf(otherUserQuery, (count, cost) -> true));
+    assertEquals(queries.getQueriesCount(), 6);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testAddMustRejectQueryWithoutSelectedDriver() {
+    QueryContext mockQuery = createMockQuery(null, 10);
+    new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection()).add(mockQuery);
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.apache.lens.server.query.collect.QueryCollectUtil.*;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.comparators.ChainedComparator;
+import org.apache.lens.server.api.query.comparators.FIFOQueryComparator;
+import org.apache.lens.server.api.query.comparators.QueryPriorityComparator;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class ConcurrentQueryCollectionTest {
+
+  private static final String MOCK_USER = "MockUserEmail";
+  private static final String MOCK_HANDLE = "0-0-0-0-";
+
+  @Test
+  public void testAddAndRemoveUpdateAllViews() {
+    QueryCollection queries = new ConcurrentQueryCollection();
+    Set<QueryContext> mockQueries = createQueriesSetWithUserStubbing(2, MOCK_USER);
+
+    assertTrue(queries.addAll(mockQueries));
+    assertFalse(queries.addAll(mockQueries));
+    assertEquals(queries.getQueriesCount(), 2);
+    assertEquals(queries.getQueries(MOCK_USER).size(), 2);
+
+    assertTrue(queries.removeAll(mockQueries));
+    assertFalse(queries.removeAll(mockQueries));
+    assertEquals(queries.getQueriesCount(), 0);
+    assertTrue(queries.getQueries(MOCK_USER).isEmpty());
+  }
+
+  @Test
+  public void testQueriesOfNullUser() {
+    QueryCollection queries = new ConcurrentQueryCollection();
+    QueryContext mockQuery = mock(QueryContext.class);
+
+    queries.add(mockQuery);
+    assertEquals(queries.getQueries((String) null).size(), 1);
+    queries.remove(mockQuery);
+    assertTrue(queries.getQueries((String) null).isEmpty());
+  }
+
+  @Test
+  public void testIterationIsInOrderOfAddition() {
+    QueryCollection queries = new ConcurrentQueryCollection();
+    List<QueryContext> mockQueries = Lists.newArrayList(getMockQueriesSet(5));
+    for (QueryContext query : Lists.reverse(mockQueries)) {
+      queries.add(query);
+    }
+    assertEquals(Lists.newArrayList(queries.getQueries()), Lists.reverse(mockQueries));
+  }
+
+  @Test
+  public void testRemoveMethodMustChangeQueryPriorityIndices() {
+    QueryCollection collection = new ConcurrentQueryCollection(new QueryPriorityComparator());
+    Priority[] priorities = Priority.values();
+    for (int index = 1; index <= priorities.length; ++index) {
+      collection.add(createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, index,
+        priorities[index - 1]));
+    }
+    QueryContext completedQuery = getMockedQueryFromQueries(collection.getQueries(), MOCK_HANDLE, 1);
+    QueryContext queuedQuery = getMockedQueryFromQueries(collection.getQueries(), MOCK_HANDLE, 5);
+
+    collection.remove(completedQuery);
+    assertEquals(collection.getQueriesCount(), priorities.length - 1);
+    assertEquals(collection.getQueryIndex(queuedQuery).intValue(), 4);
+
+    /* Queries with same priority are ordered by their addition */
+    when(completedQuery.getPriority()).thenReturn(Priority.NORMAL);
+    collection.add(completedQuery);
+    assertEquals(collection.getQueryIndex(queuedQuery).intValue(), 5);
+    assertNull(collection.getQueryIndex(createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 9,
+      Priority.LOW)));
+  }
+
+  @Test
+  public void testRemoveAfterOrderingAttributeChanged() {
+    QueryCollection collection = new ConcurrentQueryCollection(new QueryPriorityComparator());
+    QueryContext query1 = createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 1, Priority.HIGH);
+    QueryContext query2 = createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 2, Priority.LOW);
+    collection.add(query1);
+    collection.add(query2);
+
+    when(query1.getPriority()).thenReturn(Priority.VERY_LOW);
+    assertTrue(collection.remove(query1));
+    assertEquals(Lists.newArrayList(collection.getQueries()), Lists.newArrayList(query2));
+  }
+
+  @Test
+  public void testPlaceIsKeptAfterOrderingAttributeChanged() {
+    QueryCollection collection = new ConcurrentQueryCollection(new ChainedComparator<>(
+      Lists.<Comparator<QueryContext>>newArrayList(new QueryPriorityComparator(), new FIFOQueryComparator())));
+    QueryContext query1 = createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 1, Priority.HIGH);
+    QueryContext query2 = createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 2, Priority.LOW);
+    collection.add(query1);
+    collection.add(query2);
+
+    when(query1.getPriority()).thenReturn(Priority.VERY_LOW);
+    QueryContext query3 = createQueryInstanceWithQueryHandleAndPriorityStubbing(MOCK_HANDLE, 3, Priority.NORMAL);
+    collection.add(query3);
+    assertEquals(Lists.newArrayList(collection.getQueries()), Lists.newArrayList(query1, query3, query2));
+
+    assertTrue(collection.remove(query1));
+    assertFalse(collection.remove(query1));
+    assertEquals(Lists.newArrayList(collection.getQueries()), Lists.newArrayList(query3, query2));
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testGetQueriesReturnsLiveUnmodifiableView() {
+    QueryCollection queries = new ConcurrentQueryCollection();
+    Set<QueryContext> view = queries.getQueries();
+    QueryContext mockQuery = mock(QueryContext.class);
+
+    /* Queries added after the view was obtained are visible through it */
+    queries.add(mockQuery);
+    assertTrue(view.contains(mockQuery));
+    view.clear();
+  }
+
+  @Test
+  public void testConcurrentAddAndRemove() throws Exception {
+    final QueryCollection queries = new ConcurrentQueryCollection();
+    final int threads = 8;
+    final int queriesPerThread = 200;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (int t = 0; t < threads; t++) {
+        final String user = "user" + (t % 3);
+        futures.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            List<QueryContext> added = Lists.newArrayList();
+            for (int i = 0; i < queriesPerThread; i++) {
+              QueryContext query = mock(QueryContext.class);
+              when(query.getSubmittedUser()).thenReturn(user);
+              queries.add(query);
+              added.add(query);
+              // iteration should not fail while the collection is modified
+              Iterators.size(queries.getQueries().iterator());
+            }
+            for (int i = 0; i < queriesPerThread; i += 2) {
+              queries.remove(added.get(i));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    int expected = threads * queriesPerThread / 2;
+    assertEquals(queries.getQueriesCount(), expected);
+    assertEquals(Lists.newArrayList(queries.getQueries()).size(), expected);
+    int byUser = 0;
+    for (int u = 0; u < 3; u++) {
+      byUser += queries.getQueries("user" + u).size();
+    }
+    assertEquals(byUser, expected);
+  }
+}
@@ -58,24 +58,40 @@ public class DefaultEstimatedQueryCollectionTest {
 
     QueryCollection mockQueries = mock(QueryCollection.class);
     Set<QueryContext> mockQueriesSet = createQueriesSetWithUserStubbing(2, MOCK_USER);
-    when(mockQueries.getQueries(MOCK_USER)).thenReturn(mockQueriesSet);
 
     final QueryContext query0 = Iterables.get(mockQueriesSet, 0);
     final QueryContext query1 = Iterables.get(mockQueriesSet, 1);
 
+    final LensDriver mockDriver = mock(LensDriver.class);
     final QueryCost mockCost0 = mock(QueryCost.class);
     final QueryCost mockCost1 = mock(QueryCost.class);
-    final QueryCost mockCost0Plus0 = mock(QueryCost.class);
-    final QueryCost mockCost0Plus0Plus1 = mock(QueryCost.class);
+    final QueryCost mockCost0Plus1 = mock(QueryCost.class);
 
+    when(query0.getSelectedDriver()).thenReturn(mockDriver);
+    when(query1.getSelectedDriver()).thenReturn(mockDriver);
     when(query0.getSelectedDriverQueryCost()).thenReturn(mockCost0);
     when(query1.getSelectedDriverQueryCost()).thenReturn(mockCost1);
 
-    when(mockCost0.add(mockCost0)).thenReturn(mockCost0Plus0);
-    when(mockCost0Plus0.add(mockCost1)).thenReturn(mockCost0Plus0Plus1);
+    when(mockCost0.add(mockCost1)).thenReturn(mockCost0Plus1);
+    when(mockCost0Plus1.subtract(mockCost0)).thenReturn(mockCost1);
 
-    QueryCost actualQueryCost = new DefaultEstimatedQueryCollection(mockQueries).getTotalQueryCost(MOCK_USER);
-    assertEquals(actualQueryCost, mockCost0Plus0Plus1);
+    EstimatedQueryCollection queries = new DefaultEstimatedQueryCollection(mockQueries);
+    queries.add(query0);
+    queries.add(query1);
+
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), mockCost0Plus1);
+    assertEquals(queries.getTotalQueryCost(mockDriver), mockCost0Plus1);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER, mockDriver), mockCost0Plus1);
+    assertEquals(queries.getQueriesCount(MOCK_USER), 2);
+    assertEquals(queries.getQueriesCount(MOCK_USER, mockDriver), 2);
+
+    queries.remove(query0);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), mockCost1);
+    assertEquals(queries.getQueriesCount(MOCK_USER, mockDriver), 1);
+
+    queries.remove(query1);
+    assertEquals(queries.getTotalQueryCost(MOCK_USER), new FactPartitionBasedQueryCost(0));
+    assertEquals(queries.getQueriesCount(MOCK_USER), 0);
   }
 
   @Test
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.comparators.ChainedComparator;
+import org.apache.lens.server.api.query.comparators.FIFOQueryComparator;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JMH benchmark comparing the synchronized {@link ThreadSafeEstimatedQueryCollection} with the lock free
+ * {@link ConcurrentEstimatedQueryCollection}, when 32 threads work on a collection holding 10k waiting queries.
+ *
+ * Benchmarks are not run as part of tests. Run {@link #main(String[])} with test classpath of lens-server to run them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class QueryCollectionBenchmark {
+
+  private static final int USERS = 50;
+  private static final int DRIVERS = 4;
+
+  @Param({"threadSafe", "concurrent"})
+  private String collection;
+
+  @Param({"10000"})
+  private int queries;
+
+  private EstimatedQueryCollection waitingQueries;
+  private List<LensDriver> drivers;
+
+  /**
+   * Queries added and removed by a single benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class ThreadQueries {
+    private final List<QueryContext> queries = Lists.newArrayList();
+    private int next;
+
+    @Setup
+    public void setup(QueryCollectionBenchmark benchmark) throws LensException {
+      for (int i = 0; i < 100; i++) {
+        queries.add(benchmark.createQuery(i));
+      }
+    }
+
+    QueryContext next() {
+      next = (next + 1) % queries.size();
+      return queries.get(next);
+    }
+  }
+
+  @Setup
+  public void setup() throws LensException {
+    drivers = Lists.newArrayList();
+    for (int i = 0; i < DRIVERS; i++) {
+      drivers.add(new MockDriver());
+    }
+    // queries created in the same milli second should not be treated as duplicates
+    Comparator<QueryContext> order = new ChainedComparator<>(Lists.<Comparator<QueryContext>>newArrayList(
+      new FIFOQueryComparator(), Comparator.comparing(query -> query.getQueryHandle().getHandleId())));
+    if ("threadSafe".equals(collection)) {
+      waitingQueries = new ThreadSafeEstimatedQueryCollection(new DefaultEstimatedQueryCollection(
+        new DefaultQueryCollection(new TreeSet<>(order))));
+    } else {
+      waitingQueries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection(order));
+    }
+    for (int i = 0; i < queries; i++) {
+      waitingQueries.add(createQuery(i));
+    }
+  }
+
+  QueryContext createQuery(int i) throws LensException {
+    LensDriver driver = drivers.get(i % DRIVERS);
+    QueryContext query = QueryContext.createContextWithSingleDriver("select " + i, "user" + (i % USERS),
+      new LensConf(), new Configuration(false), driver, null, false);
+    query.setSelectedDriverQueryCost(new FactPartitionBasedQueryCost(i));
+    return query;
+  }
+
+  /**
+   * A query is submitted and moved out of waiting state, as done by the query submitter.
+   */
+  @Benchmark
+  public boolean addAndRemove(ThreadQueries threadQueries) {
+    QueryContext query = threadQueries.next();
+    waitingQueries.add(query);
+    return waitingQueries.remove(query);
+  }
+
+  /**
+   * Count of queries of a driver, as checked by launching constraints.
+   */
+  @Benchmark
+  public int countOfDriver() {
+    return waitingQueries.getQueriesCount(drivers.get(ThreadLocalRandom.current().nextInt(DRIVERS)));
+  }
+
+  /**
+   * Queries of a user, as selected by waiting query selection policies.
+   */
+  @Benchmark
+  public void queriesOfUser(Blackhole blackhole) {
+    for (QueryContext query : waitingQueries.getQueries("user" + ThreadLocalRandom.current().nextInt(USERS))) {
+      blackhole.consume(query);
+    }
+  }
+
+  /**
+   * Mix of readers and writers, with all queries being listed once in a while as done by REST list calls.
+   */
+  @Benchmark
+  public void mixed(ThreadQueries threadQueries, Blackhole blackhole) {
+    int op = ThreadLocalRandom.current().nextInt(100);
+    if (op < 20) {
+      blackhole.consume(addAndRemove(threadQueries));
+    } else if (op < 99) {
+      blackhole.consume(countOfDriver());
+    } else {
+      blackhole.consume(waitingQueries.getQueries().size());
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(QueryCollectionBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.collect;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static org.testng.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryExecutionService;
+import org.apache.lens.server.api.query.comparators.FIFOQueryComparator;
+import org.apache.lens.server.api.query.comparators.QueryPriorityComparator;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+
+public class WeightedFairQueryQueueTest {
+
+  private static final String USER1 = "user1";
+  private static final String USER2 = "user2";
+
+  private QueryContext createMockQuery(final String user, final Priority priority) {
+    QueryContext mockQuery = mock(QueryContext.class);
+    when(mockQuery.getSubmittedUser()).thenReturn(user);
+    when(mockQuery.getPriority()).thenReturn(priority);
+    return mockQuery;
+  }
+
+  private List<QueryContext> addQueries(final QueryQueue queue, final String user, final int count) {
+    List<QueryContext> queries = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      queries.add(createMockQuery(user, Priority.NORMAL));
+    }
+    queue.addAll(queries);
+    return queries;
+  }
+
+  private List<String> takeUsers(final QueryQueue queue, final int count) throws InterruptedException {
+    List<String> users = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      users.add(queue.take().getSubmittedUser());
+    }
+    return users;
+  }
+
+  @Test
+  public void testUsersAreServedInRoundRobin() throws InterruptedException {
+    QueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), new Configuration(false));
+    List<QueryContext> user1Queries = addQueries(queue, USER1, 5);
+    List<QueryContext> user2Queries = addQueries(queue, USER2, 2);
+    assertEquals(queue.size(), 7);
+
+    assertEquals(queue.take(), user1Queries.get(0));
+    assertEquals(queue.take(), user2Queries.get(0));
+    assertEquals(queue.take(), user1Queries.get(1));
+    assertEquals(queue.take(), user2Queries.get(1));
+    assertEquals(takeUsers(queue, 3), Lists.newArrayList(USER1, USER1, USER1));
+    assertEquals(queue.size(), 0);
+  }
+
+  @Test
+  public void testWeights() throws InterruptedException {
+    Configuration conf = new Configuration(false);
+    conf.set(WEIGHTED_FAIR_QUEUE_WEIGHTS, USER1 + ":2, " + USER2 + ":0.5");
+    QueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), conf);
+    addQueries(queue, USER1, 10);
+    addQueries(queue, USER2, 10);
+
+    assertEquals(takeUsers(queue, 10),
+      Lists.newArrayList(USER1, USER1, USER1, USER1, USER2, USER1, USER1, USER1, USER1, USER2));
+  }
+
+  @Test
+  public void testSubQueuePerTenant() throws InterruptedException {
+    Configuration conf = new Configuration(false);
+    conf.set(WEIGHTED_FAIR_QUEUE_TENANT_CONF_KEY, "test.tenant");
+    WeightedFairQueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), conf);
+    Configuration queryConf = new Configuration(false);
+    queryConf.set("test.tenant", "tenant1");
+    QueryContext tenantQuery = createMockQuery(USER1, Priority.NORMAL);
+    when(tenantQuery.getConf()).thenReturn(queryConf);
+
+    assertEquals(queue.getSubQueueName(tenantQuery), "tenant1");
+    assertEquals(queue.getSubQueueName(createMockQuery(USER1, Priority.NORMAL)), USER1);
+  }
+
+  @Test
+  public void testPriorityAndAging() throws InterruptedException {
+    Configuration conf = new Configuration(false);
+    conf.setLong(WEIGHTED_FAIR_QUEUE_AGING_MILLIS, 200);
+    QueryQueue queue = new WeightedFairQueryQueue(new QueryPriorityComparator(), conf);
+    QueryContext lowPriorityQuery = createMockQuery(USER1, Priority.LOW);
+    QueryContext highPriorityQuery = createMockQuery(USER1, Priority.HIGH);
+    queue.add(lowPriorityQuery);
+    queue.add(highPriorityQuery);
+    assertEquals(queue.take(), highPriorityQuery);
+
+    queue.add(highPriorityQuery);
+    Thread.sleep(300);
+    QueryContext veryHighPriorityQuery = createMockQuery(USER1, Priority.VERY_HIGH);
+    queue.add(veryHighPriorityQuery);
+    /* low priority query has waited for longer than aging millis, it goes ahead of queries with higher priority */
+    assertEquals(queue.take(), lowPriorityQuery);
+    assertEquals(queue.take(), highPriorityQuery);
+    assertEquals(queue.take(), veryHighPriorityQuery);
+  }
+
+  @Test
+  public void testRemove() throws InterruptedException {
+    QueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), new Configuration(false));
+    List<QueryContext> user1Queries = addQueries(queue, USER1, 1);
+    List<QueryContext> user2Queries = addQueries(queue, USER2, 2);
+
+    assertTrue(queue.remove(user1Queries.get(0)));
+    assertFalse(queue.remove(user1Queries.get(0)));
+    assertFalse(queue.add(user2Queries.get(0)));
+    assertEquals(queue.size(), 2);
+    assertEquals(queue.take(), user2Queries.get(0));
+    assertEquals(queue.take(), user2Queries.get(1));
+  }
+
+  @Test
+  public void testTakeWaitsForQuery() throws Exception {
+    final QueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), new Configuration(false));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<QueryContext> taken = executor.submit(queue::take);
+      Thread.sleep(100);
+      assertFalse(taken.isDone());
+
+      QueryContext query = createMockQuery(USER1, Priority.NORMAL);
+      queue.add(query);
+      assertEquals(taken.get(10, TimeUnit.SECONDS), query);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWaitTimeMetric() throws InterruptedException {
+    String user = "metricUser";
+    QueryQueue queue = new WeightedFairQueryQueue(new FIFOQueryComparator(), new Configuration(false));
+    addQueries(queue, user, 2);
+    takeUsers(queue, 2);
+    assertEquals(LensMetricsRegistry.getStaticRegistry().timer(MetricRegistry.name(QueryExecutionService.class,
+      WeightedFairQueryQueue.QUEUE_WAIT_TIME, user)).getCount(), 2);
+  }
+}
@@ -24,13 +24,20 @@ import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 
 import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.query.collect.ConcurrentEstimatedQueryCollection;
+import org.apache.lens.server.query.collect.ConcurrentQueryCollection;
+import org.apache.lens.server.query.collect.EstimatedQueryCollection;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -114,6 +121,44 @@ public class DefaultQueryLaunchingConstraintsCheckerTest {
     Assert.assertTrue(canLaunchQuery);
   }
 
+  private QueryContext createMockQuery(final LensDriver driver, final QueryLaunchingConstraint driverConstraint) {
+    QueryContext mockQuery = mock(QueryContext.class);
+    when(mockQuery.getSubmittedUser()).thenReturn("MockUser");
+    when(mockQuery.getSelectedDriver()).thenReturn(driver);
+    when(mockQuery.getSelectedDriverQueryCost()).thenReturn(new FactPartitionBasedQueryCost(20));
+    when(mockQuery.getSelectedDriverQueryConstraints()).thenReturn(ImmutableSet.of(driverConstraint));
+    when(mockQuery.getStatus()).thenReturn(QueryStatus.getQueuedStatus());
+    return mockQuery;
+  }
+
+  @Test
+  public void testAddIfCanLaunchChecksUserConstraintsWithAdd() {
+    LensDriver driver = mock(LensDriver.class);
+    QueryLaunchingConstraint driverConstraint = mock(QueryLaunchingConstraint.class);
+    QueryLaunchingConstraintsChecker constraintsChecker = new DefaultQueryLaunchingConstraintsChecker(
+      ImmutableSet.<QueryLaunchingConstraint>of(
+        new TotalQueryCostCeilingConstraint(Optional.<QueryCost>of(new FactPartitionBasedQueryCost(10)))));
+    EstimatedQueryCollection launchedQueries = new ConcurrentEstimatedQueryCollection(new ConcurrentQueryCollection());
+
+    /* rejected by driver constraint, before checking user constraints */
+    QueryContext query1 = createMockQuery(driver, driverConstraint);
+    when(driverConstraint.allowsLaunchOf(query1, launchedQueries)).thenReturn("driver constraint failed");
+    Assert.assertFalse(constraintsChecker.addIfCanLaunch(query1, launchedQueries));
+    Assert.assertEquals(query1.getStatus().getProgressMessage(), "driver constraint failed");
+    Assert.assertEquals(launchedQueries.getQueriesCount(), 0);
+
+    /* user has no launched queries */
+    QueryContext query2 = createMockQuery(driver, driverConstraint);
+    Assert.assertTrue(constraintsChecker.addIfCanLaunch(query2, launchedQueries));
+    Assert.assertEquals(launchedQueries.getQueriesCount(), 1);
+
+    /* launched queries of the user cost more than the ceiling */
+    QueryContext query3 = createMockQuery(driver, driverConstraint);
+    Assert.assertFalse(constraintsChecker.addIfCanLaunch(query3, launchedQueries));
+    Assert.assertNotNull(query3.getStatus().getProgressMessage());
+    Assert.assertEquals(launchedQueries.getQueriesCount(), 1);
+  }
+
   @Test(expectedExceptions = NullPointerException.class)
   public void testConstraintsCheckerMustNotAcceptNullConstraintsSet() {
     new DefaultQueryLaunchingConstraintsChecker(null);
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.cursor;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.driver.InMemoryResultSet;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.commons.io.FileUtils;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestResultCursor {
+
+  private final File spillDir = new File("target/" + getClass().getSimpleName());
+
+  /**
+   * In memory result over a list of rows, which can be iterated once.
+   */
+  private static class ListResultSet extends InMemoryResultSet {
+    private final int size;
+    private final Iterator<ResultRow> rows;
+    private int read;
+
+    ListResultSet(List<ResultRow> rows) {
+      this.size = rows.size();
+      this.rows = rows.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return rows.hasNext();
+    }
+
+    @Override
+    public ResultRow next() {
+      read++;
+      return rows.next();
+    }
+
+    @Override
+    public void setFetchSize(int size) {
+    }
+
+    @Override
+    public Integer size() {
+      return size;
+    }
+
+    @Override
+    public LensResultSetMetadata getMetadata() {
+      return null;
+    }
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException {
+    FileUtils.deleteDirectory(spillDir);
+  }
+
+  private static List<ResultRow> createRows(int count) {
+    List<ResultRow> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(new ResultRow(Arrays.<Object>asList(i, "row" + i, i * 1.5, (long) i << 33)));
+    }
+    return rows;
+  }
+
+  public void testRowValues() throws IOException {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.<Object>asList(null, true, false, (byte) 1, (short) -2, 3, -4L, 5.5f, 6.5d,
+      "seven é", new BigDecimal("8.123456789012345678"), timestamp, new java.sql.Date(86400000L),
+      Arrays.asList(9, 10));
+    RowStore store = new RowStore(spillDir, "values", ResultCursorStore.CHUNK_SIZE, new HeapBudget(Long.MAX_VALUE));
+    store.add(new ResultRow(values));
+    store.add(new ResultRow(Arrays.<Object>asList(new byte[]{1, 2, 3})));
+    assertEquals(store.get(0).getValues(), values);
+    assertEquals((byte[]) store.get(1).getValues().get(0), new byte[]{1, 2, 3});
+    store.close();
+  }
+
+  public void testSpill() throws IOException {
+    HeapBudget budget = new HeapBudget(256);
+    RowStore store = new RowStore(spillDir, "spill", 128, budget);
+    List<ResultRow> rows = createRows(100);
+    for (ResultRow row : rows) {
+      store.add(row);
+    }
+    store.finish();
+    assertEquals(store.getSize(), 100);
+    assertTrue(store.getHeapBytes() > 0 && store.getHeapBytes() <= 256, "Heap bytes " + store.getHeapBytes());
+    assertEquals(budget.getUsed(), store.getHeapBytes());
+    assertTrue(store.getSpilledBytes() > 0);
+    File spillFile = store.getSpillFile();
+    assertTrue(spillFile.exists());
+
+    // read backwards, across heap and spilled chunks
+    for (int i = rows.size() - 1; i >= 0; i--) {
+      assertEquals(store.get(i).getValues(), rows.get(i).getValues());
+    }
+    store.close();
+    assertFalse(spillFile.exists());
+    assertEquals(budget.getUsed(), 0);
+  }
+
+  public void testCurrentChunkCharged() throws IOException {
+    HeapBudget budget = new HeapBudget(Long.MAX_VALUE);
+    RowStore store = new RowStore(spillDir, "current", 128, budget);
+    store.add(createRows(1).get(0));
+    // the chunk being appended to is charged before it is sealed
+    assertEquals(store.getHeapBytes(), 0);
+    assertEquals(budget.getUsed(), 128);
+
+    // a row larger than the chunk size makes a chunk by itself
+    ResultRow large = new ResultRow(Arrays.<Object>asList(new String(new char[500]).replace('\0', 'x')));
+    store.add(large);
+    store.add(createRows(1).get(0));
+    assertEquals(store.get(1).getValues(), large.getValues());
+    assertEquals(budget.getUsed(), store.getHeapBytes() + 128);
+
+    store.finish();
+    assertEquals(budget.getUsed(), store.getHeapBytes());
+    store.close();
+    assertEquals(budget.getUsed(), 0);
+  }
+
+  public void testCursor() throws Exception {
+    List<ResultRow> rows = createRows(1000);
+    ListResultSet driverResult = new ListResultSet(rows);
+    final ResultCursor cursor = new ResultCursor(driverResult, new RowStore(spillDir, "cursor", 1024,
+      new HeapBudget(4096)));
+
+    assertEquals(cursor.getRows(10, 5).toString(), rows.subList(10, 15).toString());
+    assertEquals(driverResult.read, 15);
+    assertFalse(cursor.canBePurged());
+    // page backwards
+    assertEquals(cursor.getRows(0, 10).toString(), rows.subList(0, 10).toString());
+    assertEquals(driverResult.read, 15);
+
+    // any number of readers
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      results.add(readers.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return cursor.getRows(500, 0).toString();
+        }
+      }));
+    }
+    for (Future<String> result : results) {
+      assertEquals(result.get(), rows.subList(500, 1000).toString());
+    }
+    readers.shutdown();
+
+    assertTrue(cursor.canBePurged());
+    assertTrue(driverResult.canBePurged());
+    assertEquals(cursor.size(), Integer.valueOf(1000));
+    assertTrue(cursor.getRows(1000, 10).isEmpty());
+    assertEquals(cursor.toQueryResult().getRows().size(), 1000);
+    cursor.close();
+    try {
+      cursor.getRows(0, 1);
+      fail("Expected rows to be closed");
+    } catch (LensException e) {
+      // expected
+    }
+  }
+}
@@ -22,6 +22,7 @@ import java.util.*;
 
 import org.apache.lens.api.LensConf;
 import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.parse.CubeQueryConfUtil;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.cube.parse.CubeQueryRewriter;
 import org.apache.lens.cube.parse.HQLParser;
@@ -109,7 +110,12 @@ public class TestRewriting {
     });
     Mockito.when(mockwriter.rewrite(Matchers.any(ASTNode.class))).thenAnswer(invocation -> {
       Object[] args = invocation.getArguments();
-      return getMockedCubeContext((ASTNode) args[0]);
+      // return query for first NUM_SUCCESS calls and fail later
+      if (++i <= NUM_SUCCESS) {
+        return getMockedCubeContext((ASTNode) args[0]);
+      } else {
+        throw new RuntimeException("Mock fail");
+      }
     });
     Mockito.doCallRealMethod().when(mockwriter).clear();
     return mockwriter;
@@ -145,6 +151,9 @@ public class TestRewriting {
    */
   private CubeQueryContext getMockedCubeContext(ASTNode ast) throws ParseException, LensException {
     CubeQueryContext context = Mockito.mock(CubeQueryContext.class);
+    QueryWriterContext mockQueryWriterContext = Mockito.mock(QueryWriterContext.class);
+    Mockito.when(mockQueryWriterContext.getDimsToQuery()).thenReturn(Maps.newHashMap());
+    Mockito.when(context.getQueryWriterContext()).thenReturn(mockQueryWriterContext);
     if (ast.getToken().getType() == HiveParser.TOK_QUERY) {
       if (((ASTNode) ast.getChild(0)).getToken().getType() == HiveParser.KW_CUBE) {
         // remove cube child from AST
@@ -455,9 +464,11 @@ public class TestRewriting {
     Assert.assertEquals(cubeQueries.get(0).query, q2);
     Assert.assertEquals(cubeQueries.get(1).query, q2);
 
-    // failing query for second driver
+    // failing query for second driver, whose conf differs so that it doesn't share the rewrite of first driver
     MockDriver driver2 = new MockDriver();
-    driver2.configure(conf, null, null);
+    Configuration conf2 = new Configuration(conf);
+    conf2.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "c2");
+    driver2.configure(conf2, null, null);
     drivers.add(driver2);
 
     Assert.assertEquals(drivers.size(), 2);
@@ -499,6 +510,42 @@ public class TestRewriting {
     Assert.assertNotNull(ctx.getDriverRewriteError(driver2));
   }
 
+  @Test
+  public void testRewriteSharedByDrivers() throws Exception {
+    SessionState.start(hconf);
+    CubeQueryRewriter mockWriter = Mockito.mock(CubeQueryRewriter.class);
+    Mockito.when(mockWriter.rewrite(Matchers.any(ASTNode.class))).thenAnswer(invocation ->
+      getMockedCubeContext((ASTNode) invocation.getArguments()[0]));
+    PowerMockito.stub(PowerMockito.method(RewriteUtil.class, "getCubeRewriter")).toReturn(mockWriter);
+    PowerMockito.stub(PowerMockito.method(RewriteUtil.class, "getClient")).toReturn(getMockedClient());
+
+    Configuration conf = new Configuration();
+    // settings not read by the cube rewriter don't affect the rewrite
+    Configuration driverSettingConf = new Configuration(conf);
+    driverSettingConf.set(LensConfConstants.DRIVER_PFX + "mock.test.setting", "value");
+    driverSettingConf.set("mapreduce.job.queuename", "driverqueue");
+    Configuration otherConf = new Configuration(conf);
+    otherConf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "c2");
+    List<LensDriver> drivers = new ArrayList<>();
+    for (Configuration driverConf : new Configuration[]{new Configuration(conf), driverSettingConf, otherConf}) {
+      MockDriver driver = new MockDriver();
+      driver.configure(driverConf, null, null);
+      drivers.add(driver);
+    }
+
+    String query = "cube select name from table";
+    QueryContext ctx = new QueryContext(query, null, new LensConf(), conf, drivers);
+    Map<LensDriver, RewriteUtil.DriverRewriterRunnable> runnables = RewriteUtil.rewriteQuery(ctx);
+    runRewrites(runnables);
+    // one rewrite for first two drivers, and one for the third
+    Mockito.verify(mockWriter, Mockito.times(2)).rewrite(Matchers.any(ASTNode.class));
+    for (LensDriver driver : drivers) {
+      Assert.assertTrue(runnables.get(driver).isSucceeded());
+    }
+    Assert.assertSame(runnables.get(drivers.get(0)).getRewrittenQuery(),
+      runnables.get(drivers.get(1)).getRewrittenQuery());
+  }
+
   private void assertIsCubeQuery(String query, LensConf lensConf, Configuration conf, List<LensDriver> drivers)
     throws LensException {
     List<RewriteUtil.CubeQueryInfo> cubeQueries = RewriteUtil.findCubePositions(query, hconf);